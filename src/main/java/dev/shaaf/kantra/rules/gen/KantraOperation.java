@@ -38,12 +38,18 @@ public enum KantraOperation {
 
     // Utility Operations
     VALIDATE_RULE,
+    TEST_RULE,
     GET_HELP,
     COMBINE_WITH_AND,
     COMBINE_WITH_OR,
 
     // Ruleset Operations
     CREATE_RULESET,
-    VALIDATE_RULESET
+    VALIDATE_RULESET,
+    WATCH_RULESET,
+
+    // Search Operations
+    SEARCH_RULES,
+    SELECT_RULES
 }
 
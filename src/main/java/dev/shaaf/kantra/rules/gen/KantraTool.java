@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.shaaf.kantra.rules.gen.commands.CommandRegistry;
 import dev.shaaf.kantra.rules.gen.commands.KantraCommand;
+import io.quarkiverse.mcp.server.McpLog;
 import io.quarkiverse.mcp.server.Tool;
 import io.quarkiverse.mcp.server.ToolArg;
 import io.quarkiverse.mcp.server.ToolCallException;
@@ -43,17 +44,21 @@ public class KantraTool {
      *
      * @param operation The type of Kantra operation to perform
      * @param params    JSON string containing the parameters for the operation
+     * @param log       MCP log of the calling session, used by commands that push notifications
      * @return YAML rule string or result message from the operation
      */
     @Tool(description = "Constructs Konveyor Kantra static analysis rules for application migration. capable of synthesizing custom YAML rulesets for discovering specific code patterns." +
             "Use this tool to create granular rules that pinpoint explicitly defined patterns in the codebase." +
             "Creates migration rules for Java, file content, XML, and JSON patterns. " +
             "Pass the operation type and parameters as JSON. " +
-            "Java ops: CREATE_JAVA_CLASS_RULE (supports all JavaLocation types: IMPORT, CLASS, METHOD_CALL, CONSTRUCTOR_CALL, ANNOTATION, FIELD, METHOD, INHERITANCE, IMPLEMENTS_TYPE, ENUM, RETURN_TYPE, VARIABLE_DECLARATION, TYPE, PACKAGE); " +
+            "Java ops: CREATE_JAVA_CLASS_RULE (supports all JavaLocation types: IMPORT, CLASS, METHOD_CALL, CONSTRUCTOR_CALL, ANNOTATION, FIELD, METHOD, INHERITANCE, IMPLEMENTS_TYPE, ENUM, ENUM_CONSTANT, RETURN_TYPE, VARIABLE_DECLARATION, TYPE, PACKAGE, DEFAULT); " +
             "File ops: CREATE_FILE_CONTENT_RULE, CREATE_FILE_RULE; " +
             "XML ops: CREATE_XML_RULE; " +
             "JSON ops: CREATE_JSON_RULE; " +
-            "Utility ops: VALIDATE_RULE, GET_HELP")
+            "Utility ops: VALIDATE_RULE, TEST_RULE (dry-run a rule against a local source directory), GET_HELP; " +
+            "Ruleset ops: CREATE_RULESET, VALIDATE_RULESET, WATCH_RULESET; " +
+            "Search ops: SEARCH_RULES (find existing rules before writing a new one), " +
+            "SELECT_RULES (preview the rules a label selector loads)")
     public String executeKantraOperation(
             @ToolArg(description = "The operation to perform (e.g., CREATE_JAVA_CLASS_RULE, CREATE_FILE_CONTENT_RULE, CREATE_XML_RULE, VALIDATE_RULE, GET_HELP), Be as specific as possible when choosing the operation and the parameters.")
             KantraOperation operation,
@@ -61,9 +66,12 @@ public class KantraTool {
                     "For CREATE_JAVA_CLASS_RULE: {ruleID, javaPattern, location (IMPORT/CLASS/METHOD_CALL/etc), message (should include before and after code examples and additional context), category (MANDATORY/OPTIONAL/POTENTIAL), effort (1-5)}. if location is ANNOTATION, you can also provide an annotated condition. " +
                     "For CREATE_FILE_CONTENT_RULE: {ruleID, filePattern, contentPattern, message, category, effort}. " +
                     "For CREATE_XML_RULE: {ruleID, xpath, message, category, effort}. " +
+                    "CREATE_* ops also accept checkDuplicates (true to prepend warnings about related existing rules as YAML comments). " +
                     "For VALIDATE_RULE: {yamlContent}. " +
-                    "For GET_HELP: {topic (java/file/xml/json/operations)}")
-            String params) {
+                    "For GET_HELP: {topic (java/file/xml/json/operations)}. " +
+                    "For WATCH_RULESET: {directoryPath, action (start/stop/status), debounceMillis}")
+            String params,
+            McpLog log) {
 
         // Check if operation is available (might be disabled via config)
         if (!registry.isAvailable(operation)) {
@@ -79,7 +87,7 @@ public class KantraTool {
 
             Log.debugf("Executing %s with params: %s", operation, params);
 
-            return command.execute(paramsNode);
+            return command.execute(paramsNode, log);
 
         } catch (ToolCallException e) {
             // Re-throw tool call exceptions as-is
@@ -37,8 +37,8 @@ public class LocationLookup {
 
         // Location-specific parameters based on JavaReferencedService methods
         switch (location) {
-            case IMPORT, METHOD_CALL, CONSTRUCTOR_CALL, INHERITANCE, IMPLEMENTS_TYPE, ENUM, RETURN_TYPE,
-                 VARIABLE_DECLARATION, FIELD -> {
+            case DEFAULT, IMPORT, METHOD_CALL, CONSTRUCTOR_CALL, INHERITANCE, IMPLEMENTS_TYPE, ENUM, ENUM_CONSTANT,
+                 RETURN_TYPE, VARIABLE_DECLARATION, FIELD -> {
                 sb.append("  - filepaths: String... (Optional: Filepath patterns to filter matches)\n");
             }
             case ANNOTATION -> {
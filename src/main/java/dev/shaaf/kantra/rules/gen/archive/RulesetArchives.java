@@ -0,0 +1,142 @@
+package dev.shaaf.kantra.rules.gen.archive;
+
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Helpers for reading rulesets that are distributed as zip or tar archives.
+ * <p>
+ * Archives usually either contain the ruleset files at the top level or wrap them in a single
+ * directory, and some bundle several rulesets side by side. {@link #findRulesetRoots(Collection)}
+ * returns every directory that holds a ruleset.yaml, so all these layouts are handled without
+ * extracting anything.
+ * </p>
+ */
+public final class RulesetArchives {
+
+    private RulesetArchives() {
+    }
+
+    /**
+     * @return true for .zip and .jar files, which are opened through the NIO zip file system
+     */
+    public static boolean isZip(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+
+    /**
+     * @return true for .tar, .tar.gz and .tgz files, which are read as a stream
+     */
+    public static boolean isTar(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * @return true if the path points at an archive file rather than a directory
+     */
+    public static boolean isArchive(Path path) {
+        return path.getFileName() != null && Files.isRegularFile(path) && (isZip(path) || isTar(path));
+    }
+
+    /**
+     * Open a zip archive as a read-only file system. The caller must close it.
+     *
+     * @param archive Path to the zip file
+     * @return The zip file system
+     * @throws IOException if the archive cannot be opened
+     */
+    public static FileSystem openZip(Path archive) throws IOException {
+        return FileSystems.newFileSystem(archive, (ClassLoader) null);
+    }
+
+    /**
+     * Locate the ruleset directories inside an opened zip file system.
+     *
+     * @param zipFs Zip file system
+     * @return Ruleset directories inside the archive, sorted
+     * @throws IOException if the archive cannot be listed
+     */
+    public static List<Path> findRulesetRoots(FileSystem zipFs) throws IOException {
+        Path root = zipFs.getRootDirectories().iterator().next();
+        List<String> names;
+        try (Stream<Path> paths = Files.walk(root)) {
+            names = paths.filter(Files::isRegularFile)
+                    .map(p -> root.relativize(p).toString())
+                    .toList();
+        }
+        return findRulesetRoots(names).stream()
+                .map(dir -> dir.isEmpty() ? root : root.resolve(dir))
+                .toList();
+    }
+
+    /**
+     * Pick the ruleset directories from the file entries of an archive.
+     *
+     * @param entryNames File entry names, relative to the archive root, using '/' as separator
+     * @return The directory prefixes ending in '/', or an empty string for the archive root, sorted; a single
+     *         directory chosen by layout if the archive holds no ruleset.yaml
+     */
+    public static List<String> findRulesetRoots(Collection<String> entryNames) {
+        Set<String> roots = new TreeSet<>();
+        for (String name : entryNames) {
+            String normalized = normalize(name);
+            if (fileName(normalized).equals(RulesetValidator.RULESET_FILE)) {
+                roots.add(parent(normalized));
+            }
+        }
+        if (!roots.isEmpty()) {
+            return List.copyOf(roots);
+        }
+
+        // No ruleset.yaml: use the top level, unless everything is wrapped in a single directory
+        Set<String> topLevelDirs = new TreeSet<>();
+        for (String name : entryNames) {
+            String normalized = normalize(name);
+            int slash = normalized.indexOf('/');
+            if (slash < 0) {
+                return List.of("");
+            }
+            topLevelDirs.add(normalized.substring(0, slash + 1));
+        }
+        return List.of(topLevelDirs.size() == 1 ? topLevelDirs.iterator().next() : "");
+    }
+
+    /**
+     * Strip leading "./" and "/" from an entry name.
+     */
+    public static String normalize(String entryName) {
+        String name = entryName.replace('\\', '/');
+        while (name.startsWith("./") || name.startsWith("/")) {
+            name = name.startsWith("./") ? name.substring(2) : name.substring(1);
+        }
+        return name;
+    }
+
+    /**
+     * @return The directory prefix of an entry ("" for top-level entries)
+     */
+    public static String parent(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        return slash < 0 ? "" : entryName.substring(0, slash + 1);
+    }
+
+    /**
+     * @return The last path segment of an entry
+     */
+    public static String fileName(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+}
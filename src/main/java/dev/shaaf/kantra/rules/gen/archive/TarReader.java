@@ -0,0 +1,249 @@
+package dev.shaaf.kantra.rules.gen.archive;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Minimal streaming reader for tar archives (ustar, GNU long names and pax path headers),
+ * optionally gzip-compressed.
+ * <p>
+ * Entries are read strictly in order, nothing is extracted to disk and only the content of the
+ * current entry can be read. Call {@link #next()} to advance; unread content of the previous
+ * entry is skipped.
+ * </p>
+ */
+public class TarReader implements Closeable {
+
+    private static final int BLOCK = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK];
+    private long remaining;
+    private long padding;
+
+    public TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Open a tar file, transparently decompressing it when it starts with the gzip magic bytes.
+     *
+     * @param archive Path to a .tar, .tar.gz or .tgz file
+     * @return Reader positioned before the first entry
+     * @throws IOException if the file cannot be opened
+     */
+    public static TarReader open(Path archive) throws IOException {
+        InputStream raw = new BufferedInputStream(Files.newInputStream(archive), 64 * 1024);
+        raw.mark(2);
+        int b1 = raw.read();
+        int b2 = raw.read();
+        raw.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            return new TarReader(new BufferedInputStream(new GZIPInputStream(raw, 64 * 1024), 64 * 1024));
+        }
+        return new TarReader(raw);
+    }
+
+    /**
+     * Advance to the next entry.
+     *
+     * @return The next entry, or null at the end of the archive
+     * @throws IOException if the archive is truncated or corrupt
+     */
+    public Entry next() throws IOException {
+        String longName = null;
+        while (true) {
+            // Skip whatever is left of the previous entry, including the block padding
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+
+            if (!readBlock()) {
+                return null;
+            }
+            if (isZeroBlock()) {
+                return null;
+            }
+
+            String name = string(0, 100);
+            String prefix = string(345, 155);
+            if (!prefix.isEmpty() && "ustar".equals(string(257, 5))) {
+                name = prefix + "/" + name;
+            }
+            long size = number(124, 12);
+            byte type = header[156];
+            startContent(size);
+
+            switch (type) {
+                case 'L' -> longName = trimNul(new String(readContent(), StandardCharsets.UTF_8));
+                case 'x' -> {
+                    String paxPath = paxPath(readContent());
+                    if (paxPath != null) {
+                        longName = paxPath;
+                    }
+                }
+                case 'g' -> {
+                    // Global pax headers carry nothing we need
+                }
+                default -> {
+                    String entryName = longName != null ? longName : name;
+                    boolean directory = type == '5' || entryName.endsWith("/");
+                    boolean regular = type == '0' || type == 0 || type == '7';
+                    return new Entry(entryName, size, directory, regular && !directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the complete content of the current entry.
+     *
+     * @return Entry content
+     * @throws IOException if reading fails or the entry is too large
+     */
+    public byte[] readContent() throws IOException {
+        if (remaining > Integer.MAX_VALUE - 16) {
+            throw new IOException("Tar entry too large: " + remaining + " bytes");
+        }
+        byte[] content = new byte[(int) remaining];
+        readFully(content, 0, content.length);
+        remaining = 0;
+        return content;
+    }
+
+    private void startContent(long size) {
+        remaining = size;
+        padding = (BLOCK - (size % BLOCK)) % BLOCK;
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = 0;
+        while (read < BLOCK) {
+            int n = in.read(header, read, BLOCK - read);
+            if (n < 0) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated tar header");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private long number(int offset, int length) throws IOException {
+        // GNU base-256 encoding for large values
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        String octal = string(offset, length).trim();
+        if (octal.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(octal, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt tar header, invalid number: " + octal);
+        }
+    }
+
+    private static String paxPath(byte[] content) {
+        // Records have the form "<length> <key>=<value>\n", where <length> counts the bytes of the whole record
+        int pos = 0;
+        while (pos < content.length) {
+            int space = pos;
+            while (space < content.length && content[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(content, pos, space - pos, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            int end = pos + length;
+            if (space >= content.length || end <= space || end > content.length) {
+                break;
+            }
+            int recordEnd = content[end - 1] == '\n' ? end - 1 : end;
+            String record = new String(content, space + 1, recordEnd - space - 1, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length());
+            }
+            pos = end;
+        }
+        return null;
+    }
+
+    private static String trimNul(String value) {
+        int nul = value.indexOf('\0');
+        return nul >= 0 ? value.substring(0, nul) : value;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = in.read(buffer, offset, length);
+            if (n < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A tar entry header.
+     *
+     * @param name        Entry path inside the archive
+     * @param size        Content size in bytes
+     * @param directory   true for directory entries
+     * @param regularFile true for regular files (as opposed to links, devices, ...)
+     */
+    public record Entry(String name, long size, boolean directory, boolean regularFile) {}
+}
@@ -0,0 +1,39 @@
+package dev.shaaf.kantra.rules.gen.catalog;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Configuration of the rule catalog used for duplicate detection.
+ *
+ * Example configuration:
+ * <pre>
+ * kantra.mcp.catalog.directories=/rulesets/default,/workspace/rules
+ * kantra.mcp.catalog.watch=true
+ * kantra.mcp.catalog.debounce-millis=500
+ * </pre>
+ */
+@ConfigMapping(prefix = "kantra.mcp.catalog")
+public interface CatalogConfig {
+
+    /**
+     * Directories whose rule files are loaded at startup, recursively.
+     * The catalog stays empty when unset.
+     */
+    Optional<List<String>> directories();
+
+    /**
+     * Keep the catalog up to date when files in the directories change.
+     */
+    @WithDefault("true")
+    boolean watch();
+
+    /**
+     * Quiet period after the last file change before the catalog is refreshed.
+     */
+    @WithDefault("500")
+    long debounceMillis();
+}
@@ -0,0 +1,76 @@
+package dev.shaaf.kantra.rules.gen.catalog;
+
+import dev.shaaf.kantra.rules.gen.model.AndCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinHasTagsCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinJsonCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlPublicIdCondition;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.Conditions;
+import dev.shaaf.kantra.rules.gen.model.JavaDependencyCondition;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import dev.shaaf.kantra.rules.gen.model.OrCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a single provider condition matches: condition type, Java location (for {@code java.referenced})
+ * and the pattern, normalized so equivalent conditions get equal keys.
+ *
+ * @param type     Condition type as written in rule files, e.g. {@code java.referenced}
+ * @param location Location of {@code java.referenced} conditions, null for other types
+ * @param pattern  Pattern, XPath, regex or dependency coordinates, depending on the type
+ */
+public record ConditionKey(String type, JavaLocation location, String pattern) {
+
+    /**
+     * Keys of the non-negated leaf conditions of a condition tree, in tree order.
+     */
+    public static List<ConditionKey> of(Condition when) {
+        List<ConditionKey> keys = new ArrayList<>(1);
+        Conditions.walk(when, (condition, depth) -> {
+            // A negated condition detects the absence of something; it does not describe what the rule finds
+            if (Boolean.TRUE.equals(condition.not())) {
+                return false;
+            }
+            ConditionKey key = leaf(condition);
+            if (key != null) {
+                keys.add(key);
+            }
+            return true;
+        });
+        return keys;
+    }
+
+    private static ConditionKey leaf(Condition condition) {
+        return switch (condition) {
+            case AndCondition ignored -> null;
+            case OrCondition ignored -> null;
+            case JavaReferencedCondition c -> new ConditionKey("java.referenced", c.location(), normalize(c.pattern()));
+            case JavaDependencyCondition c -> new ConditionKey("java.dependency", null,
+                normalize(c.name() != null ? c.name() : c.nameRegex())
+                    + " [" + normalize(c.lowerbound()) + ", " + normalize(c.upperbound()) + "]");
+            case BuiltinFileCondition c -> new ConditionKey("builtin.file", null, normalize(c.pattern()));
+            case BuiltinFileContentCondition c -> new ConditionKey("builtin.filecontent", null,
+                normalize(c.pattern()) + " in " + normalize(c.filePattern()));
+            case BuiltinXmlCondition c -> new ConditionKey("builtin.xml", null, normalize(c.xpath()));
+            case BuiltinJsonCondition c -> new ConditionKey("builtin.json", null, normalize(c.xpath()));
+            case BuiltinXmlPublicIdCondition c -> new ConditionKey("builtin.xmlPublicID", null, normalize(c.regex()));
+            case BuiltinHasTagsCondition c -> new ConditionKey("builtin.hasTags", null,
+                c.tags() == null ? "" : String.join(",", c.tags().stream().map(ConditionKey::normalize).sorted().toList()));
+        };
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    @Override
+    public String toString() {
+        return location != null ? type + " " + location + " " + pattern : type + " " + pattern;
+    }
+}
@@ -0,0 +1,390 @@
+package dev.shaaf.kantra.rules.gen.catalog;
+
+import dev.shaaf.kantra.rules.gen.model.AndCondition;
+import dev.shaaf.kantra.rules.gen.model.OrCondition;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+import dev.shaaf.kantra.rules.gen.validation.RuleInterner;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import dev.shaaf.kantra.rules.gen.watch.DirectoryWatcher;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * In-memory catalog of existing rules, used to warn before a duplicate rule is created.
+ * <p>
+ * Every rule file under the configured directories is loaded at startup and indexed by
+ * {@link ConditionKey} (condition type, location, pattern), by ruleID and by label. Lookups are
+ * hash lookups and take no lock. Writes are serialized and replace whole index entries, so a
+ * lookup sees either the old or the new state of an entry, never a list being modified.
+ * </p>
+ * <p>
+ * With {@code kantra.mcp.catalog.watch} enabled the directories are watched with a
+ * {@link DirectoryWatcher}; changed files are reindexed and deleted files dropped, without
+ * reloading the rest of the catalog.
+ * </p>
+ */
+@ApplicationScoped
+@Startup
+public class RuleCatalog {
+
+    private static final int MAX_FILE_SIZE = 16 * 1024 * 1024;
+
+    @Inject
+    RuleValidator ruleValidator;
+
+    @Inject
+    CatalogConfig config;
+
+    private final Map<Path, List<CatalogEntry>> byFile = new ConcurrentHashMap<>();
+    private final Map<ConditionKey, List<CatalogEntry>> byCondition = new ConcurrentHashMap<>();
+    private final Map<String, List<CatalogEntry>> byRuleId = new ConcurrentHashMap<>();
+    private final Map<String, List<CatalogEntry>> byLabel = new ConcurrentHashMap<>();
+    private final List<DirectoryWatcher> watchers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Path>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public RuleCatalog() {
+    }
+
+    public RuleCatalog(RuleValidator ruleValidator) {
+        this.ruleValidator = ruleValidator;
+    }
+
+    @PostConstruct
+    void initialize() {
+        for (String directory : config.directories().orElse(List.of())) {
+            Path dir = Path.of(directory);
+            try {
+                int rules = load(dir);
+                Log.infof("Rule catalog: loaded %d rules from %s", rules, dir);
+                if (config.watch()) {
+                    watch(dir, Duration.ofMillis(config.debounceMillis()));
+                }
+            } catch (IOException e) {
+                Log.warnf("Rule catalog: cannot load %s: %s", dir, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watchers.forEach(DirectoryWatcher::close);
+        watchers.clear();
+    }
+
+    /**
+     * Load all rule files under a directory, replacing what the catalog held for them.
+     *
+     * @param dir Directory to scan recursively
+     * @return Number of rules indexed from the directory
+     * @throws IOException if the directory cannot be listed
+     */
+    public synchronized int load(Path dir) throws IOException {
+        Path root = dir.toAbsolutePath().normalize();
+        removeUnder(root);
+        RuleInterner interner = new RuleInterner();
+        int rules = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(RuleCatalog::isRuleFile)::iterator) {
+                rules += indexFile(file, interner);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Keep the catalog in sync with a directory until the catalog is shut down.
+     *
+     * @param dir      Directory to watch recursively
+     * @param debounce Quiet period before a batch of changes is applied
+     * @throws IOException if the directory cannot be watched
+     */
+    public void watch(Path dir, Duration debounce) throws IOException {
+        Path root = dir.toAbsolutePath().normalize();
+        watchers.add(DirectoryWatcher.start(root, true, debounce, batch -> {
+            refresh(root, batch);
+            listeners.forEach(listener -> listener.accept(root));
+        }));
+    }
+
+    /**
+     * Get notified after the catalog applied changes of a watched directory, to keep other
+     * indexes over the same files in sync without a watcher of their own.
+     *
+     * @param listener Called on the watcher thread with the root of the watched directory
+     */
+    public void addListener(Consumer<Path> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Apply a batch of file changes: reindex changed rule files, drop deleted ones.
+     * A batch that lost events reloads the whole directory.
+     */
+    synchronized void refresh(Path root, DirectoryWatcher.ChangeBatch batch) {
+        if (batch.overflow()) {
+            try {
+                load(root);
+            } catch (IOException e) {
+                Log.warnf("Rule catalog: cannot reload %s: %s", root, e.getMessage());
+            }
+            return;
+        }
+
+        RuleInterner interner = new RuleInterner();
+        for (Path changed : batch.paths()) {
+            Path path = changed.toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                // A directory moved in: its files produced no events of their own
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(RuleCatalog::isRuleFile).forEach(file -> indexFile(file, interner));
+                } catch (IOException e) {
+                    Log.warnf("Rule catalog: cannot scan %s: %s", path, e.getMessage());
+                }
+            } else if (isRuleFile(path)) {
+                indexFile(path, interner);
+            } else {
+                removeUnder(path);
+            }
+        }
+    }
+
+    /**
+     * Find existing rules that a new rule would duplicate.
+     *
+     * @param rule Rule about to be created
+     * @return Rules sharing its ruleID or one of its conditions, ruleID conflicts and exact duplicates first
+     */
+    public List<Match> findDuplicates(Rule rule) {
+        Map<CatalogEntry, Match> matches = new LinkedHashMap<>();
+        if (rule.ruleId() != null) {
+            for (CatalogEntry entry : byRuleId.getOrDefault(rule.ruleId(), List.of())) {
+                matches.put(entry, new Match(Match.Kind.RULE_ID, entry, null));
+            }
+        }
+
+        List<ConditionKey> keys = ConditionKey.of(rule.when());
+        boolean single = isSingleCondition(rule, keys);
+        for (ConditionKey key : keys) {
+            for (CatalogEntry entry : byCondition.getOrDefault(key, List.of())) {
+                Match.Kind kind = single && entry.singleCondition() ? Match.Kind.SAME_CONDITION : Match.Kind.SHARED_CONDITION;
+                // Keep the most severe relation per existing rule
+                matches.merge(entry, new Match(kind, entry, key), (a, b) -> a.kind().compareTo(b.kind()) <= 0 ? a : b);
+            }
+        }
+
+        List<Match> result = new ArrayList<>(matches.values());
+        result.sort((a, b) -> a.kind().compareTo(b.kind()));
+        return result;
+    }
+
+    /**
+     * @return Rules declaring the given ruleID, more than one if the ID is duplicated across files
+     */
+    public List<CatalogEntry> findByRuleId(String ruleId) {
+        return byRuleId.getOrDefault(ruleId, List.of());
+    }
+
+    /**
+     * @return Rules carrying the given label, e.g. {@code konveyor.io/target=quarkus}
+     */
+    public List<CatalogEntry> findByLabel(String label) {
+        return byLabel.getOrDefault(label, List.of());
+    }
+
+    /**
+     * @return Rules with a leaf condition matching the key
+     */
+    public List<CatalogEntry> findByCondition(ConditionKey key) {
+        return byCondition.getOrDefault(key, List.of());
+    }
+
+    /**
+     * All indexed rules, ordered by file and by declaration within a file.
+     * Taken without a lock: compare {@link #version()} before and after to detect concurrent changes.
+     */
+    public List<CatalogEntry> entries() {
+        List<Path> files = new ArrayList<>(byFile.keySet());
+        files.sort(null);
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (Path file : files) {
+            entries.addAll(byFile.getOrDefault(file, List.of()));
+        }
+        return entries;
+    }
+
+    /**
+     * @return Counter incremented on every change of the catalog, to invalidate derived indexes
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * @return Number of indexed rules
+     */
+    public int size() {
+        int size = 0;
+        for (List<CatalogEntry> entries : byFile.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    /**
+     * Parse a rule file and replace its entries. Files that cannot be read or parsed are dropped.
+     *
+     * @return Number of rules indexed from the file
+     */
+    private synchronized int indexFile(Path file, RuleInterner interner) {
+        List<CatalogEntry> entries = new ArrayList<>();
+        try {
+            if (Files.size(file) <= MAX_FILE_SIZE) {
+                String yaml = Files.readString(file);
+                if (!yaml.isBlank()) {
+                    for (Rule rule : ruleValidator.parseYamlToRules(yaml, interner)) {
+                        if (rule.ruleId() != null) {
+                            List<ConditionKey> keys = ConditionKey.of(rule.when());
+                            entries.add(new CatalogEntry(rule.ruleId(), file, keys, isSingleCondition(rule, keys),
+                                rule.labels() != null ? rule.labels() : List.of()));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.debugf("Rule catalog: skipping %s: %s", file, e.getMessage());
+        }
+
+        removeUnder(file);
+        if (!entries.isEmpty()) {
+            byFile.put(file, List.copyOf(entries));
+            addAll(byRuleId, entries, entry -> List.of(entry.ruleId()));
+            addAll(byCondition, entries, CatalogEntry::conditions);
+            addAll(byLabel, entries, CatalogEntry::labels);
+            version.incrementAndGet();
+        }
+        return entries.size();
+    }
+
+    /**
+     * Drop the entries of a file, or of every file below a directory.
+     */
+    private synchronized void removeUnder(Path path) {
+        Set<Path> files = new HashSet<>();
+        for (Path file : byFile.keySet()) {
+            if (file.startsWith(path)) {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+
+        Set<String> ruleIds = new LinkedHashSet<>();
+        Set<ConditionKey> conditions = new LinkedHashSet<>();
+        Set<String> labels = new LinkedHashSet<>();
+        for (Path file : files) {
+            for (CatalogEntry entry : byFile.remove(file)) {
+                ruleIds.add(entry.ruleId());
+                conditions.addAll(entry.conditions());
+                labels.addAll(entry.labels());
+            }
+        }
+        // One filtering pass per affected key, however many entries of the files it holds
+        removeAll(byRuleId, ruleIds, files);
+        removeAll(byCondition, conditions, files);
+        removeAll(byLabel, labels, files);
+        version.incrementAndGet();
+    }
+
+    private static <K> void addAll(Map<K, List<CatalogEntry>> index, List<CatalogEntry> entries,
+                                   Function<CatalogEntry, List<K>> keys) {
+        Map<K, List<CatalogEntry>> grouped = new HashMap<>();
+        for (CatalogEntry entry : entries) {
+            for (K key : keys.apply(entry)) {
+                grouped.computeIfAbsent(key, k -> new ArrayList<>(1)).add(entry);
+            }
+        }
+        grouped.forEach((key, added) -> index.merge(key, List.copyOf(added), (existing, more) -> {
+            List<CatalogEntry> merged = new ArrayList<>(existing.size() + more.size());
+            merged.addAll(existing);
+            merged.addAll(more);
+            return List.copyOf(merged);
+        }));
+    }
+
+    private static <K> void removeAll(Map<K, List<CatalogEntry>> index, Set<K> keys, Set<Path> files) {
+        for (K key : keys) {
+            index.computeIfPresent(key, (k, entries) -> {
+                List<CatalogEntry> kept = entries.stream().filter(e -> !files.contains(e.file())).toList();
+                return kept.isEmpty() ? null : kept;
+            });
+        }
+    }
+
+    private static boolean isSingleCondition(Rule rule, List<ConditionKey> keys) {
+        return keys.size() == 1 && !(rule.when() instanceof AndCondition) && !(rule.when() instanceof OrCondition);
+    }
+
+    private static boolean isRuleFile(Path path) {
+        return Files.isRegularFile(path) && RulesetValidator.isRuleFile(path);
+    }
+
+    /**
+     * A rule known to the catalog.
+     *
+     * @param ruleId          Rule ID
+     * @param file            Rule file declaring the rule
+     * @param conditions      Keys of the rule's non-negated leaf conditions
+     * @param singleCondition true if the rule consists of exactly one condition
+     * @param labels          Labels of the rule
+     */
+    public record CatalogEntry(String ruleId, Path file, List<ConditionKey> conditions,
+                               boolean singleCondition, List<String> labels) {}
+
+    /**
+     * An existing rule related to a rule about to be created.
+     *
+     * @param kind      How the rules relate
+     * @param entry     The existing rule
+     * @param condition The shared condition, null for {@link Kind#RULE_ID} matches
+     */
+    public record Match(Kind kind, CatalogEntry entry, ConditionKey condition) {
+
+        /**
+         * Kinds of matches, most severe first.
+         */
+        public enum Kind {
+            /** The ruleID is already declared */
+            RULE_ID,
+            /** Both rules consist of the same single condition */
+            SAME_CONDITION,
+            /** The existing rule uses one of the new rule's conditions as part of a larger condition, or vice versa */
+            SHARED_CONDITION
+        }
+    }
+}
@@ -2,6 +2,7 @@ package dev.shaaf.kantra.rules.gen.commands;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.shaaf.kantra.rules.gen.catalog.RuleCatalog;
 import dev.shaaf.kantra.rules.gen.model.Category;
 import dev.shaaf.kantra.rules.gen.model.JavaLocation;
 import dev.shaaf.kantra.rules.gen.model.Link;
@@ -19,12 +20,39 @@ import java.util.List;
  */
 public abstract class AbstractCommand implements KantraCommand {
 
+    private static final int MAX_DUPLICATE_WARNINGS = 5;
+
     @Inject
     protected ObjectMapper mapper;
 
     @Inject
     protected RuleValidator ruleValidator;
 
+    @Inject
+    protected RuleCatalog catalog;
+
+    /**
+     * Supply the dependencies CDI normally injects, to run the command outside the container
+     * (batch tools, tests). Commands hold no other state, so one instance can be shared between threads.
+     *
+     * @param mapper        JSON mapper
+     * @param ruleValidator Rule validator used for YAML serialization
+     */
+    public void injectDependencies(ObjectMapper mapper, RuleValidator ruleValidator) {
+        injectDependencies(mapper, ruleValidator, null);
+    }
+
+    /**
+     * Same as {@link #injectDependencies(ObjectMapper, RuleValidator)}, with a catalog to check new rules against.
+     *
+     * @param catalog Catalog of existing rules, or null to skip duplicate detection
+     */
+    public void injectDependencies(ObjectMapper mapper, RuleValidator ruleValidator, RuleCatalog catalog) {
+        this.mapper = mapper;
+        this.ruleValidator = ruleValidator;
+        this.catalog = catalog;
+    }
+
     /**
      * Safely extract a required string parameter.
      *
@@ -67,6 +95,19 @@ public abstract class AbstractCommand implements KantraCommand {
         return (node == null || node.isNull()) ? defaultValue : node.asInt();
     }
 
+    /**
+     * Safely extract an optional boolean parameter with a default value.
+     *
+     * @param params       JSON parameters
+     * @param field        Field name to extract
+     * @param defaultValue Default value if field is missing
+     * @return The boolean value or default
+     */
+    protected boolean optionalBoolean(JsonNode params, String field, boolean defaultValue) {
+        JsonNode node = params.get(field);
+        return (node == null || node.isNull()) ? defaultValue : node.asBoolean(defaultValue);
+    }
+
     /**
      * Extract a required integer parameter.
      *
@@ -115,8 +156,8 @@ public abstract class AbstractCommand implements KantraCommand {
         } catch (IllegalArgumentException e) {
             throw new ToolCallException("Invalid location: " + value + 
                     ". Valid values: IMPORT, CLASS, METHOD_CALL, CONSTRUCTOR_CALL, ANNOTATION, " +
-                    "FIELD, METHOD, INHERITANCE, IMPLEMENTS_TYPE, ENUM, RETURN_TYPE, " +
-                    "VARIABLE_DECLARATION, TYPE, PACKAGE");
+                    "FIELD, METHOD, INHERITANCE, IMPLEMENTS_TYPE, ENUM, ENUM_CONSTANT, RETURN_TYPE, " +
+                    "VARIABLE_DECLARATION, TYPE, PACKAGE, DEFAULT");
         }
     }
 
@@ -134,6 +175,51 @@ public abstract class AbstractCommand implements KantraCommand {
         }
     }
 
+    /**
+     * Convert a newly created Rule to YAML string. With {@code checkDuplicates: true} in the
+     * parameters, warnings about related rules in the catalog are prepended; otherwise the output
+     * is the same as {@link #toYaml(Rule)}.
+     *
+     * @param rule   Rule to serialize
+     * @param params JSON parameters of the CREATE_* request
+     * @return YAML string
+     */
+    protected String toYaml(Rule rule, JsonNode params) {
+        String yaml = toYaml(rule);
+        return optionalBoolean(params, "checkDuplicates", false) && catalog != null ? duplicateWarnings(rule) + yaml : yaml;
+    }
+
+    /**
+     * Warnings about existing rules the new rule would duplicate, as YAML comments so the
+     * output stays a valid rule file.
+     *
+     * @param rule Rule about to be returned
+     * @return Comment lines, empty if the catalog knows no related rule
+     */
+    private String duplicateWarnings(Rule rule) {
+        List<RuleCatalog.Match> matches = catalog.findDuplicates(rule);
+        if (matches.isEmpty()) {
+            return "";
+        }
+        StringBuilder warnings = new StringBuilder();
+        int shown = Math.min(matches.size(), MAX_DUPLICATE_WARNINGS);
+        for (RuleCatalog.Match match : matches.subList(0, shown)) {
+            RuleCatalog.CatalogEntry existing = match.entry();
+            warnings.append("# WARNING: ").append(switch (match.kind()) {
+                case RULE_ID -> "ruleID '" + existing.ruleId() + "' is already declared in " + existing.file()
+                    + "; choose another ID";
+                case SAME_CONDITION -> "existing rule '" + existing.ruleId() + "' in " + existing.file()
+                    + " already detects the same condition; reuse it instead of adding a duplicate";
+                case SHARED_CONDITION -> "existing rule '" + existing.ruleId() + "' in " + existing.file()
+                    + " also matches " + match.condition();
+            }).append('\n');
+        }
+        if (matches.size() > shown) {
+            warnings.append("# WARNING: ").append(matches.size() - shown).append(" more related rules in the catalog\n");
+        }
+        return warnings.toString();
+    }
+
     /**
      * Serialize result to JSON string.
      *
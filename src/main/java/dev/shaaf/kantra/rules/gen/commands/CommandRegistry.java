@@ -115,7 +115,8 @@ public class CommandRegistry {
         if (name.contains("JSON")) return "JSON Rules";
         if (name.contains("FILE") || name.contains("TAGS")) return "Built-in Rules";
         if (name.contains("RULESET")) return "Ruleset Operations";
-        if (name.contains("VALIDATE") || name.contains("HELP") || name.contains("COMBINE")) return "Utilities";
+        if (name.startsWith("SEARCH") || name.startsWith("SELECT")) return "Search Operations";
+        if (name.contains("VALIDATE") || name.startsWith("TEST") || name.contains("HELP") || name.contains("COMBINE")) return "Utilities";
         return "Other";
     }
 
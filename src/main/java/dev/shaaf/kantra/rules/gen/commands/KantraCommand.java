@@ -2,6 +2,7 @@ package dev.shaaf.kantra.rules.gen.commands;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import dev.shaaf.kantra.rules.gen.KantraOperation;
+import io.quarkiverse.mcp.server.McpLog;
 
 /**
  * Interface for all Kantra MCP commands.
@@ -24,6 +25,20 @@ public interface KantraCommand {
      */
     String execute(JsonNode params) throws Exception;
 
+    /**
+     * Execute the command with access to the calling MCP session.
+     * Commands that push notifications back to the client (e.g. long-running watches) override this;
+     * all other commands ignore the session.
+     *
+     * @param params JSON parameters from the MCP request
+     * @param log    MCP log of the calling session, used to send notifications
+     * @return Result string (typically YAML or message)
+     * @throws Exception if execution fails
+     */
+    default String execute(JsonNode params, McpLog log) throws Exception {
+        return execute(params);
+    }
+
     /**
      * Human-readable description for documentation.
      */
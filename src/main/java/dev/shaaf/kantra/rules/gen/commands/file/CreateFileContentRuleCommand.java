@@ -71,7 +71,7 @@ public class CreateFileContentRuleCommand extends AbstractCommand {
                 List.of(),
                 condition
         );
-        return toYaml(rule);
+        return toYaml(rule, params);
     }
 }
 
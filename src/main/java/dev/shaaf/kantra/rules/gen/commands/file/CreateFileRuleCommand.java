@@ -69,7 +69,7 @@ public class CreateFileRuleCommand extends AbstractCommand {
                 List.of(),
                 condition
         );
-        return toYaml(rule);
+        return toYaml(rule, params);
     }
 }
 
@@ -78,9 +78,9 @@ public class CreateJavaRuleCommand extends AbstractCommand {
 
         JavaReferencedCondition condition;
         if (annotated != null) {
-            condition = new JavaReferencedCondition(javaPattern, location.toString(), annotated);
+            condition = new JavaReferencedCondition(javaPattern, location, annotated);
         } else {
-            condition = new JavaReferencedCondition(javaPattern, location.toString());
+            condition = new JavaReferencedCondition(javaPattern, location);
         }
         
         Rule rule = new Rule(
@@ -95,7 +95,7 @@ public class CreateJavaRuleCommand extends AbstractCommand {
                 List.of(),
                 condition
         );
-        return toYaml(rule);
+        return toYaml(rule, params);
     }
     
     /**
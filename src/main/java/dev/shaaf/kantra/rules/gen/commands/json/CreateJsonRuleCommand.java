@@ -74,7 +74,7 @@ public class CreateJsonRuleCommand extends AbstractCommand {
                 List.of(),
                 condition
         );
-        return toYaml(rule);
+        return toYaml(rule, params);
     }
 }
 
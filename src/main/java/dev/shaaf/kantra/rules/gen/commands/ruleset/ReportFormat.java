@@ -0,0 +1,13 @@
+package dev.shaaf.kantra.rules.gen.commands.ruleset;
+
+/**
+ * Output formats of the ruleset validation report.
+ */
+public enum ReportFormat {
+    /** Human-readable report (default). */
+    TEXT,
+    /** Paginated JSON document. */
+    JSON,
+    /** Paginated SARIF 2.1.0 log, only containing problems. */
+    SARIF
+}
@@ -0,0 +1,329 @@
+package dev.shaaf.kantra.rules.gen.commands.ruleset;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import io.quarkiverse.mcp.server.ToolCallException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Writes machine-readable ruleset validation reports (JSON or SARIF) one page at a time.
+ * <p>
+ * Rule files are validated lazily while the page is written, so only the files of the requested
+ * page are ever held in memory. The page ends when {@code pageSize} files have been examined,
+ * {@code pageSize} entries have been written or {@link #MAX_PAGE_CHARS} characters have been written,
+ * whichever comes first, but at least one file is examined on every page so that the cursor always
+ * moves forward, even when the ruleset.yaml results of the first page already fill it. The returned
+ * {@code nextCursor} points at the first file that was not examined yet. A page that skips valid files
+ * may therefore hold fewer entries than {@code pageSize}, or none, and still be followed by another page.
+ * ruleset.yaml is only read for the first page.
+ * </p>
+ */
+public class StructuredReportWriter {
+
+    /** Upper bound on the size of a single page, regardless of the page size. */
+    static final int MAX_PAGE_CHARS = 512 * 1024;
+
+    private static final String CURSOR_PREFIX = "file:";
+    private static final String SARIF_SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+    private static final String SARIF_RULE_FILE = "invalid-rule-file";
+    private static final String SARIF_RULESET = "invalid-ruleset";
+
+    private final JsonFactory jsonFactory;
+
+    public StructuredReportWriter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Write one page of the report.
+     *
+     * @param format      JSON or SARIF
+     * @param directory   Ruleset directory as shown in the report
+     * @param ruleFiles   Sorted rule files of the directory
+     * @param validate    Validates a single rule file, only called for the files on this page
+     * @param rulesets    Supplies the ruleset.yaml metadata of each ruleset, by ruleset directory prefix
+     *                    ("" for a single ruleset), null where the file is missing; only called for the
+     *                    first page
+     * @param warnings    Warnings about the report as a whole, written on the first page of a JSON report
+     * @param cursor      Cursor returned by the previous page, or null for the first page
+     * @param pageSize    Maximum number of files examined and of entries written on the page
+     * @param onlyInvalid Skip valid files
+     * @return The serialized page
+     * @throws IOException if writing fails
+     */
+    public <T> String write(ReportFormat format, String directory, List<T> ruleFiles,
+                            Function<T, RulesetValidator.RuleFileResult> validate,
+                            Supplier<Map<String, RulesetValidator.RulesetInfo>> rulesets,
+                            List<String> warnings, String cursor, int pageSize, boolean onlyInvalid) throws IOException {
+        int start = decodeCursor(cursor);
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            if (format == ReportFormat.SARIF) {
+                writeSarif(gen, out, directory, ruleFiles, validate, rulesets, start, pageSize);
+            } else {
+                writeJson(gen, out, directory, ruleFiles, validate, rulesets, warnings, start, pageSize, onlyInvalid);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write a report for a directory that could not be validated at all.
+     */
+    public String writeFailure(ReportFormat format, String directoryPath, String error) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            if (format == ReportFormat.SARIF) {
+                startSarif(gen);
+                writeSarifResult(gen, SARIF_RULESET, directoryPath, error);
+                gen.writeEndArray();
+                gen.writeEndObject();
+                gen.writeEndArray();
+                gen.writeEndObject();
+            } else {
+                gen.writeStartObject();
+                gen.writeStringField("directory", directoryPath);
+                gen.writeBooleanField("valid", false);
+                gen.writeArrayFieldStart("errors");
+                gen.writeString(error);
+                gen.writeEndArray();
+                gen.writeNullField("nextCursor");
+                gen.writeEndObject();
+            }
+        }
+        return out.toString();
+    }
+
+    private <T> void writeJson(JsonGenerator gen, StringWriter out, String directory, List<T> ruleFiles,
+                               Function<T, RulesetValidator.RuleFileResult> validate,
+                               Supplier<Map<String, RulesetValidator.RulesetInfo>> rulesets, List<String> warnings,
+                               int start, int pageSize,
+                               boolean onlyInvalid) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("directory", directory);
+        gen.writeNumberField("totalRuleFiles", ruleFiles.size());
+
+        // Ruleset metadata only goes on the first page, as an array if there are several rulesets
+        if (start == 0) {
+            Map<String, RulesetValidator.RulesetInfo> infos = rulesets.get();
+            if (infos.size() == 1) {
+                gen.writeFieldName("ruleset");
+                writeRulesetInfo(gen, null, infos.values().iterator().next());
+            } else {
+                gen.writeArrayFieldStart("rulesets");
+                for (Map.Entry<String, RulesetValidator.RulesetInfo> info : infos.entrySet()) {
+                    writeRulesetInfo(gen, info.getKey(), info.getValue());
+                }
+                gen.writeEndArray();
+            }
+            if (!warnings.isEmpty()) {
+                writeStringArray(gen, "warnings", warnings);
+            }
+        }
+
+        int written = 0;
+        int valid = 0;
+        int invalid = 0;
+        int next = start;
+        gen.writeArrayFieldStart("files");
+        while (next < ruleFiles.size() && (next == start || hasRoom(gen, out, next - start, written, pageSize))) {
+            RulesetValidator.RuleFileResult result = validate.apply(ruleFiles.get(next++));
+            if (result.isValid()) {
+                valid++;
+                if (onlyInvalid) {
+                    continue;
+                }
+            } else {
+                invalid++;
+            }
+            gen.writeStartObject();
+            gen.writeStringField("file", result.fileName());
+            gen.writeBooleanField("valid", result.isValid());
+            if (!result.isValid()) {
+                writeStringArray(gen, "errors", result.errors());
+            }
+            gen.writeEndObject();
+            written++;
+        }
+        gen.writeEndArray();
+
+        gen.writeObjectFieldStart("page");
+        gen.writeNumberField("firstFileIndex", start);
+        gen.writeNumberField("filesExamined", next - start);
+        gen.writeNumberField("valid", valid);
+        gen.writeNumberField("invalid", invalid);
+        gen.writeEndObject();
+        writeNextCursor(gen, next, ruleFiles.size());
+        gen.writeEndObject();
+    }
+
+    private <T> void writeSarif(JsonGenerator gen, StringWriter out, String directory, List<T> ruleFiles,
+                                Function<T, RulesetValidator.RuleFileResult> validate,
+                                Supplier<Map<String, RulesetValidator.RulesetInfo>> rulesets, int start,
+                                int pageSize) throws IOException {
+        startSarif(gen);
+
+        int written = 0;
+        if (start == 0) {
+            for (Map.Entry<String, RulesetValidator.RulesetInfo> info : rulesets.get().entrySet()) {
+                List<String> rulesetErrors = info.getValue() != null
+                    ? info.getValue().errors()
+                    : List.of("Missing ruleset.yaml file");
+                for (String error : rulesetErrors) {
+                    writeSarifResult(gen, SARIF_RULESET, info.getKey() + RulesetValidator.RULESET_FILE, error);
+                    written++;
+                }
+            }
+        }
+
+        int next = start;
+        while (next < ruleFiles.size() && (next == start || hasRoom(gen, out, next - start, written, pageSize))) {
+            RulesetValidator.RuleFileResult result = validate.apply(ruleFiles.get(next++));
+            for (String error : result.errors()) {
+                writeSarifResult(gen, SARIF_RULE_FILE, result.fileName(), error);
+                written++;
+            }
+        }
+        gen.writeEndArray();
+
+        // Paging information lives in the run's property bag
+        gen.writeObjectFieldStart("properties");
+        gen.writeStringField("directory", directory);
+        gen.writeNumberField("totalRuleFiles", ruleFiles.size());
+        gen.writeNumberField("firstFileIndex", start);
+        gen.writeNumberField("filesExamined", next - start);
+        writeNextCursor(gen, next, ruleFiles.size());
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private void writeRulesetInfo(JsonGenerator gen, String directory, RulesetValidator.RulesetInfo rulesetInfo)
+            throws IOException {
+        gen.writeStartObject();
+        if (directory != null) {
+            gen.writeStringField("directory", directory);
+        }
+        gen.writeBooleanField("present", rulesetInfo != null);
+        if (rulesetInfo != null) {
+            if (rulesetInfo.name() != null) {
+                gen.writeStringField("name", rulesetInfo.name());
+            }
+            writeStringArray(gen, "labels", rulesetInfo.labels());
+            writeStringArray(gen, "errors", rulesetInfo.errors());
+            writeStringArray(gen, "warnings", rulesetInfo.warnings());
+        } else {
+            writeStringArray(gen, "errors", List.of("Missing ruleset.yaml file"));
+        }
+        gen.writeEndObject();
+    }
+
+    private void startSarif(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("$schema", SARIF_SCHEMA);
+        gen.writeStringField("version", "2.1.0");
+        gen.writeArrayFieldStart("runs");
+        gen.writeStartObject();
+        gen.writeObjectFieldStart("tool");
+        gen.writeObjectFieldStart("driver");
+        gen.writeStringField("name", "scribe");
+        gen.writeArrayFieldStart("rules");
+        writeSarifRule(gen, SARIF_RULESET, "ruleset.yaml is missing or invalid");
+        writeSarifRule(gen, SARIF_RULE_FILE, "Rule file is not a valid Kantra rule");
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("results");
+    }
+
+    private void writeSarifRule(JsonGenerator gen, String id, String description) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("id", id);
+        gen.writeObjectFieldStart("shortDescription");
+        gen.writeStringField("text", description);
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+    private void writeSarifResult(JsonGenerator gen, String ruleId, String file, String message) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("ruleId", ruleId);
+        gen.writeStringField("level", "error");
+        gen.writeObjectFieldStart("message");
+        gen.writeStringField("text", message);
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("locations");
+        gen.writeStartObject();
+        gen.writeObjectFieldStart("physicalLocation");
+        gen.writeObjectFieldStart("artifactLocation");
+        gen.writeStringField("uri", file);
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private void writeStringArray(JsonGenerator gen, String field, List<String> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        gen.writeArrayFieldStart(field);
+        for (String value : values) {
+            gen.writeString(value);
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeNextCursor(JsonGenerator gen, int next, int total) throws IOException {
+        if (next < total) {
+            gen.writeStringField("nextCursor", encodeCursor(next));
+        } else {
+            gen.writeNullField("nextCursor");
+        }
+    }
+
+    private boolean hasRoom(JsonGenerator gen, StringWriter out, int examined, int written, int pageSize)
+            throws IOException {
+        return examined < pageSize && written < pageSize && charsWritten(gen, out) < MAX_PAGE_CHARS;
+    }
+
+    private int charsWritten(JsonGenerator gen, StringWriter out) throws IOException {
+        gen.flush();
+        return out.getBuffer().length();
+    }
+
+    static String encodeCursor(int index) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                int index = Integer.parseInt(decoded.substring(CURSOR_PREFIX.length()));
+                if (index >= 0) {
+                    return index;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the error below
+        }
+        throw new ToolCallException("Invalid cursor: " + cursor);
+    }
+}
@@ -2,32 +2,64 @@ package dev.shaaf.kantra.rules.gen.commands.ruleset;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import dev.shaaf.kantra.rules.gen.KantraOperation;
+import dev.shaaf.kantra.rules.gen.archive.RulesetArchives;
 import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
 import dev.shaaf.kantra.rules.gen.commands.RegisteredCommand;
-import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.GitRulesetValidator;
+import dev.shaaf.kantra.rules.gen.validation.RuleIdIndex;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import io.quarkiverse.mcp.server.ToolCallException;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.yaml.snakeyaml.Yaml;
+import jakarta.inject.Inject;
 
 import java.io.IOException;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Validates a ruleset directory structure, ensuring it has:
  * - A valid ruleset.yaml file
  * - Valid rule YAML files
  * Returns a detailed validation report.
+ * <p>
+ * Besides the default human-readable report, {@code format} can be set to {@code json} or {@code sarif}
+ * to get a machine-readable report that is paginated with {@code pageSize} and {@code cursor}.
+ * {@code onlyInvalid} drops valid files from the output in every format.
+ * </p>
+ * <p>
+ * {@code directoryPath} may also point at a .zip/.jar or .tar/.tar.gz/.tgz archive, which is read
+ * in place: zip archives through the NIO zip file system, tar archives as a single stream. Every
+ * directory of the archive that holds a ruleset.yaml is validated as a ruleset.
+ * </p>
+ * <p>
+ * When {@code baseRef} is set the directory must be inside a git working tree, and only the rule files
+ * that changed between {@code baseRef} and {@code headRef} (default HEAD) are validated. Duplicate
+ * ruleIDs are checked in every mode, and still against the unchanged files of the ruleset when only
+ * changes are validated.
+ * </p>
  */
 @ApplicationScoped
 @RegisteredCommand
 public class ValidateRulesetCommand extends AbstractCommand {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Inject
+    RulesetValidator rulesetValidator;
+
+    @Inject
+    GitRulesetValidator gitRulesetValidator;
+
     @Override
     public KantraOperation getOperation() {
         return KantraOperation.VALIDATE_RULESET;
@@ -40,14 +72,24 @@ public class ValidateRulesetCommand extends AbstractCommand {
 
     @Override
     public String getDescription() {
-        return "Validate a ruleset directory structure. Checks for ruleset.yaml presence and validates all rule files.";
+        return "Validate a ruleset directory structure, or a ruleset packaged as a zip/tar.gz archive. " +
+               "Checks for ruleset.yaml presence and validates all rule files. " +
+               "Set format to 'json' or 'sarif' for a paginated machine-readable report (pageSize, cursor), " +
+               "and onlyInvalid to report only files with errors. " +
+               "Set baseRef (and optionally headRef, default HEAD) to validate only the rule files " +
+               "changed between two git revisions.";
     }
 
     @Override
     public String getExampleParams() {
         return """
             {
-                "directoryPath": "/path/to/rules/my-ruleset"
+                "directoryPath": "/path/to/rules/my-ruleset",
+                "format": "json",
+                "onlyInvalid": true,
+                "pageSize": 100,
+                "baseRef": "origin/main",
+                "headRef": "HEAD"
             }
             """;
     }
@@ -55,48 +97,181 @@ public class ValidateRulesetCommand extends AbstractCommand {
     @Override
     public String execute(JsonNode params) throws Exception {
         String directoryPath = requireString(params, "directoryPath");
-        Path dir = Paths.get(directoryPath);
-        
-        ValidationReport report = new ValidationReport();
-        report.directoryPath = directoryPath;
+        Path path = Paths.get(directoryPath);
+        ReportFormat format = requireReportFormat(params);
         
         // Check if directory exists
-        if (!Files.exists(dir)) {
-            report.valid = false;
-            report.errors.add("Directory does not exist: " + directoryPath);
-            return formatReport(report);
+        if (!Files.exists(path)) {
+            return failure(format, directoryPath, "Directory does not exist: " + directoryPath);
+        }
+        
+        String baseRef = optionalString(params, "baseRef", null);
+        if (baseRef != null) {
+            if (!Files.isDirectory(path)) {
+                return failure(format, directoryPath, "Git validation requires a directory: " + directoryPath);
+            }
+            return validateGitChanges(path, directoryPath, baseRef, optionalString(params, "headRef", "HEAD"),
+                format, params);
+        }
+        
+        // Archives are validated in place, without extracting them
+        if (RulesetArchives.isArchive(path)) {
+            if (RulesetArchives.isZip(path)) {
+                try (FileSystem zipFs = RulesetArchives.openZip(path)) {
+                    List<Path> roots = RulesetArchives.findRulesetRoots(zipFs);
+                    if (roots.size() == 1) {
+                        return validateDirectory(roots.get(0), directoryPath + "!" + roots.get(0), format, params);
+                    }
+                    Path zipRoot = zipFs.getRootDirectories().iterator().next();
+                    Map<String, Supplier<RulesetValidator.RulesetInfo>> rulesets = new LinkedHashMap<>();
+                    Map<String, List<Path>> ruleFiles = new LinkedHashMap<>();
+                    Map<String, Function<Path, RulesetValidator.RuleFileResult>> validators = new LinkedHashMap<>();
+                    for (Path root : roots) {
+                        String prefix = root.equals(zipRoot) ? "" : zipRoot.relativize(root) + "/";
+                        List<Path> files = rulesetValidator.listRuleFiles(root);
+                        rulesets.put(prefix, rulesetInfo(root));
+                        ruleFiles.put(prefix, files);
+                        validators.put(prefix, validator(files));
+                    }
+                    return reportRulesets(directoryPath, rulesets, ruleFiles, validators, format, params);
+                }
+            }
+            List<RulesetValidator.ArchiveValidation> archive = rulesetValidator.validateTarArchive(path);
+            if (archive.size() == 1) {
+                RulesetValidator.ArchiveValidation ruleset = archive.get(0);
+                return report(directoryPath + "!/" + ruleset.root(), ruleset::rulesetInfo,
+                    ruleset.ruleFiles(), Function.identity(), List.of(), format, params);
+            }
+            Map<String, Supplier<RulesetValidator.RulesetInfo>> rulesets = new LinkedHashMap<>();
+            Map<String, List<RulesetValidator.RuleFileResult>> ruleFiles = new LinkedHashMap<>();
+            Map<String, Function<RulesetValidator.RuleFileResult, RulesetValidator.RuleFileResult>> validators =
+                new LinkedHashMap<>();
+            for (RulesetValidator.ArchiveValidation ruleset : archive) {
+                rulesets.put(ruleset.root(), ruleset::rulesetInfo);
+                ruleFiles.put(ruleset.root(), ruleset.ruleFiles());
+                validators.put(ruleset.root(), Function.identity());
+            }
+            return reportRulesets(directoryPath, rulesets, ruleFiles, validators, format, params);
+        }
+        
+        if (!Files.isDirectory(path)) {
+            return failure(format, directoryPath, "Path is not a directory or a supported archive " +
+                "(.zip, .jar, .tar, .tar.gz, .tgz): " + directoryPath);
         }
         
-        if (!Files.isDirectory(dir)) {
-            report.valid = false;
-            report.errors.add("Path is not a directory: " + directoryPath);
-            return formatReport(report);
+        return validateDirectory(path, directoryPath, format, params);
+    }
+    
+    private String validateDirectory(Path dir, String displayPath, ReportFormat format, JsonNode params) throws Exception {
+        List<Path> ruleFiles = rulesetValidator.listRuleFiles(dir);
+        return report(displayPath, rulesetInfo(dir), ruleFiles, validator(ruleFiles), List.of(), format, params);
+    }
+    
+    /**
+     * @return Validates a rule file of a ruleset and checks its ruleIDs against the other files of the ruleset
+     */
+    private Function<Path, RulesetValidator.RuleFileResult> validator(List<Path> ruleFiles) {
+        RuleIdIndex ruleIds = rulesetValidator.indexRuleIds(ruleFiles);
+        return file -> ruleIds.check(rulesetValidator.validateRuleFile(file));
+    }
+    
+    private Supplier<RulesetValidator.RulesetInfo> rulesetInfo(Path dir) {
+        Path rulesetYaml = dir.resolve(RulesetValidator.RULESET_FILE);
+        return () -> Files.exists(rulesetYaml) ? rulesetValidator.validateRulesetYaml(rulesetYaml) : null;
+    }
+    
+    /**
+     * Report on the several rulesets of an archive: one text report per ruleset, or a single structured
+     * report whose file names are prefixed with their ruleset directory.
+     */
+    private <T> String reportRulesets(String archivePath, Map<String, Supplier<RulesetValidator.RulesetInfo>> rulesets,
+                                      Map<String, List<T>> ruleFiles,
+                                      Map<String, Function<T, RulesetValidator.RuleFileResult>> validators,
+                                      ReportFormat format, JsonNode params) throws Exception {
+        if (format == ReportFormat.TEXT) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Supplier<RulesetValidator.RulesetInfo>> ruleset : rulesets.entrySet()) {
+                sb.append(report(archivePath + "!/" + ruleset.getKey(), ruleset.getValue(),
+                    ruleFiles.get(ruleset.getKey()), validators.get(ruleset.getKey()), List.of(), format, params));
+            }
+            return sb.toString();
         }
         
+        List<Map.Entry<String, T>> files = new ArrayList<>();
+        ruleFiles.forEach((root, list) -> list.forEach(file -> files.add(Map.entry(root, file))));
+        Function<Map.Entry<String, T>, RulesetValidator.RuleFileResult> validateInRuleset = file -> {
+            RulesetValidator.RuleFileResult result = validators.get(file.getKey()).apply(file.getValue());
+            return new RulesetValidator.RuleFileResult(file.getKey() + result.fileName(), result.errors(),
+                result.readError());
+        };
+        return structuredReport(archivePath, () -> {
+            Map<String, RulesetValidator.RulesetInfo> infos = new LinkedHashMap<>();
+            rulesets.forEach((root, info) -> infos.put(root, info.get()));
+            return infos;
+        }, List.of(), files, validateInRuleset, format, params);
+    }
+    
+    private <T> String structuredReport(String displayPath, Supplier<Map<String, RulesetValidator.RulesetInfo>> rulesets,
+                                        List<String> warnings, List<T> ruleFiles,
+                                        Function<T, RulesetValidator.RuleFileResult> validate,
+                                        ReportFormat format, JsonNode params) throws Exception {
+        int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, optionalInt(params, "pageSize", DEFAULT_PAGE_SIZE)));
+        return new StructuredReportWriter(mapper.getFactory()).write(format, displayPath, ruleFiles, validate,
+            rulesets, warnings, optionalString(params, "cursor", null), pageSize,
+            optionalBoolean(params, "onlyInvalid", false));
+    }
+    
+    private String validateGitChanges(Path dir, String directoryPath, String baseRef, String headRef,
+                                      ReportFormat format, JsonNode params) throws Exception {
+        GitRulesetValidator.GitValidation changes;
+        try {
+            changes = gitRulesetValidator.validateChanges(dir, baseRef, headRef);
+        } catch (IOException e) {
+            return failure(format, directoryPath, e.getMessage());
+        }
+        
+        // What else changed is reported as warnings on the report, whether or not ruleset.yaml exists
+        List<String> warnings = new ArrayList<>();
+        if (changes.rulesetChanged()) {
+            warnings.add(RulesetValidator.RULESET_FILE + " changed since " + baseRef);
+        }
+        changes.deletedFiles().forEach(file -> warnings.add("Rule file deleted since " + baseRef + ": " + file));
+        warnings.add(changes.unchangedFiles() + " unchanged rule file(s) not revalidated");
+        return report(directoryPath + " (" + baseRef + ".." + headRef + ")", changes::rulesetInfo,
+            changes.ruleFiles(), Function.identity(), warnings, format, params);
+    }
+    
+    private <T> String report(String displayPath, Supplier<RulesetValidator.RulesetInfo> rulesetSupplier, List<T> ruleFiles,
+                              Function<T, RulesetValidator.RuleFileResult> validate, List<String> warnings,
+                              ReportFormat format, JsonNode params) throws Exception {
+        boolean onlyInvalid = optionalBoolean(params, "onlyInvalid", false);
+        
+        if (format != ReportFormat.TEXT) {
+            return structuredReport(displayPath, () -> Collections.singletonMap("", rulesetSupplier.get()),
+                warnings, ruleFiles, validate, format, params);
+        }
+        
+        ValidationReport report = new ValidationReport();
+        report.directoryPath = displayPath;
+        report.onlyInvalid = onlyInvalid;
+        
         // Check for ruleset.yaml
-        Path rulesetYaml = dir.resolve("ruleset.yaml");
-        if (!Files.exists(rulesetYaml)) {
+        RulesetValidator.RulesetInfo rulesetInfo = rulesetSupplier.get();
+        if (rulesetInfo == null) {
             report.hasRulesetYaml = false;
             report.errors.add("Missing ruleset.yaml file");
         } else {
             report.hasRulesetYaml = true;
-            validateRulesetYaml(rulesetYaml, report);
-        }
-        
-        // Find and validate all rule files
-        try (Stream<Path> files = Files.list(dir)) {
-            List<Path> ruleFiles = files
-                .filter(p -> p.toString().endsWith(".yaml") || p.toString().endsWith(".yml"))
-                .filter(p -> !p.getFileName().toString().equals("ruleset.yaml"))
-                .sorted()
-                .toList();
-            
-            report.totalRuleFiles = ruleFiles.size();
-            
-            for (Path ruleFile : ruleFiles) {
-                validateRuleFile(ruleFile, report);
-            }
+            addRulesetInfo(rulesetInfo, report);
         }
+        report.warnings.addAll(warnings);
+        
+        // Validate all rule files, in parallel where the source allows it
+        report.totalRuleFiles = ruleFiles.size();
+        ruleFiles.parallelStream()
+            .map(validate)
+            .toList()
+            .forEach(result -> addRuleFileResult(result, report));
         
         // Determine overall validity
         report.valid = report.errors.isEmpty();
@@ -104,63 +279,44 @@ public class ValidateRulesetCommand extends AbstractCommand {
         return formatReport(report);
     }
     
-    private void validateRulesetYaml(Path rulesetYaml, ValidationReport report) {
+    private String failure(ReportFormat format, String directoryPath, String error) throws Exception {
+        if (format != ReportFormat.TEXT) {
+            return new StructuredReportWriter(mapper.getFactory()).writeFailure(format, directoryPath, error);
+        }
+        ValidationReport report = new ValidationReport();
+        report.directoryPath = directoryPath;
+        report.valid = false;
+        report.errors.add(error);
+        return formatReport(report);
+    }
+    
+    private ReportFormat requireReportFormat(JsonNode params) {
+        String value = optionalString(params, "format", "text").toUpperCase();
         try {
-            String content = Files.readString(rulesetYaml);
-            Yaml yaml = new Yaml();
-            Map<String, Object> parsed = yaml.load(content);
-            
-            if (parsed == null) {
-                report.errors.add("ruleset.yaml is empty");
-                return;
-            }
-            
-            // Check required fields
-            if (!parsed.containsKey("name") || parsed.get("name") == null) {
-                report.errors.add("ruleset.yaml missing required field: name");
-            } else {
-                report.rulesetName = parsed.get("name").toString();
-            }
-            
-            // Check optional but recommended fields
-            if (!parsed.containsKey("description")) {
-                report.warnings.add("ruleset.yaml missing recommended field: description");
-            }
-            
-            if (!parsed.containsKey("labels")) {
-                report.warnings.add("ruleset.yaml missing recommended field: labels");
-            } else {
-                Object labels = parsed.get("labels");
-                if (labels instanceof List<?> labelList) {
-                    report.labels = labelList.stream()
-                        .map(Object::toString)
-                        .toList();
-                }
-            }
-            
-        } catch (IOException e) {
-            report.errors.add("Failed to read ruleset.yaml: " + e.getMessage());
-        } catch (Exception e) {
-            report.errors.add("Invalid YAML in ruleset.yaml: " + e.getMessage());
+            return ReportFormat.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new ToolCallException("Invalid format: " + value + ". Valid values: TEXT, JSON, SARIF");
         }
     }
     
-    private void validateRuleFile(Path ruleFile, ValidationReport report) {
-        String fileName = ruleFile.getFileName().toString();
+    private void addRulesetInfo(RulesetValidator.RulesetInfo info, ValidationReport report) {
+        report.rulesetName = info.name();
+        report.labels = info.labels();
+        report.errors.addAll(info.errors());
+        report.warnings.addAll(info.warnings());
+    }
+    
+    private void addRuleFileResult(RulesetValidator.RuleFileResult result, ValidationReport report) {
+        String fileName = result.fileName();
         
-        try {
-            String content = Files.readString(ruleFile);
-            RuleValidator.ValidationResult result = ruleValidator.validateYamlRule(content);
-            
-            if (result.isValid()) {
-                report.validRuleFiles.add(fileName);
-            } else {
-                report.invalidRuleFiles.put(fileName, result.errors());
-                report.errors.add("Invalid rule file '" + fileName + "': " + result.errors());
-            }
-        } catch (IOException e) {
-            report.errors.add("Failed to read rule file '" + fileName + "': " + e.getMessage());
-            report.invalidRuleFiles.put(fileName, List.of(e.getMessage()));
+        if (result.isValid()) {
+            report.validRuleFiles.add(fileName);
+        } else if (result.readError()) {
+            report.errors.add("Failed to read rule file '" + fileName + "': " + result.errors().get(0));
+            report.invalidRuleFiles.put(fileName, result.errors());
+        } else {
+            report.invalidRuleFiles.put(fileName, result.errors());
+            report.errors.add("Invalid rule file '" + fileName + "': " + result.errors());
         }
     }
     
@@ -191,7 +347,7 @@ public class ValidateRulesetCommand extends AbstractCommand {
         sb.append("  Valid: ").append(report.validRuleFiles.size()).append("\n");
         sb.append("  Invalid: ").append(report.invalidRuleFiles.size()).append("\n");
         
-        if (!report.validRuleFiles.isEmpty()) {
+        if (!report.validRuleFiles.isEmpty() && !report.onlyInvalid) {
             sb.append("\n  Valid files:\n");
             for (String file : report.validRuleFiles) {
                 sb.append("    ✓ ").append(file).append("\n");
@@ -231,6 +387,7 @@ public class ValidateRulesetCommand extends AbstractCommand {
     
     private static class ValidationReport {
         String directoryPath;
+        boolean onlyInvalid = false;
         boolean valid = true;
         boolean hasRulesetYaml = false;
         String rulesetName;
@@ -0,0 +1,272 @@
+package dev.shaaf.kantra.rules.gen.commands.ruleset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.shaaf.kantra.rules.gen.KantraOperation;
+import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
+import dev.shaaf.kantra.rules.gen.commands.RegisteredCommand;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import dev.shaaf.kantra.rules.gen.watch.DirectoryWatcher;
+import io.quarkiverse.mcp.server.McpLog;
+import io.quarkiverse.mcp.server.ToolCallException;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches a ruleset directory and continuously revalidates it.
+ * <p>
+ * The directory is validated once when the watch starts. After that only the files reported
+ * by the file system watcher are revalidated, and each result is pushed to the MCP session
+ * as a log notification together with running totals.
+ * </p>
+ */
+@ApplicationScoped
+@RegisteredCommand
+public class WatchRulesetCommand extends AbstractCommand {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    @Inject
+    RulesetValidator rulesetValidator;
+
+    final Map<Path, RulesetWatch> watches = new ConcurrentHashMap<>();
+
+    @Override
+    public KantraOperation getOperation() {
+        return KantraOperation.WATCH_RULESET;
+    }
+
+    @Override
+    public String[] getRequiredParams() {
+        return new String[]{"directoryPath"};
+    }
+
+    @Override
+    public String getDescription() {
+        return "Watch a ruleset directory and push validation results for every changed file as notifications. " +
+               "Use action 'start' (default), 'stop' or 'status'.";
+    }
+
+    @Override
+    public String getExampleParams() {
+        return """
+            {
+                "directoryPath": "/path/to/rules/my-ruleset",
+                "action": "start",
+                "debounceMillis": 300
+            }
+            """;
+    }
+
+    @Override
+    public String execute(JsonNode params) throws Exception {
+        throw new ToolCallException("WATCH_RULESET requires an MCP session to send notifications to");
+    }
+
+    @Override
+    public String execute(JsonNode params, McpLog log) throws Exception {
+        Path dir = Paths.get(requireString(params, "directoryPath")).toAbsolutePath().normalize();
+        String action = optionalString(params, "action", "start").toLowerCase();
+
+        return switch (action) {
+            case "start" -> start(dir, optionalInt(params, "debounceMillis", (int) DEFAULT_DEBOUNCE_MILLIS), log);
+            case "stop" -> stop(dir);
+            case "status" -> status(dir);
+            default -> throw new ToolCallException("Invalid action: " + action + ". Valid values: start, stop, status");
+        };
+    }
+
+    private String start(Path dir, int debounceMillis, McpLog log) throws IOException {
+        if (log == null) {
+            throw new ToolCallException("WATCH_RULESET requires an MCP session to send notifications to");
+        }
+        if (!Files.isDirectory(dir)) {
+            throw new ToolCallException("Path is not a directory: " + dir);
+        }
+
+        // A new watch on the same directory replaces the old one (e.g. after a client reconnect)
+        RulesetWatch previous = watches.remove(dir);
+        if (previous != null) {
+            previous.close();
+        }
+
+        // Watch before the initial validation so that no change made during it is lost
+        RulesetWatch watch = new RulesetWatch(dir, log);
+        watch.watcher = DirectoryWatcher.start(dir, false, Duration.ofMillis(debounceMillis), watch::onChange);
+        try {
+            watch.validateAll();
+        } catch (IOException | RuntimeException e) {
+            watch.close();
+            throw e;
+        }
+        watches.put(dir, watch);
+
+        Log.infof("Watching ruleset directory %s", dir);
+        return "Watching " + dir + "\n" + watch.summary() + "\n" +
+               "Validation results for changed files are sent as notifications. " +
+               "Call WATCH_RULESET with action 'stop' to end the watch.";
+    }
+
+    private String stop(Path dir) {
+        RulesetWatch watch = watches.remove(dir);
+        if (watch == null) {
+            return "No active watch for " + dir;
+        }
+        watch.close();
+        return "Stopped watching " + dir;
+    }
+
+    private String status(Path dir) {
+        RulesetWatch watch = watches.get(dir);
+        if (watch == null) {
+            return "No active watch for " + dir;
+        }
+        return "Watching " + dir + "\n" + watch.summary();
+    }
+
+    @PreDestroy
+    void closeAll() {
+        watches.values().forEach(RulesetWatch::close);
+        watches.clear();
+    }
+
+    /**
+     * State of a single watched ruleset directory: the last known errors per file.
+     */
+    class RulesetWatch {
+        final Path dir;
+        final McpLog log;
+        final Map<String, List<String>> fileErrors = new ConcurrentHashMap<>();
+        volatile List<String> rulesetErrors = List.of();
+        DirectoryWatcher watcher;
+
+        RulesetWatch(Path dir, McpLog log) {
+            this.dir = dir;
+            this.log = log;
+        }
+
+        synchronized void validateAll() throws IOException {
+            Path rulesetYaml = dir.resolve(RulesetValidator.RULESET_FILE);
+            rulesetErrors = Files.exists(rulesetYaml)
+                    ? rulesetValidator.validateRulesetYaml(rulesetYaml).errors()
+                    : List.of("Missing ruleset.yaml file");
+            for (Path ruleFile : rulesetValidator.listRuleFiles(dir)) {
+                fileErrors.put(ruleFile.getFileName().toString(), rulesetValidator.validateRuleFile(ruleFile).errors());
+            }
+        }
+
+        synchronized void onChange(DirectoryWatcher.ChangeBatch batch) {
+            if (!Files.isDirectory(dir)) {
+                Log.infof("Stopping watch on %s, the directory is gone", dir);
+                watches.remove(dir, this);
+                close();
+                notify(dir.getFileName().toString(), "deleted", List.of());
+                return;
+            }
+            if (batch.overflow()) {
+                // Events were dropped, so any file may have changed without one
+                try {
+                    revalidate(dir.resolve(RulesetValidator.RULESET_FILE));
+                    for (Path ruleFile : rulesetValidator.listRuleFiles(dir)) {
+                        revalidate(ruleFile);
+                    }
+                    for (String name : List.copyOf(fileErrors.keySet())) {
+                        if (!Files.exists(dir.resolve(name))) {
+                            revalidate(dir.resolve(name));
+                        }
+                    }
+                    return;
+                } catch (IOException e) {
+                    Log.warnf("Failed to list %s after watch overflow: %s", dir, e.getMessage());
+                }
+            }
+            for (Path path : batch.paths()) {
+                if (dir.equals(path.getParent())) {
+                    revalidate(path);
+                }
+            }
+        }
+
+        void revalidate(Path path) {
+            String fileName = path.getFileName().toString();
+            boolean exists = Files.isRegularFile(path);
+
+            if (fileName.equals(RulesetValidator.RULESET_FILE)) {
+                rulesetErrors = exists
+                        ? rulesetValidator.validateRulesetYaml(path).errors()
+                        : List.of("Missing ruleset.yaml file");
+                notify(fileName, exists ? status(rulesetErrors) : "deleted", rulesetErrors);
+            } else if (RulesetValidator.isRuleFile(path)) {
+                if (exists) {
+                    List<String> errors = rulesetValidator.validateRuleFile(path).errors();
+                    fileErrors.put(fileName, errors);
+                    notify(fileName, status(errors), errors);
+                } else if (fileErrors.remove(fileName) != null) {
+                    notify(fileName, "deleted", List.of());
+                }
+            }
+        }
+
+        private String status(List<String> errors) {
+            return errors.isEmpty() ? "valid" : "invalid";
+        }
+
+        private void notify(String fileName, String status, List<String> errors) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("event", "ruleset-validation");
+            payload.put("directory", dir.toString());
+            payload.put("file", fileName);
+            payload.put("status", status);
+            if (!errors.isEmpty()) {
+                payload.put("errors", errors);
+            }
+            payload.put("validFiles", validCount());
+            payload.put("invalidFiles", fileErrors.size() - validCount());
+            payload.put("rulesetValid", rulesetErrors.isEmpty());
+
+            try {
+                log.send(errors.isEmpty() ? McpLog.LogLevel.INFO : McpLog.LogLevel.WARNING, payload);
+            } catch (Exception e) {
+                // The session is gone; nobody is listening anymore
+                Log.infof("Stopping watch on %s, notification failed: %s", dir, e.getMessage());
+                watches.remove(dir, this);
+                close();
+            }
+        }
+
+        private int validCount() {
+            return (int) fileErrors.values().stream().filter(List::isEmpty).count();
+        }
+
+        synchronized String summary() {
+            int valid = validCount();
+            StringBuilder sb = new StringBuilder();
+            sb.append("ruleset.yaml: ").append(rulesetErrors.isEmpty() ? "✓ valid" : "✗ " + rulesetErrors).append("\n");
+            sb.append("Rule files: ").append(fileErrors.size())
+              .append(" (valid: ").append(valid)
+              .append(", invalid: ").append(fileErrors.size() - valid).append(")");
+            fileErrors.entrySet().stream()
+                    .filter(e -> !e.getValue().isEmpty())
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> sb.append("\n  ✗ ").append(e.getKey()).append(": ").append(e.getValue()));
+            return sb.toString();
+        }
+
+        void close() {
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package dev.shaaf.kantra.rules.gen.commands.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.shaaf.kantra.rules.gen.KantraOperation;
+import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
+import dev.shaaf.kantra.rules.gen.commands.RegisteredCommand;
+import dev.shaaf.kantra.rules.gen.search.RuleSearchIndex;
+import dev.shaaf.kantra.rules.gen.search.RuleSearchService;
+import io.quarkiverse.mcp.server.ToolCallException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds existing rules similar to the one about to be written, by message, description,
+ * condition pattern or label.
+ */
+@ApplicationScoped
+@RegisteredCommand
+public class SearchRulesCommand extends AbstractCommand {
+
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+
+    @Inject
+    RuleSearchService searchService;
+
+    @Override
+    public KantraOperation getOperation() {
+        return KantraOperation.SEARCH_RULES;
+    }
+
+    @Override
+    public String[] getRequiredParams() {
+        return new String[]{"query"};
+    }
+
+    @Override
+    public String getDescription() {
+        return "Search existing rules by message, description, condition pattern or label. " +
+               "Results are ranked by relevance; page with 'offset' and 'limit' (max " + MAX_LIMIT + ").";
+    }
+
+    @Override
+    public String getExampleParams() {
+        return """
+            {
+                "query": "javax.ejb Stateless session bean",
+                "limit": 10,
+                "offset": 0
+            }
+            """;
+    }
+
+    @Override
+    public String execute(JsonNode params) throws Exception {
+        String query = requireString(params, "query");
+        if (query.isBlank()) {
+            throw new ToolCallException("Parameter 'query' must not be blank");
+        }
+        int limit = Math.max(1, Math.min(MAX_LIMIT, optionalInt(params, "limit", DEFAULT_LIMIT)));
+        int offset = Math.max(0, optionalInt(params, "offset", 0));
+
+        RuleSearchIndex.Page page = searchService.search(query, offset, limit);
+
+        List<Map<String, Object>> results = new ArrayList<>(page.hits().size());
+        for (RuleSearchIndex.Hit hit : page.hits()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("ruleID", hit.document().ruleId());
+            result.put("file", hit.document().file());
+            result.put("score", Math.round(hit.score() * 1000) / 1000.0);
+            result.put("snippet", hit.snippet());
+            result.put("labels", hit.document().labels());
+            results.add(result);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("query", query);
+        response.put("total", page.total());
+        response.put("offset", offset);
+        response.put("limit", limit);
+        if (offset + results.size() < page.total()) {
+            response.put("nextOffset", offset + results.size());
+        }
+        response.put("results", results);
+        return toJson(response);
+    }
+}
@@ -0,0 +1,101 @@
+package dev.shaaf.kantra.rules.gen.commands.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.shaaf.kantra.rules.gen.KantraOperation;
+import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
+import dev.shaaf.kantra.rules.gen.commands.RegisteredCommand;
+import dev.shaaf.kantra.rules.gen.selector.LabelSelector;
+import dev.shaaf.kantra.rules.gen.selector.RuleSelectionService;
+import io.quarkiverse.mcp.server.ToolCallException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Previews which existing rules a Kantra run with a given label selector would load.
+ */
+@ApplicationScoped
+@RegisteredCommand
+public class SelectRulesCommand extends AbstractCommand {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    @Inject
+    RuleSelectionService selectionService;
+
+    @Override
+    public KantraOperation getOperation() {
+        return KantraOperation.SELECT_RULES;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Preview the rules a Kantra label selector selects, e.g. " +
+               "'konveyor.io/target=quarkus && !konveyor.io/source=weblogic'. " +
+               "Pass 'selector', or 'source'/'target' to select by migration path. " +
+               "Returns counts per ruleset and a page of rule IDs ('offset', 'limit').";
+    }
+
+    @Override
+    public String getExampleParams() {
+        return """
+            {
+                "selector": "konveyor.io/target=quarkus && !konveyor.io/source=weblogic",
+                "limit": 100,
+                "offset": 0
+            }
+            """;
+    }
+
+    @Override
+    public String execute(JsonNode params) throws Exception {
+        String expression = optionalString(params, "selector", null);
+        if (expression == null || expression.isBlank()) {
+            // Same labels the CREATE_* operations put on new rules
+            List<String> labels = buildLabels(params);
+            if (labels.isEmpty()) {
+                throw new ToolCallException("Missing required parameter: selector (or source/target)");
+            }
+            expression = String.join(" && ", labels);
+        }
+
+        LabelSelector selector;
+        try {
+            selector = LabelSelector.parse(expression);
+        } catch (IllegalArgumentException e) {
+            throw new ToolCallException(e.getMessage());
+        }
+        int limit = Math.max(1, Math.min(MAX_LIMIT, optionalInt(params, "limit", DEFAULT_LIMIT)));
+        int offset = Math.max(0, optionalInt(params, "offset", 0));
+
+        RuleSelectionService.Selection selection = selectionService.select(selector);
+        int matched = selection.count();
+
+        List<Map<String, Object>> rules = new ArrayList<>();
+        for (RuleSelectionService.SelectableRule rule : selection.page(offset, limit)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("ruleID", rule.ruleId());
+            entry.put("ruleset", rule.ruleset());
+            entry.put("file", rule.file().toString());
+            rules.add(entry);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("selector", selector.toString());
+        response.put("totalRules", selection.rules().size());
+        response.put("matched", matched);
+        response.put("byRuleset", selection.countsByRuleset());
+        response.put("offset", offset);
+        response.put("limit", limit);
+        if (offset + rules.size() < matched) {
+            response.put("nextOffset", offset + rules.size());
+        }
+        response.put("rules", rules);
+        return toJson(response);
+    }
+}
@@ -95,8 +95,8 @@ public class GetHelpCommand extends AbstractCommand {
             Supports all JavaLocation types:
             - IMPORT, CLASS, METHOD_CALL, CONSTRUCTOR_CALL
             - ANNOTATION, FIELD, METHOD, INHERITANCE
-            - IMPLEMENTS_TYPE, ENUM, RETURN_TYPE
-            - VARIABLE_DECLARATION, TYPE, PACKAGE
+            - IMPLEMENTS_TYPE, ENUM, ENUM_CONSTANT, RETURN_TYPE
+            - VARIABLE_DECLARATION, TYPE, PACKAGE, DEFAULT
             
             **Example - Import Migration:**
             ```json
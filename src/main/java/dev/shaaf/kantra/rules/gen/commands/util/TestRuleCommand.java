@@ -0,0 +1,172 @@
+package dev.shaaf.kantra.rules.gen.commands.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.shaaf.kantra.rules.gen.KantraOperation;
+import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
+import dev.shaaf.kantra.rules.gen.commands.RegisteredCommand;
+import dev.shaaf.kantra.rules.gen.evaluation.EvaluationResult;
+import dev.shaaf.kantra.rules.gen.evaluation.Incident;
+import dev.shaaf.kantra.rules.gen.evaluation.RuleEvaluator;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import io.quarkiverse.mcp.server.ToolCallException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates rules against a local source directory, a quick dry run before running Kantra.
+ */
+@ApplicationScoped
+@RegisteredCommand
+public class TestRuleCommand extends AbstractCommand {
+
+    private static final int DEFAULT_MAX_INCIDENTS = 100;
+    private static final int DEFAULT_MAX_TOTAL_INCIDENTS = 1_000;
+    private static final int MAX_INCIDENTS = 10_000;
+
+    @Inject
+    RuleEvaluator ruleEvaluator;
+
+    @Inject
+    RulesetValidator rulesetValidator;
+
+    @Override
+    public KantraOperation getOperation() {
+        return KantraOperation.TEST_RULE;
+    }
+
+    @Override
+    public String[] getRequiredParams() {
+        return new String[]{"sourcePath"};
+    }
+
+    @Override
+    public String getDescription() {
+        return "Dry-run rules against a local source directory and list the incidents they produce " +
+               "(file, line, snippet). Pass the rules as 'yamlContent' or as 'rulesPath' (rule file or ruleset directory). " +
+               "Supports builtin.file, builtin.filecontent, builtin.xml, builtin.xmlPublicID, builtin.json, " +
+               "java.referenced and java.dependency conditions combined with and/or/not. java.referenced supports the locations IMPORT, PACKAGE, " +
+               "METHOD_CALL, CONSTRUCTOR_CALL, ANNOTATION, INHERITANCE, IMPLEMENTS_TYPE, FIELD and RETURN_TYPE, and needs an explicit location, " +
+               "resolving names from imports and the source tree without compiling. " +
+               "java.dependency reads the pom.xml and Gradle build files of the tree, without network access. " +
+               "A condition with 'from' searches only the files matched by the condition of the same rule with that 'as'. " +
+               "Incidents are capped per rule by 'maxIncidents' (default " + DEFAULT_MAX_INCIDENTS + ") and across all rules by " +
+               "'maxTotalIncidents' (default " + DEFAULT_MAX_TOTAL_INCIDENTS + "); the first incidents in file and line order are kept.";
+    }
+
+    @Override
+    public String getExampleParams() {
+        return """
+            {
+                "yamlContent": "- ruleID: detect-system-out\\n  category: potential\\n  when:\\n    builtin.filecontent:\\n      filePattern: '*.java'\\n      pattern: System\\\\.out\\\\.println\\n",
+                "sourcePath": "/path/to/application",
+                "maxIncidents": 100,
+                "maxTotalIncidents": 1000
+            }
+            """;
+    }
+
+    @Override
+    public String execute(JsonNode params) throws Exception {
+        Path sourcePath = Paths.get(requireString(params, "sourcePath"));
+        int maxIncidents = Math.max(1, Math.min(MAX_INCIDENTS, optionalInt(params, "maxIncidents", DEFAULT_MAX_INCIDENTS)));
+        int maxTotalIncidents = Math.max(1, Math.min(MAX_INCIDENTS,
+            optionalInt(params, "maxTotalIncidents", DEFAULT_MAX_TOTAL_INCIDENTS)));
+        List<Rule> rules = loadRules(params);
+
+        List<Condition> conditions = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            if (rule.when() == null) {
+                throw new ToolCallException("Rule " + rule.ruleId() + " has no 'when' condition");
+            }
+            conditions.add(rule.when());
+        }
+
+        long started = System.nanoTime();
+        List<EvaluationResult> evaluated;
+        try {
+            evaluated = ruleEvaluator.evaluateAll(conditions, sourcePath, maxIncidents);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new ToolCallException("Cannot evaluate rules: " + e.getMessage());
+        }
+
+        // The total cap is shared out in rule order, so earlier rules keep their incidents
+        List<Map<String, Object>> results = new ArrayList<>();
+        int filesScanned = 0;
+        int remaining = maxTotalIncidents;
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            EvaluationResult result = evaluated.get(i);
+            filesScanned += result.filesScanned();
+
+            List<Incident> kept = result.incidents().subList(0, Math.min(remaining, result.incidents().size()));
+            remaining -= kept.size();
+            List<Map<String, Object>> incidents = new ArrayList<>(kept.size());
+            for (Incident incident : kept) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("file", incident.file());
+                if (incident.line() > 0) {
+                    entry.put("line", incident.line());
+                    entry.put("snippet", incident.snippet());
+                }
+                incidents.add(entry);
+            }
+            Map<String, Object> ruleResult = new LinkedHashMap<>();
+            ruleResult.put("ruleID", rule.ruleId());
+            ruleResult.put("matched", result.matched());
+            ruleResult.put("incidentCount", incidents.size());
+            ruleResult.put("truncated", result.truncated() || kept.size() < result.incidents().size());
+            ruleResult.put("incidents", incidents);
+            results.add(ruleResult);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("sourcePath", sourcePath.toString());
+        response.put("filesScanned", filesScanned);
+        response.put("totalIncidents", maxTotalIncidents - remaining);
+        response.put("elapsedMillis", (System.nanoTime() - started) / 1_000_000);
+        response.put("rules", results);
+        return toJson(response);
+    }
+
+    private List<Rule> loadRules(JsonNode params) throws Exception {
+        String yamlContent = optionalString(params, "yamlContent", null);
+        String rulesPath = optionalString(params, "rulesPath", null);
+        if (yamlContent == null && rulesPath == null) {
+            throw new ToolCallException("Missing required parameter: yamlContent (or rulesPath)");
+        }
+        if (yamlContent != null) {
+            return parse(yamlContent, "yamlContent");
+        }
+
+        Path path = Paths.get(rulesPath);
+        if (Files.isRegularFile(path)) {
+            return parse(Files.readString(path), path.toString());
+        }
+        if (!Files.isDirectory(path)) {
+            throw new ToolCallException("Rules path does not exist: " + rulesPath);
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (Path ruleFile : rulesetValidator.listRuleFiles(path)) {
+            rules.addAll(parse(Files.readString(ruleFile), ruleFile.toString()));
+        }
+        return rules;
+    }
+
+    private List<Rule> parse(String yaml, String source) {
+        try {
+            return ruleValidator.parseYamlToRules(yaml);
+        } catch (Exception e) {
+            throw new ToolCallException("Invalid rule YAML in " + source + ": " + e.getMessage());
+        }
+    }
+}
@@ -88,7 +88,7 @@ public class CreateXmlRuleCommand extends AbstractCommand {
                 List.of(),
                 condition
         );
-        return toYaml(rule);
+        return toYaml(rule, params);
     }
 }
 
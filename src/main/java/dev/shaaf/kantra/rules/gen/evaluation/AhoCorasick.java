@@ -0,0 +1,183 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over bytes: finds every occurrence of any number of literals in one pass,
+ * whatever their number.
+ * <p>
+ * The automaton is compiled into a complete transition table, so each byte costs one table lookup.
+ * Bytes that occur in no literal share one column, which keeps the table small: its width is the number
+ * of distinct bytes in the literals plus one. Entries hold the row offset of the next state rather than
+ * its number, with the sign bit set for states that end a literal, so the lookup of the next byte does
+ * not wait for a multiplication and states without a match cost no further load. In the start state,
+ * bytes that begin no literal, which are most bytes of most files, are skipped in a tighter loop.
+ * </p>
+ */
+final class AhoCorasick {
+
+    private final int[] byteClass;
+    private final boolean[] startsLiteral;
+    private final int width;
+    private final int[] transitions;
+    private final int[][] matches;
+
+    /**
+     * Receives the literals found, in order of their end.
+     */
+    @FunctionalInterface
+    interface Hits {
+        /**
+         * @param literal Index of the literal in the list it was compiled from
+         * @param end     Position just after the occurrence
+         * @return false to stop searching
+         */
+        boolean hit(int literal, int end);
+    }
+
+    private AhoCorasick(int width, int[] byteClass, boolean[] startsLiteral, int[] transitions, int[][] matches) {
+        this.width = width;
+        this.byteClass = byteClass;
+        this.startsLiteral = startsLiteral;
+        this.transitions = transitions;
+        this.matches = matches;
+    }
+
+    /**
+     * @param literals Non-empty literals, identified by their position in the list
+     */
+    static AhoCorasick compile(List<byte[]> literals) {
+        int[] byteClass = new int[256];
+        boolean[] startsLiteral = new boolean[256];
+        int width = 1;
+        int states = 1;
+        for (byte[] literal : literals) {
+            states += literal.length;
+            startsLiteral[literal[0] & 0xFF] = true;
+            for (byte b : literal) {
+                if (byteClass[b & 0xFF] == 0) {
+                    byteClass[b & 0xFF] = width++;
+                }
+            }
+        }
+
+        // Trie, with -1 for missing transitions
+        int[] transitions = new int[states * width];
+        Arrays.fill(transitions, -1);
+        int[][] matches = new int[states][];
+        int count = 1;
+        for (int id = 0; id < literals.size(); id++) {
+            int state = 0;
+            for (byte b : literals.get(id)) {
+                int index = state * width + byteClass[b & 0xFF];
+                if (transitions[index] < 0) {
+                    transitions[index] = count++;
+                }
+                state = transitions[index];
+            }
+            matches[state] = append(matches[state], new int[]{id});
+        }
+
+        // Breadth first, complete each state's transitions with those of its failure state
+        int[] failure = new int[count];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < width; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = append(matches[state], matches[failure[state]]);
+            for (int c = 0; c < width; c++) {
+                int index = state * width + c;
+                int fallback = transitions[failure[state] * width + c];
+                if (transitions[index] < 0) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[transitions[index]] = fallback;
+                    queue.add(transitions[index]);
+                }
+            }
+        }
+
+        // Row offsets instead of state numbers, flagged when the state ends a literal
+        int[] table = new int[count * width];
+        for (int i = 0; i < table.length; i++) {
+            int next = transitions[i];
+            table[i] = matches[next] == null ? next * width : ~(next * width);
+        }
+        return new AhoCorasick(width, byteClass, startsLiteral, table, Arrays.copyOf(matches, count));
+    }
+
+    private static int[] append(int[] first, int[] second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        int[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    /**
+     * Report every occurrence of a literal in {@code [0, content.limit())}.
+     */
+    void search(ByteBuffer content, Hits hits) {
+        int limit = content.limit();
+        if (content.hasArray()) {
+            search(content.array(), content.arrayOffset(), content.arrayOffset() + limit, hits);
+            return;
+        }
+        int state = 0;
+        for (int i = 0; i < limit; i++) {
+            state = transitions[state + byteClass[content.get(i) & 0xFF]];
+            if (state < 0) {
+                state = ~state;
+                if (!report(state, i + 1, hits)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void search(byte[] array, int offset, int end, Hits hits) {
+        int state = 0;
+        for (int i = offset; i < end; i++) {
+            if (state == 0) {
+                while (i < end && !startsLiteral[array[i] & 0xFF]) {
+                    i++;
+                }
+                if (i == end) {
+                    return;
+                }
+            }
+            state = transitions[state + byteClass[array[i] & 0xFF]];
+            if (state < 0) {
+                state = ~state;
+                if (!report(state, i + 1 - offset, hits)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean report(int state, int end, Hits hits) {
+        for (int literal : matches[state / width]) {
+            if (!hits.hit(literal, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a build file declares, as written: values may still contain {@code ${...}} or {@code $name}
+ * references, and versions may be left to a parent or to dependency management.
+ *
+ * @param path         Absolute path of the file
+ * @param relativePath Path relative to the source root, with forward slashes
+ * @param kind         Kind of build file
+ * @param groupId      Group of a POM, null if inherited from the parent or not a POM
+ * @param artifactId   Artifact of a POM, null if not a POM
+ * @param version      Version of a POM, null if inherited from the parent or not a POM
+ * @param parent       Parent of a POM, null if none
+ * @param properties   POM properties, Gradle variable assignments or the entries of a {@code gradle.properties}
+ * @param managed      Entries of the POM's own {@code dependencyManagement}
+ * @param dependencies Declared dependencies
+ */
+record BuildFile(Path path, String relativePath, Kind kind, String groupId, String artifactId, String version,
+                 Parent parent, Map<String, String> properties, List<Dependency> managed,
+                 List<Dependency> dependencies) {
+
+    enum Kind {
+        MAVEN, GRADLE, GRADLE_PROPERTIES
+    }
+
+    /**
+     * @param relativePath Location of the parent POM as written, null if absent and empty if explicitly empty
+     */
+    record Parent(String groupId, String artifactId, String version, String relativePath) {}
+
+    /**
+     * @param scope Maven scope or Gradle configuration, null if not given
+     * @param type  Maven dependency type, null if not given
+     * @param line  1-based line of the declaration
+     */
+    record Dependency(String groupId, String artifactId, String version, String scope, String type, int line) {}
+}
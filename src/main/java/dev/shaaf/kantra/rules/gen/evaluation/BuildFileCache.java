@@ -0,0 +1,68 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed {@link BuildFile}s keyed by path, reused while the file's size and modification time are
+ * unchanged. Build files are few and small, but a ruleset checks many dependencies against them.
+ * <p>
+ * Once {@value #MAX_ENTRIES} entries are reached the cache starts over, which bounds it for servers
+ * that test against many source trees.
+ * </p>
+ */
+final class BuildFileCache {
+
+    static final int MAX_ENTRIES = 20_000;
+
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong parses = new AtomicLong();
+
+    private record Entry(long modified, long size, BuildFile buildFile) {}
+
+    /**
+     * Collect the build files under a root, parsing in parallel those that changed or are not cached.
+     * Copies of POMs that Maven packages under {@code META-INF/maven} are not build files of the tree
+     * and are skipped.
+     *
+     * @return Build files by path relative to the root, with forward slashes
+     */
+    Map<String, BuildFile> buildFiles(Path root) {
+        Map<String, BuildFile> files = new ConcurrentHashMap<>();
+        ParallelFileWalker.walk(root,
+            (relative, relativePath) -> BuildFileParser.isBuildFile(relative.getFileName().toString())
+                && !relativePath.contains("META-INF/maven/"),
+            (file, relative, relativePath, size) -> files.put(relativePath, buildFile(file, relativePath)),
+            () -> false);
+        return files;
+    }
+
+    private BuildFile buildFile(Path file, String relativePath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        Entry entry = entries.get(file);
+        if (entry != null && entry.modified() == modified && entry.size() == attributes.size()
+            && entry.buildFile().relativePath().equals(relativePath)) {
+            return entry.buildFile();
+        }
+        BuildFile buildFile = BuildFileParser.parse(file, relativePath);
+        parses.incrementAndGet();
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(file, new Entry(modified, attributes.size(), buildFile));
+        return buildFile;
+    }
+
+    /**
+     * @return Number of build files parsed so far, as opposed to served from the cache
+     */
+    long parses() {
+        return parses.get();
+    }
+}
@@ -0,0 +1,246 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import io.quarkus.logging.Log;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the declarations of Maven and Gradle build files into {@link BuildFile}s, without resolving
+ * anything and without network access.
+ * <p>
+ * POMs are streamed with StAX; only the coordinates, parent, properties, {@code dependencyManagement}
+ * and dependencies of the project itself are read, not those of profiles or plugins. Gradle scripts are
+ * not executed: dependencies are recognized line by line in the string notation
+ * ({@code implementation 'g:a:v'}, also within {@code platform(...)}) and the map notation
+ * ({@code group: 'g', name: 'a', version: 'v'}), and variables in simple assignments of string literals
+ * ({@code def}, {@code val}, {@code ext.}) are kept as properties. Dependencies computed in code, and
+ * version catalogs, are not seen.
+ * </p>
+ */
+final class BuildFileParser {
+
+    static final String POM = "pom.xml";
+    static final String GRADLE_PROPERTIES = "gradle.properties";
+
+    private static final String PROJECT = "project";
+    private static final String DEPENDENCY = "project/dependencies/dependency";
+    private static final String MANAGED_DEPENDENCY = "project/dependencyManagement/dependencies/dependency";
+    private static final String PROPERTIES = "project/properties/";
+
+    private static final Pattern GRADLE_STRING_DEPENDENCY = Pattern.compile(
+        "^\\s*(\\w+)\\s*\\(?\\s*(?:(?:enforcedPlatform|platform)\\s*\\(\\s*)?[\"']([^\"'\\s:]+):([^\"'\\s:]+)(?::([^\"'\\s:@]+))?[^\"']*[\"']");
+    private static final Pattern GRADLE_MAP_DEPENDENCY = Pattern.compile(
+        "^\\s*(\\w+)\\s*\\(?\\s*group\\s*[:=]\\s*[\"']([^\"']+)[\"']\\s*,\\s*name\\s*[:=]\\s*[\"']([^\"']+)[\"']"
+            + "(?:\\s*,\\s*version\\s*[:=]\\s*[\"']([^\"']+)[\"'])?");
+    private static final Pattern GRADLE_ASSIGNMENT = Pattern.compile(
+        "^\\s*(?:(?:def|val|var|String)\\s+|ext\\.|extra\\[\")?([A-Za-z_][\\w.]*)\"?]?\\s*=\\s*[\"']([^\"'$]*)[\"']\\s*;?\\s*$");
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    private BuildFileParser() {
+    }
+
+    /**
+     * @return Whether a file name is that of a build file this parser reads
+     */
+    static boolean isBuildFile(String fileName) {
+        return fileName.equals(POM) || fileName.equals("build.gradle") || fileName.equals("build.gradle.kts")
+            || fileName.equals(GRADLE_PROPERTIES);
+    }
+
+    static BuildFile parse(Path file, String relativePath) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.equals(POM)) {
+            return parsePom(file, relativePath);
+        }
+        if (name.equals(GRADLE_PROPERTIES)) {
+            return parseGradleProperties(file, relativePath);
+        }
+        return parseGradle(file, relativePath, Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    static BuildFile parsePom(Path file, String relativePath) throws IOException {
+        PomReader pom = new PomReader();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                pom.read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // What was read before the error is kept
+            Log.debugf("Skipping rest of malformed POM %s: %s", file, e.getMessage());
+        }
+        BuildFile.Parent parent = pom.parentArtifactId == null ? null
+            : new BuildFile.Parent(pom.parentGroupId, pom.parentArtifactId, pom.parentVersion, pom.parentRelativePath);
+        return new BuildFile(file, relativePath, BuildFile.Kind.MAVEN, pom.groupId, pom.artifactId, pom.version,
+            parent, pom.properties, pom.managed, pom.dependencies);
+    }
+
+    static BuildFile parseGradle(Path file, String relativePath, String script) {
+        Map<String, String> properties = new HashMap<>();
+        List<BuildFile.Dependency> dependencies = new ArrayList<>();
+        String[] lines = script.split("\r?\n|\r", -1);
+        boolean inComment = false;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (inComment) {
+                int end = line.indexOf("*/");
+                if (end < 0) {
+                    continue;
+                }
+                line = line.substring(end + 2);
+                inComment = false;
+            }
+            int start = line.indexOf("/*");
+            if (start >= 0 && line.indexOf("*/", start + 2) < 0) {
+                line = line.substring(0, start);
+                inComment = true;
+            }
+            if (line.trim().startsWith("//")) {
+                continue;
+            }
+
+            Matcher matcher = GRADLE_MAP_DEPENDENCY.matcher(line);
+            if (!matcher.find()) {
+                matcher = GRADLE_STRING_DEPENDENCY.matcher(line);
+                if (!matcher.find()) {
+                    matcher = null;
+                }
+            }
+            if (matcher != null) {
+                dependencies.add(new BuildFile.Dependency(matcher.group(2), matcher.group(3), matcher.group(4),
+                    matcher.group(1), null, i + 1));
+                continue;
+            }
+            Matcher assignment = GRADLE_ASSIGNMENT.matcher(line);
+            if (assignment.matches()) {
+                properties.put(assignment.group(1), assignment.group(2));
+            }
+        }
+        return new BuildFile(file, relativePath, BuildFile.Kind.GRADLE, null, null, null, null, properties,
+            List.of(), dependencies);
+    }
+
+    private static BuildFile parseGradleProperties(Path file, String relativePath) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            properties.load(reader);
+        }
+        Map<String, String> values = new HashMap<>();
+        properties.stringPropertyNames().forEach(key -> values.put(key, properties.getProperty(key)));
+        return new BuildFile(file, relativePath, BuildFile.Kind.GRADLE_PROPERTIES, null, null, null, null, values,
+            List.of(), List.of());
+    }
+
+    /**
+     * Collects the parts of a POM this parser reads, keyed by the path of element names from the root.
+     */
+    private static final class PomReader {
+
+        String groupId;
+        String artifactId;
+        String version;
+        String parentGroupId;
+        String parentArtifactId;
+        String parentVersion;
+        String parentRelativePath;
+        final Map<String, String> properties = new LinkedHashMap<>();
+        final List<BuildFile.Dependency> managed = new ArrayList<>();
+        final List<BuildFile.Dependency> dependencies = new ArrayList<>();
+
+        private Map<String, String> dependency;
+        private int dependencyLine;
+
+        void read(XMLStreamReader reader) throws XMLStreamException {
+            StringBuilder path = new StringBuilder();
+            StringBuilder text = new StringBuilder();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        if (!path.isEmpty()) {
+                            path.append('/');
+                        }
+                        path.append(reader.getLocalName());
+                        text.setLength(0);
+                        if (isDependency(path)) {
+                            dependency = new HashMap<>();
+                            dependencyLine = reader.getLocation().getLineNumber();
+                        } else if (path.indexOf("/") < 0 && !PROJECT.contentEquals(path)) {
+                            // Not a POM
+                            return;
+                        }
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text.append(reader.getText());
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        end(path.toString(), text.toString().trim());
+                        text.setLength(0);
+                        int slash = path.lastIndexOf("/");
+                        path.setLength(Math.max(slash, 0));
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private static boolean isDependency(CharSequence path) {
+            return DEPENDENCY.contentEquals(path) || MANAGED_DEPENDENCY.contentEquals(path);
+        }
+
+        private void end(String path, String text) {
+            switch (path) {
+                case "project/groupId" -> groupId = text;
+                case "project/artifactId" -> artifactId = text;
+                case "project/version" -> version = text;
+                case "project/parent/groupId" -> parentGroupId = text;
+                case "project/parent/artifactId" -> parentArtifactId = text;
+                case "project/parent/version" -> parentVersion = text;
+                case "project/parent/relativePath" -> parentRelativePath = text;
+                case DEPENDENCY, MANAGED_DEPENDENCY -> {
+                    if (dependency != null && dependency.get("artifactId") != null) {
+                        (path.equals(DEPENDENCY) ? dependencies : managed).add(new BuildFile.Dependency(
+                            dependency.get("groupId"), dependency.get("artifactId"), dependency.get("version"),
+                            dependency.get("scope"), dependency.get("type"), dependencyLine));
+                    }
+                    dependency = null;
+                }
+                default -> {
+                    if (path.startsWith(PROPERTIES) && path.indexOf('/', PROPERTIES.length()) < 0) {
+                        properties.put(path.substring(PROPERTIES.length()), text);
+                    } else if (dependency != null) {
+                        int slash = path.lastIndexOf('/');
+                        if (isDependency(path.substring(0, slash))) {
+                            dependency.put(path.substring(slash + 1), text);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.Conditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The named conditions of one rule, ordered so that every name is evaluated after the names it needs.
+ * <p>
+ * A condition with {@code as} names its result. A condition with {@code from} searches only the files of
+ * the named result, and so does everything beneath it. A named condition therefore needs the names that
+ * its own {@code from} and those of its ancestors refer to, as well as every name used beneath it. Names
+ * are scoped to the rule. The names form levels: those of a level need only names of earlier levels, so
+ * the conditions of one level are independent of each other.
+ * </p>
+ */
+final class ConditionGraph {
+
+    /**
+     * @param name      Name bound by the condition's {@code as}
+     * @param condition The named condition
+     * @param scope     Names referred to by the {@code from} of the condition's ancestors, whose files
+     *                  the condition is confined to
+     */
+    record Named(String name, Condition condition, List<String> scope) {}
+
+    private final List<List<Named>> levels;
+
+    private ConditionGraph(List<List<Named>> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * @param root Condition of a rule
+     * @throws IllegalArgumentException if a name is bound twice, {@code from} refers to a name the rule does
+     *                                  not bind, or names need each other
+     */
+    static ConditionGraph of(Condition root) {
+        Map<String, Named> named = new LinkedHashMap<>();
+        Map<String, Set<String>> needs = new HashMap<>();
+        List<Condition> ancestors = new ArrayList<>();
+        List<String> froms = new ArrayList<>();
+        Conditions.walk(root, (condition, depth) -> {
+            ancestors.subList(depth, ancestors.size()).clear();
+            if (condition.as() != null) {
+                List<String> scope = ancestors.stream().map(Condition::from).filter(Objects::nonNull).toList();
+                if (named.put(condition.as(), new Named(condition.as(), condition, scope)) != null) {
+                    throw new IllegalArgumentException("More than one condition has as: " + condition.as());
+                }
+                Set<String> own = needs.computeIfAbsent(condition.as(), k -> new LinkedHashSet<>());
+                own.addAll(scope);
+                if (condition.from() != null) {
+                    own.add(condition.from());
+                }
+            }
+            if (condition.from() != null) {
+                froms.add(condition.from());
+            }
+            for (Condition ancestor : ancestors) {
+                if (ancestor.as() != null) {
+                    Set<String> enclosing = needs.get(ancestor.as());
+                    if (condition.as() != null) {
+                        enclosing.add(condition.as());
+                    }
+                    if (condition.from() != null) {
+                        enclosing.add(condition.from());
+                    }
+                }
+            }
+            ancestors.add(condition);
+            return true;
+        });
+        for (String from : froms) {
+            if (!named.containsKey(from)) {
+                throw new IllegalArgumentException("from: " + from + " refers to no condition with as: " + from);
+            }
+        }
+
+        // Peel off the names whose needs are met, level by level
+        List<List<Named>> levels = new ArrayList<>();
+        Set<String> done = new LinkedHashSet<>();
+        while (done.size() < named.size()) {
+            List<Named> level = named.values().stream()
+                .filter(candidate -> !done.contains(candidate.name()) && done.containsAll(needs.get(candidate.name())))
+                .toList();
+            if (level.isEmpty()) {
+                Set<String> cycle = new LinkedHashSet<>(named.keySet());
+                cycle.removeAll(done);
+                throw new IllegalArgumentException("Conditions need each other's results through as/from: "
+                    + String.join(", ", cycle));
+            }
+            level.forEach(candidate -> done.add(candidate.name()));
+            levels.add(level);
+        }
+        return new ConditionGraph(levels);
+    }
+
+    /**
+     * @return The named conditions, in levels that only need names of earlier levels
+     */
+    List<List<Named>> levels() {
+        return levels;
+    }
+}
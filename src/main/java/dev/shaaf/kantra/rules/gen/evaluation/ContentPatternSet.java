@@ -0,0 +1,234 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The content patterns of many {@code builtin.filecontent} conditions, searched together in a file that
+ * has been read once.
+ * <p>
+ * The {@link RequiredLiterals} of every pattern go into one {@link AhoCorasick} automaton, which is run
+ * once over the file. A pattern whose literals do not occur is never run. A pattern that cannot match
+ * across lines runs only on the lines where one of its literals occurs, and any other pattern runs on
+ * the whole file once one of its literals occurs. Patterns without useful literals run on every file.
+ * Conditions are identified by their position in the list they were compiled from.
+ * </p>
+ */
+final class ContentPatternSet {
+
+    private final FilePatternSet filePatterns;
+    private final int[][] conditionsByFilePattern;
+    private final Pattern[] patterns;
+    private final boolean[] filtered;
+    private final boolean[] spansLines;
+    private final AhoCorasick literals;
+    private final int[][] conditionsByLiteral;
+    private final int[] literalLengths;
+
+    private ContentPatternSet(FilePatternSet filePatterns, int[][] conditionsByFilePattern, Pattern[] patterns,
+                              boolean[] filtered, boolean[] spansLines, AhoCorasick literals,
+                              int[][] conditionsByLiteral, int[] literalLengths) {
+        this.filePatterns = filePatterns;
+        this.conditionsByFilePattern = conditionsByFilePattern;
+        this.patterns = patterns;
+        this.filtered = filtered;
+        this.spansLines = spansLines;
+        this.literals = literals;
+        this.conditionsByLiteral = conditionsByLiteral;
+        this.literalLengths = literalLengths;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a condition has no pattern or an invalid one
+     */
+    static ContentPatternSet compile(List<BuiltinFileContentCondition> conditions) {
+        Map<String, List<Integer>> byFilePattern = new LinkedHashMap<>();
+        Map<String, List<Integer>> byLiteral = new LinkedHashMap<>();
+        Pattern[] patterns = new Pattern[conditions.size()];
+        boolean[] filtered = new boolean[conditions.size()];
+        boolean[] spansLines = new boolean[conditions.size()];
+        for (int id = 0; id < patterns.length; id++) {
+            BuiltinFileContentCondition condition = conditions.get(id);
+            if (condition.pattern() == null || condition.pattern().isEmpty()) {
+                throw new IllegalArgumentException("builtin.filecontent condition has no pattern");
+            }
+            patterns[id] = FileContentEvaluator.compileContentPattern(condition.pattern());
+            String filePattern = condition.filePattern() == null ? "" : condition.filePattern();
+            byFilePattern.computeIfAbsent(filePattern, k -> new ArrayList<>()).add(id);
+
+            Set<String> required = RequiredLiterals.of(patterns[id].pattern());
+            if (required != null) {
+                filtered[id] = true;
+                spansLines[id] = RequiredLiterals.canSpanLines(patterns[id].pattern());
+                for (String literal : required) {
+                    byLiteral.computeIfAbsent(literal, k -> new ArrayList<>()).add(id);
+                }
+            }
+        }
+
+        List<byte[]> literalBytes = new ArrayList<>();
+        int[][] conditionsByLiteral = new int[byLiteral.size()][];
+        int[] literalLengths = new int[byLiteral.size()];
+        for (Map.Entry<String, List<Integer>> entry : byLiteral.entrySet()) {
+            // Patterns are compiled over bytes, one char per byte
+            byte[] bytes = entry.getKey().getBytes(StandardCharsets.ISO_8859_1);
+            literalLengths[literalBytes.size()] = bytes.length;
+            conditionsByLiteral[literalBytes.size()] = toArray(entry.getValue());
+            literalBytes.add(bytes);
+        }
+        return new ContentPatternSet(FilePatternSet.compile(new ArrayList<>(byFilePattern.keySet())),
+            byFilePattern.values().stream().map(ContentPatternSet::toArray).toArray(int[][]::new),
+            patterns, filtered, spansLines, literalBytes.isEmpty() ? null : AhoCorasick.compile(literalBytes),
+            conditionsByLiteral, literalLengths);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return Whether any condition selects a file
+     */
+    boolean selects(Path relative, String relativePath) {
+        boolean[] any = new boolean[1];
+        filePatterns.match(relative, relativePath, id -> any[0] = true);
+        return any[0];
+    }
+
+    /**
+     * @return For each condition, whether it selects a file
+     */
+    boolean[] select(Path relative, String relativePath) {
+        boolean[] selected = new boolean[patterns.length];
+        filePatterns.match(relative, relativePath, id -> {
+            for (int condition : conditionsByFilePattern[id]) {
+                selected[condition] = true;
+            }
+        });
+        return selected;
+    }
+
+    /**
+     * Search the content of a file for the patterns of the selected conditions, reporting one incident
+     * per condition and line with a match.
+     */
+    void scan(ByteBuffer content, String relativePath, boolean[] selected, IncidentCollector[] incidents) {
+        boolean anyFiltered = false;
+        for (int id = 0; id < selected.length; id++) {
+            if (selected[id] && !filtered[id]) {
+                FileContentEvaluator.scan(content, relativePath, patterns[id], incidents[id]);
+            }
+            anyFiltered |= selected[id] && filtered[id];
+        }
+        if (!anyFiltered) {
+            return;
+        }
+
+        // Lines with a literal, as start and end pairs, per condition; null for none
+        int[][] regions = new int[selected.length][];
+        int[] regionCounts = new int[selected.length];
+        boolean[] wholeFile = new boolean[selected.length];
+        literals.search(content, (literal, end) -> {
+            for (int id : conditionsByLiteral[literal]) {
+                if (!selected[id] || wholeFile[id]) {
+                    continue;
+                }
+                if (spansLines[id]) {
+                    wholeFile[id] = true;
+                    continue;
+                }
+                int start = end - literalLengths[literal];
+                int count = regionCounts[id];
+                if (count > 0 && start < regions[id][count - 1]) {
+                    // On the line found last
+                    continue;
+                }
+                if (regions[id] == null) {
+                    regions[id] = new int[8];
+                } else if (count == regions[id].length) {
+                    regions[id] = Arrays.copyOf(regions[id], count * 2);
+                }
+                regions[id][count] = lineStart(content, start);
+                regions[id][count + 1] = lineEnd(content, end);
+                regionCounts[id] = count + 2;
+            }
+            return true;
+        });
+
+        LineIndex lines = null;
+        for (int id = 0; id < selected.length; id++) {
+            if (wholeFile[id]) {
+                FileContentEvaluator.scan(content, relativePath, patterns[id], incidents[id]);
+            } else if (regionCounts[id] > 0) {
+                if (lines == null) {
+                    lines = new LineIndex(content);
+                }
+                Matcher matcher = patterns[id].matcher(new ByteCharSequence(content));
+                // Lookarounds see past the line, and ^, $ and \A keep their meaning in the whole file
+                matcher.useTransparentBounds(true).useAnchoringBounds(false);
+                for (int i = 0; i < regionCounts[id]; i += 2) {
+                    matcher.region(regions[id][i], regions[id][i + 1]);
+                    if (matcher.find() && !incidents[id].add(new Incident(relativePath, lines.lineOf(matcher.start()),
+                        FileContentEvaluator.lineAt(content, matcher.start())))) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int lineStart(ByteBuffer content, int position) {
+        int start = position;
+        while (start > 0 && content.get(start - 1) != '\n') {
+            start--;
+        }
+        return start;
+    }
+
+    private static int lineEnd(ByteBuffer content, int position) {
+        int end = position;
+        while (end < content.limit() && content.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Positions of the line breaks of a file, to number the lines of matches found out of order.
+     */
+    private static final class LineIndex {
+
+        private int[] breaks = new int[64];
+        private int count;
+
+        LineIndex(ByteBuffer content) {
+            for (int i = 0; i < content.limit(); i++) {
+                if (content.get(i) == '\n') {
+                    if (count == breaks.length) {
+                        breaks = Arrays.copyOf(breaks, count * 2);
+                    }
+                    breaks[count++] = i;
+                }
+            }
+        }
+
+        /**
+         * @return 1-based line of a position
+         */
+        int lineOf(int position) {
+            int index = Arrays.binarySearch(breaks, 0, count, position);
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+    }
+}
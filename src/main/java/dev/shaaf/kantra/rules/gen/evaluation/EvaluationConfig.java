@@ -0,0 +1,23 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import io.smallrye.config.ConfigMapping;
+
+import java.util.Optional;
+
+/**
+ * Configuration of local rule evaluation.
+ *
+ * Example configuration:
+ * <pre>
+ * kantra.mcp.evaluation.index-directory=/var/cache/scribe/source-index
+ * </pre>
+ */
+@ConfigMapping(prefix = "kantra.mcp.evaluation")
+public interface EvaluationConfig {
+
+    /**
+     * Directory the trigram indexes of tested source trees are kept in, one subdirectory per tree.
+     * Without it every {@code builtin.filecontent} search reads all the files it selects.
+     */
+    Optional<String> indexDirectory();
+}
@@ -0,0 +1,13 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.util.List;
+
+/**
+ * Outcome of evaluating a condition against a source tree.
+ *
+ * @param matched      true if the condition matched, taking {@code not} into account
+ * @param incidents    Incidents ordered by file and line, at most the requested maximum
+ * @param truncated    true if more incidents were found than returned
+ * @param filesScanned Number of files whose content was examined
+ */
+public record EvaluationResult(boolean matched, List<Incident> incidents, boolean truncated, int filesScanned) {}
@@ -0,0 +1,184 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Evaluates {@code builtin.filecontent} conditions: the content pattern is searched in every file
+ * selected by the file pattern.
+ * <p>
+ * All conditions of a ruleset are evaluated in one walk and each file is read once, however many
+ * conditions select it; a {@link ContentPatternSet} then searches the literals of all their patterns
+ * in one pass, and only the lines that contain one go through a pattern.
+ * </p>
+ * <p>
+ * Patterns are compiled once per condition and run directly over the file bytes: files from
+ * {@value #MMAP_THRESHOLD} bytes on are memory-mapped, smaller ones read into a heap buffer, where
+ * one read beats the cost of setting up a mapping. Line numbers are counted only up to each match,
+ * continuing from the previous one, so files without matches are never split into lines.
+ * Files with a NUL byte near the start are treated as binary and skipped, as grep does.
+ * </p>
+ */
+final class FileContentEvaluator {
+
+    static final int MMAP_THRESHOLD = 64 * 1024;
+    private static final int BINARY_PROBE_LENGTH = 8000;
+    private static final int MAX_SNIPPET_LENGTH = 200;
+
+    private FileContentEvaluator() {
+    }
+
+    /**
+     * Evaluate any number of conditions in one walk, reading each file once for all the conditions that
+     * select it.
+     *
+     * @param conditions   Conditions to evaluate; duplicates are evaluated once
+     * @param root         Root of the source tree
+     * @param scope        The only files to consider, relative to the root; null for the whole tree
+     * @param maxIncidents Maximum number of incidents per condition
+     * @return Result per condition
+     * @throws IllegalArgumentException if a condition has no pattern or an invalid one
+     */
+    static Map<BuiltinFileContentCondition, EvaluationResult> evaluate(Collection<BuiltinFileContentCondition> conditions,
+                                                                       Path root, Set<String> scope, int maxIncidents) {
+        List<BuiltinFileContentCondition> distinct = new ArrayList<>(new LinkedHashSet<>(conditions));
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+        ContentPatternSet patterns = ContentPatternSet.compile(distinct);
+        IncidentCollector[] incidents = new IncidentCollector[distinct.size()];
+        for (int id = 0; id < incidents.length; id++) {
+            incidents[id] = new IncidentCollector(maxIncidents);
+        }
+        AtomicIntegerArray scanned = new AtomicIntegerArray(distinct.size());
+
+        ParallelFileWalker.walk(root, scope, patterns::selects, (file, relative, relativePath, size) -> {
+            boolean[] selected = patterns.select(relative, relativePath);
+            for (int id = 0; id < selected.length; id++) {
+                if (selected[id]) {
+                    scanned.incrementAndGet(id);
+                    selected[id] = incidents[id].accepts(relativePath);
+                }
+            }
+            if (size == 0 || size > Integer.MAX_VALUE) {
+                return;
+            }
+            ByteBuffer content = read(file, size);
+            if (!isBinary(content)) {
+                patterns.scan(content, relativePath, selected, incidents);
+            }
+        }, () -> false);
+
+        Map<BuiltinFileContentCondition, EvaluationResult> results = new HashMap<>();
+        for (int id = 0; id < incidents.length; id++) {
+            results.put(distinct.get(id), new EvaluationResult(!incidents[id].isEmpty(), incidents[id].toList(),
+                incidents[id].truncated(), scanned.get(id)));
+        }
+        return results;
+    }
+
+    /**
+     * Compile a content pattern for matching over a {@link ByteCharSequence}. Non-ASCII characters
+     * are replaced by their UTF-8 bytes so literals match UTF-8 files; inside character classes such
+     * characters then stand for their single bytes, which is the one case this does not cover.
+     *
+     * @throws IllegalArgumentException if the pattern is not a valid regex
+     */
+    static Pattern compileContentPattern(String pattern) {
+        String bytePattern = pattern.chars().allMatch(c -> c < 0x80)
+            ? pattern
+            : new String(pattern.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        try {
+            return Pattern.compile(bytePattern, Pattern.MULTILINE);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid content pattern: " + e.getDescription() + " in " + pattern);
+        }
+    }
+
+    /**
+     * Report one incident per line with a match.
+     */
+    static void scan(ByteBuffer content, String relativePath, Pattern pattern, IncidentCollector incidents) {
+        Matcher matcher = pattern.matcher(new ByteCharSequence(content));
+        int line = 1;
+        int counted = 0;
+        int reportedLine = 0;
+        while (matcher.find()) {
+            int start = matcher.start();
+            for (int i = counted; i < start; i++) {
+                if (content.get(i) == '\n') {
+                    line++;
+                }
+            }
+            counted = start;
+            if (line == reportedLine) {
+                continue;
+            }
+            reportedLine = line;
+            if (!incidents.add(new Incident(relativePath, line, lineAt(content, start)))) {
+                return;
+            }
+        }
+    }
+
+    static ByteBuffer read(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size >= MMAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full or end of file
+            }
+            return buffer.flip();
+        }
+    }
+
+    static boolean isBinary(ByteBuffer content) {
+        int probe = Math.min(content.limit(), BINARY_PROBE_LENGTH);
+        for (int i = 0; i < probe; i++) {
+            if (content.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The line containing a position, decoded as UTF-8, trimmed and shortened around the position.
+     */
+    static String lineAt(ByteBuffer content, int position) {
+        int start = position;
+        while (start > 0 && content.get(start - 1) != '\n') {
+            start--;
+        }
+        int end = position;
+        while (end < content.limit() && content.get(end) != '\n') {
+            end++;
+        }
+        if (end - start > MAX_SNIPPET_LENGTH) {
+            start = Math.max(start, position - MAX_SNIPPET_LENGTH / 4);
+            end = Math.min(end, start + MAX_SNIPPET_LENGTH);
+        }
+        byte[] bytes = new byte[end - start];
+        content.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).strip();
+    }
+}
@@ -0,0 +1,53 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates the patterns of any number of {@code builtin.file} conditions in one parallel walk of
+ * the source tree, through a {@link FilePatternSet}. Each selected file is one incident of the pattern.
+ */
+final class FileNameEvaluator {
+
+    private FileNameEvaluator() {
+    }
+
+    /**
+     * @param patterns     File patterns; duplicates are evaluated once
+     * @param root         Root of the source tree
+     * @param scope        The only files to consider, relative to the root; null for the whole tree
+     * @param maxIncidents Maximum number of incidents per pattern
+     * @return Result per pattern. Only names are examined, so no file counts as scanned.
+     */
+    static Map<String, EvaluationResult> evaluate(Collection<String> patterns, Path root, Set<String> scope,
+                                                  int maxIncidents) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(patterns));
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+        FilePatternSet patternSet = FilePatternSet.compile(distinct);
+        IncidentCollector[] collectors = new IncidentCollector[distinct.size()];
+        for (int id = 0; id < collectors.length; id++) {
+            collectors[id] = new IncidentCollector(maxIncidents);
+        }
+
+        ParallelFileWalker.walk(root, scope, (relative, relativePath) -> true,
+            (file, relative, relativePath, size) -> patternSet.match(relative, relativePath,
+                id -> collectors[id].add(new Incident(relativePath, 0, null))),
+            () -> false);
+
+        Map<String, EvaluationResult> results = new HashMap<>();
+        for (int id = 0; id < collectors.length; id++) {
+            IncidentCollector incidents = collectors[id];
+            results.put(distinct.get(id),
+                new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), 0));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,146 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * File selection of {@code builtin.file} and {@code builtin.filecontent} conditions.
+ * <p>
+ * Kantra reads file patterns as regular expressions, while rules written with this server mostly use
+ * globs such as {@code *.java} or plain names such as {@code pom.xml}. Patterns are classified so the
+ * common forms are matched exactly and cheaply:
+ * </p>
+ * <ul>
+ *   <li>{@link Kind#NAME}: a plain file name, {@code pom.xml}, selects files with exactly that name
+ *       ({@code .} is not a wildcard here)</li>
+ *   <li>{@link Kind#PATH}: a plain relative path, {@code META-INF/persistence.xml}, selects files whose
+ *       path ends with it</li>
+ *   <li>{@link Kind#NAME_SUFFIX}: {@code *} followed by a plain suffix, {@code *.java}, selects file names
+ *       ending with the suffix</li>
+ *   <li>{@link Kind#GENERIC}: anything else is compiled both as a glob and as a regex where possible, and a
+ *       file is selected if the glob matches its name or relative path, or the regex is found in its path</li>
+ * </ul>
+ */
+final class FilePattern implements ParallelFileWalker.FileFilter {
+
+    private static final Pattern PLAIN_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final Pattern PLAIN_PATH = Pattern.compile("[A-Za-z0-9._-]+(/[A-Za-z0-9._-]+)+");
+
+    /**
+     * How a pattern is matched.
+     */
+    enum Kind {
+        /** Blank pattern, selects every file */
+        ANY,
+        NAME,
+        PATH,
+        NAME_SUFFIX,
+        GENERIC
+    }
+
+    private final String pattern;
+    private final Kind kind;
+    private final String literal;
+    private final PathMatcher glob;
+    private final Pattern regex;
+
+    private FilePattern(String pattern, Kind kind, String literal, PathMatcher glob, Pattern regex) {
+        this.pattern = pattern;
+        this.kind = kind;
+        this.literal = literal;
+        this.glob = glob;
+        this.regex = regex;
+    }
+
+    /**
+     * @param pattern Glob, regex or plain name; null or blank selects every file
+     * @throws IllegalArgumentException if a generic pattern is neither a valid glob nor a valid regex
+     */
+    static FilePattern compile(String pattern) {
+        if (pattern == null || pattern.isBlank()) {
+            return new FilePattern("", Kind.ANY, null, null, null);
+        }
+        String trimmed = pattern.trim();
+        if (PLAIN_NAME.matcher(trimmed).matches()) {
+            return new FilePattern(trimmed, Kind.NAME, trimmed, null, null);
+        }
+        if (PLAIN_PATH.matcher(trimmed).matches()) {
+            return new FilePattern(trimmed, Kind.PATH, trimmed, null, null);
+        }
+        if (trimmed.length() > 1 && trimmed.charAt(0) == '*' && PLAIN_NAME.matcher(trimmed.substring(1)).matches()) {
+            return new FilePattern(trimmed, Kind.NAME_SUFFIX, trimmed.substring(1), null, null);
+        }
+
+        PathMatcher glob = null;
+        Pattern regex = null;
+        try {
+            glob = FileSystems.getDefault().getPathMatcher("glob:" + trimmed);
+        } catch (IllegalArgumentException e) {
+            // Not a glob, e.g. an unbalanced '{' in a regex
+        }
+        try {
+            regex = Pattern.compile(trimmed);
+        } catch (PatternSyntaxException e) {
+            // Not a regex, e.g. a leading '*'
+        }
+        if (glob == null && regex == null) {
+            throw new IllegalArgumentException("Invalid file pattern: " + pattern);
+        }
+        return new FilePattern(trimmed, Kind.GENERIC, null, glob, regex);
+    }
+
+    /**
+     * File selection of conditions with a {@code filepaths} list, such as {@code builtin.xml}.
+     *
+     * @param patterns      File patterns, any of which selects a file
+     * @param defaultSuffix Suffix of the files selected when there are no patterns, e.g. {@code .xml}
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    static ParallelFileWalker.FileFilter anyOf(List<String> patterns, String defaultSuffix) {
+        if (patterns == null || patterns.isEmpty()) {
+            return (relative, relativePath) -> relativePath.endsWith(defaultSuffix);
+        }
+        FilePattern[] compiled = patterns.stream().map(FilePattern::compile).toArray(FilePattern[]::new);
+        return (relative, relativePath) -> {
+            for (FilePattern pattern : compiled) {
+                if (pattern.accept(relative, relativePath)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return The name, path or suffix of plain patterns, null for {@link Kind#ANY} and {@link Kind#GENERIC}
+     */
+    String literal() {
+        return literal;
+    }
+
+    @Override
+    public boolean accept(Path relative, String relativePath) {
+        return switch (kind) {
+            case ANY -> true;
+            case NAME -> relative.getFileName().toString().equals(literal);
+            case PATH -> relativePath.equals(literal)
+                || (relativePath.endsWith(literal) && relativePath.charAt(relativePath.length() - literal.length() - 1) == '/');
+            case NAME_SUFFIX -> relative.getFileName().toString().endsWith(literal);
+            case GENERIC -> (glob != null && (glob.matches(relative.getFileName()) || glob.matches(relative)))
+                || (regex != null && regex.matcher(relativePath).find());
+        };
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,124 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Many {@link FilePattern}s compiled into one matcher, so a single tree walk serves every
+ * {@code builtin.file} condition of a ruleset.
+ * <p>
+ * Plain names are looked up in a hash map by file name, {@code *suffix} patterns in a hash map by
+ * the file name's suffix of each distinct suffix length, and plain paths by file name before their
+ * directories are compared. Only generic patterns are tried one by one. Matching a file therefore
+ * costs a few hash lookups however many plain patterns there are.
+ * </p>
+ */
+final class FilePatternSet {
+
+    private static final int[] NONE = new int[0];
+
+    private final FilePattern[] patterns;
+    private final int[] any;
+    private final Map<String, int[]> byName;
+    private final Map<String, int[]> byPathName;
+    private final Map<String, int[]> bySuffix;
+    private final int[] suffixLengths;
+    private final int[] generic;
+
+    private FilePatternSet(FilePattern[] patterns, int[] any, Map<String, int[]> byName,
+                           Map<String, int[]> byPathName, Map<String, int[]> bySuffix,
+                           int[] suffixLengths, int[] generic) {
+        this.patterns = patterns;
+        this.any = any;
+        this.byName = byName;
+        this.byPathName = byPathName;
+        this.bySuffix = bySuffix;
+        this.suffixLengths = suffixLengths;
+        this.generic = generic;
+    }
+
+    /**
+     * @param patterns Patterns, identified by their position in the list
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    static FilePatternSet compile(List<String> patterns) {
+        FilePattern[] compiled = new FilePattern[patterns.size()];
+        List<Integer> any = new ArrayList<>();
+        List<Integer> generic = new ArrayList<>();
+        Map<String, List<Integer>> byName = new HashMap<>();
+        Map<String, List<Integer>> byPathName = new HashMap<>();
+        Map<String, List<Integer>> bySuffix = new HashMap<>();
+        TreeSet<Integer> suffixLengths = new TreeSet<>();
+
+        for (int id = 0; id < compiled.length; id++) {
+            FilePattern pattern = FilePattern.compile(patterns.get(id));
+            compiled[id] = pattern;
+            switch (pattern.kind()) {
+                case ANY -> any.add(id);
+                case NAME -> byName.computeIfAbsent(pattern.literal(), k -> new ArrayList<>()).add(id);
+                case PATH -> byPathName.computeIfAbsent(
+                    pattern.literal().substring(pattern.literal().lastIndexOf('/') + 1), k -> new ArrayList<>()).add(id);
+                case NAME_SUFFIX -> {
+                    bySuffix.computeIfAbsent(pattern.literal(), k -> new ArrayList<>()).add(id);
+                    suffixLengths.add(pattern.literal().length());
+                }
+                case GENERIC -> generic.add(id);
+            }
+        }
+        return new FilePatternSet(compiled, toArray(any), toArrays(byName), toArrays(byPathName), toArrays(bySuffix),
+            suffixLengths.stream().mapToInt(Integer::intValue).toArray(), toArray(generic));
+    }
+
+    /**
+     * @return Number of patterns
+     */
+    int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Report the IDs of all patterns selecting a file.
+     */
+    void match(Path relative, String relativePath, IntConsumer hits) {
+        String name = relative.getFileName().toString();
+        for (int id : any) {
+            hits.accept(id);
+        }
+        for (int id : byName.getOrDefault(name, NONE)) {
+            hits.accept(id);
+        }
+        for (int id : byPathName.getOrDefault(name, NONE)) {
+            if (patterns[id].accept(relative, relativePath)) {
+                hits.accept(id);
+            }
+        }
+        for (int length : suffixLengths) {
+            if (length > name.length()) {
+                break;
+            }
+            for (int id : bySuffix.getOrDefault(name.substring(name.length() - length), NONE)) {
+                hits.accept(id);
+            }
+        }
+        for (int id : generic) {
+            if (patterns[id].accept(relative, relativePath)) {
+                hits.accept(id);
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> ids) {
+        Map<String, int[]> arrays = new HashMap<>(ids.size() * 4 / 3 + 1);
+        ids.forEach((key, list) -> arrays.put(key, toArray(list)));
+        return arrays;
+    }
+}
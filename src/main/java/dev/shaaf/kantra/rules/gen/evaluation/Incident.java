@@ -0,0 +1,10 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+/**
+ * A place in the source tree where a condition matched.
+ *
+ * @param file    Path of the file relative to the source root, with {@code /} separators
+ * @param line    1-based line number of the match, 0 for conditions matching whole files
+ * @param snippet The matching line, trimmed and shortened; null for conditions matching whole files
+ */
+public record Incident(String file, int line, String snippet) {}
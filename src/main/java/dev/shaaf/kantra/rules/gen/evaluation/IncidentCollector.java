@@ -0,0 +1,80 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Thread-safe, capped sink for the incidents of one condition. It keeps the first incidents in
+ * file and line order, whatever order the parallel walk delivers them in, so a truncated result
+ * is the same on every run.
+ * <p>
+ * Once the cap is reached, an incident that sorts after every kept one is dropped and marks the
+ * result as truncated. Files deliver their incidents in line order, so the rest of that file can
+ * be skipped, and {@link #accepts(String)} lets the walk skip whole files that sort after the kept ones.
+ * </p>
+ */
+final class IncidentCollector {
+
+    private static final Comparator<Incident> ORDER =
+        Comparator.comparing(Incident::file).thenComparingInt(Incident::line);
+
+    private final int maxIncidents;
+    // Max-heap: the head is the last incident that is kept
+    private final PriorityQueue<Incident> incidents = new PriorityQueue<>(ORDER.reversed());
+    private boolean truncated;
+
+    IncidentCollector(int maxIncidents) {
+        this.maxIncidents = maxIncidents;
+    }
+
+    /**
+     * @return false if the incident sorts after the first {@code maxIncidents} and was dropped
+     */
+    synchronized boolean add(Incident incident) {
+        if (incidents.size() < maxIncidents) {
+            incidents.add(incident);
+            return true;
+        }
+        truncated = true;
+        if (ORDER.compare(incident, incidents.peek()) >= 0) {
+            return false;
+        }
+        incidents.poll();
+        incidents.add(incident);
+        return true;
+    }
+
+    /**
+     * @return false if no incident of the file can be kept any more, so the file need not be scanned
+     */
+    synchronized boolean accepts(String relativePath) {
+        return incidents.size() < maxIncidents || relativePath.compareTo(incidents.peek().file()) <= 0;
+    }
+
+    synchronized boolean isEmpty() {
+        return incidents.isEmpty();
+    }
+
+    /**
+     * @return true if incidents were dropped because of the cap
+     */
+    synchronized boolean truncated() {
+        return truncated;
+    }
+
+    /**
+     * @return The kept incidents, ordered by file and line
+     */
+    synchronized List<Incident> toList() {
+        return sorted(incidents);
+    }
+
+    static List<Incident> sorted(Collection<Incident> incidents) {
+        List<Incident> list = new ArrayList<>(incidents);
+        list.sort(ORDER);
+        return List.copyOf(list);
+    }
+}
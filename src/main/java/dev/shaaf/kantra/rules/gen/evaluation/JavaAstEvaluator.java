@@ -0,0 +1,307 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates {@code java.referenced} conditions whose locations need the structure of the code:
+ * calls, constructor calls, annotations, supertypes, field and return types.
+ * <p>
+ * All such conditions of a batch are evaluated together: the {@code .java} files are parsed once, in
+ * parallel and through a {@link JavaParseCache}, and every condition is then matched against the parsed
+ * facts, so a ruleset of a hundred rules costs about one parse of the tree. Simple type names are
+ * resolved through the single-type imports, the types of the file and of its package anywhere in the
+ * tree, the on-demand imports and {@code java.lang}; a name none of those explains is tried in each
+ * on-demand imported package and in the file's own package.
+ * </p>
+ * <p>
+ * Patterns follow Kantra: {@code *} matches any characters and {@code (a|b)} groups are alternatives.
+ * A trailing parameter list such as {@code (*)} or {@code (java.lang.String)} is ignored, since
+ * argument types are not known without compiling. Calls match against {@code type.method}.
+ * {@code annotated} requires the annotation on the enclosing declaration (on the annotation itself for
+ * {@code ANNOTATION}), with element values matched as regular expressions.
+ * </p>
+ */
+final class JavaAstEvaluator {
+
+    static final Set<JavaLocation> LOCATIONS = EnumSet.of(JavaLocation.METHOD_CALL, JavaLocation.CONSTRUCTOR_CALL,
+        JavaLocation.ANNOTATION, JavaLocation.INHERITANCE, JavaLocation.IMPLEMENTS_TYPE, JavaLocation.FIELD,
+        JavaLocation.RETURN_TYPE);
+
+    private static final Set<String> JAVA_LANG = Set.of("Object", "String", "System", "Math", "Thread", "Runnable",
+        "Class", "ClassLoader", "Integer", "Long", "Short", "Byte", "Double", "Float", "Boolean", "Character",
+        "Number", "Enum", "Record", "Iterable", "Comparable", "AutoCloseable", "Cloneable", "CharSequence",
+        "StringBuilder", "StringBuffer", "Throwable", "Exception", "Error", "RuntimeException",
+        "IllegalArgumentException", "IllegalStateException", "NullPointerException",
+        "UnsupportedOperationException", "InterruptedException", "Override", "Deprecated", "SuppressWarnings",
+        "FunctionalInterface", "SafeVarargs", "Runtime", "Process", "ProcessBuilder", "SecurityManager",
+        "ThreadLocal", "Void");
+    private static final Set<String> PRIMITIVES = Set.of("boolean", "byte", "char", "short", "int", "long",
+        "float", "double");
+
+    private JavaAstEvaluator() {
+    }
+
+    /**
+     * @param conditions   Conditions with a location in {@link #LOCATIONS}; duplicates are evaluated once
+     * @param root         Root of the source tree
+     * @param scope        The only files to search, relative to the root; null for the whole tree. Types
+     *                     declared elsewhere in the tree still resolve simple names.
+     * @param maxIncidents Maximum number of incidents per condition
+     * @param cache        Parse cache shared between evaluations
+     * @return Result per condition
+     * @throws IllegalArgumentException      if a pattern is invalid
+     * @throws UnsupportedOperationException if the runtime has no Java compiler
+     */
+    static Map<JavaReferencedCondition, EvaluationResult> evaluate(Collection<JavaReferencedCondition> conditions,
+                                                                   Path root, Set<String> scope, int maxIncidents,
+                                                                   JavaParseCache cache) {
+        List<CompiledCondition> compiled = new ArrayList<>();
+        for (JavaReferencedCondition condition : new LinkedHashSet<>(conditions)) {
+            compiled.add(CompiledCondition.compile(condition));
+        }
+        if (compiled.isEmpty()) {
+            return Map.of();
+        }
+        JavaSourceParser.requireCompiler();
+
+        Map<String, JavaFileFacts> files = cache.facts(root);
+
+        Map<String, Set<String>> typesByPackage = new HashMap<>();
+        for (JavaFileFacts facts : files.values()) {
+            typesByPackage.computeIfAbsent(facts.packageName(), k -> new HashSet<>()).addAll(facts.declaredTypes());
+        }
+
+        // Which conditions a qualified name matches, per location. The same names recur in many files,
+        // so each is matched against the patterns once rather than once per reference.
+        Map<JavaLocation, int[]> conditionsByLocation = new EnumMap<>(JavaLocation.class);
+        Map<JavaLocation, Map<String, int[]>> matchesByLocation = new EnumMap<>(JavaLocation.class);
+        for (JavaLocation location : LOCATIONS) {
+            int[] indexes = IntStream.range(0, compiled.size()).filter(i -> compiled.get(i).location() == location).toArray();
+            if (indexes.length > 0) {
+                conditionsByLocation.put(location, indexes);
+                matchesByLocation.put(location, new ConcurrentHashMap<>());
+            }
+        }
+
+        IncidentCollector[] incidents = new IncidentCollector[compiled.size()];
+        AtomicIntegerArray scanned = new AtomicIntegerArray(compiled.size());
+        for (int i = 0; i < incidents.length; i++) {
+            incidents[i] = new IncidentCollector(maxIncidents);
+        }
+        files.entrySet().parallelStream().filter(entry -> scope == null || scope.contains(entry.getKey())).forEach(entry -> {
+            String relativePath = entry.getKey();
+            Path relative = Path.of(relativePath);
+            JavaFileFacts facts = entry.getValue();
+            boolean[] selected = new boolean[compiled.size()];
+            for (int i = 0; i < compiled.size(); i++) {
+                if (compiled.get(i).files().accept(relative, relativePath)) {
+                    selected[i] = true;
+                    scanned.incrementAndGet(i);
+                }
+            }
+            Resolver resolver = new Resolver(facts, typesByPackage);
+            BitSet matched = new BitSet(compiled.size());
+            for (JavaFileFacts.Reference reference : facts.references()) {
+                int[] indexes = conditionsByLocation.get(reference.location());
+                if (indexes == null) {
+                    continue;
+                }
+                Map<String, int[]> matches = matchesByLocation.get(reference.location());
+                matched.clear();
+                for (String type : resolver.resolve(reference.typeName())) {
+                    String name = reference.member() == null ? type : type + "." + reference.member();
+                    for (int i : matches.computeIfAbsent(name, key -> Arrays.stream(indexes)
+                        .filter(index -> compiled.get(index).pattern().matcher(key).matches()).toArray())) {
+                        matched.set(i);
+                    }
+                }
+                for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+                    if (selected[i] && compiled.get(i).annotatedMatches(reference, resolver)) {
+                        incidents[i].add(new Incident(relativePath, reference.line(), reference.snippet()));
+                    }
+                }
+            }
+        });
+
+        Map<JavaReferencedCondition, EvaluationResult> results = new HashMap<>();
+        for (int i = 0; i < incidents.length; i++) {
+            results.put(compiled.get(i).condition(), new EvaluationResult(!incidents[i].isEmpty(),
+                incidents[i].toList(), incidents[i].truncated(), scanned.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Drop a trailing parameter list, {@code lookup(*)} becoming {@code lookup}, but keep a trailing
+     * group of alternatives such as {@code java.util.(List|Set)}.
+     */
+    static String withoutParameters(String pattern) {
+        String trimmed = pattern.trim();
+        if (!trimmed.endsWith(")")) {
+            return trimmed;
+        }
+        int depth = 0;
+        for (int i = trimmed.length() - 1; i >= 0; i--) {
+            char c = trimmed.charAt(i);
+            if (c == ')') {
+                depth++;
+            } else if (c == '(' && --depth == 0) {
+                boolean afterName = i > 0 && (Character.isJavaIdentifierPart(trimmed.charAt(i - 1)) || trimmed.charAt(i - 1) == '*');
+                return afterName ? trimmed.substring(0, i) : trimmed;
+            }
+        }
+        return trimmed;
+    }
+
+    private record CompiledCondition(JavaReferencedCondition condition, JavaLocation location, Pattern pattern,
+                                     Pattern annotatedPattern, Map<String, Pattern> annotatedElements,
+                                     ParallelFileWalker.FileFilter files) {
+
+        static CompiledCondition compile(JavaReferencedCondition condition) {
+            if (condition.pattern() == null || condition.pattern().isBlank()) {
+                throw new IllegalArgumentException("java.referenced condition has no pattern");
+            }
+            Pattern pattern = JavaReferenceEvaluator.compilePattern(withoutParameters(condition.pattern()));
+            Pattern annotatedPattern = null;
+            Map<String, Pattern> elements = Map.of();
+            JavaReferencedCondition.Annotated annotated = condition.annotated();
+            if (annotated != null) {
+                if (annotated.pattern() != null && !annotated.pattern().isBlank()) {
+                    annotatedPattern = JavaReferenceEvaluator.compilePattern(annotated.pattern());
+                }
+                if (annotated.elements() != null) {
+                    elements = new HashMap<>();
+                    for (JavaReferencedCondition.Element element : annotated.elements()) {
+                        elements.put(element.name() == null ? "value" : element.name(), elementPattern(element.value()));
+                    }
+                }
+            }
+            return new CompiledCondition(condition, condition.location(), pattern, annotatedPattern, elements,
+                FilePattern.anyOf(condition.filepaths(), ".java"));
+        }
+
+        private static Pattern elementPattern(String value) {
+            String text = value == null ? "" : value;
+            try {
+                return Pattern.compile(text);
+            } catch (PatternSyntaxException e) {
+                return Pattern.compile(Pattern.quote(text));
+            }
+        }
+
+        /**
+         * @return Whether the {@code annotated} part of the condition, if any, holds for a reference
+         */
+        boolean annotatedMatches(JavaFileFacts.Reference reference, Resolver resolver) {
+            if (annotatedPattern == null && annotatedElements.isEmpty()) {
+                return true;
+            }
+            if (location == JavaLocation.ANNOTATION) {
+                // The annotation itself carries the elements
+                return annotatedMatches(reference.annotation(), resolver, annotatedPattern == null);
+            }
+            return reference.annotations().stream().anyMatch(annotation -> annotatedMatches(annotation, resolver, false));
+        }
+
+        private boolean annotatedMatches(JavaFileFacts.AnnotationUse annotation, Resolver resolver, boolean typeMatched) {
+            if (annotation == null) {
+                return false;
+            }
+            if (!typeMatched && annotatedPattern != null
+                && resolver.resolve(annotation.typeName()).stream().noneMatch(type -> annotatedPattern.matcher(type).matches())) {
+                return false;
+            }
+            for (Map.Entry<String, Pattern> element : annotatedElements.entrySet()) {
+                String value = annotation.elements().get(element.getKey());
+                if (value == null || !element.getValue().matcher(value).matches()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Resolves type names as written in one file to qualified candidates.
+     */
+    private static final class Resolver {
+
+        private final JavaFileFacts facts;
+        private final Map<String, Set<String>> typesByPackage;
+        private final Map<String, String> imports = new HashMap<>();
+        private final Set<String> declared;
+        private final Map<String, List<String>> resolved = new HashMap<>();
+
+        Resolver(JavaFileFacts facts, Map<String, Set<String>> typesByPackage) {
+            this.facts = facts;
+            this.typesByPackage = typesByPackage;
+            for (String imported : facts.imports()) {
+                imports.put(imported.substring(imported.lastIndexOf('.') + 1), imported);
+            }
+            this.declared = new HashSet<>(facts.declaredTypes());
+        }
+
+        /**
+         * @return Qualified names the type name may denote, most likely first
+         */
+        List<String> resolve(String typeName) {
+            return resolved.computeIfAbsent(typeName, this::candidates);
+        }
+
+        private List<String> candidates(String typeName) {
+            int dot = typeName.indexOf('.');
+            String first = dot < 0 ? typeName : typeName.substring(0, dot);
+            String rest = dot < 0 ? "" : typeName.substring(dot);
+            List<String> candidates = new ArrayList<>(2);
+
+            if (PRIMITIVES.contains(typeName) || (dot > 0 && Character.isLowerCase(first.charAt(0)))) {
+                // Primitive, or already qualified
+                candidates.add(typeName);
+            } else if (imports.containsKey(first)) {
+                candidates.add(imports.get(first) + rest);
+            } else if (declared.contains(first) || typesByPackage.getOrDefault(facts.packageName(), Set.of()).contains(first)) {
+                candidates.add(qualify(facts.packageName(), typeName));
+            } else {
+                for (String onDemand : facts.onDemandImports()) {
+                    if (typesByPackage.getOrDefault(onDemand, Set.of()).contains(first)) {
+                        candidates.add(onDemand + "." + typeName);
+                        return candidates;
+                    }
+                }
+                if (JAVA_LANG.contains(first)) {
+                    candidates.add("java.lang." + typeName);
+                } else {
+                    for (String onDemand : facts.onDemandImports()) {
+                        candidates.add(onDemand + "." + typeName);
+                    }
+                    candidates.add(qualify(facts.packageName(), typeName));
+                }
+            }
+            return candidates;
+        }
+
+        private static String qualify(String packageName, String typeName) {
+            return packageName.isEmpty() ? typeName : packageName + "." + typeName;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaDependencyCondition;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Evaluates {@code java.dependency} conditions against the dependencies declared in the Maven and Gradle
+ * build files of the tree, offline.
+ * <p>
+ * For a POM, properties are interpolated through its chain of parents found in the tree, by
+ * {@code relativePath} or else by coordinates, along with the {@code project.*} built-ins; a missing
+ * version comes from the {@code dependencyManagement} of the chain and from BOMs it imports that are in
+ * the tree. For a Gradle script, {@code $name} and {@code ${name}} are interpolated from its own
+ * assignments and the {@code gradle.properties} of its directory and those above it. Nothing is
+ * downloaded, so transitive dependencies and parents or BOMs outside the tree are not seen.
+ * </p>
+ * <p>
+ * As in Kantra, a dependency is named {@code groupId.artifactId}; {@code groupId:artifactId} is accepted
+ * too. {@code name} must equal the name and {@code name_regex} must be found in it. Bounds are inclusive
+ * and compare in {@link MavenVersion} order; a dependency whose version is unknown, a range or dynamic
+ * does not satisfy a bound. Each dependency is one incident, at its declaration.
+ * </p>
+ */
+final class JavaDependencyEvaluator {
+
+    private static final Pattern MAVEN_REFERENCE = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Pattern GRADLE_REFERENCE = Pattern.compile("\\$\\{([^}]+)}|\\$([A-Za-z_]\\w*)");
+    private static final int MAX_INTERPOLATIONS = 10;
+    private static final int MAX_PARENTS = 32;
+
+    private JavaDependencyEvaluator() {
+    }
+
+    /**
+     * A declared dependency with its values interpolated.
+     *
+     * @param version Version, null if it could not be determined
+     */
+    record ResolvedDependency(String relativePath, String groupId, String artifactId, String version, int line) {
+
+        String snippet() {
+            return groupId + ":" + artifactId + (version == null ? "" : ":" + version);
+        }
+    }
+
+    /**
+     * @param conditions   Conditions to evaluate; duplicates are evaluated once
+     * @param root         Root of the source tree
+     * @param scope        The only build files whose dependencies count, relative to the root; null for the
+     *                     whole tree. Parents and properties are still read from any build file.
+     * @param maxIncidents Maximum number of incidents per condition
+     * @param cache        Build file cache shared between evaluations
+     * @return Result per condition
+     * @throws IllegalArgumentException if a condition has no name or an invalid name_regex
+     */
+    static Map<JavaDependencyCondition, EvaluationResult> evaluate(Collection<JavaDependencyCondition> conditions,
+                                                                   Path root, Set<String> scope, int maxIncidents,
+                                                                   BuildFileCache cache) {
+        List<CompiledCondition> compiled = new ArrayList<>();
+        for (JavaDependencyCondition condition : new LinkedHashSet<>(conditions)) {
+            compiled.add(CompiledCondition.compile(condition));
+        }
+        if (compiled.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, BuildFile> files = cache.buildFiles(root);
+        List<ResolvedDependency> dependencies = resolve(files.values()).stream()
+            .filter(dependency -> scope == null || scope.contains(dependency.relativePath()))
+            .toList();
+        int scanned = (int) files.values().stream()
+            .filter(file -> file.kind() != BuildFile.Kind.GRADLE_PROPERTIES)
+            .filter(file -> scope == null || scope.contains(file.relativePath()))
+            .count();
+
+        Map<JavaDependencyCondition, EvaluationResult> results = new HashMap<>();
+        for (CompiledCondition condition : compiled) {
+            IncidentCollector incidents = new IncidentCollector(maxIncidents);
+            for (ResolvedDependency dependency : dependencies) {
+                if (condition.matches(dependency)) {
+                    incidents.add(new Incident(dependency.relativePath(), dependency.line(), dependency.snippet()));
+                }
+            }
+            results.put(condition.condition(),
+                new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), scanned));
+        }
+        return results;
+    }
+
+    /**
+     * @return The dependencies declared in the build files, interpolated and with managed versions filled in
+     */
+    static List<ResolvedDependency> resolve(Collection<BuildFile> files) {
+        List<ResolvedDependency> dependencies = new ArrayList<>();
+        MavenModel maven = new MavenModel(files);
+        List<BuildFile> gradleProperties = files.stream()
+            .filter(file -> file.kind() == BuildFile.Kind.GRADLE_PROPERTIES)
+            .sorted(Comparator.comparingInt(file -> file.path().getNameCount()))
+            .toList();
+        for (BuildFile file : files) {
+            switch (file.kind()) {
+                case MAVEN -> maven.resolve(file, dependencies);
+                case GRADLE -> resolveGradle(file, gradleProperties, dependencies);
+                case GRADLE_PROPERTIES -> {
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    private static void resolveGradle(BuildFile script, List<BuildFile> gradleProperties, List<ResolvedDependency> out) {
+        Map<String, String> properties = new HashMap<>();
+        Path directory = script.path().getParent();
+        for (BuildFile file : gradleProperties) {
+            // Outermost first, so that the closest file wins
+            if (directory.startsWith(file.path().getParent())) {
+                properties.putAll(file.properties());
+            }
+        }
+        properties.putAll(script.properties());
+        for (BuildFile.Dependency dependency : script.dependencies()) {
+            out.add(new ResolvedDependency(script.relativePath(),
+                interpolate(dependency.groupId(), properties, GRADLE_REFERENCE),
+                interpolate(dependency.artifactId(), properties, GRADLE_REFERENCE),
+                known(interpolate(dependency.version(), properties, GRADLE_REFERENCE)), dependency.line()));
+        }
+    }
+
+    /**
+     * Replace property references whose property is known, repeatedly, so that properties may refer to
+     * other properties. Unknown references are left as they are.
+     */
+    static String interpolate(String value, Map<String, String> properties, Pattern reference) {
+        if (value == null || value.indexOf('$') < 0) {
+            return value;
+        }
+        String current = value;
+        for (int i = 0; i < MAX_INTERPOLATIONS && current.indexOf('$') >= 0; i++) {
+            Matcher matcher = reference.matcher(current);
+            StringBuilder replaced = new StringBuilder();
+            boolean changed = false;
+            while (matcher.find()) {
+                String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                String property = properties.get(name);
+                if (property == null && name.startsWith("project.")) {
+                    property = properties.get(name.substring("project.".length()));
+                }
+                changed |= property != null;
+                matcher.appendReplacement(replaced, Matcher.quoteReplacement(property != null ? property : matcher.group()));
+            }
+            matcher.appendTail(replaced);
+            if (!changed) {
+                break;
+            }
+            current = replaced.toString();
+        }
+        return current;
+    }
+
+    /**
+     * @return The version if it is a single, known version, else null
+     */
+    private static String known(String version) {
+        if (version == null || version.isBlank() || version.indexOf('$') >= 0 || version.indexOf('+') >= 0
+            || version.startsWith("[") || version.startsWith("(") || version.startsWith("latest.")) {
+            return null;
+        }
+        return version.trim();
+    }
+
+    /**
+     * The POMs of the tree, with parents and effective properties and dependency management resolved on demand.
+     */
+    private static final class MavenModel {
+
+        private final Map<Path, BuildFile> byPath = new HashMap<>();
+        private final Map<String, BuildFile> byCoordinates = new HashMap<>();
+        private final Map<BuildFile, Map<String, String>> properties = new IdentityHashMap<>();
+        private final Map<BuildFile, Map<String, String>> managed = new IdentityHashMap<>();
+
+        MavenModel(Collection<BuildFile> files) {
+            for (BuildFile file : files) {
+                if (file.kind() == BuildFile.Kind.MAVEN && file.artifactId() != null) {
+                    byPath.put(file.path(), file);
+                    byCoordinates.putIfAbsent(groupId(file) + ":" + file.artifactId(), file);
+                }
+            }
+        }
+
+        void resolve(BuildFile pom, List<ResolvedDependency> out) {
+            Map<String, String> properties = properties(pom);
+            Map<String, String> managed = managed(pom, Collections.newSetFromMap(new IdentityHashMap<>()));
+            for (BuildFile.Dependency dependency : pom.dependencies()) {
+                String groupId = interpolate(dependency.groupId(), properties, MAVEN_REFERENCE);
+                String artifactId = interpolate(dependency.artifactId(), properties, MAVEN_REFERENCE);
+                if (groupId == null) {
+                    continue;
+                }
+                String version = dependency.version() != null
+                    ? interpolate(dependency.version(), properties, MAVEN_REFERENCE)
+                    : managed.get(groupId + ":" + artifactId);
+                out.add(new ResolvedDependency(pom.relativePath(), groupId, artifactId, known(version), dependency.line()));
+            }
+        }
+
+        /**
+         * @return The POM followed by its ancestors found in the tree
+         */
+        private List<BuildFile> chain(BuildFile pom) {
+            List<BuildFile> chain = new ArrayList<>();
+            Set<BuildFile> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (BuildFile current = pom; current != null && seen.add(current) && chain.size() < MAX_PARENTS;
+                 current = parent(current)) {
+                chain.add(current);
+            }
+            return chain;
+        }
+
+        private BuildFile parent(BuildFile pom) {
+            BuildFile.Parent parent = pom.parent();
+            if (parent == null) {
+                return null;
+            }
+            // An explicitly empty relativePath means the parent is looked up by coordinates only
+            if (parent.relativePath() == null || !parent.relativePath().isBlank()) {
+                String relativePath = parent.relativePath() == null ? "../" + BuildFileParser.POM : parent.relativePath().trim();
+                Path candidate = pom.path().getParent().resolve(relativePath).normalize();
+                BuildFile found = byPath.getOrDefault(candidate, byPath.get(candidate.resolve(BuildFileParser.POM)));
+                if (found != null && parent.artifactId().equals(found.artifactId())) {
+                    return found;
+                }
+            }
+            return byCoordinates.get(parent.groupId() + ":" + parent.artifactId());
+        }
+
+        private Map<String, String> properties(BuildFile pom) {
+            Map<String, String> cached = properties.get(pom);
+            if (cached != null) {
+                return cached;
+            }
+            List<BuildFile> chain = chain(pom);
+            Map<String, String> effective = new HashMap<>();
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                effective.putAll(chain.get(i).properties());
+            }
+            builtIn(effective, "groupId", groupId(pom));
+            builtIn(effective, "artifactId", pom.artifactId());
+            builtIn(effective, "version", pom.version() != null ? pom.version()
+                : pom.parent() != null ? pom.parent().version() : null);
+            if (pom.parent() != null) {
+                builtIn(effective, "parent.groupId", pom.parent().groupId());
+                builtIn(effective, "parent.artifactId", pom.parent().artifactId());
+                builtIn(effective, "parent.version", pom.parent().version());
+            }
+            properties.put(pom, effective);
+            return effective;
+        }
+
+        private static void builtIn(Map<String, String> properties, String name, String value) {
+            if (value != null) {
+                properties.put("project." + name, value);
+                properties.put("pom." + name, value);
+            }
+        }
+
+        /**
+         * @return Managed versions by {@code groupId:artifactId}: the entries of the chain, child first,
+         * then those of imported BOMs in the tree that the chain does not manage itself
+         */
+        private Map<String, String> managed(BuildFile pom, Set<BuildFile> importing) {
+            Map<String, String> cached = managed.get(pom);
+            if (cached != null) {
+                return cached;
+            }
+            Map<String, String> properties = properties(pom);
+            Map<String, String> versions = new HashMap<>();
+            List<BuildFile> imports = new ArrayList<>();
+            List<BuildFile> chain = chain(pom);
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                for (BuildFile.Dependency entry : chain.get(i).managed()) {
+                    String key = interpolate(entry.groupId(), properties, MAVEN_REFERENCE) + ":"
+                        + interpolate(entry.artifactId(), properties, MAVEN_REFERENCE);
+                    if ("import".equals(entry.scope())) {
+                        BuildFile bom = byCoordinates.get(key);
+                        if (bom != null) {
+                            imports.add(bom);
+                        }
+                    } else {
+                        versions.put(key, interpolate(entry.version(), properties, MAVEN_REFERENCE));
+                    }
+                }
+            }
+            importing.add(pom);
+            for (BuildFile bom : imports) {
+                if (!importing.contains(bom)) {
+                    managed(bom, importing).forEach(versions::putIfAbsent);
+                }
+            }
+            importing.remove(pom);
+            managed.put(pom, versions);
+            return versions;
+        }
+
+        private static String groupId(BuildFile pom) {
+            return pom.groupId() != null ? pom.groupId() : pom.parent() != null ? pom.parent().groupId() : null;
+        }
+    }
+
+    private record CompiledCondition(JavaDependencyCondition condition, String name, Pattern nameRegex,
+                                     MavenVersion lowerbound, MavenVersion upperbound) {
+
+        static CompiledCondition compile(JavaDependencyCondition condition) {
+            boolean hasName = condition.name() != null && !condition.name().isBlank();
+            boolean hasRegex = condition.nameRegex() != null && !condition.nameRegex().isBlank();
+            if (!hasName && !hasRegex) {
+                throw new IllegalArgumentException("java.dependency condition has neither name nor name_regex");
+            }
+            Pattern regex = null;
+            if (hasRegex) {
+                try {
+                    regex = Pattern.compile(condition.nameRegex());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid name_regex: " + e.getDescription() + " in " + condition.nameRegex());
+                }
+            }
+            return new CompiledCondition(condition, hasName ? condition.name().trim() : null, regex,
+                bound(condition.lowerbound()), bound(condition.upperbound()));
+        }
+
+        private static MavenVersion bound(String version) {
+            return version == null || version.isBlank() ? null : MavenVersion.parse(version);
+        }
+
+        boolean matches(ResolvedDependency dependency) {
+            String dotted = dependency.groupId() + "." + dependency.artifactId();
+            String coordinates = dependency.groupId() + ":" + dependency.artifactId();
+            if (name != null && !name.equals(dotted) && !name.equals(coordinates)) {
+                return false;
+            }
+            if (nameRegex != null && !nameRegex.matcher(dotted).find() && !nameRegex.matcher(coordinates).find()) {
+                return false;
+            }
+            if (lowerbound == null && upperbound == null) {
+                return true;
+            }
+            if (dependency.version() == null) {
+                return false;
+            }
+            MavenVersion version = MavenVersion.parse(dependency.version());
+            return (lowerbound == null || version.compareTo(lowerbound) >= 0)
+                && (upperbound == null || version.compareTo(upperbound) <= 0);
+        }
+    }
+}
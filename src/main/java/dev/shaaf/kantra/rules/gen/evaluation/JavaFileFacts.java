@@ -0,0 +1,47 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the structural {@code java.referenced} locations need from one parsed source file. Type names
+ * are kept as written, without type arguments, and resolved only when matching, because resolution
+ * depends on the other files of the package; the facts themselves depend on the file content alone
+ * and can be cached by it.
+ *
+ * @param packageName     Declared package, empty for the default package
+ * @param imports         Single-type imports
+ * @param onDemandImports Packages and types imported with {@code .*}, without the {@code .*}
+ * @param declaredTypes   Types declared in the file, nested ones as {@code Outer.Inner}
+ * @param references      References in source order
+ */
+record JavaFileFacts(String packageName, List<String> imports, List<String> onDemandImports,
+                     List<String> declaredTypes, List<Reference> references) {
+
+    /**
+     * An annotation as written.
+     *
+     * @param typeName Annotation type as written
+     * @param elements Element values by name; single values are named {@code value}. String literals
+     *                 are unquoted, other values kept as source text.
+     */
+    record AnnotationUse(String typeName, Map<String, String> elements) {}
+
+    /**
+     * A reference to a type, or to a member of it.
+     *
+     * @param location    Kind of reference
+     * @param typeName    Referenced type as written, or already qualified for calls resolved through
+     *                    static imports or the enclosing type
+     * @param member      Method name for {@link JavaLocation#METHOD_CALL}, null otherwise
+     * @param annotation  The annotation itself for {@link JavaLocation#ANNOTATION}, null otherwise
+     * @param annotations Annotations of the enclosing declaration: the field, the method (also for calls
+     *                    in its body) or the class
+     * @param line        1-based line of the reference
+     * @param snippet     The source line, trimmed and shortened
+     */
+    record Reference(JavaLocation location, String typeName, String member, AnnotationUse annotation,
+                     List<AnnotationUse> annotations, int line, String snippet) {}
+}
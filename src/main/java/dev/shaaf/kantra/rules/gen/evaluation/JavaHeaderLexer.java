@@ -0,0 +1,278 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the package and import declarations at the top of a Java source file, stopping at the first
+ * token that belongs to neither, normally the modifiers or keyword of the first type declaration.
+ * <p>
+ * The lexer knows just enough Java for a file header: whitespace, line and block comments, annotations
+ * (of {@code package-info.java}, with their arguments skipped) and qualified names. It runs over the raw
+ * bytes, so only the header of a memory-mapped file is ever paged in; bytes outside ASCII are taken as
+ * identifier characters and names are decoded as UTF-8.
+ * </p>
+ * <p>
+ * The content may be a prefix of the file: {@link #scan(ByteBuffer)} reports whether the header ended
+ * inside it, so callers can read a little and extend the prefix only for unusually long headers.
+ * </p>
+ */
+final class JavaHeaderLexer {
+
+    /**
+     * A package or import declaration.
+     *
+     * @param importDeclaration true for an import, false for the package declaration
+     * @param isStatic          true for {@code import static}
+     * @param name              Qualified name, ending in {@code .*} for on-demand imports
+     * @param line              1-based line of the {@code package} or {@code import} keyword
+     */
+    record Declaration(boolean importDeclaration, boolean isStatic, String name, int line) {
+
+        /**
+         * @return The package the declaration refers to. For imports, that is the leading segments
+         *         up to the first one starting in upper case, following Java naming conventions.
+         */
+        String packageName() {
+            if (!importDeclaration) {
+                return name;
+            }
+            int end = 0;
+            int start = 0;
+            while (start < name.length()) {
+                int dot = name.indexOf('.', start);
+                int segmentEnd = dot < 0 ? name.length() : dot;
+                char first = name.charAt(start);
+                if (Character.isUpperCase(first) || first == '*') {
+                    break;
+                }
+                end = segmentEnd;
+                start = segmentEnd + 1;
+            }
+            return name.substring(0, end);
+        }
+
+        @Override
+        public String toString() {
+            return importDeclaration ? "import " + (isStatic ? "static " : "") + name + ";" : "package " + name + ";";
+        }
+    }
+
+    /**
+     * @param declarations The declarations found, in source order
+     * @param complete     true if the header ended before the end of the content, so reading more
+     *                     of the file cannot add declarations
+     */
+    record Header(List<Declaration> declarations, boolean complete) {}
+
+    private final ByteBuffer content;
+    private final int limit;
+    private int pos;
+    private int line = 1;
+
+    private JavaHeaderLexer(ByteBuffer content) {
+        this.content = content;
+        this.limit = content.limit();
+    }
+
+    /**
+     * @return The declarations of the header, in source order
+     */
+    static List<Declaration> read(ByteBuffer content) {
+        return scan(content).declarations();
+    }
+
+    /**
+     * @return The declarations of the header, and whether the header ended inside the content
+     */
+    static Header scan(ByteBuffer content) {
+        JavaHeaderLexer lexer = new JavaHeaderLexer(content);
+        List<Declaration> declarations = lexer.header();
+        // Every stop short of the limit is at a token that ends the header
+        return new Header(declarations, lexer.pos < lexer.limit);
+    }
+
+    private List<Declaration> header() {
+        List<Declaration> declarations = new ArrayList<>();
+        while (true) {
+            skipTrivia();
+            if (pos >= limit) {
+                return declarations;
+            }
+            int b = content.get(pos);
+            if (b == ';') {
+                pos++;
+            } else if (b == '@') {
+                pos++;
+                if (!skipAnnotation()) {
+                    return declarations;
+                }
+            } else if (isIdentifierStart(b)) {
+                int keywordLine = line;
+                String keyword = identifier();
+                if ("package".equals(keyword) || "import".equals(keyword)) {
+                    Declaration declaration = declaration("import".equals(keyword), keywordLine);
+                    if (declaration == null) {
+                        return declarations;
+                    }
+                    declarations.add(declaration);
+                } else {
+                    // First type declaration, or a module declaration
+                    return declarations;
+                }
+            } else {
+                return declarations;
+            }
+        }
+    }
+
+    private Declaration declaration(boolean importDeclaration, int keywordLine) {
+        boolean isStatic = false;
+        StringBuilder name = new StringBuilder();
+        skipTrivia();
+        if (importDeclaration && pos < limit && isIdentifierStart(content.get(pos))) {
+            int mark = pos;
+            int markLine = line;
+            if ("static".equals(identifier())) {
+                isStatic = true;
+            } else {
+                pos = mark;
+                line = markLine;
+            }
+        }
+        while (true) {
+            skipTrivia();
+            if (pos >= limit) {
+                return null;
+            }
+            int b = content.get(pos);
+            if (isIdentifierStart(b)) {
+                name.append(identifier());
+            } else if (b == '*' && importDeclaration) {
+                name.append('*');
+                pos++;
+            } else {
+                return null;
+            }
+            skipTrivia();
+            if (pos >= limit) {
+                return null;
+            }
+            b = content.get(pos++);
+            if (b == ';') {
+                return new Declaration(importDeclaration, isStatic, name.toString(), keywordLine);
+            }
+            if (b != '.' || name.charAt(name.length() - 1) == '*') {
+                return null;
+            }
+            name.append('.');
+        }
+    }
+
+    /**
+     * Skip the rest of an annotation after its {@code @}: a qualified name and an optional argument list.
+     *
+     * @return false at {@code @interface} or malformed input, where the header ends
+     */
+    private boolean skipAnnotation() {
+        while (true) {
+            skipTrivia();
+            if (pos >= limit || !isIdentifierStart(content.get(pos)) || "interface".equals(identifier())) {
+                return false;
+            }
+            skipTrivia();
+            if (pos >= limit || content.get(pos) != '.') {
+                break;
+            }
+            pos++;
+        }
+        if (pos < limit && content.get(pos) == '(') {
+            int depth = 0;
+            while (pos < limit) {
+                int b = content.get(pos);
+                if (b == '"' || b == '\'') {
+                    skipLiteral(b);
+                    continue;
+                }
+                if (b == '/' && pos + 1 < limit && (content.get(pos + 1) == '/' || content.get(pos + 1) == '*')) {
+                    skipTrivia();
+                    continue;
+                }
+                pos++;
+                if (b == '\n') {
+                    line++;
+                } else if (b == '(') {
+                    depth++;
+                } else if (b == ')' && --depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void skipLiteral(int quote) {
+        pos++;
+        while (pos < limit) {
+            int b = content.get(pos++);
+            if (b == '\\') {
+                pos++;
+            } else if (b == quote) {
+                return;
+            } else if (b == '\n') {
+                line++;
+            }
+        }
+    }
+
+    private void skipTrivia() {
+        while (pos < limit) {
+            int b = content.get(pos);
+            if (b == '\n') {
+                line++;
+                pos++;
+            } else if (b == ' ' || b == '\t' || b == '\r' || b == '\f') {
+                pos++;
+            } else if (b == '/' && pos + 1 < limit && content.get(pos + 1) == '/') {
+                while (pos < limit && content.get(pos) != '\n') {
+                    pos++;
+                }
+            } else if (b == '/' && pos + 1 < limit && content.get(pos + 1) == '*') {
+                pos += 2;
+                while (pos < limit && !(content.get(pos) == '*' && pos + 1 < limit && content.get(pos + 1) == '/')) {
+                    if (content.get(pos) == '\n') {
+                        line++;
+                    }
+                    pos++;
+                }
+                pos = Math.min(limit, pos + 2);
+            } else if (b == (byte) 0xEF && pos == 0 && limit >= 3) {
+                // UTF-8 byte order mark
+                pos += 3;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private String identifier() {
+        int start = pos;
+        while (pos < limit && isIdentifierPart(content.get(pos))) {
+            pos++;
+        }
+        byte[] bytes = new byte[pos - start];
+        content.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isIdentifierStart(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == '$' || b < 0;
+    }
+
+    private static boolean isIdentifierPart(int b) {
+        return isIdentifierStart(b) || (b >= '0' && b <= '9');
+    }
+}
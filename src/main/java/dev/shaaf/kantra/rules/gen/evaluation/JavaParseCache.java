@@ -0,0 +1,125 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Parsed {@link JavaFileFacts} keyed by a SHA-256 of the file content, so a file is parsed once however
+ * many rules are evaluated and however often, until it changes. Identical files, such as copies in
+ * several modules, share one entry.
+ * <p>
+ * Hashing a file costs a small fraction of parsing it. Once {@value #MAX_ENTRIES} entries are reached
+ * the cache starts over, which bounds it for servers that test against many source trees.
+ * </p>
+ */
+final class JavaParseCache {
+
+    static final int MAX_ENTRIES = 200_000;
+    static final int BATCH_SIZE = 64;
+
+    private final ConcurrentHashMap<ContentKey, JavaFileFacts> entries = new ConcurrentHashMap<>();
+    private final AtomicLong parses = new AtomicLong();
+
+    private record ContentKey(long high, long low, int length) {}
+
+    /**
+     * A content not in the cache, with every file that has it.
+     */
+    private record Miss(Path file, List<String> relativePaths) {
+
+        Miss add(String relativePath) {
+            relativePaths.add(relativePath);
+            return this;
+        }
+    }
+
+    /**
+     * Collect the facts of the {@code .java} files under a root. Files are looked up while the tree is
+     * walked; the ones not in the cache are then parsed in parallel, {@value #BATCH_SIZE} files per
+     * compiler task.
+     *
+     * @return Facts by path relative to the root, with forward slashes
+     */
+    Map<String, JavaFileFacts> facts(Path root) {
+        Map<String, JavaFileFacts> files = new ConcurrentHashMap<>();
+        Map<ContentKey, Miss> misses = new ConcurrentHashMap<>();
+        ParallelFileWalker.walk(root, (relative, relativePath) -> relativePath.endsWith(".java"),
+            (file, relative, relativePath, size) -> {
+                // Only the path is kept for a miss; the content is read again when its batch is parsed
+                ContentKey key = key(Files.readAllBytes(file));
+                JavaFileFacts facts = entries.get(key);
+                if (facts != null) {
+                    files.put(relativePath, facts);
+                } else {
+                    misses.compute(key, (k, miss) -> miss == null
+                        ? new Miss(file, new ArrayList<>(List.of(relativePath))) : miss.add(relativePath));
+                }
+            },
+            () -> false);
+
+        List<Miss> pending = new ArrayList<>(misses.values());
+        IntStream.range(0, (pending.size() + BATCH_SIZE - 1) / BATCH_SIZE).parallel().forEach(batch ->
+            parse(pending.subList(batch * BATCH_SIZE, Math.min(pending.size(), (batch + 1) * BATCH_SIZE)), files));
+        return files;
+    }
+
+    private void parse(List<Miss> batch, Map<String, JavaFileFacts> files) {
+        List<Miss> read = new ArrayList<>(batch.size());
+        List<ContentKey> keys = new ArrayList<>(batch.size());
+        List<JavaSourceParser.Source> sources = new ArrayList<>(batch.size());
+        for (Miss miss : batch) {
+            try {
+                byte[] content = Files.readAllBytes(miss.file());
+                read.add(miss);
+                keys.add(key(content));
+                sources.add(new JavaSourceParser.Source(miss.file().getFileName().toString(),
+                    new String(content, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                // Unreadable since it was looked up; skipped like any unreadable file
+            }
+        }
+        List<JavaFileFacts> parsed = JavaSourceParser.parse(sources);
+        parses.addAndGet(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+            entries.put(keys.get(i), parsed.get(i));
+            for (String relativePath : read.get(i).relativePaths()) {
+                files.put(relativePath, parsed.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return Number of files parsed so far, as opposed to served from the cache
+     */
+    long parses() {
+        return parses.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static ContentKey key(byte[] content) {
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(content));
+            return new ContentKey(digest.getLong(), digest.getLong(), content.length);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Evaluates {@code java.referenced} conditions with location {@code IMPORT} or {@code PACKAGE} from the
+ * headers of the {@code .java} files, read by {@link JavaHeaderLexer}, without a language server.
+ * <p>
+ * {@code IMPORT} matches the pattern against the name of each import, {@code .*} included for on-demand
+ * imports. {@code PACKAGE} matches it against the package declaration and the package of each import.
+ * Other locations need type information and are rejected. So are conditions without a location (or
+ * with {@code DEFAULT}), which the analyzer matches at every location.
+ * </p>
+ * <p>
+ * Only a prefix of each file is read, {@value #HEADER_PREFIX} bytes to start with, doubled while the
+ * header runs past its end.
+ * </p>
+ */
+final class JavaReferenceEvaluator {
+
+    static final int HEADER_PREFIX = 4 * 1024;
+
+    private JavaReferenceEvaluator() {
+    }
+
+    static EvaluationResult evaluate(JavaReferencedCondition condition, Path root, Set<String> scope, int maxIncidents) {
+        JavaLocation location = condition.location();
+        if (location == null || location == JavaLocation.DEFAULT) {
+            throw new UnsupportedOperationException("TEST_RULE cannot evaluate java.referenced conditions without a location: "
+                + "the analyzer matches them at every location, most of which need type information");
+        }
+        if (location != JavaLocation.IMPORT && location != JavaLocation.PACKAGE) {
+            throw new UnsupportedOperationException(
+                "TEST_RULE can only evaluate java.referenced conditions with location IMPORT or PACKAGE, not " + location);
+        }
+        if (condition.pattern() == null || condition.pattern().isBlank()) {
+            throw new IllegalArgumentException("java.referenced condition has no pattern");
+        }
+        Pattern pattern = compilePattern(condition.pattern());
+        ParallelFileWalker.FileFilter selected = FilePattern.anyOf(condition.filepaths(), ".java");
+        boolean imports = location == JavaLocation.IMPORT;
+
+        IncidentCollector incidents = new IncidentCollector(maxIncidents);
+        int scanned = ParallelFileWalker.walk(root, scope,
+            (relative, relativePath) -> relativePath.endsWith(".java") && selected.accept(relative, relativePath),
+            (file, relative, relativePath, size) -> {
+                if (size == 0 || size > Integer.MAX_VALUE || !incidents.accepts(relativePath)) {
+                    return;
+                }
+                for (JavaHeaderLexer.Declaration declaration : readHeader(file, size)) {
+                    if (imports && !declaration.importDeclaration()) {
+                        continue;
+                    }
+                    String name = imports ? declaration.name() : declaration.packageName();
+                    if (!name.isEmpty() && pattern.matcher(name).matches()
+                        && !incidents.add(new Incident(relativePath, declaration.line(), declaration.toString()))) {
+                        return;
+                    }
+                }
+            },
+            () -> false);
+        return new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), scanned);
+    }
+
+    /**
+     * Lex the header of a file from a prefix, extending the prefix while the header is incomplete.
+     */
+    static List<JavaHeaderLexer.Declaration> readHeader(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(size, HEADER_PREFIX));
+            while (true) {
+                while (prefix.hasRemaining() && channel.read(prefix) >= 0) {
+                    // Read until full or end of file
+                }
+                JavaHeaderLexer.Header header = JavaHeaderLexer.scan(prefix.duplicate().flip());
+                if (header.complete() || prefix.hasRemaining() || prefix.capacity() >= size) {
+                    return header.declarations();
+                }
+                ByteBuffer longer = ByteBuffer.allocate((int) Math.min(size, 2L * prefix.capacity()));
+                prefix = longer.put(prefix.flip());
+            }
+        }
+    }
+
+    /**
+     * Compile a Kantra reference pattern: {@code *} matches any characters, dots included, and groups
+     * such as {@code (ejb|jms)} are alternatives; everything else is literal.
+     *
+     * @throws IllegalArgumentException if the groups are unbalanced
+     */
+    static Pattern compilePattern(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.trim().toCharArray()) {
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '(', ')', '|' -> regex.append(c);
+                default -> {
+                    if (Character.isLetterOrDigit(c) || c == '_') {
+                        regex.append(c);
+                    } else {
+                        regex.append('\\').append(c);
+                    }
+                }
+            }
+        }
+        try {
+            return Pattern.compile(regex.toString());
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid java.referenced pattern: " + pattern);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import com.sun.source.tree.AnnotatedTypeTree;
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.ArrayTypeTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.PrimitiveTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+
+import javax.lang.model.type.TypeKind;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses Java sources with the JDK's own parser ({@code jdk.compiler}) into {@link JavaFileFacts}.
+ * <p>
+ * Only the syntax tree is built; nothing is attributed, so no classpath is needed and a file parses
+ * in isolation. Names of variables, fields and parameters are tracked per scope, so a call on a
+ * variable is attributed to its declared type; calls on other expressions, such as the result of
+ * another call, have no known type and are not recorded. Unqualified calls are attributed to a
+ * statically imported type or else to the enclosing type.
+ * </p>
+ */
+final class JavaSourceParser {
+
+    private static final int MAX_SNIPPET_LENGTH = 200;
+    private static final List<String> OPTIONS = List.of("-proc:none");
+
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+    private static final ThreadLocal<StandardJavaFileManager> FILE_MANAGER =
+        ThreadLocal.withInitial(() -> COMPILER.getStandardFileManager(null, null, null));
+
+    private JavaSourceParser() {
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the runtime has no Java compiler, as in a bare JRE
+     */
+    static void requireCompiler() {
+        if (COMPILER == null) {
+            throw new UnsupportedOperationException(
+                "Evaluating this java.referenced location needs the jdk.compiler module, which this runtime lacks");
+        }
+    }
+
+    /**
+     * A source to parse: a file name for diagnostics and the file content.
+     */
+    record Source(String fileName, String content) {}
+
+    /**
+     * Parse sources with one compiler task. Setting up a task costs about as much as parsing a file, so
+     * callers pass batches of some dozens of files rather than one at a time.
+     *
+     * @return Facts per source, in the order of the sources
+     */
+    static List<JavaFileFacts> parse(List<Source> sources) {
+        requireCompiler();
+        List<JavaFileObject> objects = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            String content = sources.get(i).content();
+            // Indexed, so that sources with the same file name stay distinct within the task
+            URI uri = URI.create("string:///" + i + "/" + URLEncoder.encode(sources.get(i).fileName(), StandardCharsets.UTF_8));
+            objects.add(new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return content;
+                }
+            });
+        }
+        // Syntax errors are reported to the ignoring listener and leave partial trees, which are still scanned
+        JavacTask task = (JavacTask) COMPILER.getTask(null, FILE_MANAGER.get(), diagnostic -> {
+        }, OPTIONS, null, objects);
+        try {
+            SourcePositions positions = Trees.instance(task).getSourcePositions();
+            List<JavaFileFacts> facts = new ArrayList<>(sources.size());
+            int i = 0;
+            for (CompilationUnitTree unit : task.parse()) {
+                facts.add(new FactsScanner(unit, positions, sources.get(i++).content()).facts());
+            }
+            return facts;
+        } catch (IOException e) {
+            // Cannot happen for in-memory sources
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The type name a type tree denotes, without type arguments, array dimensions or annotations
+     */
+    static String typeName(Tree type) {
+        return switch (type) {
+            case null -> null;
+            case ParameterizedTypeTree parameterized -> typeName(parameterized.getType());
+            case ArrayTypeTree array -> typeName(array.getType());
+            case AnnotatedTypeTree annotated -> typeName(annotated.getUnderlyingType());
+            case IdentifierTree identifier -> identifier.getName().toString();
+            case MemberSelectTree select -> {
+                String qualifier = typeName(select.getExpression());
+                yield qualifier == null ? null : qualifier + "." + select.getIdentifier();
+            }
+            case PrimitiveTypeTree primitive -> primitive.getPrimitiveTypeKind() == TypeKind.VOID
+                ? null : primitive.getPrimitiveTypeKind().name().toLowerCase(Locale.ROOT);
+            default -> null;
+        };
+    }
+
+    private static final class FactsScanner extends TreeScanner<Void, Void> {
+
+        private final CompilationUnitTree unit;
+        private final SourcePositions positions;
+        private final LineMap lines;
+        private final String content;
+
+        private final String packageName;
+        private final List<String> imports = new ArrayList<>();
+        private final List<String> onDemandImports = new ArrayList<>();
+        private final Map<String, String> staticImports = new HashMap<>();
+        private final List<String> declaredTypes = new ArrayList<>();
+        private final List<JavaFileFacts.Reference> references = new ArrayList<>();
+
+        private final Deque<String> enclosingTypes = new ArrayDeque<>();
+        private final Deque<List<JavaFileFacts.AnnotationUse>> declarationAnnotations = new ArrayDeque<>();
+        private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+
+        FactsScanner(CompilationUnitTree unit, SourcePositions positions, String content) {
+            this.unit = unit;
+            this.positions = positions;
+            this.lines = unit.getLineMap();
+            this.content = content;
+            this.packageName = unit.getPackageName() == null ? "" : unit.getPackageName().toString();
+            for (ImportTree importTree : unit.getImports()) {
+                String name = importTree.getQualifiedIdentifier().toString();
+                boolean onDemand = name.endsWith(".*");
+                String imported = onDemand ? name.substring(0, name.length() - 2) : name;
+                if (importTree.isStatic()) {
+                    if (!onDemand) {
+                        staticImports.put(imported.substring(imported.lastIndexOf('.') + 1),
+                            imported.substring(0, imported.lastIndexOf('.')));
+                    }
+                } else if (onDemand) {
+                    onDemandImports.add(imported);
+                } else {
+                    imports.add(imported);
+                }
+            }
+        }
+
+        JavaFileFacts facts() {
+            for (Tree type : unit.getTypeDecls()) {
+                scan(type, null);
+            }
+            return new JavaFileFacts(packageName, List.copyOf(imports), List.copyOf(onDemandImports),
+                List.copyOf(declaredTypes), List.copyOf(references));
+        }
+
+        @Override
+        public Void visitClass(ClassTree node, Void unused) {
+            String simpleName = node.getSimpleName().toString();
+            boolean named = !simpleName.isEmpty();
+            List<JavaFileFacts.AnnotationUse> annotations = annotations(node.getModifiers());
+            if (named) {
+                String name = enclosingTypes.isEmpty() ? simpleName : enclosingTypes.peek() + "." + simpleName;
+                declaredTypes.add(name);
+                enclosingTypes.push(name);
+            }
+            boolean isInterface = node.getKind() == Tree.Kind.INTERFACE || node.getKind() == Tree.Kind.ANNOTATION_TYPE;
+            if (node.getExtendsClause() != null) {
+                add(JavaLocation.INHERITANCE, typeName(node.getExtendsClause()), null, null, annotations, node.getExtendsClause());
+            }
+            for (Tree implemented : node.getImplementsClause()) {
+                // The extends list of an interface is its implements clause in the tree
+                add(isInterface ? JavaLocation.INHERITANCE : JavaLocation.IMPLEMENTS_TYPE,
+                    typeName(implemented), null, null, annotations, implemented);
+            }
+
+            Map<String, String> fields = new HashMap<>();
+            for (Tree member : node.getMembers()) {
+                boolean enumConstant = node.getKind() == Tree.Kind.ENUM && member instanceof VariableTree constant
+                    && constant.getInitializer() instanceof NewClassTree;
+                if (member instanceof VariableTree field && field.getType() != null && !enumConstant) {
+                    fields.put(field.getName().toString(), typeName(field.getType()));
+                    add(JavaLocation.FIELD, typeName(field.getType()), null, null,
+                        annotations(field.getModifiers()), field.getType());
+                }
+            }
+            scopes.push(fields);
+            declarationAnnotations.push(annotations);
+            scan(node.getModifiers(), null);
+            scan(node.getMembers(), null);
+            declarationAnnotations.pop();
+            scopes.pop();
+            if (named) {
+                enclosingTypes.pop();
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitMethod(MethodTree node, Void unused) {
+            List<JavaFileFacts.AnnotationUse> annotations = annotations(node.getModifiers());
+            String returnType = typeName(node.getReturnType());
+            if (returnType != null) {
+                add(JavaLocation.RETURN_TYPE, returnType, null, null, annotations, node.getReturnType());
+            }
+            scopes.push(new HashMap<>());
+            declarationAnnotations.push(annotations);
+            super.visitMethod(node, unused);
+            declarationAnnotations.pop();
+            scopes.pop();
+            return null;
+        }
+
+        @Override
+        public Void visitBlock(BlockTree node, Void unused) {
+            scopes.push(new HashMap<>());
+            super.visitBlock(node, unused);
+            scopes.pop();
+            return null;
+        }
+
+        @Override
+        public Void visitLambdaExpression(LambdaExpressionTree node, Void unused) {
+            scopes.push(new HashMap<>());
+            super.visitLambdaExpression(node, unused);
+            scopes.pop();
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree node, Void unused) {
+            String type = typeName(node.getType());
+            if (type == null || "var".equals(type)) {
+                type = node.getInitializer() instanceof NewClassTree created ? typeName(created.getIdentifier()) : null;
+            }
+            if (type != null && !scopes.isEmpty()) {
+                scopes.peek().put(node.getName().toString(), type);
+            }
+            return super.visitVariable(node, unused);
+        }
+
+        @Override
+        public Void visitAnnotation(AnnotationTree node, Void unused) {
+            JavaFileFacts.AnnotationUse annotation = annotation(node);
+            add(JavaLocation.ANNOTATION, annotation.typeName(), null, annotation, List.of(), node);
+            return super.visitAnnotation(node, unused);
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree node, Void unused) {
+            add(JavaLocation.CONSTRUCTOR_CALL, typeName(node.getIdentifier()), null, null, currentAnnotations(), node);
+            return super.visitNewClass(node, unused);
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+            ExpressionTree select = node.getMethodSelect();
+            String type = null;
+            String method = null;
+            if (select instanceof IdentifierTree identifier) {
+                method = identifier.getName().toString();
+                type = staticImports.containsKey(method)
+                    ? staticImports.get(method)
+                    : enclosingTypes.isEmpty() ? null : qualify(enclosingTypes.peek());
+            } else if (select instanceof MemberSelectTree member) {
+                method = member.getIdentifier().toString();
+                type = qualifierType(member.getExpression());
+            }
+            if (type != null) {
+                add(JavaLocation.METHOD_CALL, type, method, null, currentAnnotations(), node);
+            }
+            return super.visitMethodInvocation(node, unused);
+        }
+
+        /**
+         * The type a call qualifier refers to: the declared type of a variable, the created type, or a type name.
+         */
+        private String qualifierType(ExpressionTree qualifier) {
+            return switch (qualifier) {
+                case IdentifierTree identifier -> {
+                    String name = identifier.getName().toString();
+                    if ("this".equals(name) || "super".equals(name)) {
+                        yield enclosingTypes.isEmpty() ? null : qualify(enclosingTypes.peek());
+                    }
+                    String variableType = variableType(name);
+                    yield variableType != null ? variableType : name;
+                }
+                case MemberSelectTree select -> {
+                    String name = typeName(select);
+                    // A field of a variable, such as order.items, has no known type
+                    yield name == null || variableType(name.substring(0, name.indexOf('.'))) != null ? null : name;
+                }
+                case NewClassTree created -> typeName(created.getIdentifier());
+                default -> null;
+            };
+        }
+
+        private String variableType(String name) {
+            for (Map<String, String> scope : scopes) {
+                String type = scope.get(name);
+                if (type != null) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        private String qualify(String declaredType) {
+            return packageName.isEmpty() ? declaredType : packageName + "." + declaredType;
+        }
+
+        private List<JavaFileFacts.AnnotationUse> currentAnnotations() {
+            return declarationAnnotations.isEmpty() ? List.of() : declarationAnnotations.peek();
+        }
+
+        private List<JavaFileFacts.AnnotationUse> annotations(ModifiersTree modifiers) {
+            if (modifiers == null || modifiers.getAnnotations().isEmpty()) {
+                return List.of();
+            }
+            List<JavaFileFacts.AnnotationUse> annotations = new ArrayList<>(modifiers.getAnnotations().size());
+            for (AnnotationTree annotation : modifiers.getAnnotations()) {
+                annotations.add(annotation(annotation));
+            }
+            return List.copyOf(annotations);
+        }
+
+        private JavaFileFacts.AnnotationUse annotation(AnnotationTree node) {
+            Map<String, String> elements = new LinkedHashMap<>();
+            for (ExpressionTree argument : node.getArguments()) {
+                if (argument instanceof AssignmentTree assignment) {
+                    elements.put(assignment.getVariable().toString(), value(assignment.getExpression()));
+                } else {
+                    elements.put("value", value(argument));
+                }
+            }
+            return new JavaFileFacts.AnnotationUse(typeName(node.getAnnotationType()), Map.copyOf(elements));
+        }
+
+        private String value(ExpressionTree expression) {
+            if (expression instanceof LiteralTree literal && literal.getValue() instanceof String string) {
+                return string;
+            }
+            long start = positions.getStartPosition(unit, expression);
+            long end = positions.getEndPosition(unit, expression);
+            return start >= 0 && end > start && end <= content.length()
+                ? content.substring((int) start, (int) end)
+                : expression.toString();
+        }
+
+        private void add(JavaLocation location, String typeName, String member, JavaFileFacts.AnnotationUse annotation,
+                         List<JavaFileFacts.AnnotationUse> annotations, Tree position) {
+            if (typeName == null) {
+                return;
+            }
+            long start = positions.getStartPosition(unit, position);
+            int line = start < 0 ? 0 : (int) lines.getLineNumber(start);
+            references.add(new JavaFileFacts.Reference(location, typeName, member, annotation, annotations, line, snippet(line)));
+        }
+
+        private String snippet(int line) {
+            if (line <= 0) {
+                return null;
+            }
+            int start = (int) lines.getStartPosition(line);
+            int end = content.indexOf('\n', start);
+            String text = content.substring(start, end < 0 ? content.length() : end).strip();
+            return text.length() > MAX_SNIPPET_LENGTH ? text.substring(0, MAX_SNIPPET_LENGTH) : text;
+        }
+    }
+}
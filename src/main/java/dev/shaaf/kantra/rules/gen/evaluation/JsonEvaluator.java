@@ -0,0 +1,170 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import dev.shaaf.kantra.rules.gen.model.BuiltinJsonCondition;
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates {@code builtin.json} conditions over the JSON files of a source tree, in parallel.
+ * <p>
+ * The xpath is compiled into an {@link XmlPath} and matched against the token stream of Jackson's
+ * {@link JsonParser}, reading JSON the way Kantra does: the top-level value is the document, object
+ * members are elements named by their key, array items are unnamed elements (matched by {@code *}),
+ * and the text of a scalar is its value. A container below which no step can match any more is
+ * skipped with {@link JsonParser#skipChildren()}, so it is never materialized or matched.
+ * </p>
+ * <p>
+ * Each match is reported at its line with its JSON pointer as snippet. Without {@code filepaths},
+ * all {@code .json} files are evaluated.
+ * </p>
+ */
+final class JsonEvaluator {
+
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+        .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+        .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+        .build();
+
+    private JsonEvaluator() {
+    }
+
+    static EvaluationResult evaluate(BuiltinJsonCondition condition, Path root, Set<String> scope, int maxIncidents) {
+        if (condition.xpath() == null || condition.xpath().isBlank()) {
+            throw new IllegalArgumentException("builtin.json condition has no xpath");
+        }
+        XmlPath path = XmlPath.parse(condition.xpath(), Map.of());
+        if (path == null) {
+            throw new UnsupportedOperationException("builtin.json xpath " + condition.xpath()
+                + " is outside the supported subset: / and // steps with name or * tests and text() predicates");
+        }
+
+        IncidentCollector incidents = new IncidentCollector(maxIncidents);
+        int scanned = ParallelFileWalker.walk(root, scope, FilePattern.anyOf(condition.filepaths(), ".json"),
+            (file, relative, relativePath, size) -> {
+                if (incidents.accepts(relativePath)) {
+                    stream(file, relativePath, path, incidents);
+                }
+            },
+            () -> false);
+        return new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), scanned);
+    }
+
+    /**
+     * Match a path against the tokens of one file, reporting each matching value at its line.
+     */
+    static void stream(Path file, String relativePath, XmlPath path, IncidentCollector incidents) throws IOException {
+        int last = path.size() - 1;
+        long descendants = path.descendantMask();
+
+        // Per open container: steps matched up to it, // steps open at or above it, its pointer segment
+        // and the index of its next item. Index 0 is the document.
+        long[] matched = new long[32];
+        long[] pending = new long[32];
+        String[] segments = new String[32];
+        int[] nextIndex = new int[32];
+
+        try (JsonParser parser = FACTORY.createParser(file.toFile())) {
+            JsonToken token = parser.nextToken();
+            if (token == null || !token.isStructStart()) {
+                // Empty, or a lone scalar without anything to select
+                return;
+            }
+            int depth = 0;
+            matched[0] = 1;
+            pending[0] = descendants & 1;
+
+            while ((token = parser.nextToken()) != null) {
+                if (token.isStructEnd()) {
+                    if (depth-- == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                String name = null;
+                String segment;
+                if (token == JsonToken.FIELD_NAME) {
+                    name = parser.currentName();
+                    segment = name;
+                    token = parser.nextToken();
+                } else {
+                    segment = Integer.toString(nextIndex[depth]++);
+                }
+
+                JsonElement element = new JsonElement(token.isScalarValue() ? parser.getText() : null);
+                long reached = 0;
+                for (int step = 0; step <= last; step++) {
+                    long bit = 1L << step;
+                    XmlPath.Step current = path.step(step);
+                    long candidates = current.descendant() ? pending[depth] : matched[depth];
+                    if ((candidates & bit) == 0 || !current.matchesName(null, name)
+                        || (current.predicate() != null && !current.predicate().test(element))) {
+                        continue;
+                    }
+                    if (step < last) {
+                        reached |= bit << 1;
+                    } else if (!incidents.add(new Incident(relativePath, parser.currentTokenLocation().getLineNr(),
+                        pointer(segments, depth, segment)))) {
+                        return;
+                    }
+                }
+
+                if (token.isStructStart()) {
+                    long open = pending[depth] | (reached & descendants);
+                    if (reached == 0 && open == 0) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (++depth == matched.length) {
+                        matched = Arrays.copyOf(matched, depth * 2);
+                        pending = Arrays.copyOf(pending, depth * 2);
+                        segments = Arrays.copyOf(segments, depth * 2);
+                        nextIndex = Arrays.copyOf(nextIndex, depth * 2);
+                    }
+                    matched[depth] = reached;
+                    pending[depth] = open;
+                    segments[depth] = segment;
+                    nextIndex[depth] = 0;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Matches found before the error stay reported
+            Log.debugf("Skipping rest of malformed JSON file %s: %s", file, e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * RFC 6901 pointer of a value from the segments of its containers and its own.
+     */
+    private static String pointer(String[] segments, int depth, String segment) {
+        StringBuilder pointer = new StringBuilder();
+        for (int i = 1; i <= depth; i++) {
+            appendSegment(pointer, segments[i]);
+        }
+        appendSegment(pointer, segment);
+        return pointer.toString();
+    }
+
+    private static void appendSegment(StringBuilder pointer, String segment) {
+        pointer.append('/').append(segment.replace("~", "~0").replace("/", "~1"));
+    }
+
+    /**
+     * A JSON value as path element: no attributes, and text only for scalars.
+     */
+    private record JsonElement(String text) implements XmlPath.Element {
+        @Override
+        public String attribute(String namespace, String localName) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A version ordered the way Maven orders versions, so that {@code java.dependency} bounds compare like
+ * they do in Kantra's Java provider.
+ * <p>
+ * A version is split into numbers and qualifiers at {@code .}, {@code -} and transitions between digits
+ * and letters; a {@code -} or a transition starts a nested list. Numbers compare numerically and come
+ * after qualifiers. Known qualifiers are ordered {@code alpha < beta < milestone < rc = cr < snapshot <
+ * "" = ga = final = release < sp}, and unknown ones come after those, alphabetically. Trailing zeros and
+ * release qualifiers are dropped, so {@code 1.0}, {@code 1} and {@code 1.0.0-final} are equal.
+ * </p>
+ */
+final class MavenVersion implements Comparable<MavenVersion> {
+
+    private static final List<String> QUALIFIERS = List.of("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final String RELEASE = String.valueOf(QUALIFIERS.indexOf(""));
+
+    private final String version;
+    private final ListItem items;
+
+    private MavenVersion(String version, ListItem items) {
+        this.version = version;
+        this.items = items;
+    }
+
+    static MavenVersion parse(String version) {
+        String text = version.trim().toLowerCase(Locale.ROOT);
+        ListItem root = new ListItem();
+        ListItem list = root;
+        Deque<ListItem> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        boolean digit = false;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == '-') {
+                list.add(i == start ? IntItem.ZERO : item(digit, text.substring(start, i), false));
+                start = i + 1;
+                if (c == '-') {
+                    list = nested(list, stack);
+                }
+            } else if (Character.isDigit(c)) {
+                if (!digit && i > start) {
+                    // A qualifier directly followed by a number, as in 1.0alpha1
+                    list.add(item(false, text.substring(start, i), true));
+                    start = i;
+                    list = nested(list, stack);
+                }
+                digit = true;
+            } else {
+                if (digit && i > start) {
+                    list.add(item(true, text.substring(start, i), false));
+                    start = i;
+                    list = nested(list, stack);
+                }
+                digit = false;
+            }
+        }
+        if (text.length() > start) {
+            list.add(item(digit, text.substring(start), false));
+        }
+        while (!stack.isEmpty()) {
+            stack.pop().normalize();
+        }
+        return new MavenVersion(version, root);
+    }
+
+    private static ListItem nested(ListItem list, Deque<ListItem> stack) {
+        ListItem nested = new ListItem();
+        list.add(nested);
+        stack.push(nested);
+        return nested;
+    }
+
+    private static Item item(boolean digit, String text, boolean followedByDigit) {
+        return digit ? new IntItem(new BigInteger(text)) : StringItem.of(text, followedByDigit);
+    }
+
+    @Override
+    public int compareTo(MavenVersion other) {
+        return items.compareTo(other.items);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MavenVersion version && compareTo(version) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return items.toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+
+    private interface Item {
+
+        /**
+         * Compare with another item, or with the absence of one when {@code other} is null.
+         */
+        int compareTo(Item other);
+
+        boolean isNull();
+    }
+
+    private record IntItem(BigInteger value) implements Item {
+
+        static final IntItem ZERO = new IntItem(BigInteger.ZERO);
+
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> value.signum() == 0 ? 0 : 1;
+                case IntItem number -> value.compareTo(number.value());
+                // 1.1 > 1-sp and 1.1 > 1-1
+                default -> 1;
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return value.signum() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
+    private record StringItem(String value) implements Item {
+
+        static StringItem of(String text, boolean followedByDigit) {
+            String value = text;
+            if (followedByDigit && text.length() == 1) {
+                value = switch (text) {
+                    case "a" -> "alpha";
+                    case "b" -> "beta";
+                    case "m" -> "milestone";
+                    default -> text;
+                };
+            }
+            return new StringItem(switch (value) {
+                case "ga", "final", "release" -> "";
+                case "cr" -> "rc";
+                default -> value;
+            });
+        }
+
+        /**
+         * @return A key that sorts known qualifiers in their order and unknown ones after them, alphabetically
+         */
+        private static String comparable(String qualifier) {
+            int index = QUALIFIERS.indexOf(qualifier);
+            return index >= 0 ? String.valueOf(index) : QUALIFIERS.size() + "-" + qualifier;
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> comparable(value).compareTo(RELEASE);
+                case StringItem string -> comparable(value).compareTo(comparable(string.value()));
+                // 1-rc < 1.1 and 1-rc < 1-1
+                default -> -1;
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return comparable(value).equals(RELEASE);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    private static final class ListItem extends ArrayList<Item> implements Item {
+
+        void normalize() {
+            for (int i = size() - 1; i >= 0; i--) {
+                Item last = get(i);
+                if (last.isNull()) {
+                    remove(i);
+                } else if (!(last instanceof ListItem)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> isEmpty() ? 0 : get(0).compareTo(null);
+                case IntItem number -> -1;
+                case StringItem string -> 1;
+                case ListItem list -> {
+                    for (int i = 0; i < Math.max(size(), list.size()); i++) {
+                        Item left = i < size() ? get(i) : null;
+                        Item right = i < list.size() ? list.get(i) : null;
+                        int result = left == null ? (right == null ? 0 : -right.compareTo(null)) : left.compareTo(right);
+                        if (result != 0) {
+                            yield result;
+                        }
+                    }
+                    yield 0;
+                }
+                default -> throw new IllegalStateException("Unknown version item " + other);
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Item item : this) {
+                if (!text.isEmpty()) {
+                    text.append(item instanceof ListItem ? '-' : '.');
+                }
+                text.append(item);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Walks a source tree with one fork/join task per directory, so listing directories and scanning
+ * files run on all cores. Symbolic links are not followed and version control directories are skipped.
+ * <p>
+ * A walk can also be confined to a known set of files, such as those matched by an earlier condition
+ * of a chain; the files are then visited in parallel without listing any directory.
+ * </p>
+ */
+final class ParallelFileWalker {
+
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of(".git", ".hg", ".svn");
+    private static final int FILES_PER_TASK = 16;
+
+    private ParallelFileWalker() {
+    }
+
+    /**
+     * Receives each regular file selected by the filter. Called concurrently from several threads.
+     */
+    @FunctionalInterface
+    interface FileVisitor {
+        void visit(Path file, Path relative, String relativePath, long size) throws IOException;
+    }
+
+    /**
+     * Like {@link FileVisitor}, with all the attributes read while listing the directory.
+     */
+    @FunctionalInterface
+    interface AttributesVisitor {
+        void visit(Path file, Path relative, String relativePath, BasicFileAttributes attributes) throws IOException;
+    }
+
+    /**
+     * Selects files by their path relative to the root, with {@code /} separators.
+     */
+    @FunctionalInterface
+    interface FileFilter {
+        boolean accept(Path relative, String relativePath);
+    }
+
+    /**
+     * @param root    Root of the source tree
+     * @param filter  Files to visit
+     * @param visitor Called for every accepted file; an IOException skips just that file
+     * @param stop    Checked between entries; the walk winds down once it returns true
+     * @return Number of files visited
+     */
+    static int walk(Path root, FileFilter filter, FileVisitor visitor, BooleanSupplier stop) {
+        return walkAttributes(root, filter,
+            (file, relative, relativePath, attributes) -> visitor.visit(file, relative, relativePath, attributes.size()),
+            stop);
+    }
+
+    /**
+     * Walk the whole tree like {@link #walk(Path, FileFilter, FileVisitor, BooleanSupplier)}, passing each
+     * file's attributes on so the visitor needs no further system call to learn, say, its modification time.
+     */
+    static int walkAttributes(Path root, FileFilter filter, AttributesVisitor visitor, BooleanSupplier stop) {
+        AtomicInteger visited = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new DirectoryTask(root, root, filter, visitor, stop, visited));
+        return visited.get();
+    }
+
+    /**
+     * @param root    Root of the source tree
+     * @param scope   Paths relative to the root, with {@code /} separators, of the only files to consider;
+     *                null for the whole tree
+     * @param filter  Files to visit
+     * @param visitor Called for every accepted file; an IOException skips just that file
+     * @param stop    Checked between entries; the walk winds down once it returns true
+     * @return Number of files visited
+     */
+    static int walk(Path root, Set<String> scope, FileFilter filter, FileVisitor visitor, BooleanSupplier stop) {
+        if (scope == null) {
+            return walk(root, filter, visitor, stop);
+        }
+        AtomicInteger visited = new AtomicInteger();
+        List<String> files = scope.stream().sorted().toList();
+        ForkJoinPool.commonPool().invoke(new FilesTask(root, files, 0, files.size(), filter, visitor, stop, visited));
+        return visited.get();
+    }
+
+    private record FileEntry(Path path, BasicFileAttributes attributes) {}
+
+    private static final class DirectoryTask extends RecursiveAction {
+
+        private final Path root;
+        private final Path dir;
+        private final FileFilter filter;
+        private final AttributesVisitor visitor;
+        private final BooleanSupplier stop;
+        private final AtomicInteger visited;
+
+        DirectoryTask(Path root, Path dir, FileFilter filter, AttributesVisitor visitor, BooleanSupplier stop,
+                      AtomicInteger visited) {
+            this.root = root;
+            this.dir = dir;
+            this.filter = filter;
+            this.visitor = visitor;
+            this.stop = stop;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            if (stop.getAsBoolean()) {
+                return;
+            }
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<FileEntry> files = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (!SKIPPED_DIRECTORIES.contains(entry.getFileName().toString())) {
+                            subdirectories.add(new DirectoryTask(root, entry, filter, visitor, stop, visited));
+                        }
+                    } else if (attributes.isRegularFile()) {
+                        files.add(new FileEntry(entry, attributes));
+                    }
+                }
+            } catch (IOException e) {
+                Log.debugf("Skipping unreadable directory %s: %s", dir, e.getMessage());
+            }
+
+            // Fork subdirectories first so idle workers pick them up while this one scans files
+            for (DirectoryTask subdirectory : subdirectories) {
+                subdirectory.fork();
+            }
+            for (FileEntry file : files) {
+                if (stop.getAsBoolean()) {
+                    break;
+                }
+                Path relative = root.relativize(file.path());
+                String relativePath = relative.toString().replace('\\', '/');
+                if (filter.accept(relative, relativePath)) {
+                    try {
+                        visitor.visit(file.path(), relative, relativePath, file.attributes());
+                        visited.incrementAndGet();
+                    } catch (IOException e) {
+                        Log.debugf("Skipping unreadable file %s: %s", file.path(), e.getMessage());
+                    }
+                }
+            }
+            for (DirectoryTask subdirectory : subdirectories) {
+                subdirectory.join();
+            }
+        }
+    }
+
+    private static final class FilesTask extends RecursiveAction {
+
+        private final Path root;
+        private final List<String> files;
+        private final int from;
+        private final int to;
+        private final FileFilter filter;
+        private final FileVisitor visitor;
+        private final BooleanSupplier stop;
+        private final AtomicInteger visited;
+
+        FilesTask(Path root, List<String> files, int from, int to, FileFilter filter, FileVisitor visitor,
+                  BooleanSupplier stop, AtomicInteger visited) {
+            this.root = root;
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.visitor = visitor;
+            this.stop = stop;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FilesTask(root, files, from, middle, filter, visitor, stop, visited),
+                    new FilesTask(root, files, middle, to, filter, visitor, stop, visited));
+                return;
+            }
+            for (int i = from; i < to && !stop.getAsBoolean(); i++) {
+                String relativePath = files.get(i);
+                Path relative = Path.of(relativePath);
+                if (!filter.accept(relative, relativePath)) {
+                    continue;
+                }
+                Path file = root.resolve(relative);
+                try {
+                    BasicFileAttributes attributes =
+                        Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isRegularFile()) {
+                        visitor.visit(file, relative, relativePath, attributes.size());
+                        visited.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    Log.debugf("Skipping unreadable file %s: %s", file, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Finds literals that every match of a regex contains, so that a cheap literal search can rule out
+ * files and lines before the regex runs.
+ * <p>
+ * The regex is read as a sequence of literal characters, escapes, classes, groups and quantifiers. Runs
+ * of literal characters that every match must contain, extended through groups of exact alternatives
+ * ({@code javax\.(ejb|jms)\.} gives {@code javax.ejb.} and {@code javax.jms.}), are candidates, and the
+ * candidate whose shortest literal is longest is taken. Alternation at the top or in a group requires a
+ * literal from every branch. Anything not understood, including inline flags, which may change case
+ * sensitivity or the meaning of whitespace, gives no literals, and the regex then runs on every file.
+ * </p>
+ */
+final class RequiredLiterals {
+
+    /**
+     * Literals shorter than this occur in too many lines to be worth searching for.
+     */
+    static final int MIN_LENGTH = 3;
+    private static final int MAX_LITERALS = 64;
+
+    private RequiredLiterals() {
+    }
+
+    /**
+     * @param regex Regex as compiled by {@link FileContentEvaluator#compileContentPattern(String)}
+     * @return Literals one of which every match contains, null if no useful set is known
+     */
+    static Set<String> of(String regex) {
+        try {
+            Parser parser = new Parser(regex);
+            Result result = parser.alternation();
+            if (parser.position != regex.length() || result.literals() == null
+                || minLength(result.literals()) < MIN_LENGTH) {
+                return null;
+            }
+            return result.literals();
+        } catch (UnsupportedOperationException | IndexOutOfBoundsException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether a match of the regex may contain a line break, judged conservatively from escapes,
+     * negated classes, flags and literal line breaks in it
+     */
+    static boolean canSpanLines(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                if ("snRvHWDxu0pPcNX".indexOf(regex.charAt(++i)) >= 0) {
+                    return true;
+                }
+            } else if (c == '\n' || c == '\r' || (c == '[' && i + 1 < regex.length() && regex.charAt(i + 1) == '^')
+                || (c == '(' && i + 2 < regex.length() && regex.charAt(i + 1) == '?' && Character.isLetter(regex.charAt(i + 2)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int minLength(Set<String> literals) {
+        return literals.stream().mapToInt(String::length).min().orElse(0);
+    }
+
+    /**
+     * @param literals Literals one of which every match contains, null if none are known
+     * @param exact    Whether every match is exactly one of the literals
+     */
+    private record Result(Set<String> literals, boolean exact) {
+        static final Result NONE = new Result(null, false);
+    }
+
+    private static final class Parser {
+
+        private final String regex;
+        int position;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Result alternation() {
+            Result result = sequence();
+            Set<String> literals = result.literals() == null ? null : new LinkedHashSet<>(result.literals());
+            boolean exact = result.exact();
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                Result branch = sequence();
+                exact &= branch.exact();
+                if (literals == null || branch.literals() == null) {
+                    literals = null;
+                } else {
+                    literals.addAll(branch.literals());
+                }
+            }
+            if (literals == null || literals.size() > MAX_LITERALS) {
+                return Result.NONE;
+            }
+            return new Result(literals, exact);
+        }
+
+        private Result sequence() {
+            Sequence sequence = new Sequence();
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                position++;
+                switch (c) {
+                    case '\\' -> escape(sequence);
+                    case '[' -> {
+                        skipClass();
+                        sequence.other(quantifier());
+                    }
+                    case '(' -> {
+                        Result group = group();
+                        int min = quantifier();
+                        if (min < 0 && group.exact() && group.literals() != null) {
+                            sequence.append(group.literals());
+                        } else {
+                            sequence.flush(min == 0 ? null : group.literals());
+                            sequence.exact = false;
+                        }
+                    }
+                    case '.', '^', '$' -> sequence.other(quantifier());
+                    default -> sequence.literal(String.valueOf(c), quantifier());
+                }
+            }
+            return sequence.result();
+        }
+
+        private void escape(Sequence sequence) {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case 'Q' -> {
+                    int end = regex.indexOf("\\E", position);
+                    String quoted = regex.substring(position, end < 0 ? regex.length() : end);
+                    position = end < 0 ? regex.length() : end + 2;
+                    if (!quoted.isEmpty()) {
+                        sequence.append(Set.of(quoted.substring(0, quoted.length() - 1)));
+                        sequence.literal(quoted.substring(quoted.length() - 1), quantifier());
+                    }
+                }
+                case 'n' -> sequence.literal("\n", quantifier());
+                case 't' -> sequence.literal("\t", quantifier());
+                case 'r' -> sequence.literal("\r", quantifier());
+                case 'f' -> sequence.literal("\f", quantifier());
+                case 'a' -> sequence.literal("\u0007", quantifier());
+                case 'e' -> sequence.literal("\u001B", quantifier());
+                case 'p', 'P', 'x', 'N' -> {
+                    // \p{Name}, \pL, \x{h...}, \xhh, \N{name}
+                    if (regex.charAt(position) == '{') {
+                        position = regex.indexOf('}', position) + 1;
+                    } else {
+                        position += c == 'x' ? 2 : 1;
+                    }
+                    sequence.other(quantifier());
+                }
+                case 'u' -> {
+                    position += 4;
+                    sequence.other(quantifier());
+                }
+                case 'c' -> {
+                    position++;
+                    sequence.other(quantifier());
+                }
+                case '0' -> {
+                    while (position < regex.length() && regex.charAt(position) >= '0' && regex.charAt(position) <= '7') {
+                        position++;
+                    }
+                    sequence.other(quantifier());
+                }
+                case 'k' -> {
+                    position = regex.indexOf('>', position) + 1;
+                    sequence.other(quantifier());
+                }
+                default -> {
+                    if (Character.isLetterOrDigit(c)) {
+                        // Classes, anchors and back references
+                        while (Character.isDigit(c) && position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                            position++;
+                        }
+                        sequence.other(quantifier());
+                    } else {
+                        sequence.literal(String.valueOf(c), quantifier());
+                    }
+                }
+            }
+        }
+
+        private void skipClass() {
+            int depth = 1;
+            if (regex.charAt(position) == '^') {
+                position++;
+            }
+            if (regex.charAt(position) == ']') {
+                position++;
+            }
+            while (depth > 0) {
+                char c = regex.charAt(position++);
+                if (c == '\\') {
+                    position++;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+            }
+        }
+
+        private Result group() {
+            boolean lookaround = false;
+            if (regex.charAt(position) == '?') {
+                char kind = regex.charAt(position + 1);
+                if (kind == ':' || kind == '>') {
+                    position += 2;
+                } else if (kind == '=' || kind == '!') {
+                    position += 2;
+                    lookaround = true;
+                } else if (kind == '<' && (regex.charAt(position + 2) == '=' || regex.charAt(position + 2) == '!')) {
+                    position += 3;
+                    lookaround = true;
+                } else if (kind == '<') {
+                    position = regex.indexOf('>', position) + 1;
+                } else {
+                    throw new UnsupportedOperationException("Inline flags");
+                }
+            }
+            Result inner = alternation();
+            if (regex.charAt(position++) != ')') {
+                throw new UnsupportedOperationException("Unbalanced group");
+            }
+            return lookaround ? Result.NONE : inner;
+        }
+
+        /**
+         * Read a quantifier, if any, with its lazy or possessive suffix.
+         *
+         * @return Minimum number of repetitions, -1 if there is no quantifier
+         */
+        private int quantifier() {
+            if (position >= regex.length()) {
+                return -1;
+            }
+            int min;
+            switch (regex.charAt(position)) {
+                case '*', '?' -> {
+                    position++;
+                    min = 0;
+                }
+                case '+' -> {
+                    position++;
+                    min = 1;
+                }
+                case '{' -> {
+                    int end = regex.indexOf('}', position);
+                    String bounds = regex.substring(position + 1, end);
+                    int comma = bounds.indexOf(',');
+                    min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+                    position = end + 1;
+                }
+                default -> {
+                    return -1;
+                }
+            }
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+                position++;
+            }
+            return min;
+        }
+    }
+
+    /**
+     * The literals of one branch: the current run of alternatives and the best run closed so far.
+     */
+    private static final class Sequence {
+
+        Set<String> current = Set.of("");
+        Set<String> best;
+        boolean exact = true;
+
+        void literal(String text, int min) {
+            if (min < 0) {
+                append(Set.of(text));
+            } else if (min == 0) {
+                // Optional: the run ends before it
+                flush(null);
+                exact = false;
+            } else {
+                // Repeated: the run ends after one occurrence, and the next one starts with it
+                append(Set.of(text));
+                flush(null);
+                current = Set.of(text);
+                exact = false;
+            }
+        }
+
+        void other(int min) {
+            flush(null);
+            exact = false;
+        }
+
+        void append(Set<String> suffixes) {
+            Set<String> next = new LinkedHashSet<>();
+            for (String prefix : current) {
+                for (String suffix : suffixes) {
+                    next.add(prefix + suffix);
+                }
+            }
+            if (next.size() > MAX_LITERALS) {
+                flush(null);
+                exact = false;
+                return;
+            }
+            current = next;
+        }
+
+        /**
+         * End the current run, keeping it or the given alternatives if either beats the best so far.
+         */
+        void flush(Set<String> alternatives) {
+            consider(current);
+            if (alternatives != null) {
+                consider(alternatives);
+            }
+            current = Set.of("");
+        }
+
+        private void consider(Set<String> candidate) {
+            if (minLength(candidate) > 0 && (best == null || minLength(candidate) > minLength(best))) {
+                best = candidate;
+            }
+        }
+
+        Result result() {
+            if (exact) {
+                return new Result(current, true);
+            }
+            flush(null);
+            return new Result(best, false);
+        }
+    }
+}
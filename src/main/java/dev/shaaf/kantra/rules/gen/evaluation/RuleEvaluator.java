@@ -0,0 +1,402 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.AndCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinJsonCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlPublicIdCondition;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.Conditions;
+import dev.shaaf.kantra.rules.gen.model.JavaDependencyCondition;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import dev.shaaf.kantra.rules.gen.model.OrCondition;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Dry-run evaluation of rule conditions against a local source tree, for quick feedback while
+ * writing a rule without running Kantra.
+ * <p>
+ * {@code and} matches when every child matches and reports the incidents of all children;
+ * {@code or} reports the incidents of the children that match. {@code not} inverts a condition
+ * and drops its incidents. Provider conditions that cannot be evaluated locally are rejected.
+ * </p>
+ * <p>
+ * When several conditions are evaluated together, the patterns of all their {@code builtin.file}
+ * leaves are matched in a single walk of the tree, all their {@code builtin.filecontent} leaves are
+ * searched in another that reads each file once, and all their structural {@code java.referenced}
+ * leaves share one parse of the Java sources, however many rules there are. Parsed sources are
+ * cached by content across evaluations. Likewise, all {@code java.dependency} leaves are checked
+ * against one reading of the build files, which are cached until they change.
+ * </p>
+ * <p>
+ * With {@code kantra.mcp.evaluation.index-directory} set, each source tree gets a {@link TrigramIndex},
+ * and {@code builtin.filecontent} searches read only the files it leaves as candidates, so repeated
+ * tests against the same tree read little more than the files that match.
+ * </p>
+ * <p>
+ * A condition with {@code as} names its result for the rule, and a condition with {@code from} searches
+ * only the files of that result. Named results are evaluated first, in the order of their
+ * {@link ConditionGraph}, with the independent ones of each level in parallel, and are then reused
+ * wherever they are needed. Chained conditions are evaluated on their own rather than in the shared
+ * walks, since they search fewer files. {@code ignore} keeps a condition's incidents out of the result.
+ * </p>
+ * <p>
+ * Children of {@code and}/{@code or} whose results are already at hand are looked at first; the others
+ * run in parallel. {@code and} stops at the first child that does not match, and {@code or} at the first
+ * that does where only its outcome counts, beneath a {@code not}.
+ * </p>
+ */
+@ApplicationScoped
+public class RuleEvaluator {
+
+    /**
+     * Cap on the incidents of a named result, whose files later conditions search.
+     */
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    @Inject
+    EvaluationConfig config;
+
+    private final JavaParseCache parseCache = new JavaParseCache();
+    private final BuildFileCache buildFileCache = new BuildFileCache();
+    private final Map<Path, TrigramIndex> trigramIndexes = new ConcurrentHashMap<>();
+    private Path indexDirectory;
+
+    public RuleEvaluator() {
+    }
+
+    /**
+     * @param indexDirectory Directory to keep the trigram indexes of source trees in, or null to search
+     *                       without them
+     */
+    public RuleEvaluator(Path indexDirectory) {
+        this.indexDirectory = indexDirectory;
+    }
+
+    @PostConstruct
+    void initialize() {
+        indexDirectory = config.indexDirectory().map(Path::of).orElse(null);
+    }
+
+    /**
+     * @param condition    Condition to evaluate, typically {@code Rule.when()}
+     * @param sourceRoot   Root directory of the source tree
+     * @param maxIncidents Maximum number of incidents to report
+     * @return Whether the condition matched, with its incidents
+     * @throws IllegalArgumentException      if the source root is not a directory or a pattern is invalid
+     * @throws UnsupportedOperationException if the condition contains a type that cannot be evaluated locally
+     */
+    public EvaluationResult evaluate(Condition condition, Path sourceRoot, int maxIncidents) {
+        return evaluateAll(List.of(condition), sourceRoot, maxIncidents).get(0);
+    }
+
+    /**
+     * Evaluate the conditions of a whole ruleset against the same source tree.
+     *
+     * @param conditions   Conditions to evaluate, typically the {@code when} of each rule
+     * @param sourceRoot   Root directory of the source tree
+     * @param maxIncidents Maximum number of incidents to report per condition
+     * @return One result per condition, in the same order
+     * @throws IllegalArgumentException      if the source root is not a directory or a pattern is invalid
+     * @throws UnsupportedOperationException if a condition contains a type that cannot be evaluated locally
+     */
+    public List<EvaluationResult> evaluateAll(List<Condition> conditions, Path sourceRoot, int maxIncidents) {
+        if (!Files.isDirectory(sourceRoot)) {
+            throw new IllegalArgumentException("Source path is not a directory: " + sourceRoot);
+        }
+        Path root = sourceRoot.toAbsolutePath().normalize();
+        int max = Math.max(1, maxIncidents);
+
+        Set<String> filePatterns = new LinkedHashSet<>();
+        Set<BuiltinFileContentCondition> contentConditions = new LinkedHashSet<>();
+        Set<JavaReferencedCondition> javaConditions = new LinkedHashSet<>();
+        Set<JavaDependencyCondition> dependencyConditions = new LinkedHashSet<>();
+        for (Condition condition : conditions) {
+            Conditions.walk(condition, (node, depth) -> {
+                if (node.as() != null || node.from() != null) {
+                    // Chained, and evaluated on its own
+                    return false;
+                }
+                if (node instanceof BuiltinFileCondition file) {
+                    filePatterns.add(pattern(file));
+                } else if (node instanceof BuiltinFileContentCondition fileContent) {
+                    contentConditions.add(fileContent);
+                } else if (node instanceof JavaReferencedCondition referenced
+                    && JavaAstEvaluator.LOCATIONS.contains(referenced.location())) {
+                    javaConditions.add(referenced);
+                } else if (node instanceof JavaDependencyCondition dependency) {
+                    dependencyConditions.add(dependency);
+                }
+                return true;
+            });
+        }
+        Context context = new Context(root, max, FileNameEvaluator.evaluate(filePatterns, root, null, max),
+            FileContentEvaluator.evaluate(contentConditions, root, candidates(contentConditions, root), max),
+            JavaAstEvaluator.evaluate(javaConditions, root, null, max, parseCache),
+            JavaDependencyEvaluator.evaluate(dependencyConditions, root, null, max, buildFileCache));
+
+        List<EvaluationResult> results = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            results.add(evaluateRule(condition, context));
+        }
+        return results;
+    }
+
+    private EvaluationResult evaluateRule(Condition condition, Context context) {
+        Map<String, EvaluationResult> named = new HashMap<>();
+        for (List<ConditionGraph.Named> level : ConditionGraph.of(condition).levels()) {
+            List<Supplier<EvaluationResult>> tasks = level.stream().<Supplier<EvaluationResult>>map(node -> () -> {
+                Set<String> scope = null;
+                for (String name : node.scope()) {
+                    scope = restrict(scope, named.get(name));
+                }
+                return evaluateCondition(node.condition(), named, scope, UNLIMITED, false, context);
+            }).toList();
+            EvaluationResult[] results = inParallel(tasks, new AtomicBoolean());
+            for (int i = 0; i < results.length; i++) {
+                named.put(level.get(i).name(), results[i]);
+            }
+        }
+        return evaluateNode(condition, named, null, context.maxIncidents(), false, context);
+    }
+
+    /**
+     * @param named        Results of the rule's named conditions
+     * @param scope        The only files to search, from the {@code from} of an ancestor; null for all
+     * @param max          Maximum number of incidents to report
+     * @param presenceOnly Whether only the outcome counts, not the incidents
+     */
+    private EvaluationResult evaluateNode(Condition condition, Map<String, EvaluationResult> named, Set<String> scope,
+                                          int max, boolean presenceOnly, Context context) {
+        if (condition.as() != null) {
+            return capped(named.get(condition.as()), max);
+        }
+        return evaluateCondition(condition, named, scope, max, presenceOnly, context);
+    }
+
+    private EvaluationResult evaluateCondition(Condition condition, Map<String, EvaluationResult> named,
+                                               Set<String> scope, int max, boolean presenceOnly, Context context) {
+        Set<String> files = condition.from() == null ? scope : restrict(scope, named.get(condition.from()));
+        // Conditions outside any chain were evaluated together up front
+        boolean shared = files == null && max == context.maxIncidents();
+        boolean childPresenceOnly = presenceOnly || Boolean.TRUE.equals(condition.not());
+        Path root = context.root();
+        EvaluationResult result = switch (condition) {
+            case AndCondition and -> combine(and.conditions(), named, files, max, childPresenceOnly, context, true);
+            case OrCondition or -> combine(or.conditions(), named, files, max, childPresenceOnly, context, false);
+            case BuiltinFileCondition file -> shared
+                ? context.fileResults().get(file.pattern())
+                : FileNameEvaluator.evaluate(Set.of(pattern(file)), root, files, max).get(file.pattern());
+            case BuiltinFileContentCondition fileContent -> shared
+                ? context.contentResults().get(fileContent)
+                : FileContentEvaluator.evaluate(Set.of(fileContent), root,
+                    files == null ? candidates(Set.of(fileContent), root) : files, max).get(fileContent);
+            case JavaReferencedCondition referenced when !JavaAstEvaluator.LOCATIONS.contains(referenced.location()) ->
+                JavaReferenceEvaluator.evaluate(referenced, root, files, max);
+            case JavaReferencedCondition referenced -> shared
+                ? context.javaResults().get(referenced)
+                : JavaAstEvaluator.evaluate(Set.of(referenced), root, files, max, parseCache).get(referenced);
+            case JavaDependencyCondition dependency -> shared
+                ? context.dependencyResults().get(dependency)
+                : JavaDependencyEvaluator.evaluate(Set.of(dependency), root, files, max, buildFileCache).get(dependency);
+            case BuiltinJsonCondition json -> JsonEvaluator.evaluate(json, root, files, max);
+            case BuiltinXmlCondition xml -> XmlEvaluator.evaluate(xml, root, files, max);
+            case BuiltinXmlPublicIdCondition publicId -> XmlPublicIdEvaluator.evaluate(publicId, root, files, max);
+            default -> throw new UnsupportedOperationException(
+                "TEST_RULE cannot evaluate " + condition.getClass().getSimpleName() + " conditions locally");
+        };
+        if (Boolean.TRUE.equals(condition.not())) {
+            return new EvaluationResult(!result.matched(), List.of(), false, result.filesScanned());
+        }
+        return result;
+    }
+
+    private EvaluationResult combine(List<Condition> children, Map<String, EvaluationResult> named, Set<String> scope,
+                                     int max, boolean presenceOnly, Context context, boolean all) {
+        if (children == null || children.isEmpty()) {
+            throw new IllegalArgumentException((all ? "and" : "or") + " condition has no children");
+        }
+        // A failing child decides an and, and a matching one an or whose incidents are not needed
+        AtomicBoolean decided = new AtomicBoolean();
+        EvaluationResult[] results = new EvaluationResult[children.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < results.length && !decided.get(); i++) {
+            Condition child = children.get(i);
+            if (atHand(child, scope, max, context)) {
+                results[i] = evaluateNode(child, named, scope, max, presenceOnly, context);
+                decided.set(decides(results[i], presenceOnly, all));
+            } else {
+                pending.add(i);
+            }
+        }
+        if (!decided.get() && !pending.isEmpty()) {
+            EvaluationResult[] scanned = inParallel(pending.stream().<Supplier<EvaluationResult>>map(i -> () -> {
+                EvaluationResult result = evaluateNode(children.get(i), named, scope, max, presenceOnly, context);
+                if (decides(result, presenceOnly, all)) {
+                    decided.set(true);
+                }
+                return result;
+            }).toList(), decided);
+            for (int i = 0; i < scanned.length; i++) {
+                results[pending.get(i)] = scanned[i];
+            }
+        }
+
+        boolean matched = all;
+        Set<Incident> incidents = new LinkedHashSet<>();
+        boolean truncated = false;
+        int scanned = 0;
+        for (int i = 0; i < results.length; i++) {
+            EvaluationResult result = results[i];
+            if (result == null) {
+                continue;
+            }
+            scanned += result.filesScanned();
+            if (all && !result.matched()) {
+                return new EvaluationResult(false, List.of(), false, scanned);
+            }
+            if (result.matched()) {
+                matched = true;
+                if (!Boolean.TRUE.equals(children.get(i).ignore())) {
+                    incidents.addAll(result.incidents());
+                    truncated |= result.truncated();
+                }
+            }
+        }
+        List<Incident> sorted = IncidentCollector.sorted(incidents);
+        if (sorted.size() > max) {
+            sorted = new ArrayList<>(sorted.subList(0, max));
+            truncated = true;
+        }
+        return new EvaluationResult(matched, List.copyOf(sorted), truncated, scanned);
+    }
+
+    private static boolean decides(EvaluationResult result, boolean presenceOnly, boolean all) {
+        return all ? !result.matched() : presenceOnly && result.matched();
+    }
+
+    /**
+     * @return Whether a condition's result is known without scanning: it is named, or a shared evaluation
+     * covers it
+     */
+    private static boolean atHand(Condition condition, Set<String> scope, int max, Context context) {
+        if (condition.as() != null) {
+            return true;
+        }
+        if (condition.from() != null || scope != null || max != context.maxIncidents()) {
+            return false;
+        }
+        return switch (condition) {
+            case AndCondition and -> and.conditions() != null
+                && and.conditions().stream().allMatch(child -> atHand(child, null, max, context));
+            case OrCondition or -> or.conditions() != null
+                && or.conditions().stream().allMatch(child -> atHand(child, null, max, context));
+            case BuiltinFileCondition file -> true;
+            case BuiltinFileContentCondition fileContent -> true;
+            case JavaReferencedCondition referenced -> JavaAstEvaluator.LOCATIONS.contains(referenced.location());
+            case JavaDependencyCondition dependency -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Run tasks in parallel on the common pool, skipping those not yet started once {@code stop} is set.
+     *
+     * @return The result of each task, null for skipped ones
+     */
+    private static EvaluationResult[] inParallel(List<Supplier<EvaluationResult>> tasks, AtomicBoolean stop) {
+        EvaluationResult[] results = new EvaluationResult[tasks.size()];
+        if (tasks.size() == 1) {
+            results[0] = tasks.get(0).get();
+            return results;
+        }
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<ForkJoinTask<?>> forks = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            int index = i;
+            forks.add(ForkJoinTask.adapt(() -> {
+                if (stop.get() || failure.get() != null) {
+                    return;
+                }
+                try {
+                    results[index] = tasks.get(index).get();
+                } catch (RuntimeException e) {
+                    // Rethrown as is below; the pool would wrap it
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(forks)));
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return results;
+    }
+
+    /**
+     * @return The files that may contain a match of any of the conditions by the trigram index of the tree,
+     * null for all files
+     */
+    private Set<String> candidates(Collection<BuiltinFileContentCondition> conditions, Path root) {
+        if (indexDirectory == null || conditions.isEmpty()) {
+            return null;
+        }
+        return trigramIndexes.computeIfAbsent(root,
+            key -> new TrigramIndex(key, TrigramIndex.directoryFor(indexDirectory, key))).candidates(conditions);
+    }
+
+    /**
+     * @return The files of a named result, within the given scope if any
+     */
+    private static Set<String> restrict(Set<String> scope, EvaluationResult result) {
+        Set<String> files = new HashSet<>();
+        if (result.matched()) {
+            for (Incident incident : result.incidents()) {
+                if (scope == null || scope.contains(incident.file())) {
+                    files.add(incident.file());
+                }
+            }
+        }
+        return files;
+    }
+
+    private static EvaluationResult capped(EvaluationResult result, int max) {
+        if (result.incidents().size() <= max) {
+            return result;
+        }
+        return new EvaluationResult(result.matched(), List.copyOf(result.incidents().subList(0, max)), true,
+            result.filesScanned());
+    }
+
+    private static String pattern(BuiltinFileCondition file) {
+        if (file.pattern() == null || file.pattern().isBlank()) {
+            throw new IllegalArgumentException("builtin.file condition has no pattern");
+        }
+        return file.pattern();
+    }
+
+    private record Context(Path root, int maxIncidents, Map<String, EvaluationResult> fileResults,
+                           Map<BuiltinFileContentCondition, EvaluationResult> contentResults,
+                           Map<JavaReferencedCondition, EvaluationResult> javaResults,
+                           Map<JavaDependencyCondition, EvaluationResult> dependencyResults) {}
+}
@@ -0,0 +1,422 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk trigram index of the files under a source root, which narrows the files a
+ * {@code builtin.filecontent} search has to read, in the manner of code search engines.
+ * <p>
+ * Every trigram of bytes of every file is indexed. A pattern's {@link RequiredLiterals} make the query:
+ * a file can only match if it contains every trigram of one of the literals, so only those files are
+ * searched. A pattern without required literals leaves every file a candidate.
+ * </p>
+ * <p>
+ * The index is kept in {@link TrigramSegment}s in a directory of its own: a base, and a delta with the
+ * files added or changed since the base was written. Before each query the tree is walked for sizes
+ * and modification times, without reading any file, and the files whose stamp differs from the indexed
+ * one are indexed into a new delta. Once the delta holds more than an eighth as many files as the base,
+ * or a quarter of the indexed files are stale, both are merged into a new base. Segments are
+ * memory-mapped, so a query reads only the posting lists it needs, and a stored index is used as is
+ * after a restart. Files are indexed in batches of bounded memory, which are merged into the segment.
+ * </p>
+ */
+final class TrigramIndex {
+
+    static final int MAX_FILE_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_BATCH_POSTINGS = 1 << 23;
+    private static final String BASE = "base.idx";
+    private static final String DELTA = "delta.idx";
+    private static final String BATCH_PREFIX = "batch-";
+
+    private static final ThreadLocal<long[]> SEEN = ThreadLocal.withInitial(() -> new long[(1 << 24) / 64]);
+
+    private final Path root;
+    private final Path directory;
+    private final AtomicLong indexedFiles = new AtomicLong();
+    private boolean opened;
+    private TrigramSegment base;
+    private TrigramSegment delta;
+    private BitSet baseLive = new BitSet();
+    private BitSet deltaLive = new BitSet();
+
+    private record Stamp(long size, long modified) {}
+
+    /**
+     * @param root      Root of the source tree, absolute and normalized
+     * @param directory Directory for the segments of this tree only
+     */
+    TrigramIndex(Path root, Path directory) {
+        this.root = root;
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @return The directory for the index of a source tree under a directory of indexes
+     */
+    static Path directoryFor(Path indexDirectory, Path root) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(root.toString().getBytes(StandardCharsets.UTF_8));
+            return indexDirectory.resolve(HexFormat.of().formatHex(digest, 0, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Bring the index up to date with the tree and look up the files that may contain a match.
+     *
+     * @return Paths relative to the root of the files that may contain a match of any of the conditions;
+     * null if all files may, because a pattern has no required literals or the index cannot be used
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    synchronized Set<String> candidates(Collection<BuiltinFileContentCondition> conditions) {
+        Set<String> literals = new LinkedHashSet<>();
+        for (BuiltinFileContentCondition condition : conditions) {
+            if (condition.pattern() == null || condition.pattern().isEmpty()) {
+                return null;
+            }
+            Set<String> required = RequiredLiterals.of(FileContentEvaluator.compileContentPattern(condition.pattern()).pattern());
+            if (required == null) {
+                return null;
+            }
+            literals.addAll(required);
+        }
+        try {
+            update();
+        } catch (IOException | UncheckedIOException e) {
+            Log.warnf("Trigram index of %s cannot be used, searching all files: %s", root, e.getMessage());
+            opened = false;
+            base = null;
+            delta = null;
+            return null;
+        }
+        Set<String> candidates = new HashSet<>();
+        collect(base, baseLive, literals, candidates);
+        collect(delta, deltaLive, literals, candidates);
+        return candidates;
+    }
+
+    /**
+     * @return Number of files read for indexing since the index was created
+     */
+    long indexedFiles() {
+        return indexedFiles.get();
+    }
+
+    private static void collect(TrigramSegment segment, BitSet live, Set<String> literals, Set<String> candidates) {
+        if (segment == null) {
+            return;
+        }
+        BitSet hits = new BitSet();
+        for (String literal : literals) {
+            for (int id : lookup(segment, literal.getBytes(StandardCharsets.ISO_8859_1))) {
+                hits.set(id);
+            }
+        }
+        List<TrigramSegment.FileEntry> files = segment.files();
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            TrigramSegment.Kind kind = files.get(id).kind();
+            if (kind == TrigramSegment.Kind.UNINDEXED || (kind == TrigramSegment.Kind.TEXT && hits.get(id))) {
+                candidates.add(files.get(id).relativePath());
+            }
+        }
+    }
+
+    /**
+     * @return Ids of the files with every trigram of a literal of at least three bytes, ascending
+     */
+    private static int[] lookup(TrigramSegment segment, byte[] literal) {
+        Set<Integer> trigrams = new HashSet<>();
+        for (int i = 2; i < literal.length; i++) {
+            trigrams.add((literal[i - 2] & 0xFF) << 16 | (literal[i - 1] & 0xFF) << 8 | literal[i] & 0xFF);
+        }
+        List<int[]> lists = new ArrayList<>(trigrams.size());
+        for (int trigram : trigrams) {
+            int[] postings = segment.postings(trigram);
+            if (postings.length == 0) {
+                return postings;
+            }
+            lists.add(postings);
+        }
+        // Shortest first, so that the result only shrinks from the smallest list
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        int[] result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.length > 0; l++) {
+            int[] next = lists.get(l);
+            int count = 0;
+            int j = 0;
+            for (int id : result) {
+                while (j < next.length && next[j] < id) {
+                    j++;
+                }
+                if (j < next.length && next[j] == id) {
+                    result[count++] = id;
+                }
+            }
+            result = Arrays.copyOf(result, count);
+        }
+        return result;
+    }
+
+    private void update() throws IOException {
+        if (!opened) {
+            open();
+        }
+        Map<String, Stamp> current = new ConcurrentHashMap<>();
+        // The index must not index itself when it is kept inside the tree
+        Path indexes = directory.getParent();
+        String excluded = indexes != null && indexes.startsWith(root) && !indexes.equals(root)
+            ? root.relativize(indexes).toString().replace('\\', '/') + "/" : null;
+        ParallelFileWalker.walkAttributes(root, (relative, relativePath) -> excluded == null || !relativePath.startsWith(excluded),
+            (file, relative, relativePath, attributes) -> current.put(relativePath,
+                new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis())),
+            () -> false);
+
+        Set<String> covered = new HashSet<>();
+        deltaLive = live(delta, current, covered);
+        baseLive = live(base, current, covered);
+        List<String> missing = current.keySet().stream().filter(path -> !covered.contains(path)).sorted().toList();
+        int indexed = size(base) + size(delta);
+        int stale = indexed - baseLive.cardinality() - deltaLive.cardinality();
+        boolean compact = base == null || (deltaLive.cardinality() + missing.size()) * 8L > baseLive.cardinality()
+            || stale * 4L > indexed;
+        if (missing.isEmpty() && !compact) {
+            return;
+        }
+
+        List<TrigramSegment> batches = index(missing, current);
+        try {
+            List<TrigramSegment.Source> sources = new ArrayList<>();
+            List<TrigramSegment.FileEntry> files = new ArrayList<>();
+            if (compact) {
+                addSource(base, baseLive, sources, files);
+            }
+            addSource(delta, deltaLive, sources, files);
+            for (TrigramSegment batch : batches) {
+                BitSet all = new BitSet();
+                all.set(0, batch.files().size());
+                addSource(batch, all, sources, files);
+            }
+            TrigramSegment merged = TrigramSegment.merge(sources, files, directory.resolve(compact ? BASE : DELTA));
+            if (compact) {
+                base = merged;
+                delta = null;
+                Files.deleteIfExists(directory.resolve(DELTA));
+            } else {
+                delta = merged;
+            }
+        } finally {
+            deleteBatches();
+        }
+        covered.clear();
+        deltaLive = live(delta, current, covered);
+        baseLive = live(base, current, covered);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        deleteBatches();
+        base = openStored(BASE);
+        delta = base == null ? null : openStored(DELTA);
+        opened = true;
+    }
+
+    private TrigramSegment openStored(String name) throws IOException {
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return TrigramSegment.open(file);
+        } catch (IOException | RuntimeException e) {
+            Log.infof("Trigram index: cannot read %s, rebuilding: %s", file, e.getMessage());
+            Files.deleteIfExists(file);
+            return null;
+        }
+    }
+
+    private void deleteBatches() throws IOException {
+        try (DirectoryStream<Path> batches = Files.newDirectoryStream(directory, BATCH_PREFIX + "*")) {
+            for (Path batch : batches) {
+                Files.deleteIfExists(batch);
+            }
+        }
+    }
+
+    private static int size(TrigramSegment segment) {
+        return segment == null ? 0 : segment.files().size();
+    }
+
+    /**
+     * @param covered Paths found live in a newer segment; extended with those live in this one
+     * @return The ids of the files that have not changed since they were indexed in a segment
+     */
+    private static BitSet live(TrigramSegment segment, Map<String, Stamp> current, Set<String> covered) {
+        BitSet live = new BitSet();
+        if (segment == null) {
+            return live;
+        }
+        List<TrigramSegment.FileEntry> files = segment.files();
+        for (int id = 0; id < files.size(); id++) {
+            TrigramSegment.FileEntry file = files.get(id);
+            Stamp stamp = current.get(file.relativePath());
+            if (stamp != null && stamp.size() == file.size() && stamp.modified() == file.modified()
+                && covered.add(file.relativePath())) {
+                live.set(id);
+            }
+        }
+        return live;
+    }
+
+    private static void addSource(TrigramSegment segment, BitSet live, List<TrigramSegment.Source> sources,
+                                  List<TrigramSegment.FileEntry> files) {
+        if (segment == null) {
+            return;
+        }
+        int[] newIds = new int[segment.files().size()];
+        for (int id = 0; id < newIds.length; id++) {
+            newIds[id] = live.get(id) ? files.size() : -1;
+            if (newIds[id] >= 0) {
+                files.add(segment.files().get(id));
+            }
+        }
+        sources.add(new TrigramSegment.Source(segment, newIds));
+    }
+
+    /**
+     * Read and index files in parallel, into batch segments of bounded size.
+     */
+    private List<TrigramSegment> index(List<String> paths, Map<String, Stamp> current) throws IOException {
+        Batch batch = new Batch();
+        try {
+            paths.parallelStream().forEach(path -> {
+                Stamp stamp = current.get(path);
+                TrigramSegment.Kind kind = TrigramSegment.Kind.UNINDEXED;
+                int[] trigrams = new int[0];
+                if (stamp.size() <= MAX_FILE_SIZE) {
+                    try {
+                        ByteBuffer content = stamp.size() == 0 ? ByteBuffer.allocate(0)
+                            : FileContentEvaluator.read(root.resolve(path), stamp.size());
+                        indexedFiles.incrementAndGet();
+                        if (FileContentEvaluator.isBinary(content)) {
+                            kind = TrigramSegment.Kind.BINARY;
+                        } else {
+                            kind = TrigramSegment.Kind.TEXT;
+                            trigrams = trigrams(content);
+                        }
+                    } catch (IOException e) {
+                        Log.debugf("Trigram index: cannot read %s, leaving it unindexed: %s", path, e.getMessage());
+                    }
+                }
+                batch.add(new TrigramSegment.FileEntry(path, stamp.size(), stamp.modified(), kind), trigrams);
+            });
+            batch.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return batch.segments;
+    }
+
+    /**
+     * @return The distinct trigrams of a content, ascending
+     */
+    static int[] trigrams(ByteBuffer content) {
+        long[] seen = SEEN.get();
+        int[] trigrams = new int[Math.min(Math.max(content.limit() - 2, 0), 1 << 12)];
+        int count = 0;
+        int trigram = 0;
+        for (int i = 0; i < content.limit(); i++) {
+            trigram = (trigram << 8 | content.get(i) & 0xFF) & 0xFFFFFF;
+            if (i >= 2 && (seen[trigram >>> 6] & 1L << trigram) == 0) {
+                seen[trigram >>> 6] |= 1L << trigram;
+                if (count == trigrams.length) {
+                    trigrams = Arrays.copyOf(trigrams, count * 2);
+                }
+                trigrams[count++] = trigram;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            seen[trigrams[i] >>> 6] = 0;
+        }
+        trigrams = Arrays.copyOf(trigrams, count);
+        Arrays.sort(trigrams);
+        return trigrams;
+    }
+
+    /**
+     * Files being indexed, written out as a segment whenever their postings reach the cap.
+     */
+    private final class Batch {
+
+        final List<TrigramSegment> segments = new ArrayList<>();
+        private final List<TrigramSegment.FileEntry> files = new ArrayList<>();
+        private long[] postings = new long[1 << 16];
+        private int count;
+
+        synchronized void add(TrigramSegment.FileEntry file, int[] trigrams) {
+            if (count + trigrams.length > MAX_BATCH_POSTINGS && !files.isEmpty()) {
+                flush();
+            }
+            if (count + trigrams.length > postings.length) {
+                postings = Arrays.copyOf(postings, Math.max(postings.length * 2, count + trigrams.length));
+            }
+            int id = files.size();
+            files.add(file);
+            for (int trigram : trigrams) {
+                postings[count++] = (long) trigram << 32 | id;
+            }
+        }
+
+        synchronized void flush() {
+            if (files.isEmpty()) {
+                return;
+            }
+            Arrays.parallelSort(postings, 0, count);
+            int[] ids = new int[64];
+            try (TrigramSegment.Writer writer =
+                     new TrigramSegment.Writer(directory.resolve(BATCH_PREFIX + segments.size() + ".idx"))) {
+                int i = 0;
+                while (i < count) {
+                    int trigram = (int) (postings[i] >>> 32);
+                    int length = 0;
+                    for (; i < count && (int) (postings[i] >>> 32) == trigram; i++) {
+                        if (length == ids.length) {
+                            ids = Arrays.copyOf(ids, length * 2);
+                        }
+                        ids[length++] = (int) postings[i];
+                    }
+                    writer.add(trigram, ids, length);
+                }
+                segments.add(writer.finish(List.copyOf(files)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            files.clear();
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One immutable, memory-mapped file of a {@link TrigramIndex}: the files it covers and, for every trigram
+ * of bytes that occurs in them, the ids of the files it occurs in.
+ * <p>
+ * Layout, big-endian: magic and format version; the posting lists, each a run of varint gaps between
+ * ascending file ids; the trigram table, sorted, with the offset of each list, the last ending where the
+ * table starts; the file table, with path, size, modification time and kind per file; and a trailer
+ * with the number and offset of the trigrams and of the files. Lookups binary-search the trigram table
+ * where it is mapped, so opening a segment reads no more than its file table. Offsets are ints, which
+ * limits a segment to 2 GB, several times the size of the sources it takes to reach it.
+ * </p>
+ */
+final class TrigramSegment {
+
+    private static final int MAGIC = 0x53545249;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int TRAILER_LENGTH = 16;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 64 * 1024 * 1024;
+
+    /**
+     * What the index knows about the content of a file.
+     */
+    enum Kind {
+        /** Trigrams indexed */
+        TEXT,
+        /** Skipped by {@code builtin.filecontent}, so never a candidate */
+        BINARY,
+        /** Too large or unreadable to index, so always a candidate */
+        UNINDEXED
+    }
+
+    /**
+     * @param relativePath Path relative to the root, with {@code /} separators
+     * @param size         Size when indexed
+     * @param modified     Modification time when indexed, in milliseconds
+     */
+    record FileEntry(String relativePath, long size, long modified, Kind kind) {}
+
+    private final ByteBuffer buffer;
+    private final int trigramCount;
+    private final int tableOffset;
+    private final List<FileEntry> files;
+
+    private TrigramSegment(ByteBuffer buffer, int trigramCount, int tableOffset, List<FileEntry> files) {
+        this.buffer = buffer;
+        this.trigramCount = trigramCount;
+        this.tableOffset = tableOffset;
+        this.files = files;
+    }
+
+    /**
+     * @throws IOException if the file cannot be read or is not a segment of this format
+     */
+    static TrigramSegment open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + TRAILER_LENGTH || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a trigram index segment: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unknown trigram index format: " + file);
+        }
+        int trailer = buffer.limit() - TRAILER_LENGTH;
+        int trigramCount = buffer.getInt(trailer);
+        int tableOffset = buffer.getInt(trailer + 4);
+        int fileCount = buffer.getInt(trailer + 8);
+        int position = buffer.getInt(trailer + 12);
+        if (trigramCount < 0 || tableOffset < HEADER_LENGTH || fileCount < 0 || position < tableOffset
+            || position > trailer || (long) tableOffset + 8L * trigramCount > position) {
+            throw new IOException("Corrupt trigram index segment: " + file);
+        }
+        List<FileEntry> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            byte[] path = new byte[length];
+            buffer.get(position + 2, path);
+            position += 2 + length;
+            files.add(new FileEntry(new String(path, StandardCharsets.UTF_8), buffer.getLong(position),
+                buffer.getLong(position + 8), Kind.values()[buffer.get(position + 16)]));
+            position += 17;
+        }
+        return new TrigramSegment(buffer, trigramCount, tableOffset, List.copyOf(files));
+    }
+
+    List<FileEntry> files() {
+        return files;
+    }
+
+    int trigramCount() {
+        return trigramCount;
+    }
+
+    /**
+     * @return The trigram at a position of the sorted table
+     */
+    int trigramAt(int index) {
+        return buffer.getInt(tableOffset + 8 * index);
+    }
+
+    /**
+     * @return The ids of the files with a trigram, ascending; empty if none has it
+     */
+    int[] postings(int trigram) {
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = trigramAt(middle);
+            if (found < trigram) {
+                low = middle + 1;
+            } else if (found > trigram) {
+                high = middle - 1;
+            } else {
+                return postingsAt(middle);
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * @return The ids of the files with the trigram at a position of the table, ascending
+     */
+    int[] postingsAt(int index) {
+        int position = buffer.getInt(tableOffset + 8 * index + 4);
+        int end = index + 1 < trigramCount ? buffer.getInt(tableOffset + 8 * (index + 1) + 4) : tableOffset;
+        int[] ids = new int[8];
+        int count = 0;
+        int id = -1;
+        while (position < end) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += gap;
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * A segment file being written: posting lists in ascending order of trigram, then the files. The file
+     * is written next to its target and moved over it when finished.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final Path target;
+        private final Path tmp;
+        private final DataOutputStream out;
+        private int[] trigrams = new int[1024];
+        private int[] offsets = new int[1024];
+        private int count;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+        }
+
+        /**
+         * @param ids File ids with the trigram, ascending, in the first {@code length} elements
+         */
+        void add(int trigram, int[] ids, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            if (count == trigrams.length) {
+                trigrams = Arrays.copyOf(trigrams, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            trigrams[count] = trigram;
+            offsets[count++] = out.size();
+            int previous = -1;
+            for (int i = 0; i < length; i++) {
+                int gap = ids[i] - previous;
+                previous = ids[i];
+                while ((gap & ~0x7F) != 0) {
+                    out.write((gap & 0x7F) | 0x80);
+                    gap >>>= 7;
+                }
+                out.write(gap);
+            }
+            if (out.size() > MAX_LENGTH) {
+                throw new IOException("Trigram index segment exceeds 2 GB: " + target);
+            }
+        }
+
+        /**
+         * Write the tables and move the file into place.
+         */
+        TrigramSegment finish(List<FileEntry> files) throws IOException {
+            int tableOffset = out.size();
+            for (int i = 0; i < count; i++) {
+                out.writeInt(trigrams[i]);
+                out.writeInt(offsets[i]);
+            }
+            int filesOffset = out.size();
+            for (FileEntry file : files) {
+                byte[] path = file.relativePath().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(path.length);
+                out.write(path);
+                out.writeLong(file.size());
+                out.writeLong(file.modified());
+                out.writeByte(file.kind().ordinal());
+            }
+            out.writeInt(count);
+            out.writeInt(tableOffset);
+            out.writeInt(files.size());
+            out.writeInt(filesOffset);
+            out.close();
+            if (out.size() > MAX_LENGTH) {
+                throw new IOException("Trigram index segment exceeds 2 GB: " + target);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * A segment to merge, with the new id of each of its files, -1 to drop the file.
+     */
+    record Source(TrigramSegment segment, int[] newIds) {}
+
+    /**
+     * Merge segments into one. New ids must ascend with the old ones within a segment and across the
+     * sources in order, so that merged posting lists stay sorted without sorting them.
+     *
+     * @param files The files of the merged segment, by new id
+     */
+    static TrigramSegment merge(List<Source> sources, List<FileEntry> files, Path target) throws IOException {
+        int[] cursors = new int[sources.size()];
+        int[] ids = new int[1024];
+        try (Writer writer = new Writer(target)) {
+            while (true) {
+                int trigram = Integer.MAX_VALUE;
+                boolean any = false;
+                for (int s = 0; s < cursors.length; s++) {
+                    TrigramSegment segment = sources.get(s).segment();
+                    if (cursors[s] < segment.trigramCount()) {
+                        trigram = Math.min(trigram, segment.trigramAt(cursors[s]));
+                        any = true;
+                    }
+                }
+                if (!any) {
+                    return writer.finish(files);
+                }
+                int length = 0;
+                for (int s = 0; s < cursors.length; s++) {
+                    Source source = sources.get(s);
+                    if (cursors[s] < source.segment().trigramCount() && source.segment().trigramAt(cursors[s]) == trigram) {
+                        for (int id : source.segment().postingsAt(cursors[s]++)) {
+                            int newId = source.newIds()[id];
+                            if (newId >= 0) {
+                                if (length == ids.length) {
+                                    ids = Arrays.copyOf(ids, length * 2);
+                                }
+                                ids[length++] = newId;
+                            }
+                        }
+                    }
+                }
+                writer.add(trigram, ids, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlCondition;
+import io.quarkus.logging.Log;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates {@code builtin.xml} conditions over the XML files of a source tree, in parallel.
+ * <p>
+ * Expressions within the {@link XmlPath} subset are matched directly against the StAX event stream:
+ * each open element keeps two bit sets of path steps, the steps matched so far and the {@code //}
+ * steps still open below it, so memory per file depends on the nesting depth only, not the file size.
+ * Every other expression falls back to the JDK's XPath over a DOM of the file; those matches carry no
+ * line number and are reported once per file.
+ * </p>
+ * <p>
+ * Without {@code filepaths}, all {@code .xml} files are evaluated; otherwise the files selected by any
+ * of the {@code filepaths}, read as file patterns.
+ * </p>
+ */
+final class XmlEvaluator {
+
+    private static final int MAX_SNIPPET_LENGTH = 200;
+    private static final int MAX_TEXT_LENGTH = 64 * 1024;
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    private XmlEvaluator() {
+    }
+
+    static EvaluationResult evaluate(BuiltinXmlCondition condition, Path root, Set<String> scope, int maxIncidents) {
+        if (condition.xpath() == null || condition.xpath().isBlank()) {
+            throw new IllegalArgumentException("builtin.xml condition has no xpath");
+        }
+        Map<String, String> namespaces = condition.namespaces() == null ? Map.of() : condition.namespaces();
+        XmlPath path = XmlPath.parse(condition.xpath(), namespaces);
+        DomXPath fallback = path == null ? DomXPath.compile(condition.xpath(), namespaces) : null;
+
+        IncidentCollector incidents = new IncidentCollector(maxIncidents);
+        int scanned = ParallelFileWalker.walk(root, scope, FilePattern.anyOf(condition.filepaths(), ".xml"), (file, relative, relativePath, size) -> {
+            if (!incidents.accepts(relativePath)) {
+                return;
+            }
+            if (path != null) {
+                stream(file, relativePath, path, incidents);
+            } else {
+                fallback.evaluate(file, relativePath, incidents);
+            }
+        }, () -> false);
+        return new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), scanned);
+    }
+
+    /**
+     * Match a path against the events of one file, reporting each matching element at its line.
+     */
+    static void stream(Path file, String relativePath, XmlPath path, IncidentCollector incidents) throws IOException {
+        int last = path.size() - 1;
+        XmlPath.Step lastStep = path.step(last);
+        long descendants = path.descendantMask();
+
+        // Per open element: steps matched up to it, and // steps open at or above it. Index 0 is the document.
+        long[] matched = new long[32];
+        long[] pending = new long[32];
+        Deferred[] deferred = new Deferred[32];
+        matched[0] = 1;
+        pending[0] = descendants & 1;
+        int depth = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> {
+                            long parentMatched = matched[depth];
+                            long parentPending = pending[depth];
+                            if (++depth == matched.length) {
+                                matched = Arrays.copyOf(matched, depth * 2);
+                                pending = Arrays.copyOf(pending, depth * 2);
+                                deferred = Arrays.copyOf(deferred, depth * 2);
+                            }
+                            String namespace = reader.getNamespaceURI();
+                            String localName = reader.getLocalName();
+                            StreamElement element = new StreamElement(reader);
+                            long reached = 0;
+                            deferred[depth] = null;
+                            for (int step = 0; step <= last; step++) {
+                                long bit = 1L << step;
+                                long candidates = path.step(step).descendant() ? parentPending : parentMatched;
+                                if ((candidates & bit) == 0 || !path.step(step).matchesName(namespace, localName)) {
+                                    continue;
+                                }
+                                if (step < last) {
+                                    XmlPath.Predicate predicate = path.step(step).predicate();
+                                    if (predicate == null || predicate.test(element)) {
+                                        reached |= bit << 1;
+                                    }
+                                } else if (lastStep.needsText()) {
+                                    deferred[depth] = new Deferred(reader, snippet(reader));
+                                } else if (lastStep.predicate() == null || lastStep.predicate().test(element)) {
+                                    if (!incidents.add(new Incident(relativePath, reader.getLocation().getLineNumber(), snippet(reader)))) {
+                                        return;
+                                    }
+                                }
+                            }
+                            matched[depth] = reached;
+                            pending[depth] = parentPending | (reached & descendants);
+                        }
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                            if (depth > 0 && deferred[depth] != null) {
+                                deferred[depth].append(reader);
+                            }
+                        }
+                        case XMLStreamConstants.END_ELEMENT -> {
+                            Deferred candidate = deferred[depth];
+                            if (candidate != null) {
+                                deferred[depth] = null;
+                                if (lastStep.predicate().test(candidate)
+                                    && !incidents.add(new Incident(relativePath, candidate.line, candidate.snippet))) {
+                                    return;
+                                }
+                            }
+                            depth--;
+                        }
+                        default -> {
+                            // Comments, processing instructions and the document start/end carry nothing to match
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Matches found before the error stay reported, as Kantra does with partially readable files
+            Log.debugf("Skipping rest of malformed XML file %s: %s", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The start tag of the current element, shortened.
+     */
+    private static String snippet(XMLStreamReader reader) {
+        StringBuilder tag = new StringBuilder("<").append(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getAttributeCount() && tag.length() < MAX_SNIPPET_LENGTH; i++) {
+            tag.append(' ').append(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))
+                .append("=\"").append(reader.getAttributeValue(i)).append('"');
+        }
+        if (tag.length() >= MAX_SNIPPET_LENGTH) {
+            return tag.substring(0, MAX_SNIPPET_LENGTH - 3) + "...";
+        }
+        return tag.append('>').toString();
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * The element at the reader's current start tag; its text is not known yet.
+     */
+    private record StreamElement(XMLStreamReader reader) implements XmlPath.Element {
+        @Override
+        public String attribute(String namespace, String localName) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attributeNamespace = reader.getAttributeNamespace(i);
+                if (localName.equals(reader.getAttributeLocalName(i))
+                    && namespace.equals(attributeNamespace == null ? "" : attributeNamespace)) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String text() {
+            return null;
+        }
+    }
+
+    /**
+     * A candidate for the last step whose predicate needs the element text, decided at its end tag.
+     */
+    private static final class Deferred implements XmlPath.Element {
+
+        private final String[] attributes;
+        private final int line;
+        private final String snippet;
+        private StringBuilder text;
+
+        Deferred(XMLStreamReader reader, String snippet) {
+            this.line = reader.getLocation().getLineNumber();
+            this.snippet = snippet;
+            this.attributes = new String[reader.getAttributeCount() * 3];
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String namespace = reader.getAttributeNamespace(i);
+                attributes[i * 3] = namespace == null ? "" : namespace;
+                attributes[i * 3 + 1] = reader.getAttributeLocalName(i);
+                attributes[i * 3 + 2] = reader.getAttributeValue(i);
+            }
+        }
+
+        void append(XMLStreamReader reader) {
+            if (text == null) {
+                text = new StringBuilder();
+            }
+            int length = Math.min(reader.getTextLength(), MAX_TEXT_LENGTH - text.length());
+            if (length > 0) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), length);
+            }
+        }
+
+        @Override
+        public String attribute(String namespace, String localName) {
+            for (int i = 0; i < attributes.length; i += 3) {
+                if (attributes[i].equals(namespace) && attributes[i + 1].equals(localName)) {
+                    return attributes[i + 2];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String text() {
+            return text == null ? null : text.toString();
+        }
+    }
+
+    /**
+     * Fallback for expressions outside the streaming subset. XPath objects are not thread-safe, so
+     * each worker thread compiles its own.
+     */
+    private static final class DomXPath {
+
+        private final ThreadLocal<DocumentBuilder> builders;
+        private final ThreadLocal<XPathExpression> expressions;
+
+        private DomXPath(String xpath, Map<String, String> namespaces) {
+            this.builders = ThreadLocal.withInitial(DomXPath::newBuilder);
+            this.expressions = ThreadLocal.withInitial(() -> {
+                try {
+                    return compileExpression(xpath, namespaces);
+                } catch (XPathExpressionException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        /**
+         * @throws IllegalArgumentException if the expression is not valid XPath
+         */
+        static DomXPath compile(String xpath, Map<String, String> namespaces) {
+            try {
+                compileExpression(xpath, namespaces);
+            } catch (XPathExpressionException e) {
+                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                throw new IllegalArgumentException("Invalid xpath: " + xpath + (reason != null ? " (" + reason + ")" : ""));
+            }
+            return new DomXPath(xpath, namespaces);
+        }
+
+        private static XPathExpression compileExpression(String xpath, Map<String, String> namespaces)
+                throws XPathExpressionException {
+            XPath compiler = XPathFactory.newInstance().newXPath();
+            compiler.setNamespaceContext(new MapNamespaceContext(namespaces));
+            return compiler.compile(xpath);
+        }
+
+        private static DocumentBuilder newBuilder() {
+            try {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+                factory.setExpandEntityReferences(false);
+                return factory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void evaluate(Path file, String relativePath, IncidentCollector incidents) throws IOException {
+            Document document;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                DocumentBuilder builder = builders.get();
+                builder.reset();
+                document = builder.parse(in);
+            } catch (SAXException e) {
+                Log.debugf("Skipping malformed XML file %s: %s", file, e.getMessage());
+                return;
+            }
+            if (matches(document)) {
+                incidents.add(new Incident(relativePath, 0, null));
+            }
+        }
+
+        private boolean matches(Document document) {
+            XPathExpression expression = expressions.get();
+            try {
+                return ((NodeList) expression.evaluate(document, XPathConstants.NODESET)).getLength() > 0;
+            } catch (XPathExpressionException e) {
+                // Not a node-set, e.g. count(//bean) > 1
+                try {
+                    return (Boolean) expression.evaluate(document, XPathConstants.BOOLEAN);
+                } catch (XPathExpressionException invalid) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private record MapNamespaceContext(Map<String, String> namespaces) implements NamespaceContext {
+        @Override
+        public String getNamespaceURI(String prefix) {
+            return namespaces.getOrDefault(prefix, XMLConstants.NULL_NS_URI);
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return namespaces.entrySet().stream()
+                .filter(e -> e.getValue().equals(namespaceURI))
+                .map(Map.Entry::getKey)
+                .findFirst().orElse(null);
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            return namespaces.entrySet().stream()
+                .filter(e -> e.getValue().equals(namespaceURI))
+                .map(Map.Entry::getKey)
+                .iterator();
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The subset of XPath that {@code builtin.xml} and {@code builtin.json} rules mostly use, in a form
+ * that can be matched against a stream of parser events without building a tree:
+ * <ul>
+ *   <li>location paths of {@code /} and {@code //} steps, absolute or relative to the document</li>
+ *   <li>name tests {@code name}, {@code prefix:name}, {@code prefix:*} and {@code *}</li>
+ *   <li>predicates on attributes ({@code [@a]}, {@code [@a='v']}, {@code [@a!='v']}) and on the text of
+ *       the last step ({@code [text()='v']}), with {@code contains()}, {@code starts-with()}, {@code and},
+ *       {@code or} and parentheses</li>
+ *   <li>a final attribute step, {@code //bean/@class}, read as {@code //bean[@class]}</li>
+ * </ul>
+ * <p>
+ * As in Kantra, a name test without prefix matches the local name in any namespace; prefixed tests
+ * resolve the prefix through the condition's {@code namespaces}. {@link #parse} returns null for
+ * anything outside the subset, such as positional predicates, other axes or functions.
+ * </p>
+ */
+final class XmlPath {
+
+    private static final int MAX_STEPS = 63;
+
+    /**
+     * The attributes and direct text of an element, as far as they are known.
+     */
+    interface Element {
+        /**
+         * @param namespace Namespace URI, empty for attributes without namespace
+         * @return The attribute value, or null if the element has no such attribute
+         */
+        String attribute(String namespace, String localName);
+
+        /**
+         * @return The concatenated text children of the element, or null if it has none
+         */
+        String text();
+    }
+
+    /**
+     * One step of the path.
+     *
+     * @param descendant true for {@code //}, false for {@code /}
+     * @param namespace  Namespace URI the element must have, null for any
+     * @param localName  Local name the element must have, null for {@code *}
+     * @param predicate  Condition on the element, null for none
+     */
+    record Step(boolean descendant, String namespace, String localName, Predicate predicate) {
+
+        boolean matchesName(String elementNamespace, String elementLocalName) {
+            return (localName == null || localName.equals(elementLocalName))
+                && (namespace == null || namespace.equals(elementNamespace == null ? "" : elementNamespace));
+        }
+
+        boolean needsText() {
+            return predicate != null && predicate.needsText();
+        }
+    }
+
+    sealed interface Predicate {
+        boolean test(Element element);
+
+        boolean needsText();
+    }
+
+    enum Operator { EXISTS, EQUALS, NOT_EQUALS, CONTAINS, STARTS_WITH }
+
+    private static boolean compare(String actual, Operator operator, String value) {
+        return switch (operator) {
+            case EXISTS -> actual != null;
+            case EQUALS -> actual != null && actual.equals(value);
+            case NOT_EQUALS -> actual != null && !actual.equals(value);
+            // The functions read a missing node as the empty string
+            case CONTAINS -> (actual == null ? "" : actual).contains(value);
+            case STARTS_WITH -> (actual == null ? "" : actual).startsWith(value);
+        };
+    }
+
+    record AttributeTest(String namespace, String localName, Operator operator, String value) implements Predicate {
+        @Override
+        public boolean test(Element element) {
+            return compare(element.attribute(namespace, localName), operator, value);
+        }
+
+        @Override
+        public boolean needsText() {
+            return false;
+        }
+    }
+
+    record TextTest(Operator operator, String value) implements Predicate {
+        @Override
+        public boolean test(Element element) {
+            return compare(element.text(), operator, value);
+        }
+
+        @Override
+        public boolean needsText() {
+            return true;
+        }
+    }
+
+    record Junction(boolean all, List<Predicate> operands) implements Predicate {
+        @Override
+        public boolean test(Element element) {
+            for (Predicate operand : operands) {
+                if (operand.test(element) != all) {
+                    return !all;
+                }
+            }
+            return all;
+        }
+
+        @Override
+        public boolean needsText() {
+            return operands.stream().anyMatch(Predicate::needsText);
+        }
+    }
+
+    private final List<Step> steps;
+    private final long descendantMask;
+
+    private XmlPath(List<Step> steps) {
+        this.steps = List.copyOf(steps);
+        long mask = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).descendant()) {
+                mask |= 1L << i;
+            }
+        }
+        this.descendantMask = mask;
+    }
+
+    /**
+     * @param xpath      Expression to parse
+     * @param namespaces Prefixes of the condition
+     * @return The path, or null if the expression is outside the supported subset
+     * @throws IllegalArgumentException if the expression uses a prefix without namespace
+     */
+    static XmlPath parse(String xpath, Map<String, String> namespaces) {
+        try {
+            return new Parser(xpath.trim(), namespaces).path();
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    int size() {
+        return steps.size();
+    }
+
+    Step step(int index) {
+        return steps.get(index);
+    }
+
+    /**
+     * @return Bit {@code i} set if step {@code i} is a {@code //} step
+     */
+    long descendantMask() {
+        return descendantMask;
+    }
+
+    private static final class Unsupported extends RuntimeException {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Parser {
+
+        private final String input;
+        private final Map<String, String> namespaces;
+        private int pos;
+
+        Parser(String input, Map<String, String> namespaces) {
+            this.input = input;
+            this.namespaces = namespaces;
+        }
+
+        XmlPath path() {
+            List<Step> steps = new ArrayList<>();
+            boolean descendant = eat("//");
+            if (!descendant) {
+                eat("/");
+            }
+            while (true) {
+                if (eat("@")) {
+                    // Final attribute step: select the elements carrying the attribute
+                    if (steps.isEmpty() || descendant) {
+                        throw new Unsupported();
+                    }
+                    String[] name = qualifiedName(true);
+                    Step last = steps.remove(steps.size() - 1);
+                    Predicate exists = new AttributeTest(attributeNamespace(name), name[1], Operator.EXISTS, null);
+                    steps.add(new Step(last.descendant(), last.namespace(), last.localName(),
+                        last.predicate() == null ? exists : new Junction(true, List.of(last.predicate(), exists))));
+                    break;
+                }
+                steps.add(step(descendant));
+                if (eat("//")) {
+                    descendant = true;
+                } else if (eat("/")) {
+                    descendant = false;
+                } else {
+                    break;
+                }
+            }
+            skipWhitespace();
+            if (pos != input.length() || steps.size() > MAX_STEPS) {
+                throw new Unsupported();
+            }
+            for (int i = 0; i < steps.size() - 1; i++) {
+                if (steps.get(i).needsText()) {
+                    // Text is only known at the end of an element, too late for its descendants
+                    throw new Unsupported();
+                }
+            }
+            return new XmlPath(steps);
+        }
+
+        private Step step(boolean descendant) {
+            String[] name = qualifiedName(false);
+            String namespace = name[0] == null ? null : resolve(name[0]);
+            List<Predicate> predicates = new ArrayList<>();
+            while (eat("[")) {
+                predicates.add(or());
+                expect("]");
+            }
+            Predicate predicate = switch (predicates.size()) {
+                case 0 -> null;
+                case 1 -> predicates.get(0);
+                default -> new Junction(true, predicates);
+            };
+            return new Step(descendant, namespace, "*".equals(name[1]) ? null : name[1], predicate);
+        }
+
+        private Predicate or() {
+            List<Predicate> operands = new ArrayList<>(List.of(and()));
+            while (keyword("or")) {
+                operands.add(and());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Junction(false, operands);
+        }
+
+        private Predicate and() {
+            List<Predicate> operands = new ArrayList<>(List.of(term()));
+            while (keyword("and")) {
+                operands.add(term());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Junction(true, operands);
+        }
+
+        private Predicate term() {
+            if (eat("(")) {
+                Predicate inner = or();
+                expect(")");
+                return inner;
+            }
+            for (Operator function : new Operator[]{Operator.CONTAINS, Operator.STARTS_WITH}) {
+                String keyword = function == Operator.CONTAINS ? "contains" : "starts-with";
+                int start = pos;
+                if (keyword(keyword) && eat("(")) {
+                    Predicate operand = operand(function, null);
+                    expect(",");
+                    String value = literal();
+                    expect(")");
+                    return withValue(operand, value);
+                }
+                pos = start;
+            }
+            Predicate operand = operand(Operator.EXISTS, null);
+            if (eat("!=")) {
+                return withValue(withOperator(operand, Operator.NOT_EQUALS), literal());
+            }
+            if (eat("=")) {
+                return withValue(withOperator(operand, Operator.EQUALS), literal());
+            }
+            if (operand instanceof TextTest) {
+                throw new Unsupported();
+            }
+            return operand;
+        }
+
+        private Predicate operand(Operator operator, String value) {
+            if (eat("@")) {
+                String[] name = qualifiedName(true);
+                return new AttributeTest(attributeNamespace(name), name[1], operator, value);
+            }
+            if (eat("text()")) {
+                return new TextTest(operator, value);
+            }
+            throw new Unsupported();
+        }
+
+        private static Predicate withOperator(Predicate operand, Operator operator) {
+            return switch (operand) {
+                case AttributeTest a -> new AttributeTest(a.namespace(), a.localName(), operator, null);
+                case TextTest t -> new TextTest(operator, null);
+                case Junction j -> throw new Unsupported();
+            };
+        }
+
+        private static Predicate withValue(Predicate operand, String value) {
+            return switch (operand) {
+                case AttributeTest a -> new AttributeTest(a.namespace(), a.localName(), a.operator(), value);
+                case TextTest t -> new TextTest(t.operator(), value);
+                case Junction j -> throw new Unsupported();
+            };
+        }
+
+        private String attributeNamespace(String[] name) {
+            // Unprefixed attributes are in no namespace
+            return name[0] == null ? "" : resolve(name[0]);
+        }
+
+        private String resolve(String prefix) {
+            String uri = namespaces.get(prefix);
+            if (uri == null) {
+                throw new IllegalArgumentException("Namespace prefix '" + prefix + "' is not declared in namespaces");
+            }
+            return uri;
+        }
+
+        /**
+         * @return prefix (null if none) and local name; the local name is {@code *} for wildcards
+         */
+        private String[] qualifiedName(boolean attribute) {
+            skipWhitespace();
+            if (!attribute && eat("*")) {
+                return new String[]{null, "*"};
+            }
+            String first = name();
+            if (pos + 1 < input.length() && input.charAt(pos) == ':' && input.charAt(pos + 1) != ':') {
+                pos++;
+                if (!attribute && eat("*")) {
+                    return new String[]{first, "*"};
+                }
+                return new String[]{first, name()};
+            }
+            if (pos < input.length() && (input.charAt(pos) == '(' || input.charAt(pos) == ':')) {
+                // Function call or axis such as ancestor::
+                throw new Unsupported();
+            }
+            return new String[]{null, first};
+        }
+
+        private String name() {
+            int start = pos;
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                boolean valid = pos == start
+                    ? Character.isLetter(c) || c == '_'
+                    : Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+                if (!valid) {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw new Unsupported();
+            }
+            return input.substring(start, pos);
+        }
+
+        private String literal() {
+            skipWhitespace();
+            if (pos >= input.length() || (input.charAt(pos) != '\'' && input.charAt(pos) != '"')) {
+                throw new Unsupported();
+            }
+            char quote = input.charAt(pos);
+            int end = input.indexOf(quote, pos + 1);
+            if (end < 0) {
+                throw new Unsupported();
+            }
+            String value = input.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+
+        private boolean keyword(String keyword) {
+            skipWhitespace();
+            int end = pos + keyword.length();
+            if (input.startsWith(keyword, pos)
+                && (end == input.length() || !(Character.isLetterOrDigit(input.charAt(end)) || input.charAt(end) == '-'))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean eat(String token) {
+            skipWhitespace();
+            if (input.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!eat(token)) {
+                throw new Unsupported();
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlPublicIdCondition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Evaluates {@code builtin.xmlPublicID} conditions by reading only the prolog of each XML file.
+ * <p>
+ * The public identifier sits in the DOCTYPE, before the root element, so the first
+ * {@value #PROLOG_LENGTH} bytes are read and scanned by hand: the XML declaration, comments and
+ * processing instructions are skipped up to the DOCTYPE, and scanning stops at the root element.
+ * Only a prolog longer than that, such as one with a large license comment, is read further, up to
+ * {@value #MAX_PROLOG_LENGTH} bytes. The rest of the file is never read or parsed.
+ * </p>
+ */
+final class XmlPublicIdEvaluator {
+
+    static final int PROLOG_LENGTH = 4 * 1024;
+    static final int MAX_PROLOG_LENGTH = 64 * 1024;
+
+    private XmlPublicIdEvaluator() {
+    }
+
+    /**
+     * The DOCTYPE found in a prolog.
+     *
+     * @param complete true if the prolog was scanned to the DOCTYPE or root element, false if it was cut off
+     * @param name     Name of the document type, null if there is no DOCTYPE
+     * @param publicId Public identifier with whitespace normalized, null if the DOCTYPE has none
+     * @param line     1-based line of the public identifier
+     */
+    record Doctype(boolean complete, String name, String publicId, int line) {
+        static final Doctype NONE = new Doctype(true, null, null, 0);
+        static final Doctype INCOMPLETE = new Doctype(false, null, null, 0);
+    }
+
+    static EvaluationResult evaluate(BuiltinXmlPublicIdCondition condition, Path root, Set<String> scope, int maxIncidents) {
+        if (condition.regex() == null || condition.regex().isEmpty()) {
+            throw new IllegalArgumentException("builtin.xmlPublicID condition has no regex");
+        }
+        Pattern regex;
+        try {
+            regex = Pattern.compile(condition.regex());
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid public ID regex: " + e.getDescription() + " in " + condition.regex());
+        }
+
+        IncidentCollector incidents = new IncidentCollector(maxIncidents);
+        int scanned = ParallelFileWalker.walk(root, scope, FilePattern.anyOf(condition.filepaths(), ".xml"),
+            (file, relative, relativePath, size) -> {
+                if (!incidents.accepts(relativePath)) {
+                    return;
+                }
+                Doctype doctype = readDoctype(file);
+                if (doctype.publicId() != null && regex.matcher(doctype.publicId()).find()) {
+                    incidents.add(new Incident(relativePath, doctype.line(),
+                        "<!DOCTYPE " + doctype.name() + " PUBLIC \"" + doctype.publicId() + "\""));
+                }
+            },
+            () -> false);
+        return new EvaluationResult(!incidents.isEmpty(), incidents.toList(), incidents.truncated(), scanned);
+    }
+
+    static Doctype readDoctype(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] prolog = in.readNBytes(PROLOG_LENGTH);
+            Doctype doctype = scan(decode(prolog));
+            if (!doctype.complete() && prolog.length == PROLOG_LENGTH) {
+                byte[] rest = in.readNBytes(MAX_PROLOG_LENGTH - PROLOG_LENGTH);
+                byte[] longer = new byte[prolog.length + rest.length];
+                System.arraycopy(prolog, 0, longer, 0, prolog.length);
+                System.arraycopy(rest, 0, longer, prolog.length, rest.length);
+                doctype = scan(decode(longer));
+            }
+            return doctype;
+        }
+    }
+
+    /**
+     * Markup in the prolog is ASCII in every encoding but UTF-16, so other files are read as Latin-1,
+     * which maps each byte to one char and cannot fail.
+     */
+    private static String decode(byte[] bytes) {
+        if (bytes.length >= 2 && ((bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF)
+            || (bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE))) {
+            // The decoder consumes the byte order mark
+            return new String(bytes, StandardCharsets.UTF_16);
+        }
+        if (bytes.length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+            return new String(bytes, 3, bytes.length - 3, StandardCharsets.ISO_8859_1);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Scan a prolog up to its DOCTYPE or root element.
+     */
+    static Doctype scan(String prolog) {
+        int length = prolog.length();
+        int pos = 0;
+        while (true) {
+            pos = skipWhitespace(prolog, pos);
+            if (pos >= length) {
+                return Doctype.INCOMPLETE;
+            }
+            if (prolog.startsWith("<?", pos)) {
+                pos = skipPast(prolog, pos + 2, "?>");
+            } else if (prolog.startsWith("<!--", pos)) {
+                pos = skipPast(prolog, pos + 4, "-->");
+            } else if (prolog.startsWith("<!DOCTYPE", pos)) {
+                return doctype(prolog, pos + "<!DOCTYPE".length());
+            } else {
+                // Root element, or something that is not XML
+                return Doctype.NONE;
+            }
+            if (pos < 0) {
+                return Doctype.INCOMPLETE;
+            }
+        }
+    }
+
+    private static Doctype doctype(String prolog, int pos) {
+        pos = skipWhitespace(prolog, pos);
+        int nameStart = pos;
+        while (pos < prolog.length() && !Character.isWhitespace(prolog.charAt(pos))
+            && prolog.charAt(pos) != '>' && prolog.charAt(pos) != '[') {
+            pos++;
+        }
+        String name = prolog.substring(nameStart, pos);
+        pos = skipWhitespace(prolog, pos);
+        if (prolog.length() - pos < "PUBLIC".length() && "PUBLIC".startsWith(prolog.substring(pos))) {
+            return Doctype.INCOMPLETE;
+        }
+        if (!prolog.startsWith("PUBLIC", pos)) {
+            return new Doctype(true, name, null, 0);
+        }
+        pos = skipWhitespace(prolog, pos + "PUBLIC".length());
+        if (pos >= prolog.length()) {
+            return Doctype.INCOMPLETE;
+        }
+        char quote = prolog.charAt(pos);
+        if (quote != '"' && quote != '\'') {
+            return new Doctype(true, name, null, 0);
+        }
+        int end = prolog.indexOf(quote, pos + 1);
+        if (end < 0) {
+            return Doctype.INCOMPLETE;
+        }
+        String publicId = prolog.substring(pos + 1, end).strip().replaceAll("\\s+", " ");
+        return new Doctype(true, name, publicId, lineOf(prolog, pos));
+    }
+
+    private static int skipPast(String prolog, int from, String terminator) {
+        int end = prolog.indexOf(terminator, from);
+        return end < 0 ? -1 : end + terminator.length();
+    }
+
+    private static int skipWhitespace(String prolog, int pos) {
+        while (pos < prolog.length() && Character.isWhitespace(prolog.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int lineOf(String prolog, int pos) {
+        int line = 1;
+        for (int i = 0; i < pos; i++) {
+            if (prolog.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+}
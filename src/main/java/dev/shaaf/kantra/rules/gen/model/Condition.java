@@ -20,5 +20,27 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
         @JsonSubTypes.Type(value = JavaReferencedCondition.class, name = "java.referenced"),
         @JsonSubTypes.Type(value = JavaDependencyCondition.class, name = "java.dependency")
 })
-public interface Condition {
+public sealed interface Condition permits AndCondition, OrCondition, BuiltinFileCondition, BuiltinFileContentCondition,
+        BuiltinHasTagsCondition, BuiltinJsonCondition, BuiltinXmlCondition, BuiltinXmlPublicIdCondition,
+        JavaReferencedCondition, JavaDependencyCondition {
+
+    /**
+     * @return Name under which the condition's matches are stored for later conditions, or null
+     */
+    String as();
+
+    /**
+     * @return Name of an earlier condition's matches to search in, or null
+     */
+    String from();
+
+    /**
+     * @return true if the condition is only evaluated for its side effects ({@code as}) and not for the rule outcome
+     */
+    Boolean ignore();
+
+    /**
+     * @return true if the condition is negated
+     */
+    Boolean not();
 }
@@ -0,0 +1,33 @@
+package dev.shaaf.kantra.rules.gen.model;
+
+/**
+ * Visitor over the {@link Condition} hierarchy, dispatched by {@link Conditions#accept(Condition, ConditionVisitor)}.
+ * <p>
+ * {@code visitAnd} and {@code visitOr} receive the composite itself; implementations decide whether and how
+ * to descend, e.g. by calling {@link Conditions#accept(Condition, ConditionVisitor)} on the children.
+ * </p>
+ *
+ * @param <R> Result type
+ */
+public interface ConditionVisitor<R> {
+
+    R visitAnd(AndCondition condition);
+
+    R visitOr(OrCondition condition);
+
+    R visitFile(BuiltinFileCondition condition);
+
+    R visitFileContent(BuiltinFileContentCondition condition);
+
+    R visitHasTags(BuiltinHasTagsCondition condition);
+
+    R visitJson(BuiltinJsonCondition condition);
+
+    R visitXml(BuiltinXmlCondition condition);
+
+    R visitXmlPublicId(BuiltinXmlPublicIdCondition condition);
+
+    R visitJavaReferenced(JavaReferencedCondition condition);
+
+    R visitJavaDependency(JavaDependencyCondition condition);
+}
@@ -0,0 +1,150 @@
+package dev.shaaf.kantra.rules.gen.model;
+
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Traversal of {@link Condition} trees.
+ * <p>
+ * Dispatch is an exhaustive {@code switch} over the sealed hierarchy, so adding a condition type breaks
+ * the build here instead of falling through an {@code instanceof} chain at runtime. Nested
+ * {@link AndCondition}/{@link OrCondition} lists are walked by index, without iterators or intermediate
+ * lists, so a traversal allocates nothing beyond what the callback does.
+ * </p>
+ */
+public final class Conditions {
+
+    private Conditions() {
+    }
+
+    /**
+     * Callback of {@link #walk(Condition, Callback)}.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * @param condition Visited condition
+         * @param depth     Nesting depth, 0 for the root
+         * @return true to descend into the children of an and/or condition, false to skip them
+         */
+        boolean visit(Condition condition, int depth);
+    }
+
+    /**
+     * Dispatch a condition to the matching visitor method.
+     *
+     * @param condition Condition to visit
+     * @param visitor   Visitor
+     * @return The visitor's result
+     */
+    public static <R> R accept(Condition condition, ConditionVisitor<R> visitor) {
+        return switch (condition) {
+            case AndCondition and -> visitor.visitAnd(and);
+            case OrCondition or -> visitor.visitOr(or);
+            case BuiltinFileCondition file -> visitor.visitFile(file);
+            case BuiltinFileContentCondition fileContent -> visitor.visitFileContent(fileContent);
+            case BuiltinHasTagsCondition hasTags -> visitor.visitHasTags(hasTags);
+            case BuiltinJsonCondition json -> visitor.visitJson(json);
+            case BuiltinXmlCondition xml -> visitor.visitXml(xml);
+            case BuiltinXmlPublicIdCondition xmlPublicId -> visitor.visitXmlPublicId(xmlPublicId);
+            case JavaReferencedCondition javaReferenced -> visitor.visitJavaReferenced(javaReferenced);
+            case JavaDependencyCondition javaDependency -> visitor.visitJavaDependency(javaDependency);
+        };
+    }
+
+    /**
+     * Visit a condition tree depth-first, parents before children, children in declaration order.
+     *
+     * @param root     Root condition, may be null
+     * @param callback Called for every condition
+     */
+    public static void walk(Condition root, Callback callback) {
+        walk(root, callback, 0);
+    }
+
+    /**
+     * @return The nested conditions of an and/or condition, or null for leaf conditions
+     */
+    public static List<Condition> children(Condition condition) {
+        return switch (condition) {
+            case AndCondition and -> and.conditions();
+            case OrCondition or -> or.conditions();
+            case BuiltinFileCondition ignored -> null;
+            case BuiltinFileContentCondition ignored -> null;
+            case BuiltinHasTagsCondition ignored -> null;
+            case BuiltinJsonCondition ignored -> null;
+            case BuiltinXmlCondition ignored -> null;
+            case BuiltinXmlPublicIdCondition ignored -> null;
+            case JavaReferencedCondition ignored -> null;
+            case JavaDependencyCondition ignored -> null;
+        };
+    }
+
+    /**
+     * @return Number of leaf (provider) conditions in the tree
+     */
+    public static int leafCount(Condition root) {
+        if (root == null) {
+            return 0;
+        }
+        List<Condition> children = children(root);
+        if (children == null) {
+            return 1;
+        }
+        int count = 0;
+        if (children instanceof RandomAccess) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                count += leafCount(children.get(i));
+            }
+        } else {
+            for (Condition child : children) {
+                count += leafCount(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Height of the tree: 1 for a single leaf, 0 for null
+     */
+    public static int depth(Condition root) {
+        if (root == null) {
+            return 0;
+        }
+        List<Condition> children = children(root);
+        if (children == null) {
+            return 1;
+        }
+        int max = 0;
+        if (children instanceof RandomAccess) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                max = Math.max(max, depth(children.get(i)));
+            }
+        } else {
+            for (Condition child : children) {
+                max = Math.max(max, depth(child));
+            }
+        }
+        return max + 1;
+    }
+
+    private static void walk(Condition condition, Callback callback, int depth) {
+        if (condition == null || !callback.visit(condition, depth)) {
+            return;
+        }
+        List<Condition> children = children(condition);
+        if (children == null) {
+            return;
+        }
+        // Lists deserialized by Jackson are ArrayLists; only other list types pay for an iterator
+        if (children instanceof RandomAccess) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                walk(children.get(i), callback, depth + 1);
+            }
+        } else {
+            for (Condition child : children) {
+                walk(child, callback, depth + 1);
+            }
+        }
+    }
+}
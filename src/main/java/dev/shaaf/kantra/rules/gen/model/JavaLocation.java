@@ -1,12 +1,22 @@
 package dev.shaaf.kantra.rules.gen.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Locale;
+
+/**
+ * Locations of a {@code java.referenced} condition. Covers every location the analyzer accepts, so
+ * upstream rules always load; {@link #ENUM} is this project's older name for {@link #ENUM_CONSTANT}.
+ */
 public enum JavaLocation {
+    DEFAULT,
     INHERITANCE,
     METHOD_CALL,
     CONSTRUCTOR_CALL,
     ANNOTATION,
     IMPLEMENTS_TYPE,
     ENUM,
+    ENUM_CONSTANT,
     RETURN_TYPE,
     IMPORT,
     VARIABLE_DECLARATION,
@@ -14,5 +24,15 @@ public enum JavaLocation {
     PACKAGE,
     FIELD,
     METHOD,
-    CLASS
-}
\ No newline at end of file
+    CLASS;
+
+    @JsonCreator
+    public static JavaLocation fromValue(String value) {
+        // Rule files in the wild use both IMPORT and import
+        try {
+            return JavaLocation.valueOf(value.trim().toUpperCase(Locale.ROOT).replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown location: " + value);
+        }
+    }
+}
@@ -7,7 +7,7 @@ import java.util.List;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public record JavaReferencedCondition(
     String pattern,
-    String location,
+    JavaLocation location,
     Annotated annotated,
     List<String> filepaths,
     String as,
@@ -16,11 +16,11 @@ public record JavaReferencedCondition(
     Boolean not
 ) implements Condition {
     
-    public JavaReferencedCondition(String pattern, String location) {
+    public JavaReferencedCondition(String pattern, JavaLocation location) {
         this(pattern, location, null, null, null, null, null, null);
     }
     
-    public JavaReferencedCondition(String pattern, String location, Annotated annotated) {
+    public JavaReferencedCondition(String pattern, JavaLocation location, Annotated annotated) {
         this(pattern, location, annotated, null, null, null, null, null);
     }
     
@@ -0,0 +1,502 @@
+package dev.shaaf.kantra.rules.gen.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Immutable inverted index over rules, ranked with BM25.
+ * <p>
+ * Message, description, condition patterns, labels and ruleID are tokenized into lower-case words;
+ * camelCase and dotted identifiers are also indexed by their parts, so {@code SessionBean} is found
+ * by {@code session bean} and {@code javax.ejb.Stateless} by {@code stateless}. Pattern and ruleID words
+ * count twice, as they say most precisely what a rule detects.
+ * </p>
+ * <p>
+ * A query walks only the postings of its terms and keeps the best {@code offset + limit} hits in a
+ * bounded heap, so its cost depends on how many rules share the query terms, not on the index size.
+ * The index is replaced as a whole when rules change; lookups need no lock.
+ * </p>
+ */
+public final class RuleSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int PATTERN_WEIGHT = 2;
+    private static final int RULE_ID_WEIGHT = 2;
+    private static final int SNIPPET_LENGTH = 160;
+    private static final int SNIPPET_LEAD = 40;
+
+    private final List<SearchDocument> documents;
+    private final Map<String, Integer> termIds;
+    private final int[][] postingDocs;
+    private final int[][] postingFreqs;
+    private final int[] lengths;
+    private final float averageLength;
+
+    private RuleSearchIndex(List<SearchDocument> documents, Map<String, Integer> termIds,
+                            int[][] postingDocs, int[][] postingFreqs, int[] lengths) {
+        this.documents = documents;
+        this.termIds = termIds;
+        this.postingDocs = postingDocs;
+        this.postingFreqs = postingFreqs;
+        this.lengths = lengths;
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        this.averageLength = lengths.length == 0 ? 1 : Math.max(1, (float) total / lengths.length);
+    }
+
+    /**
+     * @return Index without documents
+     */
+    public static RuleSearchIndex empty() {
+        return build(List.of());
+    }
+
+    /**
+     * Index the given documents. Hits refer to them in this order when scores tie.
+     */
+    public static RuleSearchIndex build(List<SearchDocument> documents) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<PostingBuilder> postings = new ArrayList<>();
+        int[] lengths = new int[documents.size()];
+
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (int doc = 0; doc < documents.size(); doc++) {
+            SearchDocument document = documents.get(doc);
+            frequencies.clear();
+            int length = addField(document.ruleId(), RULE_ID_WEIGHT, frequencies)
+                + addField(document.message(), 1, frequencies)
+                + addField(document.description(), 1, frequencies);
+            for (String pattern : document.patterns()) {
+                length += addField(pattern, PATTERN_WEIGHT, frequencies);
+            }
+            for (String label : document.labels()) {
+                length += addField(label, 1, frequencies);
+            }
+            lengths[doc] = length;
+
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Integer id = termIds.get(entry.getKey());
+                if (id == null) {
+                    id = postings.size();
+                    termIds.put(entry.getKey(), id);
+                    postings.add(new PostingBuilder());
+                }
+                postings.get(id).add(doc, entry.getValue());
+            }
+        }
+
+        int[][] postingDocs = new int[postings.size()][];
+        int[][] postingFreqs = new int[postings.size()][];
+        for (int id = 0; id < postings.size(); id++) {
+            PostingBuilder posting = postings.get(id);
+            postingDocs[id] = Arrays.copyOf(posting.docs, posting.size);
+            postingFreqs[id] = Arrays.copyOf(posting.freqs, posting.size);
+        }
+        return new RuleSearchIndex(List.copyOf(documents), termIds, postingDocs, postingFreqs, lengths);
+    }
+
+    private static int addField(String text, int weight, Map<String, Integer> frequencies) {
+        if (text == null) {
+            return 0;
+        }
+        int[] count = new int[1];
+        words(text, (start, end) -> terms(text, start, end, term -> {
+            frequencies.merge(term, weight, Integer::sum);
+            count[0] += weight;
+        }));
+        return count[0];
+    }
+
+    /**
+     * @return Indexed documents, in index order
+     */
+    public List<SearchDocument> documents() {
+        return documents;
+    }
+
+    /**
+     * @return Number of indexed documents
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Rank the documents matching any word of the query.
+     *
+     * @param query  Free text
+     * @param offset Number of best hits to skip
+     * @param limit  Maximum number of hits to return
+     * @return Total number of matching documents and the requested page of hits, best first
+     */
+    public Page search(String query, int offset, int limit) {
+        Set<String> terms = queryTerms(query);
+        int count = documents.size();
+        float[] scores = new float[count];
+        int[] matches = new int[count];
+        int total = 0;
+
+        for (String term : terms) {
+            Integer id = termIds.get(term);
+            if (id == null) {
+                continue;
+            }
+            int[] docs = postingDocs[id];
+            int[] freqs = postingFreqs[id];
+            float idf = (float) Math.log(1 + (count - docs.length + 0.5) / (docs.length + 0.5));
+            for (int i = 0; i < docs.length; i++) {
+                int doc = docs[i];
+                float tf = freqs[i];
+                if (scores[doc] == 0) {
+                    matches[total++] = doc;
+                }
+                scores[doc] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[doc] / averageLength));
+            }
+        }
+
+        if (offset >= total || limit <= 0) {
+            return new Page(total, List.of());
+        }
+        int[] best = top(matches, total, scores, (int) Math.min((long) offset + limit, total));
+        List<Hit> hits = new ArrayList<>(best.length - offset);
+        for (int i = offset; i < best.length; i++) {
+            SearchDocument document = documents.get(best[i]);
+            hits.add(new Hit(document, scores[best[i]], snippet(document, terms)));
+        }
+        return new Page(total, hits);
+    }
+
+    /**
+     * The k best matches, best first, through a min-heap holding the current k best.
+     */
+    private static int[] top(int[] matches, int count, float[] scores, int k) {
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int doc = matches[i];
+            if (size < k) {
+                heap[size] = doc;
+                siftUp(heap, size++, scores);
+            } else if (better(doc, heap[0], scores)) {
+                heap[0] = doc;
+                siftDown(heap, size, scores);
+            }
+        }
+        int[] best = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            best[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i, scores);
+        }
+        return best;
+    }
+
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!better(heap[parent], heap[index], scores)) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && better(heap[worst], heap[left], scores)) {
+                worst = left;
+            }
+            if (right < size && better(heap[worst], heap[right], scores)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, worst, index);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    /**
+     * A window of the first field mentioning a query word, with matching words in bold.
+     */
+    private static String snippet(SearchDocument document, Set<String> terms) {
+        List<String> fields = new ArrayList<>(3);
+        fields.add(document.message());
+        fields.add(document.description());
+        fields.add(String.join("; ", document.patterns()));
+        for (String field : fields) {
+            if (field != null) {
+                String snippet = highlight(field.strip().replaceAll("\\s+", " "), terms);
+                if (snippet != null) {
+                    return snippet;
+                }
+            }
+        }
+        String fallback = document.message() != null ? document.message() : document.ruleId();
+        fallback = fallback.strip().replaceAll("\\s+", " ");
+        return fallback.length() <= SNIPPET_LENGTH ? fallback : fallback.substring(0, SNIPPET_LENGTH) + "…";
+    }
+
+    private static String highlight(String text, Set<String> terms) {
+        List<int[]> matches = new ArrayList<>();
+        words(text, (start, end) -> {
+            boolean[] matched = new boolean[1];
+            terms(text, start, end, term -> matched[0] |= terms.contains(term));
+            if (matched[0]) {
+                matches.add(new int[]{start, end});
+            }
+        });
+        if (matches.isEmpty()) {
+            return null;
+        }
+
+        int first = matches.get(0)[0];
+        int start = Math.max(0, first - SNIPPET_LEAD);
+        if (start > 0) {
+            int space = text.indexOf(' ', start);
+            start = space >= 0 && space < first ? space + 1 : first;
+        }
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        if (end < text.length()) {
+            int space = text.lastIndexOf(' ', end);
+            if (space > matches.get(0)[1]) {
+                end = space;
+            }
+        }
+
+        StringBuilder snippet = new StringBuilder(end - start + 16);
+        if (start > 0) {
+            snippet.append('…');
+        }
+        int position = start;
+        for (int[] match : matches) {
+            if (match[0] < start || match[1] > end) {
+                continue;
+            }
+            snippet.append(text, position, match[0]).append("**").append(text, match[0], match[1]).append("**");
+            position = match[1];
+        }
+        snippet.append(text, position, end);
+        if (end < text.length()) {
+            snippet.append('…');
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * Distinct terms of a query, in query order.
+     */
+    static Set<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            words(query, (start, end) -> terms(query, start, end, terms::add));
+        }
+        return terms;
+    }
+
+    /**
+     * Report each maximal run of letters and digits.
+     */
+    private static void words(String text, WordVisitor visitor) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            visitor.word(start, i);
+        }
+    }
+
+    /**
+     * Terms of one word: the word itself and, for camelCase words, its parts. Single characters are skipped.
+     */
+    private static void terms(String text, int start, int end, Consumer<String> sink) {
+        emit(text, start, end, sink);
+        int part = start;
+        for (int i = start + 1; i < end; i++) {
+            char previous = text.charAt(i - 1);
+            char current = text.charAt(i);
+            boolean boundary = Character.isUpperCase(current)
+                && (Character.isLowerCase(previous) || Character.isDigit(previous)
+                    || (Character.isUpperCase(previous) && i + 1 < end && Character.isLowerCase(text.charAt(i + 1))));
+            if (boundary) {
+                emit(text, part, i, sink);
+                part = i;
+            }
+        }
+        if (part > start) {
+            emit(text, part, end, sink);
+        }
+    }
+
+    private static void emit(String text, int start, int end, Consumer<String> sink) {
+        if (end - start > 1) {
+            sink.accept(text.substring(start, end).toLowerCase());
+        }
+    }
+
+    /**
+     * Write the index in the format read by {@link #readFrom(DataInputStream)}.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(documents.size());
+        for (int doc = 0; doc < documents.size(); doc++) {
+            SearchDocument document = documents.get(doc);
+            writeString(out, document.ruleId());
+            writeString(out, document.file());
+            writeString(out, document.message());
+            writeString(out, document.description());
+            writeStrings(out, document.patterns());
+            writeStrings(out, document.labels());
+            out.writeInt(lengths[doc]);
+        }
+        out.writeInt(termIds.size());
+        for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+            int id = entry.getValue();
+            writeString(out, entry.getKey());
+            out.writeInt(postingDocs[id].length);
+            for (int i = 0; i < postingDocs[id].length; i++) {
+                out.writeInt(postingDocs[id][i]);
+                out.writeInt(postingFreqs[id][i]);
+            }
+        }
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(DataOutputStream)}.
+     */
+    public static RuleSearchIndex readFrom(DataInputStream in) throws IOException {
+        int documentCount = in.readInt();
+        List<SearchDocument> documents = new ArrayList<>(documentCount);
+        int[] lengths = new int[documentCount];
+        for (int doc = 0; doc < documentCount; doc++) {
+            documents.add(new SearchDocument(readString(in), readString(in), readString(in), readString(in),
+                readStrings(in), readStrings(in)));
+            lengths[doc] = in.readInt();
+        }
+        int termCount = in.readInt();
+        Map<String, Integer> termIds = new HashMap<>(termCount * 4 / 3 + 1);
+        int[][] postingDocs = new int[termCount][];
+        int[][] postingFreqs = new int[termCount][];
+        for (int id = 0; id < termCount; id++) {
+            termIds.put(readString(in), id);
+            int size = in.readInt();
+            postingDocs[id] = new int[size];
+            postingFreqs[id] = new int[size];
+            for (int i = 0; i < size; i++) {
+                postingDocs[id][i] = in.readInt();
+                postingFreqs[id][i] = in.readInt();
+            }
+        }
+        return new RuleSearchIndex(List.copyOf(documents), termIds, postingDocs, postingFreqs, lengths);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return List.copyOf(values);
+    }
+
+    @FunctionalInterface
+    private interface WordVisitor {
+        void word(int start, int end);
+    }
+
+    private static final class PostingBuilder {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size++] = freq;
+        }
+    }
+
+    /**
+     * One matching rule.
+     *
+     * @param document The rule
+     * @param score    BM25 score, higher is better
+     * @param snippet  Excerpt of the message, description or patterns with matching words in {@code **bold**}
+     */
+    public record Hit(SearchDocument document, float score, String snippet) {}
+
+    /**
+     * A page of search results.
+     *
+     * @param total Number of matching rules over all pages
+     * @param hits  Hits of the requested page, best first
+     */
+    public record Page(int total, List<Hit> hits) {}
+}
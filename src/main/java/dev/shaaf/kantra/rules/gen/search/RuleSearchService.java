@@ -0,0 +1,278 @@
+package dev.shaaf.kantra.rules.gen.search;
+
+import dev.shaaf.kantra.rules.gen.catalog.CatalogConfig;
+import dev.shaaf.kantra.rules.gen.catalog.ConditionKey;
+import dev.shaaf.kantra.rules.gen.catalog.RuleCatalog;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+import dev.shaaf.kantra.rules.gen.validation.RuleInterner;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over the rules in the catalog directories, see {@link RuleSearchIndex}.
+ * <p>
+ * The index is stored in {@code kantra.mcp.search.index-file} together with the size and modification
+ * time of every rule file it was built from. At startup the stored index is used as is when no file
+ * changed; otherwise only new and changed files are parsed again and the index is rebuilt from the
+ * stored documents of the others. The same check runs whenever the {@link RuleCatalog} applied changes
+ * of a watched directory.
+ * </p>
+ */
+@ApplicationScoped
+@Startup
+public class RuleSearchService {
+
+    private static final int MAGIC = 0x53524958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_FILE_SIZE = 16 * 1024 * 1024;
+
+    @Inject
+    RuleValidator ruleValidator;
+
+    @Inject
+    RuleCatalog catalog;
+
+    @Inject
+    CatalogConfig catalogConfig;
+
+    @Inject
+    SearchConfig config;
+
+    private List<Path> roots = List.of();
+    private Path indexFile;
+    private final Map<Path, FileStamp> stamps = new HashMap<>();
+    private final Map<Path, List<SearchDocument>> documentsByFile = new HashMap<>();
+    private volatile RuleSearchIndex index = RuleSearchIndex.empty();
+
+    public RuleSearchService() {
+    }
+
+    /**
+     * @param ruleValidator Validator used to parse rule files
+     * @param roots         Directories to index recursively
+     * @param indexFile     File to store the index in, or null to keep it in memory only
+     */
+    public RuleSearchService(RuleValidator ruleValidator, List<Path> roots, Path indexFile) {
+        this.ruleValidator = ruleValidator;
+        this.roots = normalize(roots);
+        this.indexFile = indexFile;
+    }
+
+    @PostConstruct
+    void initialize() {
+        roots = normalize(catalogConfig.directories().orElse(List.of()).stream().map(Path::of).toList());
+        indexFile = config.indexFile().map(Path::of).orElse(null);
+        if (!roots.isEmpty()) {
+            open();
+            catalog.addListener(root -> refresh());
+        }
+    }
+
+    /**
+     * Load the stored index, if any, and bring it up to date with the directories.
+     *
+     * @return true if the stored index was used without reparsing any file
+     */
+    public synchronized boolean open() {
+        boolean loaded = readStored();
+        boolean changed = refresh();
+        Log.infof("Rule search: %d rules indexed (%s)", index.size(),
+            loaded ? (changed ? "stored index updated" : "stored index up to date") : "built");
+        return loaded && !changed;
+    }
+
+    /**
+     * Reparse the rule files that were added or changed since the last refresh and drop deleted ones.
+     *
+     * @return true if the index changed
+     */
+    public synchronized boolean refresh() {
+        Map<Path, FileStamp> current = scan();
+        boolean changed = false;
+
+        for (Path file : new ArrayList<>(stamps.keySet())) {
+            if (!current.containsKey(file)) {
+                stamps.remove(file);
+                documentsByFile.remove(file);
+                changed = true;
+            }
+        }
+        RuleInterner interner = new RuleInterner();
+        for (Map.Entry<Path, FileStamp> entry : current.entrySet()) {
+            if (!entry.getValue().equals(stamps.get(entry.getKey()))) {
+                documentsByFile.put(entry.getKey(), parse(entry.getKey(), interner));
+                stamps.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            List<SearchDocument> documents = new ArrayList<>();
+            new TreeMap<>(documentsByFile).values().forEach(documents::addAll);
+            index = RuleSearchIndex.build(documents);
+            store();
+        }
+        return changed;
+    }
+
+    /**
+     * @see RuleSearchIndex#search(String, int, int)
+     */
+    public RuleSearchIndex.Page search(String query, int offset, int limit) {
+        return index.search(query, offset, limit);
+    }
+
+    /**
+     * @return Number of indexed rules
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Stamp every rule file under the roots. Files under a root that cannot be listed keep their
+     * previous stamp, so a temporarily unavailable directory does not empty the index.
+     */
+    private Map<Path, FileStamp> scan() {
+        Map<Path, FileStamp> current = new HashMap<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(RulesetValidator::isRuleFile)::iterator) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        current.put(file, new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.warnf("Rule search: cannot scan %s: %s", root, e.getMessage());
+                stamps.forEach((file, stamp) -> {
+                    if (file.startsWith(root)) {
+                        current.putIfAbsent(file, stamp);
+                    }
+                });
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Search documents of the rules in a file. Files that cannot be read or parsed contribute none.
+     */
+    private List<SearchDocument> parse(Path file, RuleInterner interner) {
+        List<SearchDocument> documents = new ArrayList<>();
+        try {
+            if (Files.size(file) <= MAX_FILE_SIZE) {
+                String yaml = Files.readString(file);
+                if (!yaml.isBlank()) {
+                    for (Rule rule : ruleValidator.parseYamlToRules(yaml, interner)) {
+                        if (rule.ruleId() != null) {
+                            documents.add(new SearchDocument(rule.ruleId(), file.toString(), rule.message(),
+                                rule.description(),
+                                ConditionKey.of(rule.when()).stream().map(ConditionKey::toString).toList(),
+                                rule.labels() != null ? rule.labels().stream().filter(Objects::nonNull).toList() : List.of()));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.debugf("Rule search: skipping %s: %s", file, e.getMessage());
+        }
+        return List.copyOf(documents);
+    }
+
+    /**
+     * Read the stored stamps and index.
+     *
+     * @return true if a compatible stored index was read
+     */
+    private boolean readStored() {
+        if (indexFile == null || !Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.infof("Rule search: %s has an unknown format, rebuilding", indexFile);
+                return false;
+            }
+            Map<Path, FileStamp> storedStamps = new HashMap<>();
+            int files = in.readInt();
+            for (int i = 0; i < files; i++) {
+                storedStamps.put(Path.of(RuleSearchIndex.readString(in)), new FileStamp(in.readLong(), in.readLong()));
+            }
+            RuleSearchIndex stored = RuleSearchIndex.readFrom(in);
+
+            stamps.clear();
+            stamps.putAll(storedStamps);
+            documentsByFile.clear();
+            for (SearchDocument document : stored.documents()) {
+                documentsByFile.computeIfAbsent(Path.of(document.file()), f -> new ArrayList<>()).add(document);
+            }
+            index = stored;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.warnf("Rule search: cannot read %s, rebuilding: %s", indexFile, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replace the stored index. The file is written next to the target and moved over it, so a
+     * crash while writing leaves the previous index intact.
+     */
+    private void store() {
+        if (indexFile == null) {
+            return;
+        }
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            if (indexFile.getParent() != null) {
+                Files.createDirectories(indexFile.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(stamps.size());
+                for (Map.Entry<Path, FileStamp> entry : stamps.entrySet()) {
+                    RuleSearchIndex.writeString(out, entry.getKey().toString());
+                    out.writeLong(entry.getValue().size());
+                    out.writeLong(entry.getValue().modified());
+                }
+                index.writeTo(out);
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.warnf("Rule search: cannot store index in %s: %s", indexFile, e.getMessage());
+        }
+    }
+
+    private static List<Path> normalize(List<Path> roots) {
+        return roots.stream().map(root -> root.toAbsolutePath().normalize()).toList();
+    }
+
+    private record FileStamp(long size, long modified) {}
+}
@@ -0,0 +1,23 @@
+package dev.shaaf.kantra.rules.gen.search;
+
+import io.smallrye.config.ConfigMapping;
+
+import java.util.Optional;
+
+/**
+ * Configuration of the rule search index. The indexed directories are the catalog directories,
+ * {@code kantra.mcp.catalog.directories}.
+ *
+ * Example configuration:
+ * <pre>
+ * kantra.mcp.search.index-file=/var/cache/scribe/rule-search.idx
+ * </pre>
+ */
+@ConfigMapping(prefix = "kantra.mcp.search")
+public interface SearchConfig {
+
+    /**
+     * File the index is stored in between restarts. Without it the index is rebuilt on every start.
+     */
+    Optional<String> indexFile();
+}
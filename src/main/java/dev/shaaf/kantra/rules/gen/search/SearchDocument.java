@@ -0,0 +1,16 @@
+package dev.shaaf.kantra.rules.gen.search;
+
+import java.util.List;
+
+/**
+ * The searchable fields of one existing rule.
+ *
+ * @param ruleId      Rule ID
+ * @param file        Rule file declaring the rule
+ * @param message     Rule message, may be null
+ * @param description Rule description, may be null
+ * @param patterns    Non-negated leaf conditions of the rule, as type, location and pattern
+ * @param labels      Labels of the rule
+ */
+public record SearchDocument(String ruleId, String file, String message, String description,
+                             List<String> patterns, List<String> labels) {}
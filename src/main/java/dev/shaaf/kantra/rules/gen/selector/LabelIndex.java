@@ -0,0 +1,93 @@
+package dev.shaaf.kantra.rules.gen.selector;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap index of rule labels: one bitmap per label and one per label key, bit {@code i} set when
+ * rule {@code i} carries the label. Selectors are evaluated with bitmap operations, so a query costs
+ * a few word-wise ANDs and ORs per term instead of a pass over every rule's labels.
+ * <p>
+ * Bitmaps are trimmed to their highest set bit, which keeps labels carried by a handful of early rules
+ * small. Immutable; {@link #label(String, String)} and {@link #all()} return copies callers may modify.
+ * </p>
+ */
+public final class LabelIndex {
+
+    private final int size;
+    private final Map<String, BitSet> byLabel;
+    private final Map<String, BitSet> byKey;
+
+    private LabelIndex(int size, Map<String, BitSet> byLabel, Map<String, BitSet> byKey) {
+        this.size = size;
+        this.byLabel = byLabel;
+        this.byKey = byKey;
+    }
+
+    /**
+     * @param labels Labels of each rule, in rule order
+     */
+    public static LabelIndex build(List<? extends Iterable<String>> labels) {
+        Map<String, BitSet> byLabel = new HashMap<>();
+        Map<String, BitSet> byKey = new HashMap<>();
+        for (int rule = 0; rule < labels.size(); rule++) {
+            for (String label : labels.get(rule)) {
+                if (label == null || label.isBlank()) {
+                    continue;
+                }
+                String normalized = label.trim();
+                byLabel.computeIfAbsent(normalized, l -> new BitSet()).set(rule);
+                byKey.computeIfAbsent(key(normalized), k -> new BitSet()).set(rule);
+            }
+        }
+        // BitSet grows by doubling; clone() copies only the words in use
+        byLabel.replaceAll((label, bits) -> (BitSet) bits.clone());
+        byKey.replaceAll((key, bits) -> (BitSet) bits.clone());
+        return new LabelIndex(labels.size(), byLabel, byKey);
+    }
+
+    /**
+     * Key of a label: the part before {@code =}, or the whole label if it has no value.
+     */
+    static String key(String label) {
+        int separator = label.indexOf('=');
+        return separator >= 0 ? label.substring(0, separator) : label;
+    }
+
+    /**
+     * Rules carrying a label.
+     *
+     * @param key   Label key, e.g. {@code konveyor.io/target}
+     * @param value Label value, or null for rules carrying the key with any value
+     * @return New bitmap of the matching rules
+     */
+    public BitSet label(String key, String value) {
+        BitSet bits = value == null ? byKey.get(key) : byLabel.get(key + "=" + value);
+        return bits != null ? (BitSet) bits.clone() : new BitSet();
+    }
+
+    /**
+     * @return New bitmap with a bit set for every rule
+     */
+    public BitSet all() {
+        BitSet bits = new BitSet(size);
+        bits.set(0, size);
+        return bits;
+    }
+
+    /**
+     * @return Number of indexed rules
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of distinct labels
+     */
+    public int labelCount() {
+        return byLabel.size();
+    }
+}
@@ -0,0 +1,203 @@
+package dev.shaaf.kantra.rules.gen.selector;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A Kantra label selector, e.g. {@code konveyor.io/target=quarkus && !konveyor.io/source=weblogic}.
+ * <p>
+ * Grammar, loosest binding first:
+ * <pre>
+ * or      = and { "||" and }
+ * and     = unary { "&amp;&amp;" unary }
+ * unary   = "!" unary | "(" or ")" | label
+ * label   = key [ "=" value ]
+ * </pre>
+ * A label with a value matches rules carrying exactly that label; a bare key matches rules carrying
+ * the key with any value, so {@code konveyor.io/source} selects every rule with a source.
+ * </p>
+ */
+public final class LabelSelector {
+
+    private final String expression;
+    private final Node root;
+
+    private LabelSelector(String expression, Node root) {
+        this.expression = expression;
+        this.root = root;
+    }
+
+    /**
+     * @param expression Selector expression
+     * @return The parsed selector
+     * @throws IllegalArgumentException if the expression is empty or malformed
+     */
+    public static LabelSelector parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Label selector is empty");
+        }
+        Parser parser = new Parser(expression);
+        Node root = parser.or();
+        parser.skipWhitespace();
+        if (parser.position < expression.length()) {
+            throw parser.error("Unexpected '" + expression.charAt(parser.position) + "'");
+        }
+        return new LabelSelector(expression.trim(), root);
+    }
+
+    /**
+     * @return Bitmap of the indexed rules the selector matches
+     */
+    public BitSet evaluate(LabelIndex index) {
+        return evaluate(root, index);
+    }
+
+    private static BitSet evaluate(Node node, LabelIndex index) {
+        return switch (node) {
+            case Label label -> index.label(label.key(), label.value());
+            case Not not -> {
+                BitSet bits = index.all();
+                bits.andNot(evaluate(not.operand(), index));
+                yield bits;
+            }
+            case And and -> {
+                BitSet bits = evaluate(and.operands().get(0), index);
+                for (int i = 1; i < and.operands().size() && !bits.isEmpty(); i++) {
+                    bits.and(evaluate(and.operands().get(i), index));
+                }
+                yield bits;
+            }
+            case Or or -> {
+                BitSet bits = evaluate(or.operands().get(0), index);
+                for (int i = 1; i < or.operands().size(); i++) {
+                    bits.or(evaluate(or.operands().get(i), index));
+                }
+                yield bits;
+            }
+        };
+    }
+
+    /**
+     * @return true if a rule with the given labels is selected
+     */
+    public boolean matches(Collection<String> labels) {
+        return matches(root, labels);
+    }
+
+    private static boolean matches(Node node, Collection<String> labels) {
+        return switch (node) {
+            case Label label -> label.value() != null
+                ? labels.contains(label.key() + "=" + label.value())
+                : labels.stream().anyMatch(l -> LabelIndex.key(l).equals(label.key()));
+            case Not not -> !matches(not.operand(), labels);
+            case And and -> and.operands().stream().allMatch(operand -> matches(operand, labels));
+            case Or or -> or.operands().stream().anyMatch(operand -> matches(operand, labels));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private sealed interface Node permits Label, Not, And, Or {}
+
+    private record Label(String key, String value) implements Node {}
+
+    private record Not(Node operand) implements Node {}
+
+    private record And(List<Node> operands) implements Node {}
+
+    private record Or(List<Node> operands) implements Node {}
+
+    /**
+     * Recursive descent parser over the expression string.
+     */
+    private static final class Parser {
+
+        private final String input;
+        private int position;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        Node or() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(and());
+            while (consume("||")) {
+                operands.add(and());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(List.copyOf(operands));
+        }
+
+        Node and() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(unary());
+            while (consume("&&")) {
+                operands.add(unary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(List.copyOf(operands));
+        }
+
+        Node unary() {
+            if (consume("!")) {
+                return new Not(unary());
+            }
+            if (consume("(")) {
+                Node inner = or();
+                if (!consume(")")) {
+                    throw error("Missing ')'");
+                }
+                return inner;
+            }
+            return label();
+        }
+
+        Node label() {
+            skipWhitespace();
+            int start = position;
+            while (position < input.length() && isLabelChar(input.charAt(position))) {
+                position++;
+            }
+            if (position == start) {
+                throw error(position < input.length()
+                    ? "Expected a label but found '" + input.charAt(position) + "'"
+                    : "Expected a label at the end of the selector");
+            }
+            String label = input.substring(start, position);
+            int separator = label.indexOf('=');
+            if (separator == 0) {
+                throw error("Label '" + label + "' has no key");
+            }
+            return separator < 0
+                ? new Label(label, null)
+                : new Label(label.substring(0, separator), label.substring(separator + 1));
+        }
+
+        boolean consume(String token) {
+            skipWhitespace();
+            if (input.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        void skipWhitespace() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in label selector: " + input);
+        }
+
+        private static boolean isLabelChar(char c) {
+            return !Character.isWhitespace(c) && c != '(' && c != ')' && c != '!' && c != '&' && c != '|';
+        }
+    }
+}
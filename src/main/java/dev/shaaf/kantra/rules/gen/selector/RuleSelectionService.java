@@ -0,0 +1,179 @@
+package dev.shaaf.kantra.rules.gen.selector;
+
+import dev.shaaf.kantra.rules.gen.catalog.RuleCatalog;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Previews which rules of the {@link RuleCatalog} an analyzer run with a given label selector would load.
+ * <p>
+ * As in Kantra, a rule is selected by its own labels together with the labels of the ruleset.yaml
+ * next to its file. The {@link LabelIndex} over these labels is built on first use and rebuilt when
+ * the catalog or one of the ruleset.yaml files changed.
+ * </p>
+ */
+@ApplicationScoped
+public class RuleSelectionService {
+
+    @Inject
+    RuleCatalog catalog;
+
+    @Inject
+    RulesetValidator rulesetValidator;
+
+    private volatile Snapshot snapshot;
+
+    public RuleSelectionService() {
+    }
+
+    public RuleSelectionService(RuleCatalog catalog, RulesetValidator rulesetValidator) {
+        this.catalog = catalog;
+        this.rulesetValidator = rulesetValidator;
+    }
+
+    /**
+     * @return The rules matched by the selector
+     */
+    public Selection select(LabelSelector selector) {
+        Snapshot current = snapshot();
+        return new Selection(current.rules(), selector.evaluate(current.index()));
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.isCurrent(catalog.version())) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || !current.isCurrent(catalog.version())) {
+                current = build();
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private Snapshot build() {
+        // Read the version first: a change made while copying the entries bumps it again
+        long version = catalog.version();
+        Map<Path, Ruleset> rulesets = new HashMap<>();
+        List<SelectableRule> rules = new ArrayList<>();
+        List<List<String>> labels = new ArrayList<>();
+        for (RuleCatalog.CatalogEntry entry : catalog.entries()) {
+            Ruleset ruleset = rulesets.computeIfAbsent(entry.file().getParent(), this::readRuleset);
+            Set<String> ruleLabels = new LinkedHashSet<>(entry.labels());
+            ruleLabels.addAll(ruleset.labels());
+            List<String> merged = List.copyOf(ruleLabels);
+            rules.add(new SelectableRule(entry.ruleId(), ruleset.name(), entry.file(), merged));
+            labels.add(merged);
+        }
+        Map<Path, Long> stamps = new HashMap<>();
+        rulesets.forEach((dir, ruleset) -> stamps.put(dir, ruleset.modified()));
+        return new Snapshot(version, stamps, List.copyOf(rules), LabelIndex.build(labels));
+    }
+
+    private Ruleset readRuleset(Path dir) {
+        Path rulesetYaml = dir.resolve(RulesetValidator.RULESET_FILE);
+        long modified = modified(dir);
+        String fallbackName = dir.getFileName() != null ? dir.getFileName().toString() : dir.toString();
+        if (modified < 0) {
+            return new Ruleset(fallbackName, List.of(), modified);
+        }
+        RulesetValidator.RulesetInfo info = rulesetValidator.validateRulesetYaml(rulesetYaml);
+        return new Ruleset(info.name() != null ? info.name() : fallbackName,
+            info.labels() != null ? info.labels() : List.of(), modified);
+    }
+
+    /**
+     * @return Modification time of the ruleset.yaml in a directory, -1 if there is none
+     */
+    private static long modified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir.resolve(RulesetValidator.RULESET_FILE)).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private record Ruleset(String name, List<String> labels, long modified) {}
+
+    private record Snapshot(long version, Map<Path, Long> rulesetStamps, List<SelectableRule> rules, LabelIndex index) {
+
+        boolean isCurrent(long catalogVersion) {
+            if (catalogVersion != version) {
+                return false;
+            }
+            for (Map.Entry<Path, Long> stamp : rulesetStamps.entrySet()) {
+                if (modified(stamp.getKey()) != stamp.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A rule as seen by the selector.
+     *
+     * @param ruleId  Rule ID
+     * @param ruleset Name of the ruleset, or the directory name if it has no ruleset.yaml
+     * @param file    Rule file declaring the rule
+     * @param labels  Labels of the rule followed by the labels of its ruleset
+     */
+    public record SelectableRule(String ruleId, String ruleset, Path file, List<String> labels) {}
+
+    /**
+     * Rules matched by a selector.
+     *
+     * @param rules   All rules the selector was evaluated over, in catalog order
+     * @param matches Bit {@code i} set if {@code rules.get(i)} is selected
+     */
+    public record Selection(List<SelectableRule> rules, BitSet matches) {
+
+        /**
+         * @return Number of selected rules
+         */
+        public int count() {
+            return matches.cardinality();
+        }
+
+        /**
+         * @return Selected rules from the given position on, in catalog order
+         */
+        public List<SelectableRule> page(int offset, int limit) {
+            List<SelectableRule> page = new ArrayList<>(Math.min(limit, 64));
+            int skipped = 0;
+            for (int i = matches.nextSetBit(0); i >= 0 && page.size() < limit; i = matches.nextSetBit(i + 1)) {
+                if (skipped++ >= offset) {
+                    page.add(rules.get(i));
+                }
+            }
+            return page;
+        }
+
+        /**
+         * @return Number of selected rules per ruleset, rulesets in catalog order
+         */
+        public Map<String, Integer> countsByRuleset() {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                counts.merge(rules.get(i).ruleset(), 1, Integer::sum);
+            }
+            return counts;
+        }
+    }
+}
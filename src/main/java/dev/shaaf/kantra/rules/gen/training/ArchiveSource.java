@@ -0,0 +1,63 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import dev.shaaf.kantra.rules.gen.archive.RulesetArchives;
+import dev.shaaf.kantra.rules.gen.archive.TarReader;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+
+/**
+ * Reads rule files from a zip or tar archive without extracting it.
+ * <p>
+ * Zip archives are opened as a file system and walked like a directory. Tar archives can only be
+ * read sequentially, so entry content is read on the walk thread and handed over as bytes.
+ * </p>
+ */
+public class ArchiveSource implements TrainingSource {
+
+    private final Path archive;
+    private final FileSystem zipFs;
+
+    private ArchiveSource(Path archive, FileSystem zipFs) {
+        this.archive = archive;
+        this.zipFs = zipFs;
+    }
+
+    /**
+     * Open a .zip/.jar or .tar/.tar.gz/.tgz archive.
+     */
+    public static ArchiveSource open(Path archive) throws IOException {
+        return new ArchiveSource(archive, RulesetArchives.isZip(archive) ? RulesetArchives.openZip(archive) : null);
+    }
+
+    @Override
+    public String description() {
+        return archive.toString();
+    }
+
+    @Override
+    public void walk(FileConsumer consumer) throws IOException, InterruptedException {
+        if (zipFs != null) {
+            new DirectorySource(zipFs.getRootDirectories().iterator().next()).walk(consumer);
+            return;
+        }
+        try (TarReader tar = TarReader.open(archive)) {
+            TarReader.Entry entry;
+            while ((entry = tar.next()) != null) {
+                String name = RulesetArchives.normalize(entry.name());
+                if (entry.regularFile() && RuleExampleExtractor.isRuleFile(RulesetArchives.fileName(name))) {
+                    byte[] content = tar.readContent();
+                    consumer.accept(new SourceFile(name, () -> content));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zipFs != null) {
+            zipFs.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Clones a remote repository into a temporary directory, which is deleted again on close.
+ */
+public class ClonedRepositorySource implements TrainingSource {
+
+    private final String url;
+    private final Path cloneDir;
+    private final DirectorySource delegate;
+
+    private ClonedRepositorySource(String url, Path cloneDir) {
+        this.url = url;
+        this.cloneDir = cloneDir;
+        this.delegate = new DirectorySource(cloneDir);
+    }
+
+    /**
+     * Clone a repository.
+     *
+     * @param url Repository URL
+     * @return The source, the caller must close it to remove the clone
+     * @throws IOException if cloning fails
+     */
+    public static ClonedRepositorySource clone(String url) throws IOException {
+        Path tempDir = Files.createTempDirectory("konveyor-rulesets");
+        System.out.println("📥 Cloning repository: " + url);
+        try (Git git = Git.cloneRepository()
+                .setURI(url)
+                .setDirectory(tempDir.toFile())
+                .call()) {
+            System.out.println("✅ Repository cloned successfully");
+        } catch (GitAPIException e) {
+            deleteDirectory(tempDir);
+            throw new IOException("Failed to clone " + url + ": " + e.getMessage(), e);
+        }
+        return new ClonedRepositorySource(url, tempDir);
+    }
+
+    @Override
+    public String description() {
+        return url;
+    }
+
+    @Override
+    public void walk(FileConsumer consumer) throws IOException, InterruptedException {
+        delegate.walk(consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deleteDirectory(cloneDir);
+        System.out.println("🧹 Cleaned up temporary directory");
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder())
+                     .map(Path::toFile)
+                     .forEach(File::delete);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads rule files from a directory tree. Also used for zip archives, through the zip file system.
+ * Git metadata directories are skipped.
+ */
+public class DirectorySource implements TrainingSource {
+
+    private final Path root;
+    private final String description;
+
+    public DirectorySource(Path root) {
+        this(root, root.toString());
+    }
+
+    DirectorySource(Path root, String description) {
+        this.root = root;
+        this.description = description;
+    }
+
+    @Override
+    public String description() {
+        return description;
+    }
+
+    @Override
+    public void walk(FileConsumer consumer) throws IOException, InterruptedException {
+        // Sorted so that output order does not depend on the file system
+        List<Path> ruleFiles;
+        try (Stream<Path> paths = Files.walk(root)) {
+            ruleFiles = paths.filter(path -> Files.isRegularFile(path)
+                    && RuleExampleExtractor.isRuleFile(path.getFileName().toString())
+                    && !inGitDirectory(path))
+                .sorted()
+                .toList();
+        }
+        for (Path path : ruleFiles) {
+            String name = root.relativize(path).toString().replace('\\', '/');
+            consumer.accept(new SourceFile(name, () -> Files.readAllBytes(path)));
+        }
+    }
+
+    private boolean inGitDirectory(Path path) {
+        for (Path element : root.relativize(path)) {
+            if (element.toString().equals(".git")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
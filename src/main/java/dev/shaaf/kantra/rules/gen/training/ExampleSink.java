@@ -0,0 +1,44 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Final stage of the training data pipeline. Receives the examples of one source file at a time:
+ * {@link #accept} is always called from a single thread, {@link #retain} and {@link #retainUnreadable}
+ * concurrently from the parse workers.
+ */
+public interface ExampleSink extends Closeable {
+
+    /**
+     * Write the examples produced from one source file.
+     *
+     * @param source      Source file the examples were produced from, relative to the source root
+     * @param contentHash SHA-256 of the source file content, hex encoded
+     * @param examples    Examples in source order, empty if the file produced none
+     * @throws IOException if writing fails
+     */
+    void accept(String source, String contentHash, List<TrainingExample> examples) throws IOException;
+
+    /**
+     * Called for every source file before it is parsed, from the parse workers.
+     * Returning true keeps the output the sink already holds for the file and skips it.
+     *
+     * @param source      Source file, relative to the source root
+     * @param contentHash SHA-256 of the source file content, hex encoded
+     * @return true if the file is unchanged since the previous run
+     */
+    default boolean retain(String source, String contentHash) {
+        return false;
+    }
+
+    /**
+     * Called from the parse workers for a source file that exists but could not be read. The file
+     * was not deleted, so a sink that holds output for it from a previous run should keep it.
+     *
+     * @param source Source file, relative to the source root
+     */
+    default void retainUnreadable(String source) {
+    }
+}
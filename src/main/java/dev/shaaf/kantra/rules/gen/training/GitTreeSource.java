@@ -0,0 +1,94 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads rule files from a commit of a local git repository, straight from the object database.
+ * <p>
+ * The working tree is ignored, so uncommitted edits do not leak into the dataset and bare mirrors
+ * work too. Blobs are loaded by the parse workers; {@link Repository#open(org.eclipse.jgit.lib.AnyObjectId, int)}
+ * is safe to call concurrently.
+ * </p>
+ */
+public class GitTreeSource implements TrainingSource {
+
+    private final Repository repository;
+    private final String ref;
+    private final ObjectId tree;
+
+    private GitTreeSource(Repository repository, String ref, ObjectId tree) {
+        this.repository = repository;
+        this.ref = ref;
+        this.tree = tree;
+    }
+
+    /**
+     * @return true if the directory is a git working tree or a bare repository
+     */
+    public static boolean isRepository(Path dir) {
+        return Files.exists(dir.resolve(Constants.DOT_GIT))
+            || (Files.isDirectory(dir.resolve("objects")) && Files.isRegularFile(dir.resolve(Constants.HEAD)));
+    }
+
+    /**
+     * Open a repository at a revision.
+     *
+     * @param dir Working tree or bare repository directory
+     * @param ref Revision to read (branch, tag, commit)
+     * @return The source, the caller must close it
+     * @throws IOException if the repository or the revision cannot be read
+     */
+    public static GitTreeSource open(Path dir, String ref) throws IOException {
+        Path gitDir = Files.exists(dir.resolve(Constants.DOT_GIT)) ? dir.resolve(Constants.DOT_GIT) : dir;
+        Repository repository = new FileRepositoryBuilder()
+            .setGitDir(gitDir.toFile())
+            .setMustExist(true)
+            .build();
+        try {
+            ObjectId tree = repository.resolve(ref + "^{tree}");
+            if (tree == null) {
+                throw new IOException("Unknown git ref: " + ref);
+            }
+            return new GitTreeSource(repository, ref, tree);
+        } catch (IOException | RuntimeException e) {
+            repository.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String description() {
+        return repository.getDirectory() + " @ " + ref;
+    }
+
+    @Override
+    public void walk(FileConsumer consumer) throws IOException, InterruptedException {
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(tree);
+            walk.setRecursive(true);
+            while (walk.next()) {
+                FileMode mode = walk.getFileMode(0);
+                if ((FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode))
+                        && RuleExampleExtractor.isRuleFile(walk.getNameString())) {
+                    ObjectId blob = walk.getObjectId(0);
+                    consumer.accept(new SourceFile(walk.getPathString(),
+                        () -> repository.open(blob, Constants.OBJ_BLOB).getBytes()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        repository.close();
+    }
+}
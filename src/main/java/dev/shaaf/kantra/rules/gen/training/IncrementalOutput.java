@@ -0,0 +1,504 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sharded, optionally gzip-compressed JSONL output directory that is updated in place by later runs.
+ * <p>
+ * Examples are written by {@link ShardOptions#writers()} parallel lanes, each serializing and
+ * compressing into its own shard and rotating to a new one once the shard reaches the row or
+ * byte limit. Source files are never split across shards, so a shard may exceed the limits by
+ * the examples of one file; the byte limit applies to the stored (compressed) size and is
+ * checked after buffering, so it is approximate.
+ * </p>
+ * <p>
+ * Source files whose content hash matches the {@link TrainingManifest} are skipped by the pipeline
+ * ({@link #retain(String, String)}), and so are files that cannot be read this time, which keep their
+ * previous examples ({@link #retainUnreadable(String)}). Examples of new and changed files are appended to new shards.
+ * On {@link #commit(String)} every old shard that held examples of a changed or deleted file is
+ * superseded: the lines of its unchanged files are copied to a shard with a new name, and the old
+ * shard is dropped. All other shards are left untouched. The manifest lists every shard with its
+ * row count, size and SHA-256.
+ * </p>
+ * <p>
+ * No file the current manifest points at is modified before the new manifest is in place: new and
+ * rewritten shards get fresh names, the manifest is replaced atomically, and only then are the
+ * superseded shards deleted. If a run fails before that, {@link #close()} removes the new shards;
+ * after a crash the previous manifest still matches its shards, and at worst unlisted shards are left behind.
+ * </p>
+ */
+public class IncrementalOutput implements ExampleSink {
+
+    static final String SHARD_PREFIX = "shard-";
+    static final String SHARD_SUFFIX = ".jsonl";
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LANE_QUEUE_CAPACITY = 64;
+
+    private final Path outputDir;
+    private final JsonFactory jsonFactory;
+    private final ShardOptions options;
+    private final TrainingManifest previous;
+    private final Set<String> retained = ConcurrentHashMap.newKeySet();
+    private final Map<String, TrainingManifest.FileEntry> written = new ConcurrentHashMap<>();
+    private final Map<String, TrainingManifest.ShardEntry> newShards = new ConcurrentHashMap<>();
+    private final List<String> rewrittenShards = new ArrayList<>();
+    private final AtomicInteger nextShard;
+    private final ExecutorService lanePool;
+    private final Lane[] lanes;
+    private int nextLane;
+    private boolean lanesClosed;
+    private boolean committed;
+
+    private IncrementalOutput(Path outputDir, JsonFactory jsonFactory, ShardOptions options, TrainingManifest previous) {
+        this.outputDir = outputDir;
+        this.jsonFactory = jsonFactory;
+        this.options = options;
+        this.previous = previous;
+        this.nextShard = new AtomicInteger(previous.shards.keySet().stream()
+            .mapToInt(IncrementalOutput::shardIndex)
+            .max()
+            .orElse(-1) + 1);
+        this.lanePool = Executors.newFixedThreadPool(options.writers(), runnable -> {
+            Thread thread = new Thread(runnable, "training-data-shard-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lanes = new Lane[options.writers()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+            lanes[i].future = lanePool.submit(lanes[i]);
+        }
+    }
+
+    /**
+     * Open an output directory, creating it if needed.
+     *
+     * @param outputDir   Output directory
+     * @param jsonFactory Factory for the JSONL writers
+     * @param options     Shard rotation, compression and parallelism
+     * @return The output, call {@link #commit(String)} after a successful run
+     * @throws IOException if the directory or its manifest cannot be read
+     */
+    public static IncrementalOutput open(Path outputDir, JsonFactory jsonFactory, ShardOptions options) throws IOException {
+        Files.createDirectories(outputDir);
+        return new IncrementalOutput(outputDir, jsonFactory, options, TrainingManifest.load(outputDir));
+    }
+
+    @Override
+    public boolean retain(String source, String contentHash) {
+        TrainingManifest.FileEntry entry = previous.files.get(source);
+        if (entry != null && entry.sha256().equals(contentHash)) {
+            retained.add(source);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void retainUnreadable(String source) {
+        if (previous.files.containsKey(source)) {
+            retained.add(source);
+        }
+    }
+
+    /**
+     * Hands the examples to the next lane, round robin; blocks while that lane is saturated.
+     */
+    @Override
+    public void accept(String source, String contentHash, List<TrainingExample> examples) throws IOException {
+        if (examples.isEmpty()) {
+            written.put(source, new TrainingManifest.FileEntry(contentHash, null, 0, 0));
+            return;
+        }
+        Lane lane = lanes[nextLane];
+        nextLane = (nextLane + 1) % lanes.length;
+        lane.submit(Optional.of(new Batch(source, contentHash, examples)));
+    }
+
+    /**
+     * Rewrite the shards affected by changed or deleted files and save the new manifest.
+     *
+     * @param sourceDescription Source recorded in the manifest
+     * @return What changed compared to the previous run
+     * @throws IOException if a shard or the manifest cannot be written
+     */
+    public Changes commit(String sourceDescription) throws IOException {
+        closeLanes();
+
+        // Old shards that contain lines of files that changed or disappeared
+        Set<String> affected = new TreeSet<>();
+        int removed = 0;
+        for (Map.Entry<String, TrainingManifest.FileEntry> entry : previous.files.entrySet()) {
+            if (!retained.contains(entry.getKey())) {
+                if (entry.getValue().shard() != null) {
+                    affected.add(entry.getValue().shard());
+                }
+                if (!written.containsKey(entry.getKey())) {
+                    removed++;
+                }
+            }
+        }
+
+        TrainingManifest next = new TrainingManifest();
+        next.source = sourceDescription;
+        Map<String, List<Map.Entry<String, TrainingManifest.FileEntry>>> keptByShard = new TreeMap<>();
+        for (Map.Entry<String, TrainingManifest.FileEntry> entry : previous.files.entrySet()) {
+            if (!retained.contains(entry.getKey())) {
+                continue;
+            }
+            String shard = entry.getValue().shard();
+            if (shard != null && affected.contains(shard)) {
+                keptByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(entry);
+            } else {
+                next.files.put(entry.getKey(), entry.getValue());
+            }
+        }
+        previous.shards.forEach((shard, entry) -> {
+            if (!affected.contains(shard)) {
+                next.shards.put(shard, entry);
+            }
+        });
+
+        for (String shard : affected) {
+            List<Map.Entry<String, TrainingManifest.FileEntry>> kept = keptByShard.get(shard);
+            if (kept != null) {
+                rewriteShard(shard, kept, next);
+            }
+        }
+
+        next.files.putAll(written);
+        next.shards.putAll(newShards);
+        next.save(outputDir);
+        committed = true;
+
+        // Only unreferenced now
+        for (String shard : affected) {
+            Files.deleteIfExists(outputDir.resolve(shard));
+        }
+        return new Changes(written.size(), retained.size(), removed, affected.size(), newShards.size());
+    }
+
+    /**
+     * Copy the given files' lines of an old shard to a new shard with the same compression. The old
+     * shard is left in place for the caller to delete once the manifest no longer lists it.
+     */
+    private void rewriteShard(String shard, List<Map.Entry<String, TrainingManifest.FileEntry>> kept,
+                              TrainingManifest next) throws IOException {
+        kept.sort(Comparator.comparingLong(e -> e.getValue().firstLine()));
+        boolean gzip = shard.endsWith(GZIP_SUFFIX);
+        String rewritten = shardName(nextShard.getAndIncrement(), gzip);
+        rewrittenShards.add(rewritten);
+
+        long line = 0;
+        ShardFile out = new ShardFile(outputDir.resolve(rewritten), gzip);
+        try (BufferedReader in = openShard(outputDir.resolve(shard)); out) {
+            for (Map.Entry<String, TrainingManifest.FileEntry> entry : kept) {
+                TrainingManifest.FileEntry fileEntry = entry.getValue();
+                for (; line < fileEntry.firstLine(); line++) {
+                    readLine(in, shard);
+                }
+                next.files.put(entry.getKey(), fileEntry.movedTo(rewritten, out.rows));
+                for (int i = 0; i < fileEntry.examples(); i++, line++) {
+                    out.writeLine(readLine(in, shard));
+                }
+            }
+        }
+        next.shards.put(rewritten, out.entry());
+    }
+
+    private BufferedReader openShard(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private String readLine(BufferedReader in, String shard) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Shard " + shard + " is shorter than recorded in " + TrainingManifest.FILE_NAME);
+        }
+        return line;
+    }
+
+    /**
+     * Send the end marker to every lane and wait until all shards are closed.
+     */
+    private void closeLanes() throws IOException {
+        if (lanesClosed) {
+            return;
+        }
+        lanesClosed = true;
+        IOException failure = null;
+        for (Lane lane : lanes) {
+            try {
+                lane.submit(Optional.empty());
+                lane.await();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        lanePool.shutdown();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static String shardName(int index, boolean gzip) {
+        return String.format("%s%05d%s%s", SHARD_PREFIX, index, SHARD_SUFFIX, gzip ? GZIP_SUFFIX : "");
+    }
+
+    private static int shardIndex(String shard) {
+        try {
+            return Integer.parseInt(shard.substring(SHARD_PREFIX.length(), shard.indexOf('.')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Discards the new shards unless {@link #commit(String)} succeeded.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+        try {
+            lanePool.shutdownNow();
+            for (Lane lane : lanes) {
+                lane.closeQuietly();
+            }
+        } finally {
+            for (Lane lane : lanes) {
+                for (String shard : lane.shards) {
+                    Files.deleteIfExists(outputDir.resolve(shard));
+                }
+            }
+            for (String shard : rewrittenShards) {
+                Files.deleteIfExists(outputDir.resolve(shard));
+            }
+        }
+    }
+
+    /**
+     * One writer thread with its own current shard.
+     */
+    private final class Lane implements Callable<Void> {
+
+        private final BlockingQueue<Optional<Batch>> queue = new ArrayBlockingQueue<>(LANE_QUEUE_CAPACITY);
+        private final List<String> shards = new ArrayList<>();
+        private Future<Void> future;
+        private String currentName;
+        private ShardFile current;
+        private JsonlWriter currentWriter;
+
+        @Override
+        public Void call() throws Exception {
+            Optional<Batch> next;
+            while ((next = queue.take()).isPresent()) {
+                Batch batch = next.get();
+                if (current == null || current.rows >= options.maxRows() || current.bytes() >= options.maxBytes()) {
+                    rotate();
+                }
+                written.put(batch.source(), new TrainingManifest.FileEntry(batch.contentHash(), currentName,
+                    current.rows, batch.examples().size()));
+                currentWriter.accept(batch.source(), batch.contentHash(), batch.examples());
+                current.rows += batch.examples().size();
+            }
+            closeShard();
+            return null;
+        }
+
+        private void rotate() throws IOException {
+            closeShard();
+            currentName = shardName(nextShard.getAndIncrement(), options.gzip());
+            shards.add(currentName);
+            current = new ShardFile(outputDir.resolve(currentName), options.gzip());
+            currentWriter = new JsonlWriter(jsonFactory, current.writer);
+        }
+
+        private void closeShard() throws IOException {
+            if (current != null) {
+                // Flushes the generator into the shard's writer, which it then closes
+                currentWriter.close();
+                newShards.put(currentName, current.entry());
+                current = null;
+            }
+        }
+
+        void submit(Optional<Batch> item) throws IOException {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if (future.isDone()) {
+                        await();
+                        throw new IOException("Shard writer stopped unexpectedly");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing shards");
+            }
+        }
+
+        void await() throws IOException {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing shards");
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                if (current != null) {
+                    current.close();
+                }
+            } catch (IOException e) {
+                // the shard is deleted anyway
+            }
+        }
+    }
+
+    /**
+     * A shard being written: counts the stored bytes and hashes them on the way to disk.
+     */
+    private static final class ShardFile implements Closeable {
+
+        private final MessageDigest digest;
+        private final CountingOutputStream counter;
+        private final Writer writer;
+        private long rows;
+
+        ShardFile(Path path, boolean gzip) throws IOException {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            counter = new CountingOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE), digest));
+            OutputStream out = gzip ? new GZIPOutputStream(counter, BUFFER_SIZE) : counter;
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        void writeLine(String line) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+            rows++;
+        }
+
+        long bytes() {
+            return counter.count;
+        }
+
+        /**
+         * Only valid once the shard is closed.
+         */
+        TrainingManifest.ShardEntry entry() {
+            return new TrainingManifest.ShardEntry(rows, counter.count, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private record Batch(String source, String contentHash, List<TrainingExample> examples) {}
+
+    /**
+     * How shards are written.
+     *
+     * @param maxRows  Rows after which a lane starts a new shard
+     * @param maxBytes Stored bytes after which a lane starts a new shard
+     * @param gzip     Compress shards with gzip (.jsonl.gz)
+     * @param writers  Number of parallel shard writers
+     */
+    public record ShardOptions(int maxRows, long maxBytes, boolean gzip, int writers) {
+
+        public ShardOptions {
+            maxRows = Math.max(1, maxRows);
+            maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+            writers = Math.max(1, writers);
+        }
+    }
+
+    /**
+     * @param filesProcessed  New or changed files that were reprocessed
+     * @param filesUnchanged  Files skipped because their hash did not change
+     * @param filesRemoved    Files of the previous run that no longer exist
+     * @param shardsRewritten Old shards rewritten or deleted
+     * @param shardsAdded     New shards written
+     */
+    public record Changes(int filesProcessed, int filesUnchanged, int filesRemoved, int shardsRewritten, int shardsAdded) {}
+}
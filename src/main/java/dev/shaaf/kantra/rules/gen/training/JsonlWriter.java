@@ -0,0 +1,82 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Streams training examples to a JSONL file in the chat fine-tuning format:
+ * {@code {"messages":[{"role":"user","content":...},{"role":"assistant","content":...}]}}.
+ * <p>
+ * Each example is written straight to a buffered writer through a single {@link JsonGenerator},
+ * so nothing is accumulated in memory and no intermediate maps are built per line.
+ * </p>
+ */
+public class JsonlWriter implements ExampleSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JsonGenerator gen;
+    private long written;
+
+    public JsonlWriter(JsonFactory jsonFactory, Path outputFile) throws IOException {
+        this(jsonFactory, new BufferedWriter(
+            new OutputStreamWriter(Files.newOutputStream(outputFile), StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    public JsonlWriter(JsonFactory jsonFactory, Writer writer) throws IOException {
+        this.gen = jsonFactory.createGenerator(writer);
+        // One JSON document per line, with no separator inserted between root values
+        this.gen.setRootValueSeparator(null);
+        this.gen.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
+
+    @Override
+    public void accept(String source, String contentHash, List<TrainingExample> examples) throws IOException {
+        for (TrainingExample example : examples) {
+            write(example);
+        }
+    }
+
+    /**
+     * Write a single example as one line.
+     */
+    public void write(TrainingExample example) throws IOException {
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("messages");
+        writeMessage("user", example.userPrompt());
+        writeMessage("assistant", example.assistantResponse());
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        written++;
+    }
+
+    /**
+     * @return Number of examples written so far
+     */
+    public long written() {
+        return written;
+    }
+
+    private void writeMessage(String role, String content) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("role", role);
+        gen.writeStringField("content", content);
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Also flushes and closes the underlying writer
+        gen.close();
+    }
+}
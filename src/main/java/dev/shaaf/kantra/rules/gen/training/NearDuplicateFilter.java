@@ -0,0 +1,261 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import java.util.Arrays;
+
+/**
+ * Drops training examples that are near-duplicates of an example seen earlier, using MinHash
+ * signatures and locality-sensitive hashing (LSH).
+ * <p>
+ * Each example is reduced to the set of word 3-shingles of its prompt and response. A MinHash
+ * signature of {@code bands × rows} values estimates the Jaccard similarity of two such sets; the
+ * signature is cut into bands and two examples become duplicates as soon as one band matches.
+ * Bands and rows are chosen so that the LSH threshold {@code (1/bands)^(1/rows)} is as close as
+ * possible to the configured similarity threshold.
+ * </p>
+ * <p>
+ * Only one 64-bit key per band is kept for each admitted example, in one open-addressing set per
+ * band, so memory grows by 16 to 32 bytes per band for each unique example regardless of the
+ * example size, and duplicates cost nothing. Computing band keys is thread-safe and meant to run on
+ * the transform workers; {@link #admit(long[])} must be called from a single thread.
+ * </p>
+ */
+public class NearDuplicateFilter {
+
+    private static final int MAX_HASHES = 128;
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final double threshold;
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final LongHashSet[] bandSets;
+    private long admitted;
+    private long dropped;
+
+    /**
+     * @param threshold Jaccard similarity above which examples count as duplicates, between 0 and 1 (exclusive)
+     */
+    public NearDuplicateFilter(double threshold) {
+        if (!(threshold > 0 && threshold < 1)) {
+            throw new IllegalArgumentException("Similarity threshold must be between 0 and 1: " + threshold);
+        }
+        this.threshold = threshold;
+
+        // Pick the bands × rows split whose LSH threshold is closest to the requested one
+        int bestRows = 1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int r = 1; r <= MAX_HASHES; r++) {
+            int b = MAX_HASHES / r;
+            double distance = Math.abs(Math.pow(1.0 / b, 1.0 / r) - threshold);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestRows = r;
+            }
+        }
+        this.rows = bestRows;
+        this.bands = MAX_HASHES / bestRows;
+
+        this.seeds = new long[bands * rows];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+        this.bandSets = new LongHashSet[bands];
+        for (int i = 0; i < bands; i++) {
+            bandSets[i] = new LongHashSet();
+        }
+    }
+
+    /**
+     * Compute the LSH band keys of an example. Thread-safe.
+     *
+     * @param example Example to hash
+     * @return One key per band
+     */
+    public long[] bandKeys(TrainingExample example) {
+        long[] shingles = shingles(example.userPrompt() + "\n" + example.assistantResponse());
+
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                long h = mix(shingle ^ seeds[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int r = 0; r < rows; r++) {
+                key = mix(key * 31 + signature[band * rows + r]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Check an example against all examples admitted so far and remember it if it is new.
+     * Not thread-safe.
+     *
+     * @param bandKeys Keys returned by {@link #bandKeys(TrainingExample)}
+     * @return true if the example is not a near-duplicate and should be kept
+     */
+    public boolean admit(long[] bandKeys) {
+        for (int band = 0; band < bands; band++) {
+            if (bandSets[band].contains(bandKeys[band])) {
+                dropped++;
+                return false;
+            }
+        }
+        for (int band = 0; band < bands; band++) {
+            bandSets[band].add(bandKeys[band]);
+        }
+        admitted++;
+        return true;
+    }
+
+    public double threshold() {
+        return threshold;
+    }
+
+    public int bands() {
+        return bands;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public long admitted() {
+        return admitted;
+    }
+
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Hashes of the word 3-shingles of a text, case-insensitive, ignoring punctuation and whitespace.
+     */
+    static long[] shingles(String text) {
+        long[] tokens = new long[16];
+        int count = 0;
+        long hash = FNV_OFFSET;
+        boolean inToken = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = hash;
+                hash = FNV_OFFSET;
+                inToken = false;
+            }
+        }
+        if (inToken) {
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count + 1);
+            }
+            tokens[count++] = hash;
+        }
+
+        if (count < SHINGLE_SIZE) {
+            long shingle = FNV_OFFSET;
+            for (int i = 0; i < count; i++) {
+                shingle = mix(shingle + tokens[i]);
+            }
+            return new long[]{shingle};
+        }
+        long[] shingles = new long[count - SHINGLE_SIZE + 1];
+        for (int i = 0; i < shingles.length; i++) {
+            long shingle = tokens[i];
+            for (int j = 1; j < SHINGLE_SIZE; j++) {
+                shingle = mix(shingle * 31 + tokens[i + j]);
+            }
+            shingles[i] = shingle;
+        }
+        return shingles;
+    }
+
+    /**
+     * SplitMix64 finalizer, used as the family of MinHash permutations together with the seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Open-addressing set of longs with linear probing; zero marks an empty slot.
+     */
+    private static final class LongHashSet {
+
+        private long[] slots = new long[1024];
+        private int size;
+        private boolean containsZero;
+
+        boolean contains(long key) {
+            if (key == 0) {
+                return containsZero;
+            }
+            int mask = slots.length - 1;
+            for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+                long slot = slots[i];
+                if (slot == 0) {
+                    return false;
+                }
+                if (slot == key) {
+                    return true;
+                }
+            }
+        }
+
+        void add(long key) {
+            if (key == 0) {
+                containsZero = true;
+                return;
+            }
+            if ((size + 1) * 2 > slots.length) {
+                grow();
+            }
+            if (insert(slots, key)) {
+                size++;
+            }
+        }
+
+        private void grow() {
+            long[] grown = new long[slots.length * 2];
+            for (long key : slots) {
+                if (key != 0) {
+                    insert(grown, key);
+                }
+            }
+            slots = grown;
+        }
+
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == 0) {
+                    table[i] = key;
+                    return true;
+                }
+                if (table[i] == key) {
+                    return false;
+                }
+            }
+        }
+    }
+}
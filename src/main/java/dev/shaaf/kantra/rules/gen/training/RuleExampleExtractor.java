@@ -0,0 +1,203 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns Kantra rule YAML into training examples.
+ * <p>
+ * Split into the two CPU-bound steps of the pipeline: {@link #parse(String)} extracts the rule
+ * nodes of a file, {@link #toExample(JsonNode)} turns one rule into a prompt/response pair.
+ * Both are stateless and safe to call from several threads.
+ * </p>
+ */
+public class RuleExampleExtractor {
+
+    private final ObjectMapper yamlMapper;
+
+    public RuleExampleExtractor() {
+        this(new ObjectMapper(new YAMLFactory()));
+    }
+
+    public RuleExampleExtractor(ObjectMapper yamlMapper) {
+        this.yamlMapper = yamlMapper;
+    }
+
+    /**
+     * @return true for YAML files that can hold rules (ruleset metadata files excluded)
+     */
+    public static boolean isRuleFile(String fileName) {
+        return (fileName.endsWith(".yaml") || fileName.endsWith(".yml"))
+            && !fileName.toLowerCase(Locale.ROOT).contains("ruleset");
+    }
+
+    /**
+     * Extract the rules of a YAML document: a single rule, a list of rules or a ruleset with a {@code rules} list.
+     *
+     * @param yamlContent Rule file content
+     * @return Rule nodes that have an ID and a {@code when} condition
+     * @throws JsonProcessingException if the content is not valid YAML
+     */
+    public List<JsonNode> parse(String yamlContent) throws JsonProcessingException {
+        List<JsonNode> rules = new ArrayList<>();
+        JsonNode rootNode = yamlMapper.readTree(yamlContent);
+        if (rootNode == null) {
+            return rules;
+        }
+
+        if (rootNode.isArray()) {
+            addRules(rootNode, rules);
+        } else if (rootNode.isObject()) {
+            if (isValidRule(rootNode)) {
+                rules.add(rootNode);
+            } else if (rootNode.has("rules") && rootNode.get("rules").isArray()) {
+                addRules(rootNode.get("rules"), rules);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Create a training example from a rule.
+     *
+     * @param ruleNode Rule returned by {@link #parse(String)}
+     * @return The example, or null if the rule has no ID or condition
+     * @throws JsonProcessingException if the rule cannot be written back as YAML
+     */
+    public TrainingExample toExample(JsonNode ruleNode) throws JsonProcessingException {
+        String ruleId = getRuleId(ruleNode);
+        JsonNode whenNode = ruleNode.get("when");
+        if (ruleId == null || whenNode == null) {
+            return null;
+        }
+
+        // Generate user prompt based on rule characteristics
+        String userPrompt = generateUserPrompt(whenNode, getDescription(ruleNode));
+
+        // Generate assistant response (the actual rule in YAML)
+        String assistantResponse = yamlMapper.writeValueAsString(ruleNode).trim();
+
+        return new TrainingExample(userPrompt, assistantResponse);
+    }
+
+    private void addRules(JsonNode rulesNode, List<JsonNode> rules) {
+        for (JsonNode ruleNode : rulesNode) {
+            if (isValidRule(ruleNode)) {
+                rules.add(ruleNode);
+            }
+        }
+    }
+
+    private boolean isValidRule(JsonNode ruleNode) {
+        return ruleNode.isObject() &&
+               (ruleNode.has("ruleID") || ruleNode.has("id")) &&
+               ruleNode.has("when");
+    }
+
+    private String getRuleId(JsonNode ruleNode) {
+        if (ruleNode.has("ruleID")) {
+            return ruleNode.get("ruleID").asText();
+        } else if (ruleNode.has("id")) {
+            return ruleNode.get("id").asText();
+        }
+        return null;
+    }
+
+    private String getDescription(JsonNode ruleNode) {
+        if (ruleNode.has("description")) {
+            return ruleNode.get("description").asText();
+        }
+        return "";
+    }
+
+    private String generateUserPrompt(JsonNode whenNode, String description) {
+        StringBuilder prompt = new StringBuilder();
+
+        // Analyze the 'when' condition to understand what the rule is detecting
+        if (whenNode.has("java.dependency")) {
+            JsonNode depNode = whenNode.get("java.dependency");
+            String depName = depNode.has("name") ? depNode.get("name").asText() : "dependency";
+            prompt.append("Create a rule that flags the use of the `").append(depName).append("` dependency");
+            if (!description.isEmpty()) {
+                prompt.append(" because ").append(description.toLowerCase());
+            }
+        } else if (whenNode.has("java.import")) {
+            JsonNode importNode = whenNode.get("java.import");
+            String pattern = importNode.has("pattern") ? importNode.get("pattern").asText() : "import";
+            prompt.append("I need a rule to find the `").append(pattern).append("` import");
+            if (!description.isEmpty()) {
+                prompt.append(". ").append(description);
+            }
+        } else if (whenNode.has("java.referenced")) {
+            JsonNode refNode = whenNode.get("java.referenced");
+            String pattern = refNode.has("pattern") ? refNode.get("pattern").asText() : "class";
+            String location = refNode.has("location") ? refNode.get("location").asText() : "";
+
+            if ("IMPORT".equals(location)) {
+                prompt.append("Write a rule to detect imports of `").append(pattern).append("`");
+            } else if ("METHOD_CALL".equals(location)) {
+                prompt.append("Create a rule to find calls to `").append(pattern).append("`");
+            } else if ("ANNOTATION".equals(location)) {
+                prompt.append("I need to detect usage of the `").append(pattern).append("` annotation");
+            } else if ("INHERITANCE".equals(location)) {
+                prompt.append("Create a rule to find classes that extend `").append(pattern).append("`");
+            } else if ("IMPLEMENTS_TYPE".equals(location)) {
+                prompt.append("Write a rule to find classes that implement `").append(pattern).append("`");
+            } else {
+                prompt.append("Create a rule to detect usage of `").append(pattern).append("`");
+            }
+
+            if (!description.isEmpty()) {
+                prompt.append(". ").append(description);
+            }
+        } else if (whenNode.has("builtin.file")) {
+            JsonNode fileNode = whenNode.get("builtin.file");
+            String pattern = fileNode.has("pattern") ? fileNode.get("pattern").asText() : "files";
+            prompt.append("Write a rule to identify `").append(pattern).append("` files");
+            if (!description.isEmpty()) {
+                prompt.append(" - ").append(description.toLowerCase());
+            }
+        } else if (whenNode.has("builtin.filecontent")) {
+            JsonNode contentNode = whenNode.get("builtin.filecontent");
+            String pattern = contentNode.has("pattern") ? contentNode.get("pattern").asText() : "content";
+            String filePattern = contentNode.has("filePattern") ? contentNode.get("filePattern").asText() : "files";
+            prompt.append("Create a rule to find content matching `").append(pattern).append("` in ").append(filePattern);
+            if (!description.isEmpty()) {
+                prompt.append(". ").append(description);
+            }
+        } else if (whenNode.has("builtin.xml")) {
+            JsonNode xmlNode = whenNode.get("builtin.xml");
+            String xpath = xmlNode.has("xpath") ? xmlNode.get("xpath").asText() : "XML element";
+            prompt.append("I need a rule to detect XML content using XPath `").append(xpath).append("`");
+            if (!description.isEmpty()) {
+                prompt.append(". ").append(description);
+            }
+        } else {
+            // Generic fallback
+            prompt.append("Create a rule to detect ");
+            if (!description.isEmpty()) {
+                prompt.append(description.toLowerCase());
+            } else {
+                prompt.append("a specific pattern in the code");
+            }
+        }
+
+        // Add context about migration or security if relevant
+        String desc = description.toLowerCase();
+        if (desc.contains("security") || desc.contains("vulnerability")) {
+            prompt.append(". This is a security concern");
+        } else if (desc.contains("deprecated") || desc.contains("replace") || desc.contains("migrate")) {
+            prompt.append(" for migration purposes");
+        }
+
+        prompt.append(".");
+
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,404 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.shaaf.kantra.rules.gen.commands.AbstractCommand;
+import dev.shaaf.kantra.rules.gen.commands.file.CreateFileContentRuleCommand;
+import dev.shaaf.kantra.rules.gen.commands.file.CreateFileRuleCommand;
+import dev.shaaf.kantra.rules.gen.commands.java.CreateJavaRuleCommand;
+import dev.shaaf.kantra.rules.gen.commands.xml.CreateXmlRuleCommand;
+import dev.shaaf.kantra.rules.gen.model.Category;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates synthetic training examples by running the rule creation commands over a {@link SyntheticGrid}.
+ * <p>
+ * The commands are used directly, outside CDI and the MCP layer, so the generated YAML is exactly what
+ * the tools return. Each grid point becomes one set of command parameters; the resulting rule is checked
+ * with {@link RuleValidator} and paired with a prompt describing the same parameters. Rules the command
+ * or the validator rejects are counted and dropped.
+ * </p>
+ * <p>
+ * The cross product of each rule type is cut into chunks of {@value #CHUNK_SIZE} grid points. Workers
+ * claim chunks from a shared counter, decode grid indices without materializing the product, and hand
+ * each finished chunk to a single writer on the calling thread through a bounded queue, so the
+ * {@link ExampleSink} never sees concurrent calls and memory does not grow with the grid size.
+ * </p>
+ * <p>
+ * Every chunk is written as one sink source ({@code synthetic/<type>/<chunk>}) whose content hash covers
+ * the grid, so an {@link IncrementalOutput} keeps the chunks of an unchanged grid without regenerating them.
+ * </p>
+ */
+public class SyntheticExampleGenerator {
+
+    static final int CHUNK_SIZE = 512;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_EFFORT = 5;
+    // Part of every chunk hash: bump when prompts or command parameters change
+    private static final String TEMPLATE_VERSION = "1";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final RuleValidator ruleValidator;
+    private final int workers;
+    private final AbstractCommand javaCommand;
+    private final AbstractCommand xmlCommand;
+    private final AbstractCommand fileContentCommand;
+    private final AbstractCommand fileCommand;
+
+    public SyntheticExampleGenerator() {
+        this(new RuleValidator(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param ruleValidator Validator used by the commands and to check their output
+     * @param workers       Number of generation workers
+     */
+    public SyntheticExampleGenerator(RuleValidator ruleValidator, int workers) {
+        this.ruleValidator = ruleValidator;
+        this.workers = Math.max(1, workers);
+        this.javaCommand = command(new CreateJavaRuleCommand());
+        this.xmlCommand = command(new CreateXmlRuleCommand());
+        this.fileContentCommand = command(new CreateFileContentRuleCommand());
+        this.fileCommand = command(new CreateFileRuleCommand());
+    }
+
+    /**
+     * Usage: {@code SyntheticExampleGenerator <grid.json|grid.yaml> [output] [--workers <n>]}
+     */
+    public static void main(String[] args) throws Exception {
+        String outputFile = "synthetic_dataset.jsonl";
+        int workers = Runtime.getRuntime().availableProcessors();
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--workers")) {
+                workers = Integer.parseInt(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.isEmpty()) {
+            System.err.println("Usage: SyntheticExampleGenerator <grid.json|grid.yaml> [output] [--workers <n>]");
+            System.exit(1);
+        }
+        String gridFile = positional.get(0);
+        if (positional.size() > 1) {
+            outputFile = positional.get(1);
+        }
+
+        System.out.println("🚀 Starting synthetic example generation...");
+        System.out.println("📂 Output file: " + outputFile);
+
+        SyntheticGrid grid = SyntheticGrid.load(Paths.get(gridFile));
+        SyntheticExampleGenerator generator = new SyntheticExampleGenerator(new RuleValidator(), workers);
+        long start = System.nanoTime();
+        Summary summary;
+        try (JsonlWriter writer = new JsonlWriter(new ObjectMapper().getFactory(), Path.of(outputFile))) {
+            summary = generator.generate(grid, writer);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("📊 Summary:");
+        System.out.println("  - Grid points: " + summary.gridPoints());
+        System.out.println("  - Training examples generated: " + summary.examples());
+        System.out.println("  - Rejected by command or validator: " + summary.rejected());
+        System.out.println("  - Chunks unchanged: " + summary.chunksUnchanged());
+        System.out.printf("  - Throughput: %.0f examples/s%n", summary.examples() / Math.max(seconds, 1e-9));
+        System.out.println("✅ Synthetic example generation completed!");
+    }
+
+    /**
+     * Generate one example per grid point of every rule type and stream them to a sink.
+     *
+     * @param grid Parameter grid
+     * @param sink Destination of the examples, called from the calling thread only
+     * @return Counts of the run
+     * @throws IOException          if the sink fails
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary generate(SyntheticGrid grid, ExampleSink sink) throws IOException, InterruptedException {
+        String gridHash = TrainingDataGenerator.sha256(
+            (TEMPLATE_VERSION + "\n" + jsonMapper.writeValueAsString(grid)).getBytes(StandardCharsets.UTF_8));
+
+        Template[] templates = Template.values();
+        long[] sizes = new long[templates.length];
+        long[] firstChunk = new long[templates.length + 1];
+        long gridPoints = 0;
+        for (int i = 0; i < templates.length; i++) {
+            sizes[i] = size(templates[i], grid);
+            gridPoints += sizes[i];
+            firstChunk[i + 1] = firstChunk[i] + (sizes[i] + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        }
+        long totalChunks = firstChunk[templates.length];
+
+        BlockingQueue<Optional<Chunk>> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicLong nextChunk = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicInteger unchanged = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "synthetic-examples");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> running = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                running.add(pool.submit(() -> {
+                    try {
+                        long chunk;
+                        while ((chunk = nextChunk.getAndIncrement()) < totalChunks) {
+                            int t = 0;
+                            while (chunk >= firstChunk[t + 1]) {
+                                t++;
+                            }
+                            Chunk result = generateChunk(templates[t], grid, gridHash, chunk - firstChunk[t],
+                                sizes[t], sink, rejected, unchanged);
+                            if (result != null) {
+                                chunks.put(Optional.of(result));
+                            }
+                        }
+                    } finally {
+                        // One end marker per worker
+                        chunks.put(Optional.empty());
+                    }
+                    return null;
+                }));
+            }
+
+            // Write stage: single consumer, so the sink never sees concurrent calls
+            long examples = 0;
+            int finished = 0;
+            while (finished < workers) {
+                Optional<Chunk> next = chunks.take();
+                if (next.isEmpty()) {
+                    finished++;
+                    continue;
+                }
+                Chunk chunk = next.get();
+                sink.accept(chunk.source(), chunk.contentHash(), chunk.examples());
+                examples += chunk.examples().size();
+            }
+
+            for (Future<?> worker : running) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException re) {
+                        throw re;
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+            return new Summary(gridPoints, examples, rejected.get(), unchanged.get());
+        } finally {
+            // Unblocks workers if the sink failed half way
+            pool.shutdownNow();
+        }
+    }
+
+    private Chunk generateChunk(Template template, SyntheticGrid grid, String gridHash, long chunk, long size,
+                                ExampleSink sink, AtomicLong rejected, AtomicInteger unchanged) {
+        String source = "synthetic/" + template.label + "/" + String.format("%06d", chunk);
+        String contentHash = TrainingDataGenerator.sha256((gridHash + "\n" + source).getBytes(StandardCharsets.UTF_8));
+        if (sink.retain(source, contentHash)) {
+            unchanged.incrementAndGet();
+            return null;
+        }
+
+        long from = chunk * CHUNK_SIZE;
+        long to = Math.min(size, from + CHUNK_SIZE);
+        List<TrainingExample> examples = new ArrayList<>((int) (to - from));
+        for (long index = from; index < to; index++) {
+            GridPoint point = point(template, grid, index);
+            ObjectNode params = params(template, point, index);
+            try {
+                String yaml = command(template).execute(params);
+                if (!ruleValidator.validateYamlRule(yaml).isValid()) {
+                    rejected.incrementAndGet();
+                    continue;
+                }
+                examples.add(new TrainingExample(prompt(template, point, params.get("effort").asInt()), yaml.trim()));
+            } catch (Exception e) {
+                rejected.incrementAndGet();
+            }
+        }
+        return new Chunk(source, contentHash, examples);
+    }
+
+    /**
+     * Decode a grid index of a rule type into one value per axis (mixed radix, last axis fastest).
+     */
+    private GridPoint point(Template template, SyntheticGrid grid, long index) {
+        SyntheticGrid.Migration migration = grid.migrations().get((int) (index % grid.migrations().size()));
+        index /= grid.migrations().size();
+        Category category = grid.categories().get((int) (index % grid.categories().size()));
+        index /= grid.categories().size();
+        return switch (template) {
+            case JAVA -> {
+                JavaLocation location = grid.locations().get((int) (index % grid.locations().size()));
+                index /= grid.locations().size();
+                yield new GridPoint(grid.javaPatterns().get((int) index), null, location, category, migration);
+            }
+            case XML -> new GridPoint(grid.xpaths().get((int) index), null, null, category, migration);
+            case FILE_CONTENT -> {
+                String filePattern = grid.filePatterns().get((int) (index % grid.filePatterns().size()));
+                index /= grid.filePatterns().size();
+                yield new GridPoint(grid.contentPatterns().get((int) index), filePattern, null, category, migration);
+            }
+            case FILE -> new GridPoint(grid.filePatterns().get((int) index), null, null, category, migration);
+        };
+    }
+
+    private ObjectNode params(Template template, GridPoint point, long index) {
+        ObjectNode params = jsonMapper.createObjectNode();
+        params.put("ruleID", "synthetic-" + template.label + "-" + String.format("%08d", index));
+        switch (template) {
+            case JAVA -> {
+                params.put("javaPattern", point.pattern());
+                params.put("location", point.location().name());
+            }
+            case XML -> params.put("xpath", point.pattern());
+            case FILE_CONTENT -> {
+                params.put("contentPattern", point.pattern());
+                params.put("filePattern", point.filePattern());
+            }
+            case FILE -> params.put("filePattern", point.pattern());
+        }
+        params.put("message", message(point));
+        params.put("category", point.category().name());
+        // Effort is not a grid axis; cycle it so every level is covered
+        params.put("effort", (int) (index % MAX_EFFORT) + 1);
+        if (point.migration().source() != null) {
+            params.put("source", point.migration().source());
+        }
+        if (point.migration().target() != null) {
+            params.put("target", point.migration().target());
+        }
+        return params;
+    }
+
+    private String message(GridPoint point) {
+        String target = point.migration().target();
+        return target != null
+            ? "`" + point.pattern() + "` needs to be reviewed and replaced when migrating to " + target + "."
+            : "`" + point.pattern() + "` was found and needs to be reviewed.";
+    }
+
+    /**
+     * Prompt in the register of {@link RuleExampleExtractor}, plus the parameters that are not
+     * implied by the pattern so the response can be derived from the prompt alone.
+     */
+    private String prompt(Template template, GridPoint point, int effort) {
+        StringBuilder prompt = new StringBuilder();
+        String pattern = point.pattern();
+        switch (template) {
+            case JAVA -> prompt.append(switch (point.location()) {
+                case IMPORT -> "Write a rule to detect imports of `" + pattern + "`";
+                case METHOD_CALL -> "Create a rule to find calls to `" + pattern + "`";
+                case CONSTRUCTOR_CALL -> "Create a rule to find instantiations of `" + pattern + "`";
+                case ANNOTATION -> "I need to detect usage of the `" + pattern + "` annotation";
+                case INHERITANCE -> "Create a rule to find classes that extend `" + pattern + "`";
+                case IMPLEMENTS_TYPE -> "Write a rule to find classes that implement `" + pattern + "`";
+                case DEFAULT -> "Create a rule to detect any reference to `" + pattern + "`";
+                case ENUM, ENUM_CONSTANT -> "Create a rule to detect references to the `" + pattern + "` enum";
+                case RETURN_TYPE -> "Write a rule to find methods returning `" + pattern + "`";
+                case VARIABLE_DECLARATION -> "Create a rule to find variables declared as `" + pattern + "`";
+                case TYPE -> "Create a rule to detect any type reference to `" + pattern + "`";
+                case PACKAGE -> "Write a rule to detect usage of the `" + pattern + "` package";
+                case FIELD -> "Create a rule to find fields of type `" + pattern + "`";
+                case METHOD -> "Write a rule to find declarations of the `" + pattern + "` method";
+                case CLASS -> "Create a rule to detect usage of the `" + pattern + "` class";
+            });
+            case XML -> prompt.append("I need a rule to detect XML content using XPath `").append(pattern).append("`");
+            case FILE_CONTENT -> prompt.append("Create a rule to find content matching `").append(pattern)
+                .append("` in ").append(point.filePattern());
+            case FILE -> prompt.append("Write a rule to identify `").append(pattern).append("` files");
+        }
+
+        SyntheticGrid.Migration migration = point.migration();
+        if (migration.source() != null && migration.target() != null) {
+            prompt.append(" when migrating from ").append(migration.source()).append(" to ").append(migration.target());
+        } else if (migration.target() != null) {
+            prompt.append(" when migrating to ").append(migration.target());
+        } else if (migration.source() != null) {
+            prompt.append(" when migrating from ").append(migration.source());
+        }
+        prompt.append(". It is ").append(point.category().getValue())
+            .append(" with an effort of ").append(effort).append(".");
+        return prompt.toString();
+    }
+
+    private long size(Template template, SyntheticGrid grid) {
+        long shared = (long) grid.categories().size() * grid.migrations().size();
+        return switch (template) {
+            case JAVA -> shared * grid.javaPatterns().size() * grid.locations().size();
+            case XML -> shared * grid.xpaths().size();
+            case FILE_CONTENT -> shared * grid.contentPatterns().size() * grid.filePatterns().size();
+            case FILE -> shared * grid.filePatterns().size();
+        };
+    }
+
+    private AbstractCommand command(Template template) {
+        return switch (template) {
+            case JAVA -> javaCommand;
+            case XML -> xmlCommand;
+            case FILE_CONTENT -> fileContentCommand;
+            case FILE -> fileCommand;
+        };
+    }
+
+    private AbstractCommand command(AbstractCommand command) {
+        command.injectDependencies(jsonMapper, ruleValidator);
+        return command;
+    }
+
+    private enum Template {
+        JAVA("java"),
+        XML("xml"),
+        FILE_CONTENT("filecontent"),
+        FILE("file");
+
+        private final String label;
+
+        Template(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * @param pattern     Java pattern, XPath, content pattern or file pattern depending on the rule type
+     * @param filePattern File pattern of file content rules, null otherwise
+     * @param location    Location of Java rules, null otherwise
+     */
+    private record GridPoint(String pattern, String filePattern, JavaLocation location,
+                             Category category, SyntheticGrid.Migration migration) {}
+
+    private record Chunk(String source, String contentHash, List<TrainingExample> examples) {}
+
+    /**
+     * Outcome of a generation run.
+     *
+     * @param gridPoints      Grid points across all rule types
+     * @param examples        Examples written to the sink
+     * @param rejected        Grid points whose rule the command or the validator rejected
+     * @param chunksUnchanged Chunks the sink retained from a previous run
+     */
+    public record Summary(long gridPoints, long examples, long rejected, int chunksUnchanged) {}
+}
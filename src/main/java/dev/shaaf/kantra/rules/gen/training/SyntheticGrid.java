@@ -0,0 +1,61 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import dev.shaaf.kantra.rules.gen.model.Category;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Parameter grid for synthetic training examples, read from a JSON or YAML file.
+ * <p>
+ * Every list is one axis; each rule type expands to the cross product of its axes:
+ * <ul>
+ *   <li>Java rules: {@code javaPatterns × locations × categories × migrations}</li>
+ *   <li>XML rules: {@code xpaths × categories × migrations}</li>
+ *   <li>File content rules: {@code contentPatterns × filePatterns × categories × migrations}</li>
+ *   <li>File rules: {@code filePatterns × categories × migrations}</li>
+ * </ul>
+ * Missing axes are treated as empty, which disables the rule types that need them, except
+ * {@code categories} (defaults to all) and {@code migrations} (defaults to no labels).
+ * </p>
+ */
+public record SyntheticGrid(
+    List<String> javaPatterns,
+    List<JavaLocation> locations,
+    List<String> xpaths,
+    List<String> contentPatterns,
+    List<String> filePatterns,
+    List<Category> categories,
+    List<Migration> migrations
+) {
+
+    public SyntheticGrid {
+        javaPatterns = javaPatterns != null ? List.copyOf(javaPatterns) : List.of();
+        locations = locations != null ? List.copyOf(locations) : List.of();
+        xpaths = xpaths != null ? List.copyOf(xpaths) : List.of();
+        contentPatterns = contentPatterns != null ? List.copyOf(contentPatterns) : List.of();
+        filePatterns = filePatterns != null ? List.copyOf(filePatterns) : List.of();
+        categories = categories != null && !categories.isEmpty() ? List.copyOf(categories) : List.of(Category.values());
+        migrations = migrations != null && !migrations.isEmpty() ? List.copyOf(migrations) : List.of(new Migration(null, null));
+    }
+
+    /**
+     * Read a grid from a .json, .yaml or .yml file.
+     */
+    public static SyntheticGrid load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        ObjectMapper mapper = name.endsWith(".yaml") || name.endsWith(".yml")
+            ? new ObjectMapper(new YAMLFactory())
+            : new ObjectMapper();
+        return mapper.readValue(file.toFile(), SyntheticGrid.class);
+    }
+
+    /**
+     * Source and target technology, turned into konveyor.io labels.
+     */
+    public record Migration(String source, String target) {}
+}
@@ -0,0 +1,455 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates training data from Konveyor rules and converts YAML rules to JSONL format for LLM training.
+ * <p>
+ * Rules are read from a {@link TrainingSource}: by default the upstream repository is cloned, but a
+ * local directory, a local git repository or a zip/tar archive can be used instead so generation
+ * works without network access.
+ * </p>
+ * <p>
+ * Generation runs as a streaming pipeline: walk → parse → transform → write. The stages are
+ * connected by bounded queues, parse and transform run on a pool of workers each, and a single
+ * writer on the calling thread streams every file's examples to the {@link ExampleSink} as soon
+ * as they arrive.
+ * </p>
+ * <p>
+ * Files are numbered as they are walked and the writer hands them to the sink in that order, holding
+ * back files that finish early until their predecessors are written, so the output does not depend
+ * on worker scheduling. The walker only starts a file once fewer than {@link #MAX_IN_FLIGHT} files are
+ * between the walk and the sink, so memory use stays bounded even while a slow file holds back the
+ * ones behind it. A failure in any stage travels down the pipeline in place of the file and ends the
+ * run with that failure.
+ * </p>
+ * <p>
+ * With {@code --incremental} the output is a directory of shards plus a {@link TrainingManifest};
+ * reruns only reprocess files whose content hash changed, see {@link IncrementalOutput}. Shards are
+ * written by parallel writers, rotated by row count ({@code --shard-rows}) or size ({@code --shard-bytes})
+ * and optionally gzip-compressed ({@code --gzip}).
+ * </p>
+ * <p>
+ * With {@code --dedup <threshold>} near-duplicate examples are dropped before they reach the sink,
+ * see {@link NearDuplicateFilter}. MinHash signatures are computed by the transform workers; the
+ * writer only probes and updates the LSH index. Deduplication covers the examples of one run.
+ * </p>
+ */
+public class TrainingDataGenerator {
+
+    private static final String REPO_URL = "https://github.com/konveyor/rulesets.git";
+    private static final int QUEUE_CAPACITY = 256;
+    static final int MAX_IN_FLIGHT = QUEUE_CAPACITY;
+    private static final int DEFAULT_SHARD_ROWS = 10_000;
+    private static final int DEFAULT_SHARD_WRITERS = 4;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final RuleExampleExtractor extractor;
+    private final int workers;
+    private final double dedupThreshold;
+
+    public TrainingDataGenerator() {
+        this(new RuleExampleExtractor(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public TrainingDataGenerator(RuleExampleExtractor extractor, int workers) {
+        this(extractor, workers, 0);
+    }
+
+    /**
+     * @param extractor      Turns rule YAML into examples
+     * @param workers        Number of parse and of transform workers
+     * @param dedupThreshold Similarity above which examples are dropped as near-duplicates, 0 to keep all
+     */
+    public TrainingDataGenerator(RuleExampleExtractor extractor, int workers, double dedupThreshold) {
+        this.extractor = extractor;
+        this.workers = Math.max(1, workers);
+        this.dedupThreshold = dedupThreshold;
+    }
+
+    /**
+     * Usage: {@code TrainingDataGenerator [output] [--source <dir|git repo|archive|url>] [--ref <revision>]
+     * [--incremental] [--shard-rows <n>] [--shard-bytes <n>] [--gzip] [--writers <n>] [--dedup <threshold>]}
+     */
+    public static void main(String[] args) throws Exception {
+        String outputFile = null;
+        String source = REPO_URL;
+        String ref = null;
+        boolean incremental = false;
+        int shardRows = DEFAULT_SHARD_ROWS;
+        long shardBytes = 0;
+        boolean gzip = false;
+        int writers = DEFAULT_SHARD_WRITERS;
+        double dedupThreshold = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--source" -> source = args[++i];
+                case "--ref" -> ref = args[++i];
+                case "--incremental" -> incremental = true;
+                case "--shard-rows" -> shardRows = Integer.parseInt(args[++i]);
+                case "--shard-bytes" -> shardBytes = Long.parseLong(args[++i]);
+                case "--gzip" -> gzip = true;
+                case "--writers" -> writers = Integer.parseInt(args[++i]);
+                case "--dedup" -> dedupThreshold = Double.parseDouble(args[++i]);
+                default -> outputFile = args[i];
+            }
+        }
+        if (outputFile == null) {
+            outputFile = incremental ? "train_dataset" : "train_dataset.jsonl";
+        }
+
+        System.out.println("🚀 Starting training data generation...");
+        System.out.println("📂 Output " + (incremental ? "directory: " : "file: ") + outputFile);
+
+        TrainingDataGenerator generator = new TrainingDataGenerator(new RuleExampleExtractor(),
+            Runtime.getRuntime().availableProcessors(), dedupThreshold);
+        if (incremental) {
+            generator.generateIncremental(source, ref, Paths.get(outputFile),
+                new IncrementalOutput.ShardOptions(shardRows, shardBytes, gzip, writers));
+        } else {
+            generator.generateTrainingData(source, ref, outputFile);
+        }
+
+        System.out.println("✅ Training data generation completed!");
+    }
+
+    /**
+     * Generate a single JSONL file from the upstream rulesets repository.
+     */
+    public Summary generateTrainingData(String outputFile) throws Exception {
+        return generateTrainingData(REPO_URL, null, outputFile);
+    }
+
+    /**
+     * Generate a single JSONL file.
+     *
+     * @param source     Source location, see {@link TrainingSource#open(String, String)}
+     * @param ref        Revision for git sources, null for HEAD
+     * @param outputFile JSONL file to write
+     * @return Counts of processed files and generated examples
+     */
+    public Summary generateTrainingData(String source, String ref, String outputFile) throws Exception {
+        Summary summary;
+        try (TrainingSource trainingSource = TrainingSource.open(source, ref);
+             JsonlWriter writer = new JsonlWriter(jsonMapper.getFactory(), Paths.get(outputFile))) {
+            System.out.println("📁 Source: " + trainingSource.description());
+            summary = generate(trainingSource, writer);
+        }
+        printSummary(summary);
+        System.out.println("  - Output file: " + outputFile);
+        return summary;
+    }
+
+    /**
+     * Update a sharded output directory, reprocessing only the source files that changed since the last run.
+     *
+     * @param source    Source location, see {@link TrainingSource#open(String, String)}
+     * @param ref       Revision for git sources, null for HEAD
+     * @param outputDir Output directory with shards and manifest
+     * @param options   Shard rotation, compression and parallelism
+     * @return What changed compared to the previous run
+     */
+    public IncrementalOutput.Changes generateIncremental(String source, String ref, Path outputDir,
+                                                         IncrementalOutput.ShardOptions options) throws Exception {
+        IncrementalOutput.Changes changes;
+        try (TrainingSource trainingSource = TrainingSource.open(source, ref);
+             IncrementalOutput output = IncrementalOutput.open(outputDir, jsonMapper.getFactory(), options)) {
+            System.out.println("📁 Source: " + trainingSource.description());
+            printSummary(generate(trainingSource, output));
+            changes = output.commit(trainingSource.description());
+        }
+        System.out.println("  - Files removed: " + changes.filesRemoved());
+        System.out.println("  - Shards rewritten: " + changes.shardsRewritten());
+        System.out.println("  - Shards added: " + changes.shardsAdded());
+        return changes;
+    }
+
+    /**
+     * Run the pipeline over all rule files below a directory.
+     */
+    public Summary generate(Path rulesDir, ExampleSink sink) throws IOException, InterruptedException {
+        return generate(new DirectorySource(rulesDir), sink);
+    }
+
+    /**
+     * Run the pipeline over all rule files of a source.
+     *
+     * @param source Files to process
+     * @param sink   Receives the examples of each file, on the calling thread
+     * @return Counts of processed files and generated examples
+     * @throws IOException          if the source cannot be read or the sink fails
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary generate(TrainingSource source, ExampleSink sink) throws IOException, InterruptedException {
+        BlockingQueue<Optional<Sequenced<TrainingSource.SourceFile>>> files = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Optional<Sequenced<ParsedFile>>> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Optional<Sequenced<FileExamples>>> transformed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        NearDuplicateFilter deduplicator = dedupThreshold != 0 ? new NearDuplicateFilter(dedupThreshold) : null;
+        // Files walked but not yet handed to the sink
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+        ExecutorService pool = Executors.newFixedThreadPool(1 + 2 * workers, runnable -> {
+            Thread thread = new Thread(runnable, "training-data-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> walker = pool.submit(() -> {
+                AtomicLong sequence = new AtomicLong();
+                try {
+                    source.walk(file -> {
+                        inFlight.acquire();
+                        files.put(Optional.of(new Sequenced<>(sequence.getAndIncrement(), file, null)));
+                    });
+                } finally {
+                    files.put(Optional.empty());
+                }
+                return null;
+            });
+
+            AtomicInteger parsers = new AtomicInteger(workers);
+            AtomicInteger transformers = new AtomicInteger(workers);
+            List<Future<?>> stages = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                stages.add(pool.submit(() -> runStage(files, parsed, parsers,
+                    file -> parse(file, sink, skipped, unchanged))));
+                stages.add(pool.submit(() -> runStage(parsed, transformed, transformers,
+                    file -> transform(file, deduplicator, skipped))));
+            }
+
+            // Write stage: single consumer, so the sink never sees concurrent calls. Files that
+            // finish ahead of an earlier one wait in the reorder buffer until it is written; the
+            // in-flight limit bounds the buffer to MAX_IN_FLIGHT files.
+            int processed = 0;
+            long examples = 0;
+            Map<Long, Sequenced<FileExamples>> reorder = new HashMap<>();
+            long nextSequence = 0;
+            Optional<Sequenced<FileExamples>> next;
+            while ((next = transformed.take()).isPresent()) {
+                if (next.get().failure() != null) {
+                    throw next.get().failure();
+                }
+                reorder.put(next.get().sequence(), next.get());
+                Sequenced<FileExamples> ready;
+                while ((ready = reorder.remove(nextSequence)) != null) {
+                    nextSequence++;
+                    FileExamples file = ready.item();
+                    if (file != null) {
+                        List<TrainingExample> kept = deduplicator != null ? admit(file, deduplicator) : file.examples();
+                        sink.accept(file.source(), file.contentHash(), kept);
+                        if (!kept.isEmpty()) {
+                            examples += kept.size();
+                            processed++;
+                        }
+                    }
+                    inFlight.release();
+                }
+            }
+
+            // The workers have all exited once the end-of-stream marker reached the writer. The walker
+            // is checked last: it may still be blocked on a full queue if every parser failed.
+            stages.add(walker);
+            for (Future<?> stage : stages) {
+                try {
+                    stage.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+            if (!reorder.isEmpty()) {
+                throw new IllegalStateException(reorder.size() + " files were not written");
+            }
+            return new Summary(processed, skipped.get(), unchanged.get(), examples,
+                deduplicator != null ? deduplicator.dropped() : 0);
+        } finally {
+            // Unblocks producers if the sink failed half way
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Files that fail to parse still go downstream with no rules, so the sink can drop examples it
+     * holds from an earlier version of the file. Files that fail to load are not known to have
+     * changed, so the sink keeps what it holds for them.
+     */
+    private ParsedFile parse(TrainingSource.SourceFile file, ExampleSink sink,
+                             AtomicInteger skipped, AtomicInteger unchanged) {
+        byte[] content;
+        try {
+            content = file.content().load();
+        } catch (IOException e) {
+            System.err.println("❌ Error reading " + file.name() + ": " + e.getMessage());
+            skipped.incrementAndGet();
+            sink.retainUnreadable(file.name());
+            return null;
+        }
+
+        String contentHash = sha256(content);
+        if (sink.retain(file.name(), contentHash)) {
+            unchanged.incrementAndGet();
+            return null;
+        }
+
+        try {
+            String yamlContent = new String(content, StandardCharsets.UTF_8);
+            List<JsonNode> rules = yamlContent.isBlank() ? List.of() : extractor.parse(yamlContent);
+            if (rules.isEmpty()) {
+                skipped.incrementAndGet();
+            }
+            return new ParsedFile(file.name(), contentHash, rules);
+        } catch (Exception e) {
+            System.err.println("❌ Error processing " + file.name() + ": " + e.getMessage());
+            skipped.incrementAndGet();
+            return new ParsedFile(file.name(), contentHash, List.of());
+        }
+    }
+
+    private FileExamples transform(ParsedFile file, NearDuplicateFilter deduplicator, AtomicInteger skipped) {
+        List<TrainingExample> examples = new ArrayList<>(file.rules().size());
+        for (JsonNode rule : file.rules()) {
+            try {
+                TrainingExample example = extractor.toExample(rule);
+                if (example != null) {
+                    examples.add(example);
+                }
+            } catch (Exception e) {
+                System.err.println("Error creating training example from " + file.source() + ": " + e.getMessage());
+            }
+        }
+        if (examples.isEmpty() && !file.rules().isEmpty()) {
+            skipped.incrementAndGet();
+        }
+        long[][] bandKeys = null;
+        if (deduplicator != null) {
+            bandKeys = new long[examples.size()][];
+            for (int i = 0; i < bandKeys.length; i++) {
+                bandKeys[i] = deduplicator.bandKeys(examples.get(i));
+            }
+        }
+        return new FileExamples(file.source(), file.contentHash(), examples, bandKeys);
+    }
+
+    private List<TrainingExample> admit(FileExamples file, NearDuplicateFilter deduplicator) {
+        List<TrainingExample> kept = new ArrayList<>(file.examples().size());
+        for (int i = 0; i < file.examples().size(); i++) {
+            if (deduplicator.admit(file.bandKeys()[i])) {
+                kept.add(file.examples().get(i));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Worker loop shared by the parse and transform stages. The end-of-stream marker is put back for
+     * the sibling workers; the last worker to finish, normally or by failing, forwards it to the next
+     * stage so the writer never waits on a dead stage. Dropped and failed items are forwarded without
+     * a value to keep the sequence without gaps, failed ones with their failure.
+     */
+    private <I, O> Void runStage(BlockingQueue<Optional<Sequenced<I>>> in, BlockingQueue<Optional<Sequenced<O>>> out,
+                                 AtomicInteger running, StageFunction<I, O> function) throws InterruptedException {
+        try {
+            while (true) {
+                Optional<Sequenced<I>> item = in.take();
+                if (item.isEmpty()) {
+                    in.put(item);
+                    return null;
+                }
+                Sequenced<I> input = item.get();
+                out.put(Optional.of(apply(input, function)));
+            }
+        } finally {
+            if (running.decrementAndGet() == 0) {
+                out.put(Optional.empty());
+            }
+        }
+    }
+
+    private <I, O> Sequenced<O> apply(Sequenced<I> input, StageFunction<I, O> function) {
+        if (input.item() == null) {
+            return new Sequenced<>(input.sequence(), null, input.failure());
+        }
+        try {
+            return new Sequenced<>(input.sequence(), function.apply(input.item()), null);
+        } catch (RuntimeException e) {
+            return new Sequenced<>(input.sequence(), null, e);
+        }
+    }
+
+    private void printSummary(Summary summary) {
+        System.out.println("📊 Summary:");
+        System.out.println("  - Files processed: " + summary.filesProcessed());
+        System.out.println("  - Files skipped: " + summary.filesSkipped());
+        System.out.println("  - Files unchanged: " + summary.filesUnchanged());
+        System.out.println("  - Training examples generated: " + summary.examples());
+        System.out.println("  - Near-duplicates dropped: " + summary.duplicates());
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageFunction<I, O> {
+        /**
+         * @return The output item, or null to drop the input
+         */
+        O apply(I input);
+    }
+
+    /**
+     * @param sequence Position of the file in walk order
+     * @param item     The file at this stage, null once a stage dropped it or failed on it
+     * @param failure  What a stage failed with, null if none did
+     */
+    private record Sequenced<T>(long sequence, T item, RuntimeException failure) {}
+
+    private record ParsedFile(String source, String contentHash, List<JsonNode> rules) {}
+
+    /**
+     * @param bandKeys LSH band keys per example, null when deduplication is off
+     */
+    private record FileExamples(String source, String contentHash, List<TrainingExample> examples, long[][] bandKeys) {}
+
+    /**
+     * Outcome of a generation run.
+     *
+     * @param filesProcessed Files that produced at least one example
+     * @param filesSkipped   Empty, unparsable or rule-less files
+     * @param filesUnchanged Files the sink retained from a previous run
+     * @param examples       Examples written to the sink
+     * @param duplicates     Examples dropped as near-duplicates
+     */
+    public record Summary(int filesProcessed, int filesSkipped, int filesUnchanged, long examples, long duplicates) {}
+}
@@ -0,0 +1,10 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+/**
+ * A single prompt/response pair for fine-tuning.
+ *
+ * @param userPrompt        Natural language request for a rule
+ * @param assistantResponse The rule as YAML
+ */
+public record TrainingExample(String userPrompt, String assistantResponse) {
+}
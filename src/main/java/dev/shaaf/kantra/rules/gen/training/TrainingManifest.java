@@ -0,0 +1,78 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bookkeeping for incremental generation, stored as manifest.json next to the output shards.
+ * <p>
+ * For every source file it records the content hash and where its examples live: one contiguous
+ * range of lines in one shard. That is enough to rewrite a shard without the examples of files
+ * that changed or disappeared, without reprocessing the files that did not. For every shard it
+ * records the row count, size and checksum, so consumers can verify and split the shards between
+ * parallel readers without opening them.
+ * </p>
+ */
+public class TrainingManifest {
+
+    public static final String FILE_NAME = "manifest.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public int version = 1;
+    public String source;
+    public Map<String, FileEntry> files = new TreeMap<>();
+    public Map<String, ShardEntry> shards = new TreeMap<>();
+
+    /**
+     * Load the manifest of an output directory.
+     *
+     * @param outputDir Output directory
+     * @return The manifest, or an empty one if the directory has none yet
+     * @throws IOException if the manifest exists but cannot be read
+     */
+    public static TrainingManifest load(Path outputDir) throws IOException {
+        Path file = outputDir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return new TrainingManifest();
+        }
+        return MAPPER.readValue(file.toFile(), TrainingManifest.class);
+    }
+
+    /**
+     * Atomically replace the manifest of an output directory.
+     */
+    public void save(Path outputDir) throws IOException {
+        Path temp = outputDir.resolve(FILE_NAME + ".tmp");
+        MAPPER.writeValue(temp.toFile(), this);
+        Files.move(temp, outputDir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Where the examples of one source file are stored.
+     *
+     * @param sha256    Content hash of the source file
+     * @param shard     Shard holding the examples, null if the file produced none
+     * @param firstLine Zero-based line of the first example in the shard
+     * @param examples  Number of examples (consecutive lines)
+     */
+    public record FileEntry(String sha256, String shard, long firstLine, int examples) {
+        FileEntry movedTo(String newShard, long line) {
+            return new FileEntry(sha256, newShard, line, examples);
+        }
+    }
+
+    /**
+     * @param rows   Number of examples in the shard
+     * @param bytes  Size of the shard file as stored (compressed for .jsonl.gz)
+     * @param sha256 Checksum of the shard file as stored
+     */
+    public record ShardEntry(long rows, long bytes, String sha256) {}
+}
@@ -0,0 +1,86 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import dev.shaaf.kantra.rules.gen.archive.RulesetArchives;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Where the training data generator reads rule files from: a local directory, the committed tree of
+ * a local git repository, a zip/tar archive or a remote repository that is cloned first.
+ * <p>
+ * {@link #walk(FileConsumer)} runs on the pipeline's walk thread and only lists files; content is loaded
+ * by the parse workers through {@link SourceFile#content()} unless the source can only be read sequentially.
+ * </p>
+ */
+public interface TrainingSource extends Closeable {
+
+    /**
+     * @return Human-readable description of the source for log output
+     */
+    String description();
+
+    /**
+     * Hand every rule file of the source to the consumer, in source order.
+     *
+     * @param consumer Receives the files; may block when the pipeline is saturated
+     * @throws IOException          if the source cannot be read
+     * @throws InterruptedException if the walk thread is interrupted
+     */
+    void walk(FileConsumer consumer) throws IOException, InterruptedException;
+
+    /**
+     * Open a source from a command line argument.
+     * <ul>
+     *   <li>http(s), ssh and git URLs are cloned into a temporary directory</li>
+     *   <li>.zip/.jar and .tar/.tar.gz/.tgz files are read in place</li>
+     *   <li>git repositories (working trees or bare) are read from the object database at {@code ref}</li>
+     *   <li>any other directory is walked as is</li>
+     * </ul>
+     *
+     * @param location URL or local path
+     * @param ref      Revision to read from git repositories, null for HEAD
+     * @return The opened source, the caller must close it
+     * @throws IOException if the source cannot be opened
+     */
+    static TrainingSource open(String location, String ref) throws IOException {
+        if (location.contains("://") || location.startsWith("git@")) {
+            return ClonedRepositorySource.clone(location);
+        }
+        Path path = Paths.get(location);
+        if (!Files.exists(path)) {
+            throw new IOException("Source does not exist: " + location);
+        }
+        if (RulesetArchives.isArchive(path)) {
+            return ArchiveSource.open(path);
+        }
+        if (!Files.isDirectory(path)) {
+            throw new IOException("Source is not a directory or a supported archive: " + location);
+        }
+        if (GitTreeSource.isRepository(path)) {
+            return GitTreeSource.open(path, ref != null ? ref : "HEAD");
+        }
+        return new DirectorySource(path);
+    }
+
+    /**
+     * A rule file of a source.
+     *
+     * @param name    Path relative to the source root, using '/' as separator
+     * @param content Loads the file content
+     */
+    record SourceFile(String name, ContentLoader content) {}
+
+    @FunctionalInterface
+    interface ContentLoader {
+        byte[] load() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface FileConsumer {
+        void accept(SourceFile file) throws InterruptedException;
+    }
+}
@@ -0,0 +1,255 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import dev.shaaf.kantra.rules.gen.archive.RulesetArchives;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Validates only the rule files of a ruleset directory that differ between two refs of a local git repository.
+ * <p>
+ * Everything is read from the local object database: the diff is computed with a {@link TreeWalk}
+ * over both trees (identical subtrees are skipped without being opened) and changed files are read
+ * as blobs from the head tree, so the working tree state does not matter and no network access is needed.
+ * </p>
+ * <p>
+ * Duplicate ruleID detection still covers the whole ruleset, with the same {@link RuleIdIndex} as the
+ * validation of a directory: the changed files are checked against the ruleIDs of the unchanged files.
+ * Those are cached by blob ID, so only the first check of a ruleset parses every file; later checks,
+ * against any base, list the directory's tree and parse only the blobs not seen before, which are the
+ * files that changed since. Whole results are cached by the trees they were computed from, so paging through the report of one
+ * change validates it once.
+ * </p>
+ */
+@ApplicationScoped
+public class GitRulesetValidator {
+
+    private static final int MAX_CACHED_RESULTS = 16;
+    private static final int MAX_CACHED_BLOBS = 64 * 1024;
+    private static final long MAX_BLOB_SIZE = 16L * 1024 * 1024;
+
+    @Inject
+    RuleValidator ruleValidator;
+
+    @Inject
+    RulesetValidator rulesetValidator;
+
+    // ruleIDs of rule file blobs, keyed by blob ID
+    private final Map<ObjectId, List<String>> ruleIdCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, List<String>> eldest) {
+                return size() > MAX_CACHED_BLOBS;
+            }
+        });
+
+    // Results by ruleset directory, refs and the trees the refs resolved to
+    private final Map<ChangesKey, GitValidation> resultCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(MAX_CACHED_RESULTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ChangesKey, GitValidation> eldest) {
+                return size() > MAX_CACHED_RESULTS;
+            }
+        });
+
+    public GitRulesetValidator() {
+    }
+
+    public GitRulesetValidator(RuleValidator ruleValidator, RulesetValidator rulesetValidator) {
+        this.ruleValidator = ruleValidator;
+        this.rulesetValidator = rulesetValidator;
+    }
+
+    /**
+     * Validate the rule files of a ruleset directory that changed between two refs.
+     *
+     * @param rulesetDir Ruleset directory inside the working tree of a git repository
+     * @param baseRef    Base revision (branch, tag, commit)
+     * @param headRef    Head revision (branch, tag, commit)
+     * @return Results for the changed files only
+     * @throws IOException if the repository or a ref cannot be read
+     */
+    public GitValidation validateChanges(Path rulesetDir, String baseRef, String headRef) throws IOException {
+        Path dir = rulesetDir.toRealPath();
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(dir.toFile());
+        if (builder.getGitDir() == null) {
+            throw new IOException("Not inside a git repository: " + rulesetDir);
+        }
+
+        try (Repository repo = builder.setMustExist(true).build();
+             ObjectReader reader = repo.newObjectReader()) {
+            if (repo.isBare()) {
+                throw new IOException("Bare repositories are not supported: " + repo.getDirectory());
+            }
+            String prefix = repo.getWorkTree().toPath().toRealPath().relativize(dir).toString()
+                .replace('\\', '/');
+            String prefixDir = prefix.isEmpty() ? "" : prefix + "/";
+
+            ObjectId baseTree = resolveTree(repo, baseRef);
+            ObjectId headTree = resolveTree(repo, headRef);
+            ChangesKey key = new ChangesKey(dir, baseRef, headRef, baseTree.copy(), headTree.copy());
+            GitValidation cached = resultCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            Map<String, String> changed = new TreeMap<>();
+            Set<String> deleted = new TreeSet<>();
+            boolean rulesetChanged = false;
+
+            try (TreeWalk walk = new TreeWalk(repo, reader)) {
+                walk.addTree(baseTree);
+                walk.addTree(headTree);
+                walk.setRecursive(true);
+                walk.setFilter(prefix.isEmpty()
+                    ? TreeFilter.ANY_DIFF
+                    : AndTreeFilter.create(PathFilter.create(prefix), TreeFilter.ANY_DIFF));
+
+                while (walk.next()) {
+                    String path = walk.getPathString();
+                    // Same scope as VALIDATE_RULESET: only files directly inside the ruleset directory
+                    if (!RulesetArchives.parent(path).equals(prefixDir)) {
+                        continue;
+                    }
+                    String fileName = RulesetArchives.fileName(path);
+                    boolean inHead = isFile(walk.getFileMode(1));
+                    if (fileName.equals(RulesetValidator.RULESET_FILE)) {
+                        rulesetChanged = true;
+                    } else if (RulesetValidator.isRuleFile(fileName)) {
+                        if (inHead) {
+                            changed.put(fileName, readBlob(reader, walk.getObjectId(1)));
+                        } else {
+                            deleted.add(fileName);
+                        }
+                    }
+                }
+            }
+
+            RulesetValidator.RulesetInfo rulesetInfo = null;
+            try (TreeWalk rulesetYaml = TreeWalk.forPath(reader, prefixDir + RulesetValidator.RULESET_FILE, headTree)) {
+                if (rulesetYaml != null) {
+                    rulesetInfo = rulesetValidator.validateRulesetYaml(readBlob(reader, rulesetYaml.getObjectId(0)));
+                }
+            }
+
+            // Unchanged files come first so that a duplicate is reported on the changed file
+            RuleIdIndex index = new RuleIdIndex();
+            int unchanged = 0;
+            for (Map.Entry<String, ObjectId> file : ruleFiles(reader, headTree, prefix).entrySet()) {
+                if (!changed.containsKey(file.getKey())) {
+                    index.add(file.getKey(), ruleIds(reader, file.getValue()));
+                    unchanged++;
+                }
+            }
+            changed.forEach((fileName, content) -> index.add(fileName, ruleValidator.extractRuleIds(content)));
+
+            List<RulesetValidator.RuleFileResult> results = changed.entrySet().parallelStream()
+                .map(e -> index.check(rulesetValidator.validateRuleFile(e.getKey(), e.getValue())))
+                .toList();
+            GitValidation validation = new GitValidation(baseRef, headRef, rulesetInfo, rulesetChanged, results,
+                List.copyOf(deleted), unchanged);
+            resultCache.put(key, validation);
+            return validation;
+        }
+    }
+
+    /**
+     * @return The blob of every rule file directly inside the ruleset directory of a tree, by file name
+     */
+    private Map<String, ObjectId> ruleFiles(ObjectReader reader, ObjectId tree, String prefix) throws IOException {
+        ObjectId dirTree = tree;
+        if (!prefix.isEmpty()) {
+            try (TreeWalk dirWalk = TreeWalk.forPath(reader, prefix, tree)) {
+                if (dirWalk == null || !FileMode.TREE.equals(dirWalk.getFileMode(0))) {
+                    return Map.of();
+                }
+                dirTree = dirWalk.getObjectId(0);
+            }
+        }
+
+        Map<String, ObjectId> files = new TreeMap<>();
+        try (TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(dirTree);
+            walk.setRecursive(false);
+            while (walk.next()) {
+                String fileName = walk.getNameString();
+                if (isFile(walk.getFileMode(0)) && RulesetValidator.isRuleFile(fileName)) {
+                    files.put(fileName, walk.getObjectId(0));
+                }
+            }
+        }
+        return files;
+    }
+
+    private List<String> ruleIds(ObjectReader reader, ObjectId blobId) throws IOException {
+        List<String> cached = ruleIdCache.get(blobId);
+        if (cached == null) {
+            cached = ruleValidator.extractRuleIds(readBlob(reader, blobId));
+            ruleIdCache.put(blobId, cached);
+        }
+        return cached;
+    }
+
+    private ObjectId resolveTree(Repository repo, String ref) throws IOException {
+        ObjectId tree = repo.resolve(ref + "^{tree}");
+        if (tree == null) {
+            throw new IOException("Unknown git ref: " + ref);
+        }
+        return tree;
+    }
+
+    private String readBlob(ObjectReader reader, ObjectId blobId) throws IOException {
+        ObjectLoader loader = reader.open(blobId);
+        if (loader.getSize() > MAX_BLOB_SIZE) {
+            throw new IOException("File too large to validate: " + loader.getSize() + " bytes");
+        }
+        return new String(loader.getBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isFile(FileMode mode) {
+        return FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode);
+    }
+
+    private record ChangesKey(Path dir, String baseRef, String headRef, ObjectId baseTree, ObjectId headTree) {}
+
+    /**
+     * Results of validating the changes between two refs.
+     *
+     * @param baseRef        Base revision
+     * @param headRef        Head revision
+     * @param rulesetInfo    ruleset.yaml of the head revision, or null if it has none
+     * @param rulesetChanged true if ruleset.yaml differs between the refs
+     * @param ruleFiles      Results for added and modified rule files, sorted by name
+     * @param deletedFiles   Rule files that exist in base but not in head
+     * @param unchangedFiles Number of rule files that are the same in both refs
+     */
+    public record GitValidation(
+        String baseRef,
+        String headRef,
+        RulesetValidator.RulesetInfo rulesetInfo,
+        boolean rulesetChanged,
+        List<RulesetValidator.RuleFileResult> ruleFiles,
+        List<String> deletedFiles,
+        int unchangedFiles
+    ) {}
+}
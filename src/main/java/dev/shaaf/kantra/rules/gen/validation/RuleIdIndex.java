@@ -0,0 +1,61 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ruleIDs of the rule files of one ruleset, for finding IDs defined more than once.
+ * <p>
+ * The first file added that defines an ID owns it; every other definition, including a repeated one in
+ * the same file, is a duplicate. Files are added in the order that decides ownership: by name for a
+ * whole ruleset, and unchanged files before changed ones when only changes are validated.
+ * </p>
+ */
+public final class RuleIdIndex {
+
+    private final Map<String, List<String>> ruleIds = new HashMap<>();
+    private final Map<String, String> owners = new HashMap<>();
+
+    /**
+     * @param fileName Rule file name
+     * @param ids      ruleIDs of the file, in declaration order
+     */
+    public void add(String fileName, List<String> ids) {
+        ruleIds.put(fileName, ids);
+        for (String id : ids) {
+            owners.putIfAbsent(id, fileName);
+        }
+    }
+
+    /**
+     * @return One error for every ruleID of the file that is defined earlier, in another file or in the file itself
+     */
+    public List<String> duplicates(String fileName) {
+        List<String> errors = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String id : ruleIds.getOrDefault(fileName, List.of())) {
+            String owner = owners.get(id);
+            if (!owner.equals(fileName) || !seen.add(id)) {
+                errors.add("Duplicate ruleID '" + id + "' is also defined in '" + owner + "'");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return The result with the file's duplicate ruleIDs added to its errors
+     */
+    public RulesetValidator.RuleFileResult check(RulesetValidator.RuleFileResult result) {
+        List<String> duplicates = duplicates(result.fileName());
+        if (duplicates.isEmpty()) {
+            return result;
+        }
+        List<String> errors = new ArrayList<>(result.errors());
+        errors.addAll(duplicates);
+        return new RulesetValidator.RuleFileResult(result.fileName(), errors, result.readError());
+    }
+}
@@ -0,0 +1,139 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared intern table for loading many rules at once, see {@link RuleValidator#parseYamlToRules(String, RuleInterner)}.
+ * <p>
+ * Upstream rulesets repeat the same labels, link URLs, file patterns and even messages thousands of times.
+ * While rules are bound, every string goes through this table, so equal values end up as one instance;
+ * afterwards the label, link and tag lists of each rule are replaced by a shared immutable list with the
+ * same content. Categories and Java locations are enums and need no interning.
+ * </p>
+ * <p>
+ * The table only grows and holds unique values such as rule IDs too. Keep one instance for a bulk load
+ * and drop it once loading is done: the loaded rules keep sharing their values without it.
+ * Thread-safe, so several files can be loaded in parallel against the same table.
+ * </p>
+ */
+public class RuleInterner {
+
+    // Table of the load running on the current thread. Not a reader attribute: Jackson keeps the
+    // config of the first call in the type resolvers it caches, which would pin that table forever.
+    private static final ThreadLocal<RuleInterner> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<Object, Object> table = new ConcurrentHashMap<>();
+
+    /**
+     * @return The canonical instance equal to the value, or null for null
+     */
+    public String intern(String value) {
+        return canonical(value);
+    }
+
+    /**
+     * @return A shared immutable list with the content of the given list and canonical elements,
+     *         or null for null
+     */
+    public <T> List<T> internList(List<T> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list.isEmpty()) {
+            return List.of();
+        }
+        List<T> elements = new ArrayList<>(list.size());
+        for (T element : list) {
+            elements.add(canonical(element));
+        }
+        return canonical(List.copyOf(elements));
+    }
+
+    /**
+     * @return The rule with its label, link and tag lists shared through the table
+     */
+    public Rule intern(Rule rule) {
+        return new Rule(
+            rule.ruleId(),
+            rule.message(),
+            rule.description(),
+            rule.category(),
+            rule.effort(),
+            internList(rule.labels()),
+            internList(rule.links()),
+            internList(rule.tag()),
+            rule.customVariables(),
+            rule.when()
+        );
+    }
+
+    /**
+     * @return Number of distinct values in the table
+     */
+    public int size() {
+        return table.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T canonical(T value) {
+        if (value == null) {
+            return null;
+        }
+        T existing = (T) table.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Run a binding step with this table active for the module's string deserializer on the current thread.
+     */
+    <T> T bind(Binding<T> binding) throws Exception {
+        RuleInterner previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return binding.bind();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Binding<T> {
+        T bind() throws Exception;
+    }
+
+    /**
+     * Jackson module whose string deserializer interns through the table of the current {@link #bind(Binding)}
+     * call, and behaves like the default one outside of it.
+     */
+    static SimpleModule module() {
+        return new SimpleModule("rule-interner").addDeserializer(String.class, new InterningStringDeserializer());
+    }
+
+    private static final class InterningStringDeserializer extends StdScalarDeserializer<String> {
+
+        InterningStringDeserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = StringDeserializer.instance.deserialize(p, ctxt);
+            RuleInterner interner = CURRENT.get();
+            return interner != null ? interner.intern(value) : value;
+        }
+    }
+}
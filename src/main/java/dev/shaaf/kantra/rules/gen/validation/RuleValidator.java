@@ -2,6 +2,7 @@ package dev.shaaf.kantra.rules.gen.validation;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import dev.shaaf.kantra.rules.gen.model.Rule;
@@ -15,6 +16,7 @@ import java.util.List;
 public class RuleValidator {
     
     private final ObjectMapper yamlMapper;
+    private final ObjectMapper internMapper;
     
     public RuleValidator() {
         YAMLFactory yamlFactory = new YAMLFactory();
@@ -23,6 +25,7 @@ public class RuleValidator {
         
         this.yamlMapper = new ObjectMapper(yamlFactory);
         this.yamlMapper.findAndRegisterModules();
+        this.internMapper = yamlMapper.copy().registerModule(RuleInterner.module());
     }
     private final ObjectMapper jsonMapper = new ObjectMapper();
     
@@ -115,6 +118,73 @@ public class RuleValidator {
         return rules;
     }
     
+    /**
+     * Parses a YAML string into a list of Rule objects, sharing repeated strings and label,
+     * link and tag lists through an intern table. Use the same table for every file of a bulk load.
+     * @param yamlContent The YAML content to parse: rule objects, an array of rules or a ruleset with a rules array
+     * @param interner The shared intern table
+     * @return List of parsed Rule objects
+     * @throws Exception if parsing fails
+     */
+    public List<Rule> parseYamlToRules(String yamlContent, RuleInterner interner) throws Exception {
+        JsonNode yamlNode = yamlMapper.readTree(yamlContent);
+        JsonNode rulesNode = yamlNode != null && yamlNode.isObject() && yamlNode.has("rules")
+            ? yamlNode.get("rules")
+            : yamlNode;
+        if (rulesNode == null || !(rulesNode.isArray() || rulesNode.isObject())) {
+            throw new IllegalArgumentException("YAML must contain rule objects");
+        }
+        
+        ObjectReader reader = internMapper.readerFor(Rule.class);
+        return interner.bind(() -> {
+            List<Rule> rules = new ArrayList<>();
+            if (rulesNode.isArray()) {
+                for (JsonNode ruleNode : rulesNode) {
+                    rules.add(interner.intern(reader.<Rule>readValue(ruleNode)));
+                }
+            } else {
+                rules.add(interner.intern(reader.<Rule>readValue(rulesNode)));
+            }
+            return rules;
+        });
+    }
+    
+    /**
+     * Extracts the rule IDs declared in a YAML rule file without binding the rules to the model.
+     * Handles a single rule, an array of rules and a ruleset with a rules array.
+     * @param yamlContent The YAML content to scan
+     * @return The rule IDs in declaration order, empty if the content cannot be parsed
+     */
+    public List<String> extractRuleIds(String yamlContent) {
+        List<String> ruleIds = new ArrayList<>();
+        JsonNode yamlNode;
+        try {
+            yamlNode = yamlMapper.readTree(yamlContent);
+        } catch (Exception e) {
+            return ruleIds;
+        }
+        if (yamlNode == null) {
+            return ruleIds;
+        }
+        
+        JsonNode rules = yamlNode.isObject() && yamlNode.has("rules") ? yamlNode.get("rules") : yamlNode;
+        if (rules.isArray()) {
+            for (JsonNode ruleNode : rules) {
+                addRuleId(ruleNode, ruleIds);
+            }
+        } else {
+            addRuleId(rules, ruleIds);
+        }
+        return ruleIds;
+    }
+    
+    private void addRuleId(JsonNode ruleNode, List<String> ruleIds) {
+        JsonNode id = ruleNode.get("ruleID");
+        if (id != null && id.isTextual() && !id.asText().isBlank()) {
+            ruleIds.add(id.asText());
+        }
+    }
+    
     /**
      * Converts a Rule object to YAML string
      * @param rule The Rule object to serialize
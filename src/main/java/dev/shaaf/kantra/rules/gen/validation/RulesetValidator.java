@@ -0,0 +1,387 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import dev.shaaf.kantra.rules.gen.archive.RulesetArchives;
+import dev.shaaf.kantra.rules.gen.archive.TarReader;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Validates the individual pieces of a ruleset directory: the ruleset.yaml metadata file
+ * and the rule files next to it.
+ * <p>
+ * Each check works on a single file so callers can validate a whole directory
+ * or only the files that changed.
+ * </p>
+ */
+@ApplicationScoped
+public class RulesetValidator {
+
+    public static final String RULESET_FILE = "ruleset.yaml";
+
+    private static final int MAX_CACHED_ARCHIVES = 8;
+    private static final int MAX_CACHED_RULE_FILES = 64 * 1024;
+
+    @Inject
+    RuleValidator ruleValidator;
+
+    // Tar validations by archive, size and modification time, so paging through a report reads the archive once
+    private final Map<ArchiveKey, List<ArchiveValidation>> archiveCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(MAX_CACHED_ARCHIVES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ArchiveKey, List<ArchiveValidation>> eldest) {
+                return size() > MAX_CACHED_ARCHIVES;
+            }
+        });
+
+    // ruleIDs of rule files by path, valid while size and modification time are unchanged
+    private final Map<Path, StampedRuleIds> ruleIdCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, StampedRuleIds> eldest) {
+                return size() > MAX_CACHED_RULE_FILES;
+            }
+        });
+
+    public RulesetValidator() {
+    }
+
+    public RulesetValidator(RuleValidator ruleValidator) {
+        this.ruleValidator = ruleValidator;
+    }
+
+    /**
+     * Checks whether a path is a rule file that belongs to the ruleset (a YAML file other than ruleset.yaml).
+     *
+     * @param path File path
+     * @return true if the file should be validated as a rule file
+     */
+    public static boolean isRuleFile(Path path) {
+        return isRuleFile(path.getFileName().toString());
+    }
+
+    /**
+     * Same as {@link #isRuleFile(Path)} for a file name that does not come from the file system, such as an
+     * archive entry, which may not be representable as a {@link Path} in the platform's file name encoding.
+     *
+     * @param fileName File name without directories
+     * @return true if the file should be validated as a rule file
+     */
+    public static boolean isRuleFile(String fileName) {
+        return (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) && !fileName.equals(RULESET_FILE);
+    }
+
+    /**
+     * Lists the rule files directly inside a ruleset directory, sorted by name.
+     *
+     * @param dir Ruleset directory
+     * @return Sorted rule file paths
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<Path> listRuleFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(RulesetValidator::isRuleFile)
+                .sorted()
+                .toList();
+        }
+    }
+
+    /**
+     * Validates a ruleset.yaml file.
+     *
+     * @param rulesetYaml Path to ruleset.yaml
+     * @return Metadata read from the file along with any errors and warnings
+     */
+    public RulesetInfo validateRulesetYaml(Path rulesetYaml) {
+        try {
+            return validateRulesetYaml(Files.readString(rulesetYaml));
+        } catch (IOException e) {
+            return new RulesetInfo(null, null, List.of("Failed to read ruleset.yaml: " + e.getMessage()), List.of());
+        }
+    }
+
+    /**
+     * Validates the content of a ruleset.yaml file.
+     *
+     * @param content ruleset.yaml content
+     * @return Metadata read from the content along with any errors and warnings
+     */
+    public RulesetInfo validateRulesetYaml(String content) {
+        List<String> errors = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        String name = null;
+        List<String> labels = null;
+
+        try {
+            Yaml yaml = new Yaml();
+            Map<String, Object> parsed = yaml.load(content);
+
+            if (parsed == null) {
+                errors.add("ruleset.yaml is empty");
+                return new RulesetInfo(null, null, errors, warnings);
+            }
+
+            // Check required fields
+            if (!parsed.containsKey("name") || parsed.get("name") == null) {
+                errors.add("ruleset.yaml missing required field: name");
+            } else {
+                name = parsed.get("name").toString();
+            }
+
+            // Check optional but recommended fields
+            if (!parsed.containsKey("description")) {
+                warnings.add("ruleset.yaml missing recommended field: description");
+            }
+
+            if (!parsed.containsKey("labels")) {
+                warnings.add("ruleset.yaml missing recommended field: labels");
+            } else {
+                Object labelsValue = parsed.get("labels");
+                if (labelsValue instanceof List<?> labelList) {
+                    labels = labelList.stream()
+                        .map(Object::toString)
+                        .toList();
+                }
+            }
+
+        } catch (Exception e) {
+            errors.add("Invalid YAML in ruleset.yaml: " + e.getMessage());
+        }
+
+        return new RulesetInfo(name, labels, errors, warnings);
+    }
+
+    /**
+     * Indexes the ruleIDs of the rule files of a ruleset, in the order given, to find duplicates with
+     * {@link RuleIdIndex#check(RuleFileResult)}. The IDs of a file on the default file system are reread
+     * only when its size or modification time changed, so checking a ruleset again costs a stat per file.
+     *
+     * @param ruleFiles Rule files of one ruleset directory, sorted by name
+     * @return The index, by file name
+     */
+    public RuleIdIndex indexRuleIds(List<Path> ruleFiles) {
+        List<List<String>> ids = ruleFiles.parallelStream().map(this::ruleIds).toList();
+        RuleIdIndex index = new RuleIdIndex();
+        for (int i = 0; i < ruleFiles.size(); i++) {
+            index.add(ruleFiles.get(i).getFileName().toString(), ids.get(i));
+        }
+        return index;
+    }
+
+    private List<String> ruleIds(Path ruleFile) {
+        try {
+            if (ruleFile.getFileSystem() != FileSystems.getDefault()) {
+                return ruleValidator.extractRuleIds(Files.readString(ruleFile));
+            }
+            BasicFileAttributes attributes = Files.readAttributes(ruleFile, BasicFileAttributes.class);
+            Path key = ruleFile.toAbsolutePath();
+            StampedRuleIds cached = ruleIdCache.get(key);
+            if (cached != null && cached.size() == attributes.size()
+                && cached.modified() == attributes.lastModifiedTime().toMillis()) {
+                return cached.ruleIds();
+            }
+            List<String> ids = ruleValidator.extractRuleIds(Files.readString(ruleFile));
+            ruleIdCache.put(key, new StampedRuleIds(attributes.size(), attributes.lastModifiedTime().toMillis(), ids));
+            return ids;
+        } catch (IOException e) {
+            // Reported as a read error when the file is validated
+            return List.of();
+        }
+    }
+
+    /**
+     * Validates a single rule file.
+     *
+     * @param ruleFile Path to the rule file
+     * @return Validation outcome for the file
+     */
+    public RuleFileResult validateRuleFile(Path ruleFile) {
+        String fileName = ruleFile.getFileName().toString();
+        try {
+            return validateRuleFile(fileName, Files.readString(ruleFile));
+        } catch (IOException e) {
+            return new RuleFileResult(fileName, List.of(e.getMessage()), true);
+        }
+    }
+
+    /**
+     * Validates the content of a single rule file.
+     *
+     * @param fileName Name reported for the file
+     * @param content  Rule file content
+     * @return Validation outcome for the file
+     */
+    public RuleFileResult validateRuleFile(String fileName, String content) {
+        RuleValidator.ValidationResult result = ruleValidator.validateYamlRule(content);
+        return new RuleFileResult(fileName, result.errors(), false);
+    }
+
+    /**
+     * Validates rule files in parallel. Works for any file system, including zip archives.
+     *
+     * @param ruleFiles Rule files to validate
+     * @return Results in the same order as the input
+     */
+    public List<RuleFileResult> validateRuleFiles(List<Path> ruleFiles) {
+        return ruleFiles.parallelStream()
+            .map(this::validateRuleFile)
+            .toList();
+    }
+
+    /**
+     * Validates the rulesets stored in a tar (optionally gzip-compressed) archive without extracting it.
+     * <p>
+     * The archive is read sequentially in a single pass. Rule files next to a ruleset.yaml that was
+     * already read are handed to a worker pool for validation while reading continues; the others are
+     * held until the end of the archive shows whether their directory is a ruleset, as decided by
+     * {@link RulesetArchives#findRulesetRoots(java.util.Collection)}. YAML files outside every ruleset
+     * are not validated. ruleIDs defined more than once within a ruleset are reported as errors. The
+     * result is cached until the archive's size or modification time changes.
+     * </p>
+     *
+     * @param archive Path to the tar archive
+     * @return Validation results for each ruleset directory inside the archive, sorted by directory
+     * @throws IOException if the archive cannot be read
+     */
+    public List<ArchiveValidation> validateTarArchive(Path archive) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(archive, BasicFileAttributes.class);
+        ArchiveKey key = new ArchiveKey(archive.toRealPath(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        List<ArchiveValidation> cached = archiveCache.get(key);
+        if (cached == null) {
+            cached = readTarArchive(archive);
+            archiveCache.put(key, cached);
+        }
+        return cached;
+    }
+
+    private List<ArchiveValidation> readTarArchive(Path archive) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        Map<String, String> rulesetYamls = new HashMap<>();
+        Map<String, String> held = new HashMap<>();
+        Map<String, CompletableFuture<CheckedFile>> results = new TreeMap<>();
+        // Bound the number of entries that are read but not validated yet
+        Semaphore inFlight = new Semaphore(Runtime.getRuntime().availableProcessors() * 4);
+
+        try (TarReader tar = TarReader.open(archive)) {
+            TarReader.Entry entry;
+            while ((entry = tar.next()) != null) {
+                if (!entry.regularFile()) {
+                    continue;
+                }
+                String name = RulesetArchives.normalize(entry.name());
+                entryNames.add(name);
+                String dir = RulesetArchives.parent(name);
+                String fileName = RulesetArchives.fileName(name);
+                if (fileName.equals(RULESET_FILE)) {
+                    rulesetYamls.put(dir, new String(tar.readContent(), StandardCharsets.UTF_8));
+                    for (String other : List.copyOf(held.keySet())) {
+                        if (RulesetArchives.parent(other).equals(dir)) {
+                            submit(results, other, held.remove(other), inFlight);
+                        }
+                    }
+                } else if (isRuleFile(fileName)) {
+                    String content = new String(tar.readContent(), StandardCharsets.UTF_8);
+                    if (rulesetYamls.containsKey(dir)) {
+                        submit(results, name, content, inFlight);
+                    } else {
+                        held.put(name, content);
+                    }
+                }
+            }
+        }
+
+        List<String> roots = RulesetArchives.findRulesetRoots(entryNames);
+        held.forEach((name, content) -> {
+            if (roots.contains(RulesetArchives.parent(name))) {
+                submit(results, name, content, inFlight);
+            }
+        });
+        List<ArchiveValidation> validations = new ArrayList<>(roots.size());
+        for (String root : roots) {
+            String rulesetYaml = rulesetYamls.get(root);
+            RulesetInfo rulesetInfo = rulesetYaml != null ? validateRulesetYaml(rulesetYaml) : null;
+            List<CheckedFile> checked = results.entrySet().stream()
+                .filter(e -> RulesetArchives.parent(e.getKey()).equals(root))
+                .map(e -> e.getValue().join())
+                .toList();
+            RuleIdIndex index = new RuleIdIndex();
+            checked.forEach(file -> index.add(file.result().fileName(), file.ruleIds()));
+            List<RuleFileResult> ruleFiles = checked.stream().map(file -> index.check(file.result())).toList();
+            validations.add(new ArchiveValidation(root, rulesetInfo, ruleFiles));
+        }
+        return List.copyOf(validations);
+    }
+
+    private void submit(Map<String, CompletableFuture<CheckedFile>> results, String name, String content,
+                        Semaphore inFlight) {
+        String fileName = RulesetArchives.fileName(name);
+        inFlight.acquireUninterruptibly();
+        results.put(name, CompletableFuture
+            .supplyAsync(() -> new CheckedFile(validateRuleFile(fileName, content), ruleValidator.extractRuleIds(content)))
+            .whenComplete((r, e) -> inFlight.release()));
+    }
+
+    private record ArchiveKey(Path archive, long size, long modified) {}
+
+    private record StampedRuleIds(long size, long modified, List<String> ruleIds) {}
+
+    private record CheckedFile(RuleFileResult result, List<String> ruleIds) {}
+
+    /**
+     * Results of validating a ruleset inside an archive.
+     *
+     * @param root        Ruleset directory inside the archive ("" for the archive root)
+     * @param rulesetInfo ruleset.yaml metadata, or null if the archive has none
+     * @param ruleFiles   Results for the rule files of the ruleset directory, sorted by name
+     */
+    public record ArchiveValidation(
+        String root,
+        RulesetInfo rulesetInfo,
+        List<RuleFileResult> ruleFiles
+    ) {}
+
+    /**
+     * Metadata and problems found in a ruleset.yaml file.
+     */
+    public record RulesetInfo(
+        String name,
+        List<String> labels,
+        List<String> errors,
+        List<String> warnings
+    ) {}
+
+    /**
+     * Validation outcome of a single rule file.
+     *
+     * @param fileName  File name
+     * @param errors    Validation errors, empty when the file is valid
+     * @param readError true if the file could not be read at all
+     */
+    public record RuleFileResult(
+        String fileName,
+        List<String> errors,
+        boolean readError
+    ) {
+        public boolean isValid() {
+            return errors.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package dev.shaaf.kantra.rules.gen.watch;
+
+import io.quarkus.logging.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory (optionally its whole tree) and delivers debounced batches of changed paths.
+ * <p>
+ * Editors typically produce several events per save (temp file, rename, modify). Events are
+ * collected until no new event arrived for the debounce period and then handed to the listener
+ * as a single {@link ChangeBatch}. A batch is always delivered after at most
+ * {@value #MAX_DELAY_FACTOR} debounce periods so a constant stream of events cannot starve the listener.
+ * </p>
+ * <p>
+ * The watcher stops by itself when the watched directory is deleted or otherwise becomes inaccessible:
+ * the root is added to the last batch and {@link #isRunning()} turns false.
+ * </p>
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final Path root;
+    private final boolean recursive;
+    private final long debounceMillis;
+    private final Consumer<ChangeBatch> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private DirectoryWatcher(Path root, boolean recursive, Duration debounce, Consumer<ChangeBatch> listener) throws IOException {
+        this.root = root;
+        this.recursive = recursive;
+        this.debounceMillis = Math.max(1, debounce.toMillis());
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.thread = new Thread(this::run, "directory-watcher-" + root.getFileName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start watching a directory.
+     *
+     * @param root      Directory to watch
+     * @param recursive Also watch all subdirectories, including ones created later
+     * @param debounce  Quiet period after the last event before a batch is delivered
+     * @param listener  Receives the debounced change batches on the watcher thread
+     * @return The running watcher, close it to stop watching
+     * @throws IOException if the directory cannot be registered
+     */
+    public static DirectoryWatcher start(Path root, boolean recursive, Duration debounce,
+                                         Consumer<ChangeBatch> listener) throws IOException {
+        if (root.getFileSystem() != FileSystems.getDefault()) {
+            throw new IOException("Only directories on the default file system can be watched: " + root);
+        }
+        DirectoryWatcher watcher = new DirectoryWatcher(root, recursive, debounce, listener);
+        if (recursive) {
+            watcher.registerTree(root);
+        } else {
+            watcher.register(root);
+        }
+        watcher.thread.start();
+        return watcher;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        keys.put(key, dir);
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                register(d);
+            }
+        }
+    }
+
+    private void run() {
+        Set<Path> pending = new LinkedHashSet<>();
+        boolean overflow = false;
+        long firstEventAt = 0;
+
+        while (running) {
+            WatchKey key;
+            try {
+                if (pending.isEmpty() && !overflow) {
+                    key = watchService.take();
+                } else {
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            boolean rootGone = false;
+            if (key != null) {
+                if (pending.isEmpty() && !overflow) {
+                    firstEventAt = System.currentTimeMillis();
+                }
+                overflow |= collect(key, pending);
+                if (!key.isValid() && root.equals(keys.remove(key))) {
+                    pending.add(root);
+                    rootGone = true;
+                }
+            }
+
+            boolean quiet = key == null;
+            boolean overdue = System.currentTimeMillis() - firstEventAt >= debounceMillis * MAX_DELAY_FACTOR;
+            if (rootGone) {
+                running = false;
+            }
+            if ((quiet || overdue || rootGone) && (!pending.isEmpty() || overflow)) {
+                deliver(new ChangeBatch(Collections.unmodifiableSet(pending), overflow));
+                pending = new LinkedHashSet<>();
+                overflow = false;
+            }
+        }
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Log.debugf("Failed to close watch service for %s: %s", root, e.getMessage());
+        }
+    }
+
+    private boolean collect(WatchKey key, Set<Path> pending) {
+        boolean overflow = false;
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerTree(child);
+                } catch (IOException e) {
+                    Log.warnf("Failed to watch new directory %s: %s", child, e.getMessage());
+                }
+            }
+            pending.add(child);
+        }
+        if (!key.reset() && !root.equals(dir)) {
+            keys.remove(key);
+        }
+        return overflow;
+    }
+
+    private void deliver(ChangeBatch batch) {
+        try {
+            listener.accept(batch);
+        } catch (Exception e) {
+            Log.errorf(e, "Directory watch listener failed for %s", root);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Log.debugf("Failed to close watch service for %s: %s", root, e.getMessage());
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * A debounced set of changed paths.
+     *
+     * @param paths    Paths that were created, modified or deleted, in event order
+     * @param overflow true if the platform dropped events, in which case {@code paths} may be incomplete
+     */
+    public record ChangeBatch(Set<Path> paths, boolean overflow) {}
+}
@@ -227,7 +227,7 @@ public class KantraToolTest {
             "Condition should be JavaReferencedCondition for location: " + location);
         JavaReferencedCondition condition = (JavaReferencedCondition) rule.when();
         assertEquals(javaPattern, condition.pattern(), "Pattern should match for location: " + location);
-        assertEquals(location.toString(), condition.location(), "Location should match for location: " + location);
+        assertEquals(location, condition.location(), "Location should match for location: " + location);
     }
 
     @Test
@@ -248,7 +248,7 @@ public class KantraToolTest {
         
         Rule rule = validator.parseYamlToRule(yaml);
         JavaReferencedCondition condition = (JavaReferencedCondition) rule.when();
-        assertEquals("INHERITANCE", condition.location());
+        assertEquals(JavaLocation.INHERITANCE, condition.location());
         assertTrue(rule.message().contains("Before:") && rule.message().contains("After:"));
     }
 
@@ -270,7 +270,7 @@ public class KantraToolTest {
         
         Rule rule = validator.parseYamlToRule(yaml);
         JavaReferencedCondition condition = (JavaReferencedCondition) rule.when();
-        assertEquals("METHOD_CALL", condition.location());
+        assertEquals(JavaLocation.METHOD_CALL, condition.location());
         assertTrue(condition.pattern().contains("getParameter"));
     }
 
@@ -292,7 +292,7 @@ public class KantraToolTest {
         
         Rule rule = validator.parseYamlToRule(yaml);
         JavaReferencedCondition condition = (JavaReferencedCondition) rule.when();
-        assertEquals("CONSTRUCTOR_CALL", condition.location());
+        assertEquals(JavaLocation.CONSTRUCTOR_CALL, condition.location());
         assertEquals("java.util.Vector", condition.pattern());
     }
 
@@ -314,7 +314,7 @@ public class KantraToolTest {
         
         Rule rule = validator.parseYamlToRule(yaml);
         JavaReferencedCondition condition = (JavaReferencedCondition) rule.when();
-        assertEquals("ANNOTATION", condition.location());
+        assertEquals(JavaLocation.ANNOTATION, condition.location());
         assertTrue(condition.pattern().contains("javax.ejb.Stateless"));
     }
 
@@ -374,6 +374,8 @@ public class KantraToolTest {
             case ANNOTATION -> "javax.ejb.Stateless";
             case IMPLEMENTS_TYPE -> "javax.servlet.Filter";
             case ENUM -> "javax.persistence.CascadeType";
+            case ENUM_CONSTANT -> "javax.persistence.CascadeType.ALL";
+            case DEFAULT -> "javax.ejb.EJBContext";
             case RETURN_TYPE -> "javax.servlet.http.HttpSession";
             case IMPORT -> "org.apache.camel.ThreadPoolRejectedPolicy";
             case VARIABLE_DECLARATION -> "java.util.Hashtable";
@@ -393,6 +395,8 @@ public class KantraToolTest {
             case ANNOTATION -> "Migrate EJB annotations";
             case IMPLEMENTS_TYPE -> "Update Filter interface";
             case ENUM -> "Update JPA enum usage";
+            case ENUM_CONSTANT -> "Update JPA enum constant";
+            case DEFAULT -> "Replace EJBContext references";
             case RETURN_TYPE -> "Update return type";
             case IMPORT -> "Update import statement";
             case VARIABLE_DECLARATION -> "Replace Hashtable with HashMap";
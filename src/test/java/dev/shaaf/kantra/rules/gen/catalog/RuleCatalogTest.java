@@ -0,0 +1,173 @@
+package dev.shaaf.kantra.rules.gen.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.shaaf.kantra.rules.gen.commands.java.CreateJavaRuleCommand;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileCondition;
+import dev.shaaf.kantra.rules.gen.model.Category;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.watch.DirectoryWatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the rule catalog and duplicate warnings of the CREATE_* commands.
+ */
+public class RuleCatalogTest {
+
+    private static final String EJB_RULES = """
+        - ruleID: ejb-00001
+          message: Remove @Stateless
+          category: mandatory
+          labels:
+            - konveyor.io/source=java-ee
+            - konveyor.io/target=quarkus
+          when:
+            java.referenced:
+              pattern: javax.ejb.Stateless
+              location: ANNOTATION
+        - ruleID: ejb-00002
+          message: EJB descriptor
+          category: optional
+          labels:
+            - konveyor.io/target=quarkus
+          when:
+            or:
+              - builtin.file:
+                  pattern: ejb-jar.xml
+              - java.referenced:
+                  pattern: javax.ejb.SessionBean
+                  location: IMPLEMENTS_TYPE
+        """;
+
+    @TempDir
+    Path rulesDir;
+
+    private final RuleValidator validator = new RuleValidator();
+    private RuleCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(rulesDir.resolve("ejb.yaml"), EJB_RULES);
+        Files.writeString(rulesDir.resolve("ruleset.yaml"), "name: ejb\n");
+        catalog = new RuleCatalog(validator);
+        assertEquals(2, catalog.load(rulesDir));
+    }
+
+    @Test
+    void testIndexes() {
+        assertEquals(1, catalog.findByRuleId("ejb-00002").size());
+        assertEquals(2, catalog.findByLabel("konveyor.io/target=quarkus").size());
+        assertEquals(1, catalog.findByCondition(new ConditionKey("builtin.file", null, "ejb-jar.xml")).size());
+        assertTrue(catalog.findByCondition(new ConditionKey("java.referenced", JavaLocation.IMPORT, "javax.ejb.Stateless")).isEmpty());
+    }
+
+    @Test
+    void testLoadsEveryAnalyzerLocation() throws Exception {
+        Files.writeString(rulesDir.resolve("locations.yaml"), """
+            - ruleID: enum-00001
+              category: mandatory
+              when:
+                java.referenced:
+                  pattern: javax.ejb.TransactionAttributeType.NEVER
+                  location: ENUM_CONSTANT
+            - ruleID: default-00001
+              category: mandatory
+              when:
+                java.referenced:
+                  pattern: javax.ejb.EJBContext
+                  location: default
+            """);
+        assertEquals(4, catalog.load(rulesDir));
+
+        assertEquals(1, catalog.findByCondition(new ConditionKey("java.referenced", JavaLocation.ENUM_CONSTANT,
+            "javax.ejb.TransactionAttributeType.NEVER")).size());
+        assertEquals(1, catalog.findByCondition(new ConditionKey("java.referenced", JavaLocation.DEFAULT,
+            "javax.ejb.EJBContext")).size());
+        assertTrue(validator.validateYamlRule(Files.readString(rulesDir.resolve("locations.yaml"))).isValid());
+    }
+
+    @Test
+    void testFindDuplicates() {
+        Rule sameCondition = rule("my-rule", new JavaReferencedCondition(" javax.ejb.Stateless", JavaLocation.ANNOTATION));
+        List<RuleCatalog.Match> matches = catalog.findDuplicates(sameCondition);
+        assertEquals(1, matches.size());
+        assertEquals(RuleCatalog.Match.Kind.SAME_CONDITION, matches.get(0).kind());
+        assertEquals("ejb-00001", matches.get(0).entry().ruleId());
+
+        Rule shared = rule("ejb-00001", new BuiltinFileCondition("ejb-jar.xml"));
+        matches = catalog.findDuplicates(shared);
+        assertEquals(2, matches.size());
+        assertEquals(RuleCatalog.Match.Kind.RULE_ID, matches.get(0).kind());
+        assertEquals(RuleCatalog.Match.Kind.SHARED_CONDITION, matches.get(1).kind());
+        assertEquals("ejb-00002", matches.get(1).entry().ruleId());
+
+        assertTrue(catalog.findDuplicates(rule("new", new BuiltinFileCondition("web.xml"))).isEmpty());
+    }
+
+    @Test
+    void testRefreshReindexesChangedAndDeletedFiles() throws Exception {
+        Path added = Files.writeString(rulesDir.resolve("more.yml"), """
+            - ruleID: web-00001
+              category: potential
+              when:
+                builtin.file:
+                  pattern: web.xml
+            """);
+        Files.writeString(rulesDir.resolve("ejb.yaml"), EJB_RULES.substring(0, EJB_RULES.indexOf("- ruleID: ejb-00002")));
+        catalog.refresh(rulesDir, new DirectoryWatcher.ChangeBatch(Set.of(added, rulesDir.resolve("ejb.yaml")), false));
+
+        assertEquals(2, catalog.size());
+        assertEquals(1, catalog.findByRuleId("web-00001").size());
+        assertTrue(catalog.findByRuleId("ejb-00002").isEmpty());
+        assertEquals(1, catalog.findByLabel("konveyor.io/target=quarkus").size());
+
+        Files.delete(added);
+        catalog.refresh(rulesDir, new DirectoryWatcher.ChangeBatch(Set.of(added), false));
+        assertEquals(1, catalog.size());
+        assertTrue(catalog.findByCondition(new ConditionKey("builtin.file", null, "web.xml")).isEmpty());
+    }
+
+    @Test
+    void testCreateCommandWarnsAboutDuplicates() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        CreateJavaRuleCommand command = new CreateJavaRuleCommand();
+        command.injectDependencies(mapper, validator, catalog);
+
+        ObjectNode params = mapper.createObjectNode()
+            .put("ruleID", "stateless-to-cdi")
+            .put("javaPattern", "javax.ejb.Stateless")
+            .put("location", "ANNOTATION")
+            .put("message", "Replace @Stateless with a CDI scope")
+            .put("category", "MANDATORY")
+            .put("effort", 1);
+        String plain = command.execute(params);
+        assertFalse(plain.contains("WARNING"), plain);
+
+        params.put("checkDuplicates", true);
+        String yaml = command.execute(params);
+        assertTrue(yaml.startsWith("# WARNING: existing rule 'ejb-00001'"), yaml);
+        assertTrue(yaml.endsWith(plain), yaml);
+        assertTrue(validator.validateYamlRule(yaml).isValid());
+        assertEquals("stateless-to-cdi", validator.parseYamlToRule(yaml).ruleId());
+
+        params.put("javaPattern", "javax.ejb.Singleton");
+        assertFalse(command.execute(params).contains("WARNING"));
+    }
+
+    private static Rule rule(String ruleId, Condition when) {
+        return new Rule(ruleId, "message", null, Category.MANDATORY, 1, List.of(), List.of(), List.of(), List.of(), when);
+    }
+}
@@ -0,0 +1,367 @@
+package dev.shaaf.kantra.rules.gen.commands.ruleset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.shaaf.kantra.rules.gen.validation.GitRulesetValidator;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for VALIDATE_RULESET, bypassing the CDI container.
+ */
+public class ValidateRulesetCommandTest {
+
+    private static final String VALID_RULE = """
+        - ruleID: rule-%d
+          category: mandatory
+          when:
+            builtin.file:
+              pattern: "*.java"
+        """;
+
+    private static final String INVALID_RULE = """
+        - ruleID: rule-%d
+          when:
+            builtin.file:
+              pattern: "*.java"
+        """;
+
+    @TempDir
+    Path dir;
+
+    @TempDir
+    Path archiveDir;
+
+    private ObjectMapper mapper;
+    private ValidateRulesetCommand command;
+
+    @BeforeEach
+    void setup() throws Exception {
+        mapper = new ObjectMapper();
+        RuleValidator validator = new RuleValidator();
+        command = new ValidateRulesetCommand();
+        command.rulesetValidator = new RulesetValidator(validator);
+
+        Field mapperField = command.getClass().getSuperclass().getDeclaredField("mapper");
+        mapperField.setAccessible(true);
+        mapperField.set(command, mapper);
+        Field validatorField = command.getClass().getSuperclass().getDeclaredField("ruleValidator");
+        validatorField.setAccessible(true);
+        validatorField.set(command, validator);
+
+        Files.writeString(dir.resolve("ruleset.yaml"), "name: test\ndescription: test\nlabels:\n  - konveyor.io/target=quarkus\n");
+        // Every third file is invalid (missing category)
+        for (int i = 0; i < 10; i++) {
+            String content = String.format(i % 3 == 0 ? INVALID_RULE : VALID_RULE, i);
+            Files.writeString(dir.resolve(String.format("rule-%02d.yaml", i)), content);
+        }
+    }
+
+    @Test
+    void testJsonReportIsPaginated() throws Exception {
+        List<String> files = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode page = run("json", 4, cursor, false);
+            assertEquals(10, page.get("totalRuleFiles").asInt());
+            assertEquals(pages == 0, page.has("ruleset"), "Ruleset info is only on the first page");
+            page.get("files").forEach(f -> files.add(f.get("file").asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(10, files.size());
+        assertEquals("rule-00.yaml", files.get(0));
+        assertEquals("rule-09.yaml", files.get(9));
+    }
+
+    @Test
+    void testJsonReportOnlyInvalid() throws Exception {
+        JsonNode page = run("json", 100, null, true);
+
+        JsonNode files = page.get("files");
+        assertEquals(4, files.size());
+        for (JsonNode file : files) {
+            assertFalse(file.get("valid").asBoolean());
+            assertTrue(file.get("errors").size() > 0);
+        }
+        assertEquals(6, page.get("page").get("valid").asInt());
+        assertTrue(page.get("nextCursor").isNull());
+    }
+
+    @Test
+    void testOnlyInvalidPagesAreBoundedByFilesExamined() throws Exception {
+        List<String> files = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode page = run("json", 2, cursor, true);
+            assertEquals(2, page.get("page").get("filesExamined").asInt());
+            page.get("files").forEach(f -> files.add(f.get("file").asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(List.of("rule-00.yaml", "rule-03.yaml", "rule-06.yaml", "rule-09.yaml"), files);
+    }
+
+    @Test
+    void testDuplicateRuleIdsAcrossFiles() throws Exception {
+        Files.writeString(dir.resolve("rule-10.yaml"), String.format(VALID_RULE, 4));
+
+        JsonNode page = run("json", 100, null, true);
+        JsonNode last = page.get("files").get(page.get("files").size() - 1);
+        assertEquals("rule-10.yaml", last.get("file").asText());
+        assertEquals("Duplicate ruleID 'rule-4' is also defined in 'rule-04.yaml'", last.get("errors").get(0).asText());
+    }
+
+    @Test
+    void testGitReportKeepsWarningsWithoutRulesetYaml() throws Exception {
+        command.gitRulesetValidator = new GitRulesetValidator(new RuleValidator(), command.rulesetValidator);
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("base").setAuthor("test", "test@example.com")
+                .setCommitter("test", "test@example.com").setSign(false).call();
+            Files.delete(dir.resolve("ruleset.yaml"));
+            Files.delete(dir.resolve("rule-01.yaml"));
+            Files.writeString(dir.resolve("rule-02.yaml"), String.format(VALID_RULE, 4));
+            git.add().addFilepattern(".").setUpdate(true).call();
+            git.commit().setMessage("head").setAuthor("test", "test@example.com")
+                .setCommitter("test", "test@example.com").setSign(false).call();
+        }
+
+        JsonNode page = mapper.readTree(command.execute(mapper.createObjectNode()
+            .put("directoryPath", dir.toString())
+            .put("format", "json")
+            .put("baseRef", "HEAD~1")));
+        assertFalse(page.get("ruleset").get("present").asBoolean());
+        assertEquals(List.of("ruleset.yaml changed since HEAD~1", "Rule file deleted since HEAD~1: rule-01.yaml",
+            "8 unchanged rule file(s) not revalidated"),
+            mapper.convertValue(page.get("warnings"), List.class));
+        assertEquals(1, page.get("totalRuleFiles").asInt());
+        assertEquals("Duplicate ruleID 'rule-4' is also defined in 'rule-04.yaml'",
+            page.get("files").get(0).get("errors").get(0).asText());
+    }
+
+    @Test
+    void testSarifReportContainsOnlyProblems() throws Exception {
+        JsonNode sarif = run("sarif", 100, null, false);
+
+        assertEquals("2.1.0", sarif.get("version").asText());
+        JsonNode results = sarif.get("runs").get(0).get("results");
+        assertEquals(4, results.size());
+        assertEquals("rule-00.yaml", results.get(0).get("locations").get(0)
+            .get("physicalLocation").get("artifactLocation").get("uri").asText());
+    }
+
+    @Test
+    void testSarifCursorMovesPastRulesetErrors() throws Exception {
+        Files.delete(dir.resolve("ruleset.yaml"));
+
+        List<String> uris = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode run = run("sarif", 1, cursor, false).get("runs").get(0);
+            assertEquals(1, run.get("properties").get("filesExamined").asInt());
+            run.get("results").forEach(r -> uris.add(r.get("locations").get(0)
+                .get("physicalLocation").get("artifactLocation").get("uri").asText()));
+            JsonNode next = run.get("properties").get("nextCursor");
+            cursor = next.isNull() ? null : next.asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(10, pages);
+        assertEquals(List.of("ruleset.yaml", "rule-00.yaml", "rule-03.yaml", "rule-06.yaml", "rule-09.yaml"), uris);
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(RuntimeException.class, () -> run("json", 10, "not-a-cursor", false));
+    }
+
+    @Test
+    void testTextReportOnlyInvalidOmitsValidFiles() throws Exception {
+        String report = command.execute(mapper.readTree(
+            "{\"directoryPath\": \"" + dir + "\", \"onlyInvalid\": true}"));
+
+        assertFalse(report.contains("Valid files:"));
+        assertTrue(report.contains("rule-03.yaml"));
+    }
+
+    @Test
+    void testValidateZipArchive() throws Exception {
+        Path zip = archiveDir.resolve("bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (Path file : listFiles()) {
+                out.putNextEntry(new ZipEntry("my-ruleset/" + file.getFileName()));
+                out.write(Files.readAllBytes(file));
+                out.closeEntry();
+            }
+        }
+
+        JsonNode page = mapper.readTree(command.execute(mapper.createObjectNode()
+            .put("directoryPath", zip.toString())
+            .put("format", "json")));
+
+        assertEquals(10, page.get("totalRuleFiles").asInt());
+        assertEquals("test", page.get("ruleset").get("name").asText());
+        assertEquals(6, page.get("page").get("valid").asInt());
+        assertEquals(4, page.get("page").get("invalid").asInt());
+    }
+
+    @Test
+    void testValidateTarGzArchive() throws Exception {
+        Path tgz = archiveDir.resolve("bundle.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tgz))) {
+            for (Path file : listFiles()) {
+                writeTarEntry(out, "./my-ruleset/" + file.getFileName(), Files.readAllBytes(file));
+            }
+            out.write(new byte[1024]);
+        }
+
+        String report = command.execute(mapper.readTree(
+            "{\"directoryPath\": \"" + tgz + "\"}"));
+
+        // Later pages of a report reuse the validation of the archive
+        assertSame(command.rulesetValidator.validateTarArchive(tgz), command.rulesetValidator.validateTarArchive(tgz));
+        assertTrue(report.contains("Total: 10"), report);
+        assertTrue(report.contains("Valid: 6"), report);
+        assertTrue(report.contains("Name: test"), report);
+        assertTrue(report.contains("✗ rule-03.yaml"), report);
+    }
+
+    @Test
+    void testEveryRulesetOfAnArchiveIsValidated() throws Exception {
+        Path tgz = archiveDir.resolve("bundle.tgz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tgz))) {
+            // A rule file that comes before its ruleset.yaml, and YAML that belongs to no ruleset
+            writeTarEntry(out, "second/rule-1.yaml", String.format(INVALID_RULE, 1).getBytes(StandardCharsets.UTF_8));
+            writeTarEntry(out, "docs/example.yaml", String.format(INVALID_RULE, 2).getBytes(StandardCharsets.UTF_8));
+            for (String ruleset : List.of("first", "second")) {
+                writeTarEntry(out, ruleset + "/ruleset.yaml", ("name: " + ruleset + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            writeTarEntry(out, "first/rule-0.yaml", String.format(VALID_RULE, 0).getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+
+        JsonNode page = mapper.readTree(command.execute(mapper.createObjectNode()
+            .put("directoryPath", tgz.toString())
+            .put("format", "json")));
+        assertEquals(2, page.get("totalRuleFiles").asInt());
+        assertEquals("first/", page.get("rulesets").get(0).get("directory").asText());
+        assertEquals("second", page.get("rulesets").get(1).get("name").asText());
+        assertEquals("first/rule-0.yaml", page.get("files").get(0).get("file").asText());
+        assertEquals("second/rule-1.yaml", page.get("files").get(1).get("file").asText());
+        assertFalse(page.get("files").get(1).get("valid").asBoolean());
+
+        Path zip = archiveDir.resolve("bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String ruleset : List.of("first", "second")) {
+                out.putNextEntry(new ZipEntry(ruleset + "/ruleset.yaml"));
+                out.write(("name: " + ruleset + "\n").getBytes(StandardCharsets.UTF_8));
+                out.putNextEntry(new ZipEntry(ruleset + "/rule.yaml"));
+                out.write(String.format(VALID_RULE, ruleset.length()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        String report = command.execute(mapper.readTree("{\"directoryPath\": \"" + zip + "\"}"));
+        assertTrue(report.contains("Name: first"), report);
+        assertTrue(report.contains("Name: second"), report);
+    }
+
+    @Test
+    void testPaxPathWithNonAsciiName() throws Exception {
+        Path tar = archiveDir.resolve("bundle.tar");
+        String name = "règles/ruleset.yaml";
+        String ruleFile = "ü".repeat(60) + ".yaml";
+        String longName = "règles/" + ruleFile;
+        try (OutputStream out = Files.newOutputStream(tar)) {
+            writeTarEntry(out, "PaxHeaders/ruleset.yaml", (paxRecord("path", name) + paxRecord("mtime", "1700000000"))
+                .getBytes(StandardCharsets.UTF_8), (byte) 'x');
+            writeTarEntry(out, "ruleset.yaml", "name: test\n".getBytes(StandardCharsets.UTF_8));
+            writeTarEntry(out, "PaxHeaders/rule.yaml", paxRecord("path", longName).getBytes(StandardCharsets.UTF_8),
+                (byte) 'x');
+            writeTarEntry(out, "rule.yaml", String.format(VALID_RULE, 0).getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+
+        JsonNode page = mapper.readTree(command.execute(mapper.createObjectNode()
+            .put("directoryPath", tar.toString())
+            .put("format", "json")));
+        assertEquals(1, page.get("totalRuleFiles").asInt());
+        assertEquals("test", page.get("ruleset").get("name").asText());
+        assertEquals(ruleFile, page.get("files").get(0).get("file").asText());
+    }
+
+    /**
+     * @return A pax record, whose length prefix counts bytes and includes itself
+     */
+    private String paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = body + String.valueOf(body).length();
+        if (String.valueOf(length).length() != String.valueOf(body).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private List<Path> listFiles() throws Exception {
+        try (var files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private void writeTarEntry(OutputStream out, String name, byte[] content) throws Exception {
+        writeTarEntry(out, name, content, (byte) '0');
+    }
+
+    private void writeTarEntry(OutputStream out, String name, byte[] content, byte type) throws Exception {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, content.length);
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+
+    private JsonNode run(String format, int pageSize, String cursor, boolean onlyInvalid) throws Exception {
+        var params = mapper.createObjectNode()
+            .put("directoryPath", dir.toString())
+            .put("format", format)
+            .put("pageSize", pageSize)
+            .put("onlyInvalid", onlyInvalid);
+        if (cursor != null) {
+            params.put("cursor", cursor);
+        }
+        return mapper.readTree(command.execute(params));
+    }
+}
@@ -0,0 +1,159 @@
+package dev.shaaf.kantra.rules.gen.commands.ruleset;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import dev.shaaf.kantra.rules.gen.watch.DirectoryWatcher;
+import io.quarkiverse.mcp.server.McpLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for WATCH_RULESET, bypassing the CDI container.
+ */
+public class WatchRulesetCommandTest {
+
+    private static final String VALID_RULE = """
+        - ruleID: rule-1
+          category: mandatory
+          when:
+            builtin.file:
+              pattern: "*.java"
+        """;
+
+    private static final String INVALID_RULE = """
+        - ruleID: rule-1
+          when:
+            builtin.file:
+              pattern: "*.java"
+        """;
+
+    @TempDir
+    Path tempDir;
+
+    private Path dir;
+    private ObjectMapper mapper;
+    private WatchRulesetCommand command;
+    private final BlockingQueue<Map<?, ?>> notifications = new LinkedBlockingQueue<>();
+    private McpLog log;
+
+    @BeforeEach
+    void setup() throws Exception {
+        mapper = new ObjectMapper();
+        RuleValidator validator = new RuleValidator();
+        command = new WatchRulesetCommand();
+        command.rulesetValidator = new RulesetValidator(validator);
+        Field mapperField = command.getClass().getSuperclass().getDeclaredField("mapper");
+        mapperField.setAccessible(true);
+        mapperField.set(command, mapper);
+        Field validatorField = command.getClass().getSuperclass().getDeclaredField("ruleValidator");
+        validatorField.setAccessible(true);
+        validatorField.set(command, validator);
+
+        log = (McpLog) Proxy.newProxyInstance(McpLog.class.getClassLoader(), new Class<?>[]{McpLog.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("send") && args.length == 2 && args[1] instanceof Map<?, ?> payload) {
+                    notifications.add(payload);
+                }
+                return null;
+            });
+
+        dir = Files.createDirectory(tempDir.resolve("my-ruleset"));
+        Files.writeString(dir.resolve("ruleset.yaml"), "name: test\ndescription: test\n");
+        Files.writeString(dir.resolve("rule-a.yaml"), VALID_RULE);
+        Files.writeString(dir.resolve("rule-b.yaml"), VALID_RULE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        command.closeAll();
+    }
+
+    @Test
+    void testChangedFilesAreRevalidated() throws Exception {
+        String started = start();
+        assertTrue(started.contains("Rule files: 2 (valid: 2, invalid: 0)"), started);
+
+        Files.writeString(dir.resolve("rule-b.yaml"), INVALID_RULE);
+        Map<?, ?> notification = next("rule-b.yaml");
+        assertEquals("invalid", notification.get("status"));
+        assertEquals(1, notification.get("invalidFiles"));
+
+        Files.delete(dir.resolve("rule-a.yaml"));
+        assertEquals("deleted", next("rule-a.yaml").get("status"));
+        assertTrue(execute("status").contains("Rule files: 1 (valid: 0, invalid: 1)"));
+
+        assertEquals("Stopped watching " + dir, execute("stop"));
+        assertEquals("No active watch for " + dir, execute("status"));
+    }
+
+    @Test
+    void testOverflowRevalidatesEveryFile() throws Exception {
+        start();
+        WatchRulesetCommand.RulesetWatch watch = command.watches.get(dir);
+        watch.watcher.close();
+
+        // Changes the platform dropped the events of
+        Files.writeString(dir.resolve("rule-a.yaml"), INVALID_RULE);
+        Files.delete(dir.resolve("rule-b.yaml"));
+        Files.writeString(dir.resolve("rule-c.yaml"), VALID_RULE);
+        watch.onChange(new DirectoryWatcher.ChangeBatch(Set.of(), true));
+
+        Map<Object, Object> statuses = new HashMap<>();
+        notifications.forEach(notification -> statuses.put(notification.get("file"), notification.get("status")));
+        assertEquals("invalid", statuses.get("rule-a.yaml"));
+        assertEquals("deleted", statuses.get("rule-b.yaml"));
+        assertEquals("valid", statuses.get("rule-c.yaml"));
+        assertTrue(watch.summary().contains("Rule files: 2 (valid: 1, invalid: 1)"));
+    }
+
+    @Test
+    void testWatchEndsWhenDirectoryIsDeleted() throws Exception {
+        start();
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+
+        assertEquals("deleted", next("my-ruleset").get("status"));
+        assertEquals("No active watch for " + dir, execute("status"));
+    }
+
+    private String start() throws Exception {
+        return command.execute(mapper.readTree(
+            "{\"directoryPath\": \"" + dir + "\", \"debounceMillis\": 50}"), log);
+    }
+
+    private String execute(String action) throws Exception {
+        return command.execute(mapper.readTree(
+            "{\"directoryPath\": \"" + dir + "\", \"action\": \"" + action + "\"}"), log);
+    }
+
+    /**
+     * The next notification about a file, skipping those about other files.
+     */
+    private Map<?, ?> next(String file) throws InterruptedException {
+        while (true) {
+            Map<?, ?> notification = notifications.poll(10, TimeUnit.SECONDS);
+            assertNotNull(notification, "No notification about " + file);
+            if (file.equals(notification.get("file"))) {
+                return notification;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package dev.shaaf.kantra.rules.gen.commands.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.shaaf.kantra.rules.gen.evaluation.RuleEvaluator;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the incident caps of TEST_RULE.
+ */
+public class TestRuleCommandTest {
+
+    private static final String RULES = """
+        - ruleID: println
+          category: potential
+          when:
+            builtin.filecontent:
+              filePattern: '*.java'
+              pattern: System\\.out\\.println
+        - ruleID: todo
+          category: potential
+          when:
+            builtin.filecontent:
+              filePattern: '*.java'
+              pattern: TODO
+        """;
+
+    @TempDir
+    Path sourceDir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private TestRuleCommand command;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RuleValidator validator = new RuleValidator();
+        command = new TestRuleCommand();
+        command.injectDependencies(mapper, validator);
+        command.ruleEvaluator = new RuleEvaluator();
+        command.rulesetValidator = new RulesetValidator(validator);
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(sourceDir.resolve("C" + i + ".java"),
+                "class C" + i + " {\n  // TODO\n  void run() { System.out.println(" + i + "); }\n}\n");
+        }
+    }
+
+    @Test
+    void testTotalCapIsSharedInRuleOrder() throws Exception {
+        JsonNode response = run(4, 6);
+        assertEquals(6, response.get("totalIncidents").asInt());
+
+        JsonNode println = response.get("rules").get(0);
+        assertEquals(4, println.get("incidentCount").asInt());
+        assertTrue(println.get("truncated").asBoolean());
+        assertEquals("C0.java", println.get("incidents").get(0).get("file").asText());
+        assertEquals("C3.java", println.get("incidents").get(3).get("file").asText());
+
+        JsonNode todo = response.get("rules").get(1);
+        assertEquals(2, todo.get("incidentCount").asInt());
+        assertTrue(todo.get("truncated").asBoolean());
+        assertEquals(2, todo.get("incidents").get(1).get("line").asInt());
+    }
+
+    @Test
+    void testNothingTruncatedUnderTheCaps() throws Exception {
+        JsonNode response = run(100, 1000);
+        assertEquals(20, response.get("totalIncidents").asInt());
+        for (JsonNode rule : response.get("rules")) {
+            assertEquals(10, rule.get("incidentCount").asInt());
+            assertFalse(rule.get("truncated").asBoolean());
+        }
+    }
+
+    private JsonNode run(int maxIncidents, int maxTotalIncidents) throws Exception {
+        return mapper.readTree(command.execute(mapper.createObjectNode()
+            .put("yamlContent", RULES)
+            .put("sourcePath", sourceDir.toString())
+            .put("maxIncidents", maxIncidents)
+            .put("maxTotalIncidents", maxTotalIncidents)));
+    }
+}
@@ -0,0 +1,100 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the literal prefilter that lets many builtin.filecontent patterns share one pass over a file.
+ */
+public class ContentPatternSetTest {
+
+    private static final String CONTENT = """
+        package com.example;
+
+        import javax.ejb.Stateless;
+        import javax.jms.Queue;
+
+        @Stateless
+        public class Legacy {
+            String color = "Größe";
+            void run() {
+                System.out.println(new Date()); legacyCall(); System.exit(1);
+                legacy(); xxxyz xyz
+                // SELECT * FROM orders
+                foo
+                  bar
+            }
+        }
+        """;
+
+    @Test
+    void testRequiredLiterals() {
+        assertEquals(Set.of("System.out"), RequiredLiterals.of("System\\.out"));
+        assertEquals(Set.of("javax.ejb.", "javax.jms."), RequiredLiterals.of("javax\\.(ejb|jms)\\."));
+        assertEquals(Set.of("import"), RequiredLiterals.of("^import\\s+[a-z]+"));
+        // The longest required run wins; optional parts end a run
+        assertEquals(Set.of("Configuration"), RequiredLiterals.of("@(Spring)?Configuration\\b"));
+        assertEquals(Set.of("colo"), RequiredLiterals.of("colou?r"));
+        assertEquals(Set.of("System.exit("), RequiredLiterals.of("\\QSystem.exit(\\E"));
+        assertEquals(Set.of("legacyCall", "oldCall()"), RequiredLiterals.of("legacyCall|oldCall\\(\\)"));
+
+        // No literal every match must contain, or too short to be worth it
+        assertNull(RequiredLiterals.of("legacy|.*"));
+        assertNull(RequiredLiterals.of("a+b"));
+        assertNull(RequiredLiterals.of("\\w+\\.\\w+"));
+        assertNull(RequiredLiterals.of("(?i)select"));
+
+        assertTrue(RequiredLiterals.canSpanLines("foo\\s*bar"));
+        assertTrue(RequiredLiterals.canSpanLines("foo[^;]*bar"));
+        assertFalse(RequiredLiterals.canSpanLines("foo.*bar\\S"));
+    }
+
+    @Test
+    void testAhoCorasick() {
+        AhoCorasick automaton = AhoCorasick.compile(List.of(bytes("he"), bytes("she"), bytes("his"), bytes("hers")));
+        List<String> hits = new ArrayList<>();
+        automaton.search(ByteBuffer.wrap(bytes("ushers")), (literal, end) -> hits.add(literal + "@" + end));
+        assertEquals(List.of("1@4", "0@4", "3@6"), hits);
+    }
+
+    @Test
+    void testSharedPassFindsWhatEachPatternFindsAlone() {
+        List<String> patterns = List.of("System\\.out", "javax\\.(ejb|jms)\\.", "^import\\s+javax", "foo\\s*\\n\\s*bar",
+            "(?i)select", "a+b", "Größe", "legacy(Call)?\\(", "\\bnew\\s+Date\\(", "colou?r", "x{2,}yz",
+            "(?<=@)Stateless", "Stateless$", "\\QSystem.exit(\\E", "^\\s*legacy\\(\\);", "\\Aackage", "}\\z");
+        List<BuiltinFileContentCondition> conditions = patterns.stream()
+            .map(pattern -> new BuiltinFileContentCondition(null, pattern)).toList();
+        ContentPatternSet set = ContentPatternSet.compile(conditions);
+
+        ByteBuffer content = ByteBuffer.wrap(CONTENT.getBytes(StandardCharsets.UTF_8));
+        IncidentCollector[] shared = new IncidentCollector[conditions.size()];
+        boolean[] selected = set.select(Path.of("Legacy.java"), "Legacy.java");
+        for (int id = 0; id < shared.length; id++) {
+            shared[id] = new IncidentCollector(100);
+            assertTrue(selected[id]);
+        }
+        set.scan(content, "Legacy.java", selected, shared);
+
+        for (int id = 0; id < shared.length; id++) {
+            IncidentCollector alone = new IncidentCollector(100);
+            FileContentEvaluator.scan(content, "Legacy.java", FileContentEvaluator.compileContentPattern(patterns.get(id)), alone);
+            assertEquals(alone.toList(), shared[id].toList(), patterns.get(id));
+        }
+        assertEquals(List.of(3, 4), shared[1].toList().stream().map(Incident::line).toList());
+        assertEquals(List.of(10, 11), shared[7].toList().stream().map(Incident::line).toList());
+        assertEquals(List.of(13), shared[3].toList().stream().map(Incident::line).toList());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of a whole {@code builtin.filecontent} ruleset over a source tree, in GB/s of source per
+ * ruleset: one shared pass for all rules against one pass per rule.
+ * <p>
+ * The tree is generated Java-like source, a few dozen MB, and stays in the page cache, so the figures
+ * measure matching rather than disk. Rules mimic migration rulesets: mostly qualified names and calls
+ * that occur in a few files. Run the main method, optionally with the number of rules and files as
+ * arguments; JMH's per-invocation timing adds nothing for runs of this length.
+ * </p>
+ */
+public class FileContentRulesetBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Path root = Files.createTempDirectory("filecontent-benchmark");
+        try {
+            long bytes = corpus(root, files);
+            List<BuiltinFileContentCondition> conditions = ruleset(rules);
+
+            double shared = best(() -> FileContentEvaluator.evaluate(conditions, root, null, 100));
+            double perRule = best(() -> {
+                for (BuiltinFileContentCondition condition : conditions) {
+                    FileContentEvaluator.evaluate(List.of(condition), root, null, 100);
+                }
+            });
+            System.out.printf(Locale.ROOT, "Tree:              %d files, %.1f MB%n", files, bytes / 1e6);
+            System.out.printf(Locale.ROOT, "Shared pass:       %8.1f ms  %6.2f GB/s per ruleset of %d rules%n",
+                shared, bytes / shared / 1e6, rules);
+            System.out.printf(Locale.ROOT, "One pass per rule: %8.1f ms  %6.2f GB/s per ruleset%n",
+                perRule, bytes / perRule / 1e6);
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Best time of a few rounds after one warm-up, in milliseconds
+     */
+    private static double best(Runnable run) {
+        run.run();
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+    private static List<BuiltinFileContentCondition> ruleset(int rules) {
+        List<BuiltinFileContentCondition> conditions = new ArrayList<>(rules);
+        for (int r = 0; r < rules; r++) {
+            String pattern = switch (r % 4) {
+                case 0 -> "import javax\\.legacy" + r + "\\.";
+                case 1 -> "LegacyApi" + r + "\\.(lookup|bind)\\(";
+                case 2 -> "@Deprecated" + r + "\\b";
+                default -> "legacy\\.property" + r + "\\s*=";
+            };
+            conditions.add(new BuiltinFileContentCondition(r % 8 == 7 ? "*.properties" : "*.java", pattern));
+        }
+        return conditions;
+    }
+
+    private static long corpus(Path root, int files) throws IOException {
+        long bytes = 0;
+        for (int f = 0; f < files; f++) {
+            Path dir = Files.createDirectories(root.resolve("src/main/java/com/example/module" + f % 50));
+            StringBuilder source = new StringBuilder("package com.example.module").append(f % 50).append(";\n\n");
+            source.append("import java.util.List;\nimport javax.legacy").append(f % 400).append(".Service;\n\n");
+            source.append("public class Service").append(f).append(" {\n");
+            for (int m = 0; m < 150; m++) {
+                source.append("    public List<String> method").append(m).append("(String input, int count) {\n")
+                    .append("        return List.of(input.repeat(count), String.valueOf(").append(m).append("));\n")
+                    .append("    }\n");
+            }
+            if (f % 97 == 0) {
+                source.append("    Object o = LegacyApi").append(f % 200).append(".lookup(\"name\");\n");
+            }
+            source.append("}\n");
+            Files.writeString(dir.resolve("Service" + f + ".java"), source);
+            bytes += source.length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,70 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for file pattern classification and the combined matcher.
+ */
+public class FilePatternSetTest {
+
+    private static final List<String> PATTERNS = List.of(
+        "pom.xml", "*.xml", "*-ds.xml", "*.java", "META-INF/persistence.xml", "web.xml",
+        ".*\\.properties$", "src/**/*.jsp", "application-*.yml", "", "*.xml");
+
+    private static final List<String> FILES = List.of(
+        "pom.xml", "module/pom.xml", "module/pom.xml.bak", "pomXxml",
+        "src/main/resources/META-INF/persistence.xml", "persistence.xml", "XMETA-INF/persistence.xml",
+        "src/main/webapp/WEB-INF/web.xml", "deploy/app-ds.xml", "src/Main.java", "Main.javac",
+        "config/application.properties", "config/application.properties.orig", "src/main/webapp/index.jsp",
+        "application-prod.yml", "src/application-dev.yml", "README.md");
+
+    @Test
+    void testClassification() {
+        assertEquals(FilePattern.Kind.NAME, FilePattern.compile("pom.xml").kind());
+        assertEquals(FilePattern.Kind.PATH, FilePattern.compile("META-INF/persistence.xml").kind());
+        assertEquals(FilePattern.Kind.NAME_SUFFIX, FilePattern.compile("*.java").kind());
+        assertEquals(".java", FilePattern.compile("*.java").literal());
+        assertEquals(FilePattern.Kind.GENERIC, FilePattern.compile(".*\\.properties$").kind());
+        assertEquals(FilePattern.Kind.ANY, FilePattern.compile(" ").kind());
+        assertThrows(IllegalArgumentException.class, () -> FilePattern.compile("*{[.java"));
+    }
+
+    @Test
+    void testPlainPatternsMatchExactly() {
+        assertTrue(accepts("pom.xml", "module/pom.xml"));
+        assertFalse(accepts("pom.xml", "module/pom.xml.bak"));
+        assertFalse(accepts("pom.xml", "pomXxml"));
+        assertTrue(accepts("META-INF/persistence.xml", "src/main/resources/META-INF/persistence.xml"));
+        assertFalse(accepts("META-INF/persistence.xml", "XMETA-INF/persistence.xml"));
+        assertTrue(accepts("*-ds.xml", "deploy/app-ds.xml"));
+        assertFalse(accepts("*.java", "Main.javac"));
+    }
+
+    @Test
+    void testSetAgreesWithSinglePatterns() {
+        FilePatternSet set = FilePatternSet.compile(PATTERNS);
+        assertEquals(PATTERNS.size(), set.size());
+        for (String file : FILES) {
+            List<Integer> expected = new ArrayList<>();
+            for (int id = 0; id < PATTERNS.size(); id++) {
+                if (accepts(PATTERNS.get(id), file)) {
+                    expected.add(id);
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            set.match(Path.of(file), file, actual::add);
+            actual.sort(null);
+            assertEquals(expected, actual, file);
+        }
+    }
+
+    private static boolean accepts(String pattern, String file) {
+        return FilePattern.compile(pattern).accept(Path.of(file), file);
+    }
+}
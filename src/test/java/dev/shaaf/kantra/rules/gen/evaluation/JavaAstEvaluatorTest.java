@@ -0,0 +1,129 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AST-backed evaluation of structural java.referenced locations.
+ */
+public class JavaAstEvaluatorTest {
+
+    @TempDir
+    Path sourceDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path pkg = Files.createDirectories(sourceDir.resolve("src/main/java/com/example/orders"));
+        Files.writeString(pkg.resolve("OrderBean.java"), """
+            package com.example.orders;
+
+            import javax.ejb.Stateless;
+            import javax.ejb.TransactionAttribute;
+            import javax.ejb.TransactionAttributeType;
+            import javax.naming.InitialContext;
+            import javax.sql.DataSource;
+            import java.util.*;
+
+            @Stateless(name = "orders")
+            public class OrderBean extends BaseBean implements OrderService, java.io.Serializable {
+
+                private DataSource dataSource;
+                private List<String> names = new ArrayList<>();
+
+                @TransactionAttribute(TransactionAttributeType.REQUIRED)
+                public DataSource lookup() throws Exception {
+                    InitialContext context = new InitialContext();
+                    names.add("x");
+                    helper();
+                    return (DataSource) context.lookup("java:comp/env/jdbc");
+                }
+
+                void helper() {
+                    System.exit(1);
+                }
+            }
+            """);
+        Files.writeString(pkg.resolve("BaseBean.java"), "package com.example.orders;\n\npublic abstract class BaseBean {}\n");
+        Files.writeString(pkg.resolve("OrderService.java"), "package com.example.orders;\n\ninterface OrderService extends AutoCloseable {}\n");
+    }
+
+    @Test
+    void testLocations() {
+        assertEquals(List.of(21), lines(JavaLocation.METHOD_CALL, "javax.naming.InitialContext.lookup(*)"));
+        assertEquals(List.of(18), lines(JavaLocation.CONSTRUCTOR_CALL, "javax.naming.InitialContext(*)"));
+        assertEquals(List.of(10), lines(JavaLocation.ANNOTATION, "javax.ejb.Stateless"));
+        assertEquals(List.of(16), lines(JavaLocation.ANNOTATION, "javax.ejb.TransactionAttribute"));
+        assertEquals(List.of(11), lines(JavaLocation.INHERITANCE, "com.example.orders.BaseBean"));
+        assertEquals(List.of(3), lines(JavaLocation.INHERITANCE, "java.lang.AutoCloseable"));
+        assertEquals(List.of(11, 11), lines(JavaLocation.IMPLEMENTS_TYPE, "(java.io.Serializable|com.example.orders.OrderService)"));
+        assertEquals(List.of(13), lines(JavaLocation.FIELD, "javax.sql.DataSource"));
+        assertEquals(List.of(17), lines(JavaLocation.RETURN_TYPE, "javax.sql.DataSource"));
+    }
+
+    @Test
+    void testCallResolution() {
+        // Through the declared type of a field, from an on-demand import
+        assertEquals(List.of(19), lines(JavaLocation.METHOD_CALL, "java.util.List.add"));
+        assertEquals(List.of(25), lines(JavaLocation.METHOD_CALL, "java.lang.System.exit"));
+        // Unqualified call on the enclosing type
+        assertEquals(List.of(20), lines(JavaLocation.METHOD_CALL, "com.example.orders.OrderBean.helper"));
+        assertEquals(List.of(), lines(JavaLocation.METHOD_CALL, "javax.naming.InitialContext.bind*"));
+    }
+
+    @Test
+    void testAnnotated() {
+        JavaReferencedCondition.Annotated named = new JavaReferencedCondition.Annotated(null,
+            List.of(new JavaReferencedCondition.Element("name", "ord.*")));
+        assertEquals(List.of(10), lines(new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.ANNOTATION, named)));
+        JavaReferencedCondition.Annotated other = new JavaReferencedCondition.Annotated(null,
+            List.of(new JavaReferencedCondition.Element("name", "customers")));
+        assertEquals(List.of(), lines(new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.ANNOTATION, other)));
+
+        JavaReferencedCondition.Annotated transactional = new JavaReferencedCondition.Annotated("javax.ejb.TransactionAttribute",
+            List.of(new JavaReferencedCondition.Element("value", "TransactionAttributeType.REQUIRED")));
+        assertEquals(List.of(18), lines(new JavaReferencedCondition("javax.naming.InitialContext", JavaLocation.CONSTRUCTOR_CALL, transactional)));
+    }
+
+    @Test
+    void testBatchParsesEachFileOnce() {
+        JavaParseCache cache = new JavaParseCache();
+        List<JavaReferencedCondition> conditions = List.of(
+            new JavaReferencedCondition("javax.ejb.*", JavaLocation.ANNOTATION),
+            new JavaReferencedCondition("javax.sql.DataSource", JavaLocation.FIELD),
+            new JavaReferencedCondition("java.lang.System.exit", JavaLocation.METHOD_CALL));
+
+        Map<JavaReferencedCondition, EvaluationResult> results = JavaAstEvaluator.evaluate(conditions, sourceDir, null, 100, cache);
+        assertEquals(3, results.size());
+        assertEquals(2, results.get(conditions.get(0)).incidents().size());
+        assertEquals(3, results.get(conditions.get(0)).filesScanned());
+        assertEquals(3, cache.parses());
+
+        JavaAstEvaluator.evaluate(conditions, sourceDir, null, 100, cache);
+        assertEquals(3, cache.parses());
+    }
+
+    @Test
+    void testPatternParameters() {
+        assertEquals("javax.naming.InitialContext.lookup", JavaAstEvaluator.withoutParameters("javax.naming.InitialContext.lookup(*)"));
+        assertEquals("java.util.(List|Set)", JavaAstEvaluator.withoutParameters("java.util.(List|Set)"));
+        assertEquals("a.B.m", JavaAstEvaluator.withoutParameters("a.B.m(java.lang.String, (int))"));
+    }
+
+    private List<Integer> lines(JavaLocation location, String pattern) {
+        return lines(new JavaReferencedCondition(pattern, location));
+    }
+
+    private List<Integer> lines(JavaReferencedCondition condition) {
+        return new RuleEvaluator().evaluate(condition, sourceDir, 100).incidents().stream().map(Incident::line).toList();
+    }
+}
@@ -0,0 +1,195 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaDependencyCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for offline evaluation of java.dependency conditions over Maven and Gradle build files.
+ */
+public class JavaDependencyEvaluatorTest {
+
+    @TempDir
+    Path sourceDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(sourceDir.resolve("pom.xml"), """
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+              <groupId>com.example</groupId>
+              <artifactId>parent</artifactId>
+              <version>1.0.0</version>
+              <packaging>pom</packaging>
+              <properties>
+                <camel.version>2.25.4</camel.version>
+                <spring.version>5.3.${spring.patch}</spring.version>
+                <spring.patch>31</spring.patch>
+              </properties>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>org.apache.camel</groupId>
+                    <artifactId>camel-core</artifactId>
+                    <version>${camel.version}</version>
+                  </dependency>
+                  <dependency>
+                    <groupId>com.example</groupId>
+                    <artifactId>bom</artifactId>
+                    <version>${project.version}</version>
+                    <type>pom</type>
+                    <scope>import</scope>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+            </project>
+            """);
+        Path bom = Files.createDirectories(sourceDir.resolve("bom"));
+        Files.writeString(bom.resolve("pom.xml"), """
+            <project>
+              <groupId>com.example</groupId>
+              <artifactId>bom</artifactId>
+              <version>1.0.0</version>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>javax.servlet</groupId>
+                    <artifactId>javax.servlet-api</artifactId>
+                    <version>3.1.0</version>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+            </project>
+            """);
+        Path service = Files.createDirectories(sourceDir.resolve("service"));
+        Files.writeString(service.resolve("pom.xml"), """
+            <project>
+              <parent>
+                <groupId>com.example</groupId>
+                <artifactId>parent</artifactId>
+                <version>1.0.0</version>
+              </parent>
+              <artifactId>service</artifactId>
+              <properties>
+                <camel.version>3.0.0-RC1</camel.version>
+              </properties>
+              <dependencies>
+                <dependency>
+                  <groupId>org.apache.camel</groupId>
+                  <artifactId>camel-core</artifactId>
+                </dependency>
+                <dependency>
+                  <groupId>org.springframework</groupId>
+                  <artifactId>spring-core</artifactId>
+                  <version>${spring.version}</version>
+                </dependency>
+                <dependency>
+                  <groupId>javax.servlet</groupId>
+                  <artifactId>javax.servlet-api</artifactId>
+                </dependency>
+                <dependency>
+                  <groupId>${project.groupId}</groupId>
+                  <artifactId>api</artifactId>
+                  <version>[1.0,2.0)</version>
+                </dependency>
+              </dependencies>
+            </project>
+            """);
+        Path app = Files.createDirectories(sourceDir.resolve("app"));
+        Files.writeString(sourceDir.resolve("gradle.properties"), "junitVersion=4.12\n");
+        Files.writeString(app.resolve("build.gradle"), """
+            def jacksonVersion = '2.9.10'
+            dependencies {
+                implementation "com.fasterxml.jackson.core:jackson-databind:$jacksonVersion"
+                testImplementation group: 'junit', name: 'junit', version: "${junitVersion}"
+                // implementation 'commons-io:commons-io:2.4'
+                implementation(platform("org.springframework.boot:spring-boot-dependencies:2.7.0"))
+            }
+            """);
+    }
+
+    @Test
+    void testMavenVersionOrder() {
+        List<String> ordered = List.of("1.0-alpha1", "1.0-alpha2", "1.0-beta", "1.0-milestone1", "1.0-rc1",
+            "1.0-SNAPSHOT", "1.0", "1.0-sp", "1.0-whatever", "1.0.1", "1.1", "1.10", "2.0.0.M1", "2.0");
+        for (int i = 1; i < ordered.size(); i++) {
+            assertTrue(MavenVersion.parse(ordered.get(i - 1)).compareTo(MavenVersion.parse(ordered.get(i))) < 0,
+                ordered.get(i - 1) + " < " + ordered.get(i));
+        }
+        assertEquals(MavenVersion.parse("1"), MavenVersion.parse("1.0.0"));
+        assertEquals(MavenVersion.parse("1.0-final"), MavenVersion.parse("1.0-ga"));
+        assertEquals(MavenVersion.parse("1.0-cr1"), MavenVersion.parse("1.0-RC1"));
+        assertEquals(MavenVersion.parse("1a1"), MavenVersion.parse("1-alpha-1"));
+    }
+
+    @Test
+    void testMavenResolution() {
+        Map<String, String> versions = new HashMap<>();
+        BuildFileCache cache = new BuildFileCache();
+        for (JavaDependencyEvaluator.ResolvedDependency dependency
+            : JavaDependencyEvaluator.resolve(cache.buildFiles(sourceDir).values())) {
+            versions.put(dependency.groupId() + ":" + dependency.artifactId(), dependency.version());
+        }
+        // The child's property overrides the parent's in the parent's dependency management
+        assertEquals("3.0.0-RC1", versions.get("org.apache.camel:camel-core"));
+        assertEquals("5.3.31", versions.get("org.springframework:spring-core"));
+        // Managed by a BOM imported by the parent
+        assertEquals("3.1.0", versions.get("javax.servlet:javax.servlet-api"));
+        // Ranges are not a single known version
+        assertTrue(versions.containsKey("com.example:api"));
+        assertNull(versions.get("com.example:api"));
+        assertEquals("2.9.10", versions.get("com.fasterxml.jackson.core:jackson-databind"));
+        assertEquals("4.12", versions.get("junit:junit"));
+        assertFalse(versions.containsKey("commons-io:commons-io"));
+    }
+
+    @Test
+    void testEvaluate() {
+        assertEquals(List.of(new Incident("service/pom.xml", 12, "org.apache.camel:camel-core:3.0.0-RC1")),
+            evaluate(new JavaDependencyCondition("org.apache.camel.camel-core", null, "3.0.0", null)).incidents());
+        assertFalse(evaluate(new JavaDependencyCondition("org.apache.camel:camel-core", null, "2.99", null)).matched());
+        assertTrue(evaluate(new JavaDependencyCondition(null, "camel-.*", null, "3.0.0-M1")).matched());
+
+        EvaluationResult junit = evaluate(new JavaDependencyCondition("junit.junit", null, "4.12", "4.0"));
+        assertEquals(List.of(new Incident("app/build.gradle", 4, "junit:junit:4.12")), junit.incidents());
+        assertEquals(4, junit.filesScanned());
+
+        assertEquals(List.of("org.springframework.boot:spring-boot-dependencies:2.7.0", "org.springframework:spring-core:5.3.31"),
+            evaluate(new JavaDependencyCondition(null, "^org\\.springframework", null, null)).incidents().stream()
+                .map(Incident::snippet).sorted().toList());
+        assertFalse(evaluate(new JavaDependencyCondition("com.example.api", null, "9", null)).matched());
+
+        assertThrows(IllegalArgumentException.class, () -> evaluate(new JavaDependencyCondition(null, null, "1.0", null)));
+        assertThrows(IllegalArgumentException.class, () -> evaluate(new JavaDependencyCondition(null, "camel-(", null, null)));
+    }
+
+    @Test
+    void testBuildFilesAreCachedUntilChanged() throws Exception {
+        BuildFileCache cache = new BuildFileCache();
+        List<JavaDependencyCondition> conditions = List.of(new JavaDependencyCondition("junit.junit", null, null, null));
+        JavaDependencyEvaluator.evaluate(conditions, sourceDir, null, 100, cache);
+        assertEquals(5, cache.parses());
+        JavaDependencyEvaluator.evaluate(conditions, sourceDir, null, 100, cache);
+        assertEquals(5, cache.parses());
+
+        Path script = sourceDir.resolve("app/build.gradle");
+        Files.writeString(script, "dependencies {\n    implementation 'junit:junit:4.13.2'\n}\n");
+        Files.setLastModifiedTime(script, FileTime.fromMillis(0));
+        EvaluationResult result = JavaDependencyEvaluator.evaluate(conditions, sourceDir, null, 100, cache).get(conditions.get(0));
+        assertEquals(6, cache.parses());
+        assertEquals("junit:junit:4.13.2", result.incidents().get(0).snippet());
+    }
+
+    private EvaluationResult evaluate(JavaDependencyCondition condition) {
+        return new RuleEvaluator().evaluate(condition, sourceDir, 100);
+    }
+}
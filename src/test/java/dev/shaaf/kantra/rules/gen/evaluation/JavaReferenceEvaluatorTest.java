@@ -0,0 +1,120 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for header-only evaluation of java.referenced IMPORT and PACKAGE conditions.
+ */
+public class JavaReferenceEvaluatorTest {
+
+    private static final String SOURCE = """
+        /*
+         * Licensed under the Apache License. import org.license.Header;
+         */
+        package com.example.orders;
+
+        // import commented.Out;
+        import javax.ejb.Stateless;
+        import javax.ejb.*;
+        import static org.junit.Assert.assertEquals;
+        import java.util . /* odd */ List;
+
+        @Stateless(name = "import not.This;")
+        public class OrderService {
+            String s = "import javax.jms.Queue;";
+        }
+        import after.TypeDeclaration;
+        """;
+
+    @TempDir
+    Path sourceDir;
+
+    @Test
+    void testLexerReadsOnlyTheHeader() {
+        List<JavaHeaderLexer.Declaration> declarations = JavaHeaderLexer.read(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("package com.example.orders;", "import javax.ejb.Stateless;", "import javax.ejb.*;",
+                "import static org.junit.Assert.assertEquals;", "import java.util.List;"),
+            declarations.stream().map(Object::toString).toList());
+        assertEquals(List.of(4, 7, 8, 9, 10), declarations.stream().map(JavaHeaderLexer.Declaration::line).toList());
+        assertEquals(List.of("com.example.orders", "javax.ejb", "javax.ejb", "org.junit", "java.util"),
+            declarations.stream().map(JavaHeaderLexer.Declaration::packageName).toList());
+
+        String packageInfo = "@Deprecated\n@javax.annotation.Generated(value = {\"x)\", \"y\"})\npackage com.example;\n";
+        assertEquals(List.of("package com.example;"),
+            JavaHeaderLexer.read(ByteBuffer.wrap(packageInfo.getBytes(StandardCharsets.UTF_8))).stream().map(Object::toString).toList());
+    }
+
+    @Test
+    void testPatterns() {
+        assertTrue(JavaReferenceEvaluator.compilePattern("javax.ejb*").matcher("javax.ejb.Stateless").matches());
+        assertTrue(JavaReferenceEvaluator.compilePattern("javax.(ejb|jms).*").matcher("javax.jms.Queue").matches());
+        assertFalse(JavaReferenceEvaluator.compilePattern("javax.ejb.Stateless").matcher("javaxXejb.Stateless").matches());
+        assertThrows(IllegalArgumentException.class, () -> JavaReferenceEvaluator.compilePattern("javax.(ejb"));
+    }
+
+    @Test
+    void testEvaluate() throws Exception {
+        Path pkg = Files.createDirectories(sourceDir.resolve("src/main/java/com/example/orders"));
+        Files.writeString(pkg.resolve("OrderService.java"), SOURCE);
+        Files.writeString(pkg.resolve("Plain.java"), "package com.example.orders;\nclass Plain {}\n");
+        Files.writeString(pkg.resolve("notes.txt"), "import javax.ejb.Stateless;\n");
+
+        EvaluationResult result = evaluate(new JavaReferencedCondition("javax.ejb*", JavaLocation.IMPORT));
+        assertEquals(List.of(
+            new Incident("src/main/java/com/example/orders/OrderService.java", 7, "import javax.ejb.Stateless;"),
+            new Incident("src/main/java/com/example/orders/OrderService.java", 8, "import javax.ejb.*;")), result.incidents());
+        assertEquals(2, result.filesScanned());
+
+        assertFalse(evaluate(new JavaReferencedCondition("javax.jms*", JavaLocation.IMPORT)).matched());
+        assertEquals(List.of(4, 1), evaluate(new JavaReferencedCondition("com.example.orders", JavaLocation.PACKAGE))
+            .incidents().stream().map(Incident::line).toList());
+        assertEquals(List.of(9), evaluate(new JavaReferencedCondition("org.junit", JavaLocation.PACKAGE))
+            .incidents().stream().map(Incident::line).toList());
+
+        assertThrows(UnsupportedOperationException.class,
+            () -> evaluate(new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.VARIABLE_DECLARATION)));
+        // The analyzer matches every location when none is given
+        assertThrows(UnsupportedOperationException.class,
+            () -> evaluate(new JavaReferencedCondition("javax.ejb.Stateless", null)));
+        assertThrows(UnsupportedOperationException.class,
+            () -> evaluate(new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.DEFAULT)));
+    }
+
+    @Test
+    void testHeaderPrefixIsExtendedOnlyWhileIncomplete() throws Exception {
+        byte[] source = SOURCE.getBytes(StandardCharsets.UTF_8);
+        assertTrue(JavaHeaderLexer.scan(ByteBuffer.wrap(source)).complete());
+        JavaHeaderLexer.Header cut = JavaHeaderLexer.scan(ByteBuffer.wrap(source, 0, SOURCE.indexOf("assertEquals;")));
+        assertFalse(cut.complete());
+        assertEquals(3, cut.declarations().size());
+
+        StringBuilder longHeader = new StringBuilder("package com.example;\n");
+        for (int i = 0; i < 500; i++) {
+            longHeader.append("import com.example.generated.Type").append(i).append(";\n");
+        }
+        longHeader.append("import javax.ejb.Stateless;\npublic class Generated {}\n");
+        assertTrue(longHeader.length() > 4 * JavaReferenceEvaluator.HEADER_PREFIX);
+        Path file = Files.writeString(sourceDir.resolve("Generated.java"), longHeader);
+
+        List<JavaHeaderLexer.Declaration> declarations = JavaReferenceEvaluator.readHeader(file, Files.size(file));
+        assertEquals(502, declarations.size());
+        assertEquals(List.of(new Incident("Generated.java", 502, "import javax.ejb.Stateless;")),
+            evaluate(new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.IMPORT)).incidents());
+    }
+
+    private EvaluationResult evaluate(JavaReferencedCondition condition) {
+        return new RuleEvaluator().evaluate(condition, sourceDir, 100);
+    }
+}
@@ -0,0 +1,74 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinJsonCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming evaluation of builtin.json conditions.
+ */
+public class JsonEvaluatorTest {
+
+    @TempDir
+    Path sourceDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(sourceDir.resolve("package.json"), """
+            {
+              "name": "shop",
+              "scripts": { "build": "webpack --mode production", "test": "jest" },
+              "dependencies": {
+                "express": "^4.17.1",
+                "a/b": "1.0.0"
+              },
+              "files": ["dist", "lib"],
+              "workspaces": [{ "dependencies": { "express": "^5.0.0" } }]
+            }
+            """);
+        Path config = Files.createDirectories(sourceDir.resolve("config"));
+        Files.writeString(config.resolve("app.json"), """
+            // comments are allowed
+            { "datasource": { "url": "jdbc:h2:mem", }, "dependencies": [] }
+            """);
+        Files.writeString(config.resolve("broken.json"), "{ \"dependencies\": { \"express\": \"1\", ");
+    }
+
+    @Test
+    void testPathsAndPointers() {
+        EvaluationResult result = evaluate(new BuiltinJsonCondition("//dependencies/express"));
+        assertEquals(List.of(
+            new Incident("config/broken.json", 1, "/dependencies/express"),
+            new Incident("package.json", 5, "/dependencies/express"),
+            new Incident("package.json", 9, "/workspaces/0/dependencies/express")), result.incidents());
+        assertEquals(3, result.filesScanned());
+
+        assertEquals(List.of("/dependencies/express", "/dependencies/a~1b"),
+            pointers(new BuiltinJsonCondition(List.of("package.json"), "/dependencies/*")));
+        assertEquals(List.of("/files/1"), pointers(new BuiltinJsonCondition("/files/*[text()='lib']")));
+        assertEquals(List.of("/datasource/url"), pointers(new BuiltinJsonCondition("//url[starts-with(text(), 'jdbc:')]")));
+        assertEquals(List.of("/scripts/build"), pointers(new BuiltinJsonCondition("/scripts/*[contains(text(), 'webpack')]")));
+        assertEquals(List.of(), pointers(new BuiltinJsonCondition("/express")));
+    }
+
+    @Test
+    void testErrors() {
+        assertThrows(UnsupportedOperationException.class, () -> evaluate(new BuiltinJsonCondition("//files/*[1]")));
+        assertThrows(IllegalArgumentException.class, () -> evaluate(new BuiltinJsonCondition(" ")));
+    }
+
+    private EvaluationResult evaluate(BuiltinJsonCondition condition) {
+        return new RuleEvaluator().evaluate(condition, sourceDir, 100);
+    }
+
+    private List<String> pointers(BuiltinJsonCondition condition) {
+        return evaluate(condition).incidents().stream().map(Incident::snippet).toList();
+    }
+}
@@ -0,0 +1,221 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.AndCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import dev.shaaf.kantra.rules.gen.model.BuiltinHasTagsCondition;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import dev.shaaf.kantra.rules.gen.model.OrCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for local dry-run evaluation of rule conditions.
+ */
+public class RuleEvaluatorTest {
+
+    @TempDir
+    Path sourceDir;
+
+    private final RuleEvaluator evaluator = new RuleEvaluator();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path pkg = Files.createDirectories(sourceDir.resolve("src/main/java/com/example"));
+        Files.writeString(pkg.resolve("Main.java"), """
+            package com.example;
+
+            public class Main {
+                public static void main(String[] args) {
+                    System.out.println("hello"); System.out.println("twice on one line");
+                    System.err.println("error");
+                }
+            }
+            """);
+        Files.writeString(pkg.resolve("Other.java"), "class Other { void run() { System.out.println(1); } }\n");
+        Path resources = Files.createDirectories(sourceDir.resolve("src/main/resources"));
+        Files.writeString(resources.resolve("application.properties"), "# Größe\nquarkus.http.port=8080\nquarkus.datasource.kind=h2\n");
+        Files.write(resources.resolve("image.bin"), new byte[]{'S', 'y', 's', 't', 'e', 'm', 0, 1, 2});
+        Path git = Files.createDirectories(sourceDir.resolve(".git"));
+        Files.writeString(git.resolve("Config.java"), "System.out.println(\"ignored\");\n");
+    }
+
+    @Test
+    void testGlobFilePatternAndLineNumbers() {
+        EvaluationResult result = evaluate(new BuiltinFileContentCondition("*.java", "System\\.out\\.println"));
+
+        assertTrue(result.matched());
+        assertFalse(result.truncated());
+        assertEquals(2, result.filesScanned());
+        assertEquals(List.of(
+            new Incident("src/main/java/com/example/Main.java", 5,
+                "System.out.println(\"hello\"); System.out.println(\"twice on one line\");"),
+            new Incident("src/main/java/com/example/Other.java", 1,
+                "class Other { void run() { System.out.println(1); } }")), result.incidents());
+    }
+
+    @Test
+    void testRegexFilePatternAndNonAsciiContent() {
+        EvaluationResult result = evaluate(new BuiltinFileContentCondition(".*\\.properties$", "^quarkus\\.datasource"));
+        assertEquals(List.of(new Incident("src/main/resources/application.properties", 3, "quarkus.datasource.kind=h2")),
+            result.incidents());
+
+        result = evaluate(new BuiltinFileContentCondition(null, "Größe"));
+        assertEquals(1, result.incidents().size());
+        assertEquals("# Größe", result.incidents().get(0).snippet());
+    }
+
+    @Test
+    void testBinaryFilesAreSkipped() {
+        EvaluationResult result = evaluate(new BuiltinFileContentCondition("*.bin", "System"));
+        assertFalse(result.matched());
+        assertEquals(1, result.filesScanned());
+    }
+
+    @Test
+    void testLargeFilesAreMappedAndIncidentsCapped() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 5000; i++) {
+            content.append(i % 1000 == 0 ? "legacyCall();" : "ok();").append(" // line ").append(i).append('\n');
+        }
+        assertTrue(content.length() > FileContentEvaluator.MMAP_THRESHOLD);
+        Files.writeString(sourceDir.resolve("Big.java"), content);
+
+        EvaluationResult result = evaluate(new BuiltinFileContentCondition("Big.java", "legacyCall"));
+        assertEquals(List.of(1000, 2000, 3000, 4000, 5000), result.incidents().stream().map(Incident::line).toList());
+        assertEquals("legacyCall(); // line 3000", result.incidents().get(2).snippet());
+
+        result = new RuleEvaluator().evaluate(new BuiltinFileContentCondition("Big.java", "legacyCall"), sourceDir, 3);
+        assertTrue(result.truncated());
+        assertEquals(3, result.incidents().size());
+    }
+
+    @Test
+    void testCappedIncidentsAreTheFirstInFileOrder() throws Exception {
+        for (int dir = 0; dir < 8; dir++) {
+            Path pkg = Files.createDirectories(sourceDir.resolve("legacy/p" + dir));
+            for (int file = 0; file < 25; file++) {
+                Files.writeString(pkg.resolve("C" + file + ".java"), "ok();\nlegacyCall();\nlegacyCall();\n");
+            }
+        }
+        BuiltinFileContentCondition condition = new BuiltinFileContentCondition("legacy/*", "legacyCall");
+        List<Incident> all = evaluator.evaluate(condition, sourceDir, 1000).incidents();
+        assertEquals(400, all.size());
+
+        for (int run = 0; run < 5; run++) {
+            EvaluationResult result = new RuleEvaluator().evaluate(condition, sourceDir, 7);
+            assertTrue(result.truncated());
+            assertEquals(all.subList(0, 7), result.incidents());
+        }
+    }
+
+    @Test
+    void testCombinedConditions() {
+        Condition out = new BuiltinFileContentCondition("*.java", "System\\.out");
+        Condition err = new BuiltinFileContentCondition("*.java", "System\\.err");
+        Condition missing = new BuiltinFileContentCondition("*.java", "javax\\.ejb");
+        Condition notMissing = new BuiltinFileContentCondition("*.java", "javax\\.ejb", null, null, null, true);
+
+        EvaluationResult and = evaluate(new AndCondition(List.of(out, err)));
+        assertTrue(and.matched());
+        assertEquals(3, and.incidents().size());
+
+        assertFalse(evaluate(new AndCondition(List.of(out, missing))).matched());
+
+        EvaluationResult or = evaluate(new OrCondition(List.of(missing, err)));
+        assertTrue(or.matched());
+        assertEquals(List.of(6), or.incidents().stream().map(Incident::line).toList());
+
+        EvaluationResult negated = evaluate(new AndCondition(List.of(err, notMissing)));
+        assertTrue(negated.matched());
+        assertEquals(1, negated.incidents().size());
+    }
+
+    @Test
+    void testFileConditionsOfARuleset() {
+        List<EvaluationResult> results = evaluator.evaluateAll(List.of(
+            new BuiltinFileCondition("*.java"),
+            new BuiltinFileCondition("application.properties"),
+            new OrCondition(List.of(new BuiltinFileCondition("pom.xml"), new BuiltinFileCondition("*.properties"))),
+            new AndCondition(List.of(new BuiltinFileCondition("*.java"),
+                new BuiltinFileContentCondition("*.java", "System\\.err"))),
+            new BuiltinFileCondition("pom.xml", null, null, null, true)), sourceDir, 100);
+
+        assertEquals(List.of("src/main/java/com/example/Main.java", "src/main/java/com/example/Other.java"),
+            results.get(0).incidents().stream().map(Incident::file).toList());
+        assertEquals(List.of(new Incident("src/main/resources/application.properties", 0, null)), results.get(1).incidents());
+        assertTrue(results.get(2).matched());
+        assertEquals(1, results.get(2).incidents().size());
+        assertEquals(3, results.get(3).incidents().size());
+        assertTrue(results.get(4).matched());
+    }
+
+    @Test
+    void testChainedConditions() {
+        Condition other = new BuiltinFileCondition("Other.java", "other", null, true, null);
+        Condition printsInOther = new BuiltinFileContentCondition(null, "System\\.out", null, "other", null, null);
+
+        // The chained condition may come first; the named one is evaluated before it either way
+        EvaluationResult chained = evaluate(new AndCondition(List.of(printsInOther, other)));
+        assertTrue(chained.matched());
+        assertEquals(List.of(new Incident("src/main/java/com/example/Other.java", 1,
+            "class Other { void run() { System.out.println(1); } }")), chained.incidents());
+
+        Condition poms = new BuiltinFileCondition("pom.xml", "poms", null, true, null);
+        Condition printsInPoms = new BuiltinFileContentCondition(null, "System\\.out", null, "poms", null, null);
+        assertFalse(evaluate(new OrCondition(List.of(poms, printsInPoms))).matched());
+
+        // A named result keeps all its files, whatever the cap on reported incidents
+        Condition java = new BuiltinFileCondition("*.java", "java", null, true, null);
+        Condition runs = new BuiltinFileContentCondition(null, "run\\(", null, "java", null, null);
+        EvaluationResult capped = evaluator.evaluate(new AndCondition(List.of(java, runs)), sourceDir, 1);
+        assertTrue(capped.matched());
+        assertEquals("src/main/java/com/example/Other.java", capped.incidents().get(0).file());
+
+        // from confines everything beneath it
+        Condition nested = new AndCondition(List.of(
+            new BuiltinFileCondition("*.java", "sources", null, true, null),
+            new OrCondition(List.of(new BuiltinFileContentCondition(null, "quarkus\\."),
+                new BuiltinFileContentCondition(null, "System\\.err")), null, "sources", null, null)));
+        assertEquals(List.of(6), evaluate(nested).incidents().stream().map(Incident::line).toList());
+    }
+
+    @Test
+    void testChainErrors() {
+        Condition unknown = new BuiltinFileContentCondition(null, "x", null, "missing", null, null);
+        assertThrows(IllegalArgumentException.class, () -> evaluate(unknown));
+
+        Condition twice = new AndCondition(List.of(new BuiltinFileCondition("a", "name", null, null, null),
+            new BuiltinFileCondition("b", "name", null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> evaluate(twice));
+
+        Condition cycle = new AndCondition(List.of(new BuiltinFileCondition("a", "x", "y", null, null),
+            new BuiltinFileCondition("b", "y", "x", null, null)));
+        assertThrows(IllegalArgumentException.class, () -> evaluate(cycle));
+
+        Condition own = new OrCondition(List.of(new BuiltinFileCondition("a", null, "outer", null, null)),
+            "outer", null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> evaluate(own));
+    }
+
+    @Test
+    void testErrors() {
+        assertThrows(UnsupportedOperationException.class,
+            () -> evaluate(new BuiltinHasTagsCondition(List.of("Spring"))));
+        assertThrows(IllegalArgumentException.class,
+            () -> evaluate(new BuiltinFileContentCondition("*.java", "(unclosed")));
+        assertThrows(IllegalArgumentException.class,
+            () -> evaluator.evaluate(new BuiltinFileContentCondition("*.java", "x"), sourceDir.resolve("missing"), 10));
+    }
+
+    private EvaluationResult evaluate(Condition condition) {
+        return evaluator.evaluate(condition, sourceDir, 100);
+    }
+}
@@ -0,0 +1,108 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinFileContentCondition;
+import dev.shaaf.kantra.rules.gen.model.Condition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the trigram index that narrows the files searched by builtin.filecontent conditions.
+ */
+public class TrigramIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceDir;
+    private Path indexDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sourceDir = Files.createDirectories(tempDir.resolve("src")).toAbsolutePath().normalize();
+        indexDir = tempDir.resolve("index");
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(sourceDir.resolve("Plain" + i + ".java"), "class Plain" + i + " { void run() {} }\n");
+        }
+        Files.writeString(sourceDir.resolve("Bean.java"), "import javax.ejb.Stateless;\n@Stateless class Bean {}\n");
+        Files.writeString(sourceDir.resolve("Queue.java"), "import javax.jms.Queue;\nclass Queue {}\n");
+        Files.write(sourceDir.resolve("blob.bin"), "\0javax.ejb".getBytes());
+        Files.createDirectories(sourceDir.resolve(".git"));
+        Files.writeString(sourceDir.resolve(".git/Config.java"), "javax.ejb");
+    }
+
+    @Test
+    void testTrigrams() {
+        assertArrayEquals(new int[]{'a' << 16 | 'b' << 8 | 'a', 'b' << 16 | 'a' << 8 | 'b'},
+            TrigramIndex.trigrams(ByteBuffer.wrap("ababab".getBytes())));
+        assertArrayEquals(new int[0], TrigramIndex.trigrams(ByteBuffer.wrap("ab".getBytes())));
+    }
+
+    @Test
+    void testCandidates() {
+        TrigramIndex index = new TrigramIndex(sourceDir, TrigramIndex.directoryFor(indexDir, sourceDir));
+        assertEquals(Set.of("Bean.java"), index.candidates(List.of(condition("javax\\.ejb\\."))));
+        assertEquals(Set.of("Bean.java", "Queue.java"), index.candidates(List.of(condition("javax\\.(ejb|jms)\\."))));
+        assertEquals(Set.of("Bean.java", "Queue.java"),
+            index.candidates(List.of(condition("Stateless"), condition("jms\\.Queue"))));
+        assertEquals(Set.of(), index.candidates(List.of(condition("javax\\.persistence"))));
+        // Without required literals every file is a candidate
+        assertNull(index.candidates(List.of(condition("javax\\.ejb"), condition("\\w+\\.\\w+"))));
+    }
+
+    @Test
+    void testIncrementalUpdate() throws Exception {
+        TrigramIndex index = new TrigramIndex(sourceDir, TrigramIndex.directoryFor(indexDir, sourceDir));
+        index.candidates(List.of(condition("Stateless")));
+        assertEquals(23, index.indexedFiles());
+        index.candidates(List.of(condition("Stateless")));
+        assertEquals(23, index.indexedFiles());
+
+        Path plain = sourceDir.resolve("Plain3.java");
+        Files.writeString(plain, "@Stateless class Plain3 {}\n");
+        Files.setLastModifiedTime(plain, FileTime.fromMillis(Files.getLastModifiedTime(plain).toMillis() + 2000));
+        Files.delete(sourceDir.resolve("Bean.java"));
+        Files.writeString(sourceDir.resolve("New.java"), "class New {}\n");
+        assertEquals(Set.of("Plain3.java"), index.candidates(List.of(condition("Stateless"))));
+        assertEquals(25, index.indexedFiles());
+        assertTrue(Files.exists(TrigramIndex.directoryFor(indexDir, sourceDir).resolve("delta.idx")));
+
+        // A stored index is used as is
+        TrigramIndex reopened = new TrigramIndex(sourceDir, TrigramIndex.directoryFor(indexDir, sourceDir));
+        assertEquals(Set.of("Plain3.java"), reopened.candidates(List.of(condition("Stateless"))));
+        assertEquals(0, reopened.indexedFiles());
+
+        // Enough changes merge the delta into the base
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(sourceDir.resolve("Added" + i + ".java"), "class Added" + i + " extends Stateless {}\n");
+        }
+        assertEquals(11, reopened.candidates(List.of(condition("Stateless"))).size());
+        assertFalse(Files.exists(TrigramIndex.directoryFor(indexDir, sourceDir).resolve("delta.idx")));
+    }
+
+    @Test
+    void testIndexedEvaluationFindsTheSameIncidents() {
+        RuleEvaluator plain = new RuleEvaluator();
+        RuleEvaluator indexed = new RuleEvaluator(indexDir);
+        for (String pattern : List.of("javax\\.ejb", "import\\s+javax", "class (Bean|Queue)", "void run", "nowhere")) {
+            Condition condition = condition(pattern);
+            EvaluationResult expected = plain.evaluate(condition, sourceDir, 100);
+            for (int round = 0; round < 2; round++) {
+                assertEquals(expected.incidents(), indexed.evaluate(condition, sourceDir, 100).incidents(), pattern);
+            }
+        }
+    }
+
+    private static BuiltinFileContentCondition condition(String pattern) {
+        return new BuiltinFileContentCondition(null, pattern);
+    }
+}
@@ -0,0 +1,117 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming and fallback evaluation of builtin.xml conditions.
+ */
+public class XmlEvaluatorTest {
+
+    private static final Map<String, String> POM = Map.of("m", "http://maven.apache.org/POM/4.0.0");
+
+    @TempDir
+    Path sourceDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(sourceDir.resolve("pom.xml"), """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+              <dependencies>
+                <dependency>
+                  <groupId>javax.ejb</groupId>
+                  <artifactId>ejb-api</artifactId>
+                </dependency>
+                <dependency>
+                  <groupId>org.example</groupId>
+                  <artifactId>util</artifactId>
+                </dependency>
+              </dependencies>
+            </project>
+            """);
+        Path resources = Files.createDirectories(sourceDir.resolve("src/main/resources"));
+        Files.writeString(resources.resolve("beans.xml"), """
+            <beans>
+              <bean id="ds" class="org.apache.commons.dbcp.BasicDataSource">
+                <property name="url" value="jdbc:h2:mem"/>
+              </bean>
+              <bean id="service" class="com.example.Service">
+                <bean class="org.apache.commons.dbcp.Inner"/>
+              </bean>
+            </beans>
+            """);
+        Files.writeString(resources.resolve("broken.xml"), "<beans><bean class=\"org.apache.X\">");
+        Files.writeString(resources.resolve("notes.txt"), "<beans><bean class=\"org.apache.Y\"/></beans>");
+    }
+
+    @Test
+    void testSubsetIsParsedForStreaming() {
+        assertNotNull(XmlPath.parse("//bean[@class]", Map.of()));
+        assertNotNull(XmlPath.parse("/beans/bean[(starts-with(@class, 'org.') or @id='ds') and @id!='x']", Map.of()));
+        assertNotNull(XmlPath.parse("//m:dependency/m:groupId[text()='javax.ejb']", POM));
+        assertNotNull(XmlPath.parse("//bean/@class", Map.of()));
+        assertNull(XmlPath.parse("//bean[1]", Map.of()));
+        assertNull(XmlPath.parse("count(//bean) > 1", Map.of()));
+        assertNull(XmlPath.parse("//bean[text()='x']/property", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> XmlPath.parse("//x:bean", Map.of()));
+    }
+
+    @Test
+    void testDescendantsAndAttributePredicates() {
+        EvaluationResult result = evaluate(new BuiltinXmlCondition("//bean[contains(@class, 'dbcp')]"));
+
+        assertTrue(result.matched());
+        assertEquals(List.of(
+            new Incident("src/main/resources/beans.xml", 2, "<bean id=\"ds\" class=\"org.apache.commons.dbcp.BasicDataSource\">"),
+            new Incident("src/main/resources/beans.xml", 6, "<bean class=\"org.apache.commons.dbcp.Inner\">")),
+            result.incidents());
+        // Only .xml files are read; the match before the error in broken.xml counts
+        assertEquals(3, result.filesScanned());
+
+        assertEquals(List.of(2, 5, 1), lines(evaluate(new BuiltinXmlCondition("/beans/bean"))));
+        assertEquals(List.of(3), lines(evaluate(new BuiltinXmlCondition("/beans/bean[@id='ds']/property/@value"))));
+        assertEquals(List.of(1), lines(evaluate(new BuiltinXmlCondition("//bean[@class='org.apache.X']"))));
+    }
+
+    @Test
+    void testNamespacesAndText() {
+        BuiltinXmlCondition ejb = new BuiltinXmlCondition(List.of("pom.xml"), POM,
+            "/m:project/m:dependencies/m:dependency/m:groupId[text()='javax.ejb']");
+        EvaluationResult result = evaluate(ejb);
+        assertEquals(List.of(new Incident("pom.xml", 5, "<groupId>")), result.incidents());
+
+        // Unprefixed names match any namespace, as in Kantra
+        assertEquals(List.of(5, 9), lines(evaluate(new BuiltinXmlCondition("//dependency/groupId"))));
+        assertFalse(evaluate(new BuiltinXmlCondition(List.of("beans.xml"), POM, "//m:groupId")).matched());
+    }
+
+    @Test
+    void testDomFallback() {
+        EvaluationResult result = evaluate(new BuiltinXmlCondition(List.of("beans.xml"), Map.of(), "count(//bean) > 2"));
+        assertEquals(List.of(new Incident("src/main/resources/beans.xml", 0, null)), result.incidents());
+
+        result = evaluate(new BuiltinXmlCondition(null, POM, "//m:dependency[2]/m:artifactId[.='util']"));
+        assertEquals(List.of(new Incident("pom.xml", 0, null)), result.incidents());
+
+        assertThrows(IllegalArgumentException.class, () -> evaluate(new BuiltinXmlCondition("//bean[")));
+        assertThrows(IllegalArgumentException.class, () -> evaluate(new BuiltinXmlCondition("  ")));
+    }
+
+    private EvaluationResult evaluate(BuiltinXmlCondition condition) {
+        return new RuleEvaluator().evaluate(condition, sourceDir, 100);
+    }
+
+    private static List<Integer> lines(EvaluationResult result) {
+        return result.incidents().stream().map(Incident::line).toList();
+    }
+}
@@ -0,0 +1,81 @@
+package dev.shaaf.kantra.rules.gen.evaluation;
+
+import dev.shaaf.kantra.rules.gen.model.BuiltinXmlPublicIdCondition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for prolog-only evaluation of builtin.xmlPublicID conditions.
+ */
+public class XmlPublicIdEvaluatorTest {
+
+    private static final String EJB_DOCTYPE = """
+        <!DOCTYPE ejb-jar PUBLIC
+          "-//Sun Microsystems, Inc.//DTD Enterprise JavaBeans 2.0//EN"
+          "http://java.sun.com/dtd/ejb-jar_2_0.dtd">
+        """;
+
+    @TempDir
+    Path sourceDir;
+
+    @Test
+    void testScan() {
+        XmlPublicIdEvaluator.Doctype doctype = XmlPublicIdEvaluator.scan(
+            "<?xml version=\"1.0\"?>\n<!-- <!DOCTYPE fake PUBLIC \"x\"> -->\n" + EJB_DOCTYPE + "<ejb-jar/>");
+        assertTrue(doctype.complete());
+        assertEquals("ejb-jar", doctype.name());
+        assertEquals("-//Sun Microsystems, Inc.//DTD Enterprise JavaBeans 2.0//EN", doctype.publicId());
+        assertEquals(4, doctype.line());
+
+        assertEquals(XmlPublicIdEvaluator.Doctype.NONE, XmlPublicIdEvaluator.scan("<?xml version=\"1.0\"?><beans/>"));
+        assertNull(XmlPublicIdEvaluator.scan("<!DOCTYPE web-app SYSTEM \"web-app.dtd\"><web-app/>").publicId());
+        assertFalse(XmlPublicIdEvaluator.scan("<?xml version=\"1.0\"?><!-- unterminated").complete());
+        assertFalse(XmlPublicIdEvaluator.scan("<!DOCTYPE ejb-jar PUB").complete());
+    }
+
+    @Test
+    void testEvaluateReadsOnlyProlog() throws Exception {
+        // A descriptor far larger than the prolog, whose body would not even parse
+        StringBuilder large = new StringBuilder("<?xml version=\"1.0\"?>\n" + EJB_DOCTYPE + "<ejb-jar>\n");
+        while (large.length() < 1024 * 1024) {
+            large.append("  <session><ejb-name>Bean</ejb-name></session>\n");
+        }
+        Path meta = Files.createDirectories(sourceDir.resolve("META-INF"));
+        Files.writeString(meta.resolve("ejb-jar.xml"), large.append("<unclosed>"));
+
+        // Prolog past the first read, behind a long license comment
+        Files.writeString(sourceDir.resolve("licensed.xml"),
+            "<!--\n" + "Licensed under the Apache License.\n".repeat(300) + "-->\n" + EJB_DOCTYPE + "<ejb-jar/>");
+        assertTrue(Files.size(sourceDir.resolve("licensed.xml")) > XmlPublicIdEvaluator.PROLOG_LENGTH);
+
+        byte[] utf16 = ("<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" + EJB_DOCTYPE + "<ejb-jar/>")
+            .getBytes(StandardCharsets.UTF_16);
+        Files.write(sourceDir.resolve("utf16.xml"), utf16);
+        Files.writeString(sourceDir.resolve("web.xml"), "<!DOCTYPE web-app PUBLIC \"-//Sun Microsystems, Inc.//DTD Web Application 2.3//EN\" \"x\"><web-app/>");
+        Files.writeString(sourceDir.resolve("beans.xml"), "<beans/>");
+
+        EvaluationResult result = new RuleEvaluator().evaluate(
+            new BuiltinXmlPublicIdCondition("Enterprise JavaBeans 2\\.[01]"), sourceDir, 100);
+        assertEquals(List.of("META-INF/ejb-jar.xml", "licensed.xml", "utf16.xml"),
+            result.incidents().stream().map(Incident::file).toList());
+        assertEquals("<!DOCTYPE ejb-jar PUBLIC \"-//Sun Microsystems, Inc.//DTD Enterprise JavaBeans 2.0//EN\"",
+            result.incidents().get(0).snippet());
+        assertEquals(3, result.incidents().get(0).line());
+        assertEquals(5, result.filesScanned());
+
+        result = new RuleEvaluator().evaluate(
+            new BuiltinXmlPublicIdCondition(List.of("web.xml"), null, "Web Application 2\\.3"), sourceDir, 100);
+        assertEquals(List.of(new Incident("web.xml", 1,
+            "<!DOCTYPE web-app PUBLIC \"-//Sun Microsystems, Inc.//DTD Web Application 2.3//EN\"")), result.incidents());
+
+        assertThrows(IllegalArgumentException.class, () -> new RuleEvaluator().evaluate(
+            new BuiltinXmlPublicIdCondition("(unclosed"), sourceDir, 100));
+    }
+}
@@ -0,0 +1,213 @@
+package dev.shaaf.kantra.rules.gen.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmark of {@link Conditions} traversal on deep and/or trees, against the
+ * {@code instanceof}/for-each walk it replaces.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dev.shaaf.kantra.rules.gen.model.ConditionTraversalBenchmark}, or add
+ * {@code -prof gc} through the JMH command line to check the allocation rate, which should be 0 B/op
+ * for every benchmark but {@code instanceofIterator}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionTraversalBenchmark {
+
+    /**
+     * "balanced-N": alternating and/or tree of height N with two children per node;
+     * "chain-N": N nested conditions, each with one leaf and one nested condition.
+     */
+    @Param({"balanced-12", "balanced-16", "chain-1000"})
+    public String shape;
+
+    private Condition root;
+    private final LeafCounter leafCounter = new LeafCounter();
+    private final CostVisitor costVisitor = new CostVisitor();
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(ConditionTraversalBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] parts = shape.split("-");
+        int size = Integer.parseInt(parts[1]);
+        root = parts[0].equals("chain") ? chain(size) : balanced(size, 0);
+    }
+
+    @Benchmark
+    public int walk() {
+        leafCounter.leaves = 0;
+        Conditions.walk(root, leafCounter);
+        return leafCounter.leaves;
+    }
+
+    @Benchmark
+    public int visitor() {
+        costVisitor.cost = 0;
+        Conditions.accept(root, costVisitor);
+        return costVisitor.cost;
+    }
+
+    @Benchmark
+    public int leafCount() {
+        return Conditions.leafCount(root);
+    }
+
+    @Benchmark
+    public int instanceofIterator() {
+        return countWithInstanceof(root);
+    }
+
+    private static int countWithInstanceof(Condition condition) {
+        List<Condition> children = null;
+        if (condition instanceof AndCondition and) {
+            children = and.conditions();
+        } else if (condition instanceof OrCondition or) {
+            children = or.conditions();
+        }
+        if (children == null) {
+            return 1;
+        }
+        int count = 0;
+        for (Condition child : children) {
+            count += countWithInstanceof(child);
+        }
+        return count;
+    }
+
+    private static Condition balanced(int height, int index) {
+        if (height == 1) {
+            return index % 2 == 0
+                ? new JavaReferencedCondition("com.example.Type" + index, JavaLocation.IMPORT)
+                : new BuiltinFileContentCondition("*.properties", "key" + index);
+        }
+        List<Condition> children = new ArrayList<>(2);
+        children.add(balanced(height - 1, index * 2));
+        children.add(balanced(height - 1, index * 2 + 1));
+        return height % 2 == 0 ? new AndCondition(children) : new OrCondition(children);
+    }
+
+    private static Condition chain(int length) {
+        Condition condition = new BuiltinFileCondition("pom.xml");
+        for (int i = 0; i < length; i++) {
+            List<Condition> children = new ArrayList<>(2);
+            children.add(new JavaDependencyCondition("org.example.lib" + i, null, "2.0", null));
+            children.add(condition);
+            condition = i % 2 == 0 ? new AndCondition(children) : new OrCondition(children);
+        }
+        return condition;
+    }
+
+    private static final class LeafCounter implements Conditions.Callback {
+
+        int leaves;
+
+        @Override
+        public boolean visit(Condition condition, int depth) {
+            if (Conditions.children(condition) == null) {
+                leaves++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Rough evaluation cost estimate, accumulated in a field so the visitor returns no boxed values.
+     */
+    private static final class CostVisitor implements ConditionVisitor<Void> {
+
+        int cost;
+
+        @Override
+        public Void visitAnd(AndCondition condition) {
+            return visitChildren(condition.conditions());
+        }
+
+        @Override
+        public Void visitOr(OrCondition condition) {
+            return visitChildren(condition.conditions());
+        }
+
+        @Override
+        public Void visitFile(BuiltinFileCondition condition) {
+            cost += 1;
+            return null;
+        }
+
+        @Override
+        public Void visitFileContent(BuiltinFileContentCondition condition) {
+            cost += 10;
+            return null;
+        }
+
+        @Override
+        public Void visitHasTags(BuiltinHasTagsCondition condition) {
+            cost += 1;
+            return null;
+        }
+
+        @Override
+        public Void visitJson(BuiltinJsonCondition condition) {
+            cost += 5;
+            return null;
+        }
+
+        @Override
+        public Void visitXml(BuiltinXmlCondition condition) {
+            cost += 5;
+            return null;
+        }
+
+        @Override
+        public Void visitXmlPublicId(BuiltinXmlPublicIdCondition condition) {
+            cost += 2;
+            return null;
+        }
+
+        @Override
+        public Void visitJavaReferenced(JavaReferencedCondition condition) {
+            cost += 20;
+            return null;
+        }
+
+        @Override
+        public Void visitJavaDependency(JavaDependencyCondition condition) {
+            cost += 3;
+            return null;
+        }
+
+        private Void visitChildren(List<Condition> children) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                Conditions.accept(children.get(i), this);
+            }
+            return null;
+        }
+    }
+}
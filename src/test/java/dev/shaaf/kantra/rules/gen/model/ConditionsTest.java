@@ -0,0 +1,79 @@
+package dev.shaaf.kantra.rules.gen.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for condition tree traversal.
+ */
+public class ConditionsTest {
+
+    private final Condition tree = new AndCondition(List.of(
+        new JavaReferencedCondition("javax.ejb.Stateless", JavaLocation.ANNOTATION),
+        new OrCondition(new LinkedList<>(List.of(
+            new BuiltinFileCondition("ejb-jar.xml"),
+            new BuiltinXmlCondition("//ejb-jar")))),
+        new JavaDependencyCondition("javax.ejb-api", null, "3.2", null)));
+
+    @Test
+    void testWalkVisitsParentsBeforeChildren() {
+        List<String> visited = new ArrayList<>();
+        Conditions.walk(tree, (condition, depth) -> {
+            visited.add(depth + ":" + condition.getClass().getSimpleName());
+            return true;
+        });
+
+        assertEquals(List.of(
+            "0:AndCondition",
+            "1:JavaReferencedCondition",
+            "1:OrCondition",
+            "2:BuiltinFileCondition",
+            "2:BuiltinXmlCondition",
+            "1:JavaDependencyCondition"), visited);
+    }
+
+    @Test
+    void testWalkSkipsChildrenWhenCallbackReturnsFalse() {
+        List<Condition> visited = new ArrayList<>();
+        Conditions.walk(tree, (condition, depth) -> {
+            visited.add(condition);
+            return !(condition instanceof OrCondition);
+        });
+
+        assertEquals(4, visited.size());
+        assertFalse(visited.stream().anyMatch(c -> c instanceof BuiltinFileCondition));
+    }
+
+    @Test
+    void testLeafCountAndDepth() {
+        assertEquals(4, Conditions.leafCount(tree));
+        assertEquals(3, Conditions.depth(tree));
+        assertEquals(1, Conditions.depth(new BuiltinFileCondition("pom.xml")));
+        assertEquals(0, Conditions.leafCount(null));
+    }
+
+    @Test
+    void testAcceptDispatchesByType() {
+        ConditionVisitor<String> names = new ConditionVisitor<>() {
+            public String visitAnd(AndCondition c) { return "and"; }
+            public String visitOr(OrCondition c) { return "or"; }
+            public String visitFile(BuiltinFileCondition c) { return "file:" + c.pattern(); }
+            public String visitFileContent(BuiltinFileContentCondition c) { return "filecontent"; }
+            public String visitHasTags(BuiltinHasTagsCondition c) { return "hasTags"; }
+            public String visitJson(BuiltinJsonCondition c) { return "json"; }
+            public String visitXml(BuiltinXmlCondition c) { return "xml"; }
+            public String visitXmlPublicId(BuiltinXmlPublicIdCondition c) { return "xmlPublicID"; }
+            public String visitJavaReferenced(JavaReferencedCondition c) { return "java.referenced"; }
+            public String visitJavaDependency(JavaDependencyCondition c) { return "java.dependency"; }
+        };
+
+        assertEquals("and", Conditions.accept(tree, names));
+        assertEquals("file:pom.xml", Conditions.accept(new BuiltinFileCondition("pom.xml"), names));
+        assertEquals("java.dependency", Conditions.accept(new JavaDependencyCondition("a", null, null, null), names));
+    }
+}
@@ -0,0 +1,157 @@
+package dev.shaaf.kantra.rules.gen.search;
+
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the rule search index and its on-disk store.
+ */
+public class RuleSearchServiceTest {
+
+    private static final String EJB_RULES = """
+        - ruleID: ejb-00001
+          message: Remove the @Stateless annotation and use a CDI scope instead
+          category: mandatory
+          labels:
+            - konveyor.io/source=java-ee
+            - konveyor.io/target=quarkus
+          when:
+            java.referenced:
+              pattern: javax.ejb.Stateless
+              location: ANNOTATION
+        - ruleID: ejb-00002
+          message: EJB deployment descriptors are not supported
+          description: The ejb-jar.xml descriptor is ignored by Quarkus
+          category: optional
+          labels:
+            - konveyor.io/target=quarkus
+          when:
+            or:
+              - builtin.file:
+                  pattern: ejb-jar.xml
+              - java.referenced:
+                  pattern: javax.ejb.SessionBean
+                  location: IMPLEMENTS_TYPE
+        """;
+
+    private static final String JPA_RULES = """
+        - ruleID: jpa-00001
+          message: Replace javax.persistence with jakarta.persistence
+          category: mandatory
+          labels:
+            - konveyor.io/target=jakarta-ee
+          when:
+            java.referenced:
+              pattern: javax.persistence.*
+              location: IMPORT
+        """;
+
+    @TempDir
+    Path rulesDir;
+
+    @TempDir
+    Path cacheDir;
+
+    private final RuleValidator validator = new RuleValidator();
+    private Path indexFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(rulesDir.resolve("ejb.yaml"), EJB_RULES);
+        Files.writeString(rulesDir.resolve("jpa.yaml"), JPA_RULES);
+        Files.writeString(rulesDir.resolve("ruleset.yaml"), "name: test\n");
+        indexFile = cacheDir.resolve("search.idx");
+    }
+
+    @Test
+    void testRankingAndSnippets() {
+        RuleSearchService service = open();
+        assertEquals(3, service.size());
+
+        RuleSearchIndex.Page page = service.search("session bean", 0, 10);
+        assertEquals(1, page.total());
+        RuleSearchIndex.Hit hit = page.hits().get(0);
+        assertEquals("ejb-00002", hit.document().ruleId());
+        assertEquals(rulesDir.resolve("ejb.yaml").toAbsolutePath().normalize().toString(), hit.document().file());
+        assertTrue(hit.snippet().contains("**SessionBean**"), hit.snippet());
+
+        // Pattern words outrank the same word in a message
+        page = service.search("stateless", 0, 10);
+        assertEquals("ejb-00001", page.hits().get(0).document().ruleId());
+        assertTrue(page.hits().get(0).snippet().contains("**Stateless**"));
+
+        page = service.search("jakarta", 0, 10);
+        assertEquals("jpa-00001", page.hits().get(0).document().ruleId());
+
+        assertEquals(0, service.search("websphere", 0, 10).total());
+    }
+
+    @Test
+    void testPagination() {
+        List<SearchDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            documents.add(new SearchDocument("rule-" + i, "rules.yaml", "Replace legacy API " + "x".repeat(i % 5),
+                null, List.of(), List.of()));
+        }
+        RuleSearchIndex index = RuleSearchIndex.build(documents);
+
+        List<String> all = new ArrayList<>();
+        for (int offset = 0; offset < 30; offset += 10) {
+            RuleSearchIndex.Page page = index.search("legacy", offset, 10);
+            assertEquals(25, page.total());
+            page.hits().forEach(hit -> all.add(hit.document().ruleId()));
+        }
+        assertEquals(25, all.size());
+        assertEquals(25, all.stream().distinct().count());
+        assertEquals(index.search("legacy", 0, 25).hits().stream().map(h -> h.document().ruleId()).toList(), all);
+        assertTrue(index.search("legacy", 25, 10).hits().isEmpty());
+    }
+
+    @Test
+    void testStoredIndexIsReused() throws Exception {
+        open();
+        assertTrue(Files.exists(indexFile));
+
+        RuleSearchService restarted = new RuleSearchService(validator, List.of(rulesDir), indexFile);
+        assertTrue(restarted.open(), "Unchanged files must not be reparsed");
+        assertEquals(3, restarted.size());
+        assertEquals("ejb-00002", restarted.search("descriptor", 0, 1).hits().get(0).document().ruleId());
+    }
+
+    @Test
+    void testChangedFilesAreReindexed() throws Exception {
+        RuleSearchService service = open();
+
+        Path jpa = rulesDir.resolve("jpa.yaml");
+        Files.writeString(jpa, JPA_RULES.replace("jakarta.persistence", "Hibernate ORM"));
+        Files.setLastModifiedTime(jpa, FileTime.fromMillis(Files.getLastModifiedTime(jpa).toMillis() + 2000));
+        Files.delete(rulesDir.resolve("ejb.yaml"));
+        assertTrue(service.refresh());
+        assertFalse(service.refresh());
+
+        assertEquals(1, service.size());
+        assertEquals(0, service.search("stateless", 0, 10).total());
+        assertEquals("jpa-00001", service.search("hibernate", 0, 10).hits().get(0).document().ruleId());
+
+        // The stored index reflects the change as well
+        RuleSearchService restarted = new RuleSearchService(validator, List.of(rulesDir), indexFile);
+        assertTrue(restarted.open());
+        assertEquals(1, restarted.search("hibernate", 0, 10).total());
+    }
+
+    private RuleSearchService open() {
+        RuleSearchService service = new RuleSearchService(validator, List.of(rulesDir), indexFile);
+        assertFalse(service.open());
+        return service;
+    }
+}
@@ -0,0 +1,155 @@
+package dev.shaaf.kantra.rules.gen.selector;
+
+import dev.shaaf.kantra.rules.gen.catalog.RuleCatalog;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import dev.shaaf.kantra.rules.gen.validation.RulesetValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for label selector parsing and evaluation over the bitmap index.
+ */
+public class LabelSelectorTest {
+
+    private static final List<List<String>> LABELS = List.of(
+        List.of("konveyor.io/source=java-ee", "konveyor.io/target=quarkus"),
+        List.of("konveyor.io/source=weblogic", "konveyor.io/target=quarkus"),
+        List.of("konveyor.io/target=jakarta-ee"),
+        List.of("konveyor.io/source=eap7", "konveyor.io/target=eap8", "konveyor.io/target=quarkus"),
+        List.of());
+
+    @TempDir
+    Path rulesDir;
+
+    @Test
+    void testEvaluation() {
+        LabelIndex index = LabelIndex.build(LABELS);
+
+        assertEquals(bits(0, 3), select("konveyor.io/target=quarkus && !konveyor.io/source=weblogic", index));
+        assertEquals(bits(0, 1, 3), select("konveyor.io/source", index));
+        assertEquals(bits(2, 4), select("!konveyor.io/target=quarkus", index));
+        // && binds tighter than ||
+        assertEquals(bits(1, 2), select("konveyor.io/target=jakarta-ee || konveyor.io/source=weblogic && konveyor.io/target=quarkus", index));
+        assertEquals(bits(2), select("(konveyor.io/target=jakarta-ee || konveyor.io/source=weblogic) && !konveyor.io/target=quarkus", index));
+        assertEquals(bits(), select("konveyor.io/target=unknown", index));
+        assertEquals(bits(0, 1, 2, 3, 4), select("!!(konveyor.io/target || !konveyor.io/target)", index));
+    }
+
+    @Test
+    void testBitmapsAgreeWithDirectMatching() {
+        String[] labels = {"konveyor.io/source=a", "konveyor.io/source=b", "konveyor.io/target=x",
+            "konveyor.io/target=y", "tech=jms", "tech"};
+        Random random = new Random(42);
+        List<List<String>> rules = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            List<String> ruleLabels = new ArrayList<>();
+            for (String label : labels) {
+                if (random.nextInt(3) == 0) {
+                    ruleLabels.add(label);
+                }
+            }
+            rules.add(ruleLabels);
+        }
+        LabelIndex index = LabelIndex.build(rules);
+
+        for (String expression : List.of("konveyor.io/source=a && konveyor.io/target=x",
+                "!(konveyor.io/source=b || tech) && konveyor.io/target",
+                "tech=jms || !konveyor.io/source", "tech && !tech=jms")) {
+            LabelSelector selector = LabelSelector.parse(expression);
+            BitSet selected = selector.evaluate(index);
+            for (int i = 0; i < rules.size(); i++) {
+                assertEquals(selector.matches(rules.get(i)), selected.get(i), expression + " on rule " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSyntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("a && "));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("(a || b"));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("a b"));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("a & b"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("=quarkus"));
+        assertTrue(e.getMessage().contains("no key"));
+    }
+
+    @Test
+    void testRulesetLabelsAreInherited() throws Exception {
+        Path quarkus = Files.createDirectories(rulesDir.resolve("quarkus"));
+        Files.writeString(quarkus.resolve("ruleset.yaml"), """
+            name: quarkus/springboot
+            labels:
+              - konveyor.io/target=quarkus
+            """);
+        Files.writeString(quarkus.resolve("rules.yaml"), """
+            - ruleID: spring-00001
+              category: mandatory
+              labels:
+                - konveyor.io/source=springboot
+              when:
+                builtin.file:
+                  pattern: application.yml
+            - ruleID: weblogic-00001
+              category: mandatory
+              labels:
+                - konveyor.io/source=weblogic
+              when:
+                builtin.file:
+                  pattern: weblogic.xml
+            """);
+        Path plain = Files.createDirectories(rulesDir.resolve("plain"));
+        Files.writeString(plain.resolve("rules.yaml"), """
+            - ruleID: plain-00001
+              category: optional
+              labels:
+                - konveyor.io/target=quarkus
+              when:
+                builtin.file:
+                  pattern: '*.properties'
+            """);
+
+        RuleCatalog catalog = new RuleCatalog(new RuleValidator());
+        catalog.load(rulesDir);
+        RuleSelectionService service = new RuleSelectionService(catalog, new RulesetValidator());
+
+        RuleSelectionService.Selection selection =
+            service.select(LabelSelector.parse("konveyor.io/target=quarkus && !konveyor.io/source=weblogic"));
+        assertEquals(3, selection.rules().size());
+        assertEquals(2, selection.count());
+        assertEquals(Map.of("plain", 1, "quarkus/springboot", 1), selection.countsByRuleset());
+        assertEquals(List.of("plain-00001", "spring-00001"),
+            selection.page(0, 10).stream().map(RuleSelectionService.SelectableRule::ruleId).toList());
+        assertEquals(List.of("spring-00001"),
+            selection.page(1, 10).stream().map(RuleSelectionService.SelectableRule::ruleId).toList());
+
+        // A ruleset.yaml change is picked up without a catalog change
+        Path rulesetYaml = quarkus.resolve("ruleset.yaml");
+        Files.writeString(rulesetYaml, "name: quarkus/springboot\nlabels:\n  - konveyor.io/target=openshift\n");
+        Files.setLastModifiedTime(rulesetYaml, FileTime.fromMillis(Files.getLastModifiedTime(rulesetYaml).toMillis() + 2000));
+        assertEquals(1, service.select(LabelSelector.parse("konveyor.io/target=quarkus")).count());
+    }
+
+    private static BitSet select(String expression, LabelIndex index) {
+        return LabelSelector.parse(expression).evaluate(index);
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
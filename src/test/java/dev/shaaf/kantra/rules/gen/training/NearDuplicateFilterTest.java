@@ -0,0 +1,82 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MinHash/LSH near-duplicate detection.
+ */
+public class NearDuplicateFilterTest {
+
+    private static final String RULE = """
+        ruleID: %s
+        description: The %s API has been removed in Jakarta EE and must be replaced before the migration
+        category: mandatory
+        effort: 3
+        labels:
+        - konveyor.io/source=java-ee
+        - konveyor.io/target=jakarta-ee
+        when:
+          java.referenced:
+            pattern: %s
+            location: IMPORT
+        message: Replace the %s import with its jakarta equivalent and update the dependencies of the project
+        """;
+
+    @Test
+    void testBandsMatchThreshold() {
+        NearDuplicateFilter filter = new NearDuplicateFilter(0.8);
+        double lshThreshold = Math.pow(1.0 / filter.bands(), 1.0 / filter.rows());
+        assertEquals(0.8, lshThreshold, 0.05);
+        assertTrue(filter.bands() * filter.rows() <= 128);
+    }
+
+    @Test
+    void testNearDuplicatesAreDropped() {
+        NearDuplicateFilter filter = new NearDuplicateFilter(0.7);
+
+        assertTrue(filter.admit(filter.bandKeys(example("javax.ejb.Stateless", "javax-ejb-00001"))));
+        // Only the rule ID suffix differs
+        assertFalse(filter.admit(filter.bandKeys(example("javax.ejb.Stateless", "javax-ejb-00002"))));
+        // A different kind of rule
+        assertTrue(filter.admit(filter.bandKeys(new TrainingExample(
+            "Write a rule to identify `persistence.xml` files - hibernate properties need review.",
+            "ruleID: hibernate-00001\nwhen:\n  builtin.file:\n    pattern: persistence.xml\n"))));
+
+        assertEquals(2, filter.admitted());
+        assertEquals(1, filter.dropped());
+    }
+
+    @Test
+    void testIdenticalExamplesAreAlwaysDropped() {
+        NearDuplicateFilter filter = new NearDuplicateFilter(0.95);
+        TrainingExample example = example("javax.jms.Queue", "jms-00001");
+
+        assertTrue(filter.admit(filter.bandKeys(example)));
+        assertFalse(filter.admit(filter.bandKeys(example)));
+    }
+
+    @Test
+    void testManyDistinctExamplesAreKept() {
+        NearDuplicateFilter filter = new NearDuplicateFilter(0.8);
+        for (int i = 0; i < 5000; i++) {
+            String pkg = "com.example.p" + i + ".q" + (i * 7919) + ".Type" + (i * 31);
+            TrainingExample example = new TrainingExample("Find imports of `" + pkg + "` in module " + i,
+                "ruleID: r" + i + "\nwhen:\n  java.referenced:\n    pattern: " + pkg + "\n    location: IMPORT z" + i);
+            filter.admit(filter.bandKeys(example));
+        }
+        assertEquals(5000, filter.admitted());
+    }
+
+    @Test
+    void testInvalidThresholdIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateFilter(1.0));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateFilter(0));
+    }
+
+    private TrainingExample example(String pattern, String ruleId) {
+        return new TrainingExample("Write a rule to detect imports of `" + pattern + "` for migration purposes.",
+            String.format(RULE, ruleId, pattern, pattern, pattern));
+    }
+}
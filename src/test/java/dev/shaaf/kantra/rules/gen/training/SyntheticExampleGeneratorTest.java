@@ -0,0 +1,122 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import dev.shaaf.kantra.rules.gen.model.Category;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.validation.RuleValidator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for synthetic example generation through the rule creation commands.
+ */
+public class SyntheticExampleGeneratorTest {
+
+    private final SyntheticExampleGenerator generator = new SyntheticExampleGenerator(new RuleValidator(), 4);
+
+    @Test
+    void testOneValidExamplePerGridPoint() throws Exception {
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            packages.add("com.example.legacy" + i + ".*");
+        }
+        SyntheticGrid grid = new SyntheticGrid(
+            packages,
+            List.of(JavaLocation.values()),
+            List.of("//*[local-name()='persistence-unit']"),
+            List.of("javax\\.persistence"),
+            List.of("*.xml", "*.properties"),
+            null,
+            List.of(new SyntheticGrid.Migration("eap7", "eap8"), new SyntheticGrid.Migration(null, "quarkus")));
+
+        CollectingSink sink = new CollectingSink();
+        SyntheticExampleGenerator.Summary summary = generator.generate(grid, sink);
+
+        // 3 categories × 2 migrations × (40 × 14 Java + 1 XML + 1 × 2 file content + 2 file)
+        long expected = 3L * 2 * (40 * JavaLocation.values().length + 1 + 2 + 2);
+        assertEquals(expected, summary.gridPoints());
+        assertEquals(expected, summary.examples());
+        assertEquals(0, summary.rejected());
+        assertEquals(expected, sink.examples.size());
+
+        Set<String> ruleIds = new HashSet<>();
+        for (TrainingExample example : sink.examples) {
+            assertTrue(new RuleValidator().validateYamlRule(example.assistantResponse()).isValid());
+            String ruleId = example.assistantResponse().lines()
+                .filter(line -> line.contains("ruleID:"))
+                .findFirst().orElseThrow();
+            assertTrue(ruleIds.add(ruleId), "Duplicate " + ruleId);
+        }
+        assertTrue(sink.examples.stream().anyMatch(e ->
+            e.userPrompt().startsWith("Create a rule to find calls to `com.example.legacy7.*` when migrating from eap7 to eap8")
+                && e.assistantResponse().contains("location: \"METHOD_CALL\"")
+                && e.assistantResponse().contains("konveyor.io/target=eap8")));
+        assertTrue(sink.sources.stream().allMatch(s -> s.startsWith("synthetic/")));
+    }
+
+    @Test
+    void testRejectedRulesAreCounted() throws Exception {
+        RuleValidator strict = new RuleValidator() {
+            @Override
+            public ValidationResult validateYamlRule(String yamlContent) {
+                return yamlContent.contains("*.bak")
+                    ? new ValidationResult(false, List.of("Backup files are not allowed"))
+                    : super.validateYamlRule(yamlContent);
+            }
+        };
+        SyntheticGrid grid = new SyntheticGrid(null, null, null, null,
+            List.of("*.xml", "*.bak"), List.of(Category.MANDATORY), null);
+
+        CollectingSink sink = new CollectingSink();
+        SyntheticExampleGenerator.Summary summary = new SyntheticExampleGenerator(strict, 2).generate(grid, sink);
+
+        assertEquals(2, summary.gridPoints());
+        assertEquals(1, summary.examples());
+        assertEquals(1, summary.rejected());
+        assertTrue(sink.examples.get(0).assistantResponse().contains("*.xml"));
+    }
+
+    @Test
+    void testRetainedChunksAreSkipped() throws Exception {
+        SyntheticGrid grid = new SyntheticGrid(List.of("java.util.Vector"), List.of(JavaLocation.TYPE),
+            null, null, null, null, null);
+
+        CollectingSink first = new CollectingSink();
+        generator.generate(grid, first);
+        assertEquals(1, first.hashes.size());
+
+        CollectingSink second = new CollectingSink() {
+            @Override
+            public boolean retain(String source, String contentHash) {
+                return first.hashes.contains(contentHash);
+            }
+        };
+        SyntheticExampleGenerator.Summary summary = generator.generate(grid, second);
+        assertEquals(1, summary.chunksUnchanged());
+        assertEquals(0, summary.examples());
+        assertTrue(second.examples.isEmpty());
+    }
+
+    private static class CollectingSink implements ExampleSink {
+
+        final List<TrainingExample> examples = new ArrayList<>();
+        final Set<String> sources = new HashSet<>();
+        final Set<String> hashes = new HashSet<>();
+
+        @Override
+        public void accept(String source, String contentHash, List<TrainingExample> batch) {
+            assertTrue(sources.add(source), "Source written twice: " + source);
+            hashes.add(contentHash);
+            examples.addAll(batch);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
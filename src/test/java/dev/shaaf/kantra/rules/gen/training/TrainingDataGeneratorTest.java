@@ -0,0 +1,319 @@
+package dev.shaaf.kantra.rules.gen.training;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the training data pipeline, run against a local rules directory.
+ */
+public class TrainingDataGeneratorTest {
+
+    private static final String RULES = """
+        - ruleID: import-%1$d
+          description: Replace javax.ejb %1$d
+          when:
+            java.referenced:
+              pattern: javax.ejb.Stateless%1$d
+              location: IMPORT
+        - ruleID: file-%1$d
+          when:
+            builtin.file:
+              pattern: "*.%1$d.properties"
+        """;
+
+    @TempDir
+    Path rulesDir;
+
+    @TempDir
+    Path outDir;
+
+    private static final IncrementalOutput.ShardOptions SHARDS = new IncrementalOutput.ShardOptions(8, 0, false, 3);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TrainingDataGenerator generator = new TrainingDataGenerator(new RuleExampleExtractor(), 4);
+
+    @Test
+    void testPipelineWritesOneLinePerRule() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Path dir = Files.createDirectories(rulesDir.resolve("group-" + (i % 5)));
+            Files.writeString(dir.resolve("rules-" + i + ".yaml"), String.format(RULES, i));
+        }
+        Files.writeString(rulesDir.resolve("ruleset.yaml"), "name: skipped\n");
+        Files.writeString(rulesDir.resolve("empty.yaml"), "\n");
+        Files.writeString(rulesDir.resolve("broken.yaml"), "- ruleID: [unclosed\n");
+
+        Path output = outDir.resolve("train.jsonl");
+        TrainingDataGenerator.Summary summary;
+        try (JsonlWriter writer = new JsonlWriter(mapper.getFactory(), output)) {
+            summary = generator.generate(rulesDir, writer);
+        }
+
+        assertEquals(50, summary.filesProcessed());
+        assertEquals(2, summary.filesSkipped());
+        assertEquals(100, summary.examples());
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(100, lines.size());
+        Set<String> prompts = new HashSet<>();
+        for (String line : lines) {
+            JsonNode messages = mapper.readTree(line).get("messages");
+            assertEquals("user", messages.get(0).get("role").asText());
+            assertEquals("assistant", messages.get(1).get("role").asText());
+            assertTrue(messages.get(1).get("content").asText().contains("ruleID:"));
+            prompts.add(messages.get(0).get("content").asText());
+        }
+        assertEquals(100, prompts.size());
+        assertTrue(prompts.contains("Write a rule to detect imports of `javax.ejb.Stateless7`. "
+            + "Replace javax.ejb 7 for migration purposes."));
+    }
+
+    @Test
+    void testSinkReceivesFilesInSortedOrder() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String name = String.format("group-%d/rules-%02d.yaml", i % 4, i);
+            Files.createDirectories(rulesDir.resolve(name).getParent());
+            Files.writeString(rulesDir.resolve(name), String.format(RULES, i));
+            expected.add(name);
+        }
+        Collections.sort(expected);
+
+        List<String> sources = new ArrayList<>();
+        generator.generate(rulesDir, new ExampleSink() {
+            @Override
+            public void accept(String source, String contentHash, List<TrainingExample> examples) {
+                sources.add(source);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        assertEquals(expected, sources);
+    }
+
+    @Test
+    void testStageFailureIsPassedToCaller() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(rulesDir.resolve(String.format("rules-%02d.yaml", i)), String.format(RULES, i));
+        }
+
+        ExampleSink failing = new ExampleSink() {
+            @Override
+            public void accept(String source, String contentHash, List<TrainingExample> examples) {
+            }
+
+            @Override
+            public boolean retain(String source, String contentHash) {
+                throw new IllegalStateException("cannot check " + source);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> assertThrows(IllegalStateException.class, () -> generator.generate(rulesDir, failing)));
+        assertTrue(e.getMessage().startsWith("cannot check rules-"), e.getMessage());
+    }
+
+    @Test
+    void testSlowFileBoundsFilesInFlight() throws Exception {
+        int fileCount = TrainingDataGenerator.MAX_IN_FLIGHT + 100;
+        for (int i = 0; i < fileCount; i++) {
+            Files.writeString(rulesDir.resolve(String.format("rules-%03d.yaml", i)), String.format(RULES, i));
+        }
+
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger startedWhileBlocked = new AtomicInteger();
+        List<String> accepted = new ArrayList<>();
+        ExampleSink slowFirstFile = new ExampleSink() {
+            @Override
+            public void accept(String source, String contentHash, List<TrainingExample> examples) {
+                accepted.add(source);
+            }
+
+            @Override
+            public boolean retain(String source, String contentHash) {
+                started.incrementAndGet();
+                if (source.equals("rules-000.yaml")) {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    startedWhileBlocked.set(started.get());
+                }
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> generator.generate(rulesDir, slowFirstFile));
+
+        assertTrue(startedWhileBlocked.get() <= TrainingDataGenerator.MAX_IN_FLIGHT,
+            startedWhileBlocked.get() + " files started while the first one was held back");
+        assertEquals(fileCount, accepted.size());
+        assertEquals("rules-000.yaml", accepted.get(0));
+    }
+
+    @Test
+    void testIncrementalRunOnlyRewritesAffectedShards() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(rulesDir.resolve(String.format("rules-%02d.yaml", i)), String.format(RULES, i));
+        }
+        Path output = outDir.resolve("dataset");
+
+        IncrementalOutput.Changes first = generator.generateIncremental(rulesDir.toString(), null, output, SHARDS);
+        assertEquals(20, first.filesProcessed());
+        TrainingManifest manifest = TrainingManifest.load(output);
+        assertEquals(40, countRows(output));
+
+        String changedShard = manifest.files.get("rules-03.yaml").shard();
+        String deletedShard = manifest.files.get("rules-15.yaml").shard();
+        Set<String> untouched = new HashSet<>(manifest.shards.keySet());
+        untouched.remove(changedShard);
+        untouched.remove(deletedShard);
+        assertFalse(untouched.isEmpty());
+        String untouchedShard = untouched.iterator().next();
+        String untouchedContent = Files.readString(output.resolve(untouchedShard));
+
+        Files.writeString(rulesDir.resolve("rules-03.yaml"), String.format(RULES, 103));
+        Files.delete(rulesDir.resolve("rules-15.yaml"));
+        Files.writeString(rulesDir.resolve("rules-99.yaml"), String.format(RULES, 99));
+
+        IncrementalOutput.Changes second = generator.generateIncremental(rulesDir.toString(), null, output, SHARDS);
+        assertEquals(2, second.filesProcessed());
+        assertEquals(18, second.filesUnchanged());
+        assertEquals(1, second.filesRemoved());
+        assertEquals(untouchedContent, Files.readString(output.resolve(untouchedShard)));
+
+        manifest = TrainingManifest.load(output);
+        assertEquals(20, manifest.files.size());
+        assertFalse(manifest.files.containsKey("rules-15.yaml"));
+
+        // Superseded shards were replaced by new names, and only after the manifest was saved
+        assertFalse(manifest.shards.containsKey(changedShard));
+        assertFalse(Files.exists(output.resolve(changedShard)));
+        Set<String> onDisk = new HashSet<>();
+        try (var files = Files.list(output)) {
+            files.forEach(file -> onDisk.add(file.getFileName().toString()));
+        }
+        Set<String> listed = new HashSet<>(manifest.shards.keySet());
+        listed.add(TrainingManifest.FILE_NAME);
+        assertEquals(listed, onDisk);
+        assertEquals(40, countRows(output));
+
+        // Every file's recorded line range points at its own examples
+        for (var entry : manifest.files.entrySet()) {
+            List<String> lines = Files.readAllLines(output.resolve(entry.getValue().shard()));
+            String firstLine = lines.get((int) entry.getValue().firstLine());
+            String id = entry.getKey().substring("rules-".length(), entry.getKey().indexOf('.'));
+            int expected = entry.getKey().equals("rules-03.yaml") ? 103 : Integer.parseInt(id);
+            assertTrue(firstLine.contains("import-" + expected), entry.getKey() + " -> " + firstLine);
+        }
+    }
+
+    @Test
+    void testGzipShardsAreRotatedAndChecksummed() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(rulesDir.resolve(String.format("rules-%02d.yaml", i)), String.format(RULES, i));
+        }
+        Path output = outDir.resolve("dataset");
+
+        generator.generateIncremental(rulesDir.toString(), null, output,
+            new IncrementalOutput.ShardOptions(1000, 1, true, 2));
+
+        TrainingManifest manifest = TrainingManifest.load(output);
+        // A one byte limit rotates after every file
+        assertEquals(40, manifest.shards.size());
+        long rows = 0;
+        for (var shard : manifest.shards.entrySet()) {
+            assertTrue(shard.getKey().endsWith(".jsonl.gz"));
+            byte[] stored = Files.readAllBytes(output.resolve(shard.getKey()));
+            assertEquals(shard.getValue().bytes(), stored.length);
+            assertEquals(shard.getValue().sha256(), TrainingDataGenerator.sha256(stored));
+            try (var in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(stored)), StandardCharsets.UTF_8))) {
+                long lines = in.lines().peek(line -> assertTrue(line.startsWith("{\"messages\""))).count();
+                assertEquals(shard.getValue().rows(), lines);
+                rows += lines;
+            }
+        }
+        assertEquals(80, rows);
+    }
+
+    @Test
+    void testUnreadableFileKeepsPreviousExamples() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(rulesDir.resolve(String.format("rules-%02d.yaml", i)), String.format(RULES, i));
+        }
+        Path output = outDir.resolve("dataset");
+        generator.generateIncremental(rulesDir.toString(), null, output, SHARDS);
+        TrainingManifest.FileEntry before = TrainingManifest.load(output).files.get("rules-04.yaml");
+
+        Files.writeString(rulesDir.resolve("rules-05.yaml"), String.format(RULES, 105));
+        TrainingSource unreadable = new TrainingSource() {
+            @Override
+            public String description() {
+                return rulesDir.toString();
+            }
+
+            @Override
+            public void walk(FileConsumer consumer) throws IOException, InterruptedException {
+                new DirectorySource(rulesDir).walk(file -> consumer.accept(file.name().equals("rules-04.yaml")
+                    ? new SourceFile(file.name(), () -> {
+                        throw new IOException("read failed");
+                    })
+                    : file));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (IncrementalOutput incremental = IncrementalOutput.open(output, mapper.getFactory(), SHARDS)) {
+            TrainingDataGenerator.Summary summary = generator.generate(unreadable, incremental);
+            assertEquals(1, summary.filesSkipped());
+            IncrementalOutput.Changes changes = incremental.commit(unreadable.description());
+            assertEquals(0, changes.filesRemoved());
+        }
+
+        TrainingManifest manifest = TrainingManifest.load(output);
+        assertEquals(10, manifest.files.size());
+        assertEquals(before.sha256(), manifest.files.get("rules-04.yaml").sha256());
+        assertEquals(20, countRows(output));
+    }
+
+    private long countRows(Path output) throws Exception {
+        long rows = 0;
+        for (var shard : TrainingManifest.load(output).shards.entrySet()) {
+            long lines = Files.readAllLines(output.resolve(shard.getKey())).size();
+            assertEquals(shard.getValue().rows(), lines);
+            rows += lines;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,109 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for validating only the rule files changed between two git revisions.
+ */
+public class GitRulesetValidatorTest {
+
+    private static final String RULE = """
+        - ruleID: %s
+          category: mandatory
+          when:
+            builtin.file:
+              pattern: "*.java"
+        """;
+
+    @TempDir
+    Path repoDir;
+
+    private Path rules;
+    private Git git;
+    private GitRulesetValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RuleValidator ruleValidator = new RuleValidator();
+        validator = new GitRulesetValidator(ruleValidator, new RulesetValidator(ruleValidator));
+        git = Git.init().setDirectory(repoDir.toFile()).call();
+        rules = Files.createDirectories(repoDir.resolve("rules"));
+        Files.writeString(rules.resolve("ruleset.yaml"), "name: test\ndescription: test\nlabels: []\n");
+        Files.writeString(rules.resolve("a.yaml"), String.format(RULE, "rule-a"));
+        Files.writeString(rules.resolve("b.yaml"), String.format(RULE, "rule-b"));
+        Files.writeString(rules.resolve("c.yaml"), String.format(RULE, "rule-c"));
+        Files.writeString(repoDir.resolve("README.yaml"), "not: a rule\n");
+        commit("base");
+    }
+
+    @AfterEach
+    void tearDown() {
+        git.close();
+    }
+
+    @Test
+    void testOnlyChangedFilesAreValidated() throws Exception {
+        Files.writeString(rules.resolve("b.yaml"), String.format(RULE, "rule-b2"));
+        Files.writeString(rules.resolve("d.yaml"), "- ruleID: rule-d\n");
+        Files.delete(rules.resolve("c.yaml"));
+        commit("head");
+
+        GitRulesetValidator.GitValidation changes = validator.validateChanges(rules, "HEAD~1", "HEAD");
+        assertEquals(List.of("b.yaml", "d.yaml"),
+            changes.ruleFiles().stream().map(RulesetValidator.RuleFileResult::fileName).toList());
+        assertTrue(changes.ruleFiles().get(0).isValid());
+        assertFalse(changes.ruleFiles().get(1).isValid());
+        assertEquals(List.of("c.yaml"), changes.deletedFiles());
+        assertEquals(1, changes.unchangedFiles());
+        assertFalse(changes.rulesetChanged());
+        assertEquals("test", changes.rulesetInfo().name());
+
+        // Paging through a report reuses the result
+        assertSame(changes, validator.validateChanges(rules, "HEAD~1", "HEAD"));
+    }
+
+    @Test
+    void testDuplicateRuleIdsAcrossChangedAndUnchangedFiles() throws Exception {
+        // b.yaml now also defines the ID of the unchanged a.yaml, and e.yaml and f.yaml share one
+        Files.writeString(rules.resolve("b.yaml"), String.format(RULE, "rule-b") + String.format(RULE, "rule-a"));
+        Files.writeString(rules.resolve("e.yaml"), String.format(RULE, "rule-e"));
+        Files.writeString(rules.resolve("f.yaml"), String.format(RULE, "rule-e"));
+        Files.writeString(rules.resolve("ruleset.yaml"), "name: renamed\n");
+        commit("head");
+
+        GitRulesetValidator.GitValidation changes = validator.validateChanges(rules, "HEAD~1", "HEAD");
+        assertEquals(List.of("Duplicate ruleID 'rule-a' is also defined in 'a.yaml'"), changes.ruleFiles().get(0).errors());
+        assertTrue(changes.ruleFiles().get(1).isValid());
+        assertEquals(List.of("Duplicate ruleID 'rule-e' is also defined in 'e.yaml'"), changes.ruleFiles().get(2).errors());
+        assertTrue(changes.rulesetChanged());
+
+        // The same check on the whole directory finds the same duplicates
+        RulesetValidator rulesetValidator = new RulesetValidator(new RuleValidator());
+        RuleIdIndex index = rulesetValidator.indexRuleIds(rulesetValidator.listRuleFiles(rules));
+        assertEquals(changes.ruleFiles().get(0).errors(), index.duplicates("b.yaml"));
+        assertEquals(changes.ruleFiles().get(2).errors(), index.duplicates("f.yaml"));
+        assertEquals(List.of(), index.duplicates("a.yaml"));
+    }
+
+    @Test
+    void testUnknownRef() {
+        assertThrows(java.io.IOException.class, () -> validator.validateChanges(rules, "no-such-branch", "HEAD"));
+    }
+
+    private void commit(String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.add().addFilepattern(".").setUpdate(true).call();
+        git.commit().setMessage(message).setAuthor("test", "test@example.com")
+            .setCommitter("test", "test@example.com").setSign(false).call();
+    }
+}
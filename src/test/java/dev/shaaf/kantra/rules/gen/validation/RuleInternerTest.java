@@ -0,0 +1,68 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the interning rule load path.
+ */
+public class RuleInternerTest {
+
+    private static final String RULES = """
+        - ruleID: rule-%1$d
+          message: Replace the EJB annotation
+          category: mandatory
+          effort: 1
+          labels:
+            - konveyor.io/source=java-ee
+            - konveyor.io/target=quarkus
+          links:
+            - title: Quarkus CDI
+              url: https://quarkus.io/guides/cdi
+          when:
+            java.referenced:
+              pattern: javax.ejb.Stateless
+              location: %2$s
+        """;
+
+    private final RuleValidator validator = new RuleValidator();
+
+    @Test
+    void testRepeatedValuesAreShared() throws Exception {
+        RuleInterner interner = new RuleInterner();
+        Rule first = validator.parseYamlToRules(String.format(RULES, 1, "ANNOTATION"), interner).get(0);
+        Rule second = validator.parseYamlToRules(String.format(RULES, 2, "annotation"), interner).get(0);
+
+        assertNotEquals(first.ruleId(), second.ruleId());
+        assertSame(first.message(), second.message());
+        assertSame(first.labels(), second.labels());
+        assertSame(first.links(), second.links());
+        assertSame(((JavaReferencedCondition) first.when()).pattern(), ((JavaReferencedCondition) second.when()).pattern());
+        assertEquals(JavaLocation.ANNOTATION, ((JavaReferencedCondition) second.when()).location());
+        assertThrows(UnsupportedOperationException.class, () -> first.labels().add("shared"));
+    }
+
+    @Test
+    void testSameResultAsPlainLoad() throws Exception {
+        String yaml = "rules:\n" + String.format(RULES, 1, "IMPORT").indent(2);
+        List<Rule> interned = validator.parseYamlToRules(yaml, new RuleInterner());
+        List<Rule> plain = validator.parseYamlToRules(String.format(RULES, 1, "IMPORT"));
+
+        assertEquals(plain, interned);
+    }
+
+    @Test
+    void testPlainLoadIsNotInterned() throws Exception {
+        Rule first = validator.parseYamlToRules(String.format(RULES, 1, "IMPORT")).get(0);
+        Rule second = validator.parseYamlToRules(String.format(RULES, 2, "IMPORT")).get(0);
+
+        assertEquals(first.labels(), second.labels());
+        assertNotSame(first.labels(), second.labels());
+    }
+}
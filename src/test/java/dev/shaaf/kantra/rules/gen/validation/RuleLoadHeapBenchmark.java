@@ -0,0 +1,109 @@
+package dev.shaaf.kantra.rules.gen.validation;
+
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
+import dev.shaaf.kantra.rules.gen.model.Rule;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Retained heap of a 10k-rule load, with and without {@link RuleInterner}.
+ * <p>
+ * The corpus mimics the upstream rulesets: 100 files of 100 rules sharing a few source/target labels,
+ * link URLs and messages. Heap is measured after a full GC with all loaded rules still reachable, so
+ * JMH's time-based modes are not a fit; run the main method with a fixed heap, e.g.
+ * {@code -Xms1g -Xmx1g -XX:+UseSerialGC}.
+ * </p>
+ */
+public class RuleLoadHeapBenchmark {
+
+    private static final int FILES = 100;
+    private static final int RULES_PER_FILE = 100;
+    private static final String[] SOURCES = {"java-ee", "springboot", "camel2", "eap7", "jakarta-ee8"};
+    private static final String[] TARGETS = {"quarkus", "eap8", "camel3", "jakarta-ee9", "openjdk17", "cloud-readiness"};
+
+    public static void main(String[] args) throws Exception {
+        List<String> files = corpus();
+        RuleValidator validator = new RuleValidator();
+
+        // Warm up both paths so class loading and mapper caches are not attributed to either load
+        validator.parseYamlToRules(files.get(0));
+        validator.parseYamlToRules(files.get(0), new RuleInterner());
+
+        long baseline = usedHeap();
+        List<Rule> plain = new ArrayList<>();
+        for (String file : files) {
+            plain.addAll(validator.parseYamlToRules(file));
+        }
+        long plainBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        RuleInterner interner = new RuleInterner();
+        List<Rule> interned = new ArrayList<>();
+        for (String file : files) {
+            interned.addAll(validator.parseYamlToRules(file, interner));
+        }
+        long internedBytes = usedHeap() - baseline;
+
+        System.out.printf(Locale.ROOT, "Rules loaded:     %d / %d%n", plain.size(), interned.size());
+        System.out.printf(Locale.ROOT, "Plain load:       %,d bytes (%d B/rule)%n", plainBytes, plainBytes / plain.size());
+        System.out.printf(Locale.ROOT, "Interned load:    %,d bytes (%d B/rule, table of %d entries included)%n",
+            internedBytes, internedBytes / interned.size(), interner.size());
+        System.out.printf(Locale.ROOT, "Heap reduction:   %.1f%%%n", 100.0 * (plainBytes - internedBytes) / plainBytes);
+        if (!plain.equals(interned)) {
+            throw new IllegalStateException("Interned load differs from the plain load");
+        }
+    }
+
+    private static List<String> corpus() {
+        JavaLocation[] locations = JavaLocation.values();
+        List<String> files = new ArrayList<>(FILES);
+        for (int f = 0; f < FILES; f++) {
+            String source = SOURCES[f % SOURCES.length];
+            String target = TARGETS[f % TARGETS.length];
+            StringBuilder yaml = new StringBuilder();
+            for (int r = 0; r < RULES_PER_FILE; r++) {
+                int id = f * RULES_PER_FILE + r;
+                yaml.append("- ruleID: ").append(source).append("-to-").append(target).append('-').append(id).append('\n')
+                    .append("  message: The `").append(source).append("` API ").append(r % 20)
+                    .append(" is not available on ").append(target).append(" and must be replaced.\n")
+                    .append("  category: ").append(r % 3 == 0 ? "mandatory" : "optional").append('\n')
+                    .append("  effort: ").append(r % 5 + 1).append('\n')
+                    .append("  labels:\n")
+                    .append("    - konveyor.io/source=").append(source).append('\n')
+                    .append("    - konveyor.io/target=").append(target).append('\n')
+                    .append("  links:\n")
+                    .append("    - title: Migration guide\n")
+                    .append("      url: https://docs.example.org/").append(target).append("/migration\n")
+                    .append("  when:\n")
+                    .append("    java.referenced:\n")
+                    .append("      pattern: org.example.").append(source.replace('-', '.')).append(".Type").append(id % 500).append('\n')
+                    .append("      location: ").append(locations[id % locations.length]).append('\n');
+            }
+            files.add(yaml.toString());
+        }
+        return files;
+    }
+
+    /**
+     * Used heap after full GCs, repeated until it stops shrinking: objects released by cleaners
+     * and reference processing only go away on a later cycle.
+     */
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -55,7 +55,7 @@ public class RuleValidatorTest {
         assertTrue(rule.when() instanceof JavaReferencedCondition);
         
         JavaReferencedCondition javaCondition = (JavaReferencedCondition) rule.when();
-        assertEquals("IMPORT", javaCondition.location());
+        assertEquals(JavaLocation.IMPORT, javaCondition.location());
         assertEquals("org.apache.camel.ThreadPoolRejectedPolicy", javaCondition.pattern());
     }
 
@@ -64,7 +64,7 @@ public class RuleValidatorTest {
         // Create a rule using Java model
         JavaReferencedCondition whenCondition = new JavaReferencedCondition(
             "org.apache.camel.ThreadPoolRejectedPolicy",
-            "IMPORT"
+            JavaLocation.IMPORT
         );
         
         Rule rule = new Rule(
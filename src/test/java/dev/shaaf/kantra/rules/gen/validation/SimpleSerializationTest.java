@@ -1,6 +1,7 @@
 package dev.shaaf.kantra.rules.gen.validation;
 
 import dev.shaaf.kantra.rules.gen.model.Category;
+import dev.shaaf.kantra.rules.gen.model.JavaLocation;
 import dev.shaaf.kantra.rules.gen.model.JavaReferencedCondition;
 import dev.shaaf.kantra.rules.gen.model.Rule;
 import org.junit.jupiter.api.Test;
@@ -14,7 +15,7 @@ public class SimpleSerializationTest {
         // Create a simple Java referenced condition
         JavaReferencedCondition condition = new JavaReferencedCondition(
             "org.apache.camel.ThreadPoolRejectedPolicy",
-            "IMPORT"
+            JavaLocation.IMPORT
         );
         
         Rule rule = new Rule(
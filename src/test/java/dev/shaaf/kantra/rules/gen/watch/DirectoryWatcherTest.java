@@ -0,0 +1,90 @@
+package dev.shaaf.kantra.rules.gen.watch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for debounced directory watching.
+ */
+public class DirectoryWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private final BlockingQueue<DirectoryWatcher.ChangeBatch> batches = new LinkedBlockingQueue<>();
+    private DirectoryWatcher watcher;
+
+    @AfterEach
+    void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    @Test
+    void testChangesAreDebouncedIntoOneBatch() throws Exception {
+        watcher = DirectoryWatcher.start(dir, false, Duration.ofMillis(200), batches::add);
+        Files.writeString(dir.resolve("a.yaml"), "a");
+        Files.writeString(dir.resolve("b.yaml"), "b");
+        Files.writeString(dir.resolve("a.yaml"), "a2");
+
+        DirectoryWatcher.ChangeBatch batch = next();
+        assertEquals(Set.of(dir.resolve("a.yaml"), dir.resolve("b.yaml")), batch.paths());
+        assertFalse(batch.overflow());
+    }
+
+    @Test
+    void testNewSubdirectoriesAreWatched() throws Exception {
+        watcher = DirectoryWatcher.start(dir, true, Duration.ofMillis(100), batches::add);
+        Path sub = Files.createDirectory(dir.resolve("sub"));
+        assertTrue(next().paths().contains(sub));
+
+        Files.writeString(sub.resolve("rule.yaml"), "x");
+        assertTrue(changed().contains(sub.resolve("rule.yaml")));
+    }
+
+    @Test
+    void testStopsWhenDirectoryIsDeleted() throws Exception {
+        Path watched = Files.createDirectory(dir.resolve("watched"));
+        Files.writeString(watched.resolve("rule.yaml"), "x");
+        watcher = DirectoryWatcher.start(watched, false, Duration.ofMillis(100), batches::add);
+
+        Files.delete(watched.resolve("rule.yaml"));
+        Files.delete(watched);
+        assertTrue(changed().contains(watched));
+        for (int i = 0; i < 50 && watcher.isRunning(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(watcher.isRunning());
+    }
+
+    private DirectoryWatcher.ChangeBatch next() throws InterruptedException {
+        DirectoryWatcher.ChangeBatch batch = batches.poll(10, TimeUnit.SECONDS);
+        assertNotNull(batch, "No change batch delivered");
+        return batch;
+    }
+
+    /**
+     * The paths of all batches delivered until none arrives for a while.
+     */
+    private Set<Path> changed() throws InterruptedException {
+        Set<Path> paths = new HashSet<>(next().paths());
+        DirectoryWatcher.ChangeBatch batch;
+        while ((batch = batches.poll(1, TimeUnit.SECONDS)) != null) {
+            paths.addAll(batch.paths());
+        }
+        return paths;
+    }
+}